@@ -46,4 +46,23 @@ public @interface FunctionImport {
   HttpMethod httpMethod() default @HttpMethod(name = Name.GET);
 
   Documentation documentation() default @Documentation;
+
+  /**
+   * Whether the function import neither modifies data nor has other side
+   * effects, so that its results may be reused.
+   */
+  boolean sideEffectFree() default false;
+
+  /**
+   * The maximum age in milliseconds for which the result of a side-effect-free
+   * function import is reused for calls with equal parameter values. Results
+   * are not reused by default.
+   * <p>
+   * The objects of a reused result are shared by all requests within the
+   * maximum age, so the function import must return immutable objects or
+   * values which are not entities; JPA entities, for example, are detached
+   * after the request and would be shared in whatever state they are changed
+   * into by any of the requests.
+   */
+  long resultMaxAge() default 0;
 }
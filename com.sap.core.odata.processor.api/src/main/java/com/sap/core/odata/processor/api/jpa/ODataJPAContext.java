@@ -15,6 +15,8 @@
  ******************************************************************************/
 package com.sap.core.odata.processor.api.jpa;
 
+import java.util.concurrent.ExecutorService;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 
@@ -97,8 +99,9 @@ public interface ODataJPAContext {
    * The method gets the Java Persistence Entity Manager factory from the
    * context. <br>
    * <b>CAUTION:-</b> Don't use the Entity Manager Factory to instantiate
-   * Entity Managers. Instead get reference to Entity Manager using
-   * {@link com.sap.core.odata.processor.api.jpa.ODataJPAContext#getEntityManager()}
+   * Entity Managers for the JPA processor. Instead set the Entity Manager
+   * using
+   * {@link com.sap.core.odata.processor.api.jpa.ODataJPAContext#setEntityManager(EntityManager)}
    * 
    * @return an instance of Java Persistence Entity Manager Factory
    */
@@ -147,15 +150,33 @@ public interface ODataJPAContext {
   public String getJPAEdmMappingModel();
 
   /**
-   * The method returns an instance of type entity manager. The entity manager
-   * thus returns a single persistence context for the current OData request.
-   * Hence all entities that are accessed within JPA processor are managed by
-   * single entity manager.
+   * The method returns the entity manager set into the context. The entity
+   * manager provides a single persistence context for the current OData
+   * request. Hence all entities that are accessed within JPA processor are
+   * managed by single entity manager.
    * 
-   * @return an instance of type {@link javax.persistence.EntityManager}
+   * @return an instance of type {@link javax.persistence.EntityManager} or
+   *         null if no entity manager has been set
    */
   public EntityManager getEntityManager();
 
+  /**
+   * The method sets an entity manager managed by the application into the
+   * context, for example a container-managed entity manager. The JPA
+   * processor uses the entity manager for the current OData request and
+   * joins the transaction of the application, if there is one, instead of
+   * demarcating a transaction itself. The entity manager is not closed by the
+   * JPA processor.
+   * <p>
+   * If no entity manager is set, the JPA processor creates an entity manager
+   * from the entity manager factory for the OData request and closes it at
+   * the end of the request.
+   * 
+   * @param em
+   *            is an instance of type {@link javax.persistence.EntityManager}
+   */
+  public void setEntityManager(EntityManager em);
+
   /**
    * The method sets the JPA Edm Extension instance into the context. There
    * can be at most only one extension for a context. Invoking the method
@@ -175,4 +196,156 @@ public interface ODataJPAContext {
    */
   public JPAEdmExtension getJPAEdmExtension();
 
+  /**
+   * The method sets the page size for server-driven paging of an entity set.
+   * Reading the entity set then returns at most the given number of entities
+   * in the order of their keys, together with a link to the next page
+   * carrying a skip token. A page size of zero switches off paging for the
+   * entity set, which is the default.
+   * 
+   * @param entitySetName
+   *            is the name of the entity set
+   * @param pageSize
+   *            is the maximum number of entities of a page
+   */
+  public void setPageSize(String entitySetName, int pageSize);
+
+  /**
+   * The method returns the page size for server-driven paging of an entity
+   * set.
+   * 
+   * @param entitySetName
+   *            is the name of the entity set
+   * @return the maximum number of entities of a page or zero if the entity
+   *         set is not paged
+   */
+  public int getPageSize(String entitySetName);
+
+  /**
+   * The method sets the number of entities read from the database at a time
+   * when reading entity sets. With a fetch size larger than zero, entity sets
+   * are read in chunks of this size and converted into the response while
+   * they are read; the persistence context is cleared after each chunk. Thus
+   * reading large entity sets needs memory for one chunk of entities only.
+   * Note that the response itself is not streamed: the entity provider
+   * writes the serialized feed into a buffer before it is sent, so memory
+   * for the complete serialized feed is needed nevertheless. A fetch size of
+   * zero, which is the default, reads entity sets at once.
+   * Entity sets are only streamed with an entity manager created by the JPA
+   * processor; with an entity manager set by the application, they are read
+   * at once so that its persistence context is left untouched.
+   * 
+   * @param fetchSize
+   *            is the number of entities read at a time
+   */
+  public void setFetchSize(int fetchSize);
+
+  /**
+   * The method returns the number of entities read from the database at a
+   * time when reading entity sets.
+   * 
+   * @return the fetch size or zero if entity sets are read at once
+   */
+  public int getFetchSize();
+
+  /**
+   * The method sets the number of entities written to the database at a time
+   * when many entities are created with
+   * {@link com.sap.core.odata.processor.api.jpa.access.JPAProcessor#process(com.sap.core.odata.api.edm.EdmEntitySet, java.util.List)}.
+   * With a batch size larger than zero, the persistence context is flushed
+   * after each batch of entities. If the entity manager is created by the
+   * processor, the persistence context is also cleared after each batch and
+   * the batch size is passed to the JPA provider as its JDBC batch size; an
+   * entity manager set with {@link #setEntityManager(EntityManager)} is
+   * neither cleared nor changed in its properties. A batch size of zero,
+   * which is the default, writes all entities with one flush.
+   * 
+   * @param batchSize
+   *            is the number of entities written at a time
+   */
+  public void setBatchSize(int batchSize);
+
+  /**
+   * The method returns the number of entities written to the database at a
+   * time when many entities are created.
+   * 
+   * @return the batch size or zero if the entities are written at once
+   */
+  public int getBatchSize();
+
+  /**
+   * The method enables direct writes for an entity set. Updates and deletes
+   * of entities of the entity set are then executed as single JPQL UPDATE
+   * and DELETE statements restricted by the key and, if given in the
+   * request, by the ETag of the entity, without reading the entity first.
+   * As such statements bypass the persistence context, direct writes must
+   * only be enabled for entities without cascaded relationships, entity
+   * listeners or callbacks and without version attributes maintained by the
+   * JPA provider. Direct writes are disabled by default.
+   * 
+   * @param entitySetName
+   *            is the name of the entity set
+   * @param directWrite
+   *            is true if entities of the entity set are to be written
+   *            directly
+   */
+  public void setDirectWrite(String entitySetName, boolean directWrite);
+
+  /**
+   * The method returns whether direct writes are enabled for an entity set.
+   * 
+   * @param entitySetName
+   *            is the name of the entity set
+   * @return true if entities of the entity set are updated and deleted with
+   *         single JPQL statements
+   */
+  public boolean isDirectWrite(String entitySetName);
+
+  /**
+   * The method sets the executor service on whose threads the count of all
+   * entities requested with $inlinecount=allpages is taken, using an entity
+   * manager of its own, while the entities are read on the request thread.
+   * The executor service should be bounded; if it does not accept the count
+   * or the count has not started by the time the entities have been read,
+   * the count is taken on the request thread. Without an executor service,
+   * which is the default, the count is taken after reading the entities.
+   * 
+   * @param executorService
+   *            is the executor service or null
+   */
+  public void setExecutorService(ExecutorService executorService);
+
+  /**
+   * The method returns the executor service for counting entities
+   * concurrently.
+   * 
+   * @return the executor service or null
+   */
+  public ExecutorService getExecutorService();
+
+  /**
+   * The method makes counts of all entities of an entity set requested with
+   * $inlinecount=allpages approximate: a count taken for the same entity
+   * set and filter is reused until it is older than the given maximum age.
+   * This avoids counting very large tables for each page. A maximum age of
+   * zero, which is the default, counts the entities for each request.
+   * 
+   * @param entitySetName
+   *            is the name of the entity set
+   * @param maxAge
+   *            is the maximum age of a count in milliseconds
+   */
+  public void setInlineCountMaxAge(String entitySetName, long maxAge);
+
+  /**
+   * The method returns the maximum age of counts of all entities of an
+   * entity set.
+   * 
+   * @param entitySetName
+   *            is the name of the entity set
+   * @return the maximum age in milliseconds or zero if the entities are
+   *         counted for each request
+   */
+  public long getInlineCountMaxAge(String entitySetName);
+
 }
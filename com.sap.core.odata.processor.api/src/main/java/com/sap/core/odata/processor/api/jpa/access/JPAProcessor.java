@@ -18,6 +18,8 @@ package com.sap.core.odata.processor.api.jpa.access;
 import java.io.InputStream;
 import java.util.List;
 
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.ep.entry.ODataEntry;
 import com.sap.core.odata.api.uri.info.DeleteUriInfo;
 import com.sap.core.odata.api.uri.info.GetEntityCountUriInfo;
 import com.sap.core.odata.api.uri.info.GetEntitySetCountUriInfo;
@@ -33,8 +35,12 @@ import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
  * The interface provides methods for processing OData Requests for Create, Read, Update, Delete operations. 
  * You need to pass the OData request and the API created a JPA response. The JPA response is a JPA entity. 
  * You can now work with the JPA entities directly once it is retrieved from the persistence.
+ * Instances are created by the OData JPA access factory; methods may be added to
+ * the interface in later versions, so applications must not implement it.
  * 
- * @author SAP AG
+ * @author SAP AG <br>
+ * @DoNotImplement
+ * @see com.sap.core.odata.processor.api.jpa.factory.ODataJPAAccessFactory
  */
 public interface JPAProcessor {
   /**
@@ -120,9 +126,33 @@ public interface JPAProcessor {
       String requestContentType) throws ODataJPAModelException,
       ODataJPARuntimeException;
 
+  /**
+   * Processes many parsed entries for creating Entities of an Entity Set,
+   * including the Entities of their inlined entries. All Entities are
+   * persisted within one transaction; the persistence context is flushed
+   * and cleared after each batch of entities (see
+   * {@link com.sap.core.odata.processor.api.jpa.ODataJPAContext#setBatchSize(int)}).
+   * If an entry cannot be created, no entity is created.
+   * 
+   * @param entitySet
+   *            is the Entity Set the Entities are created in
+   * @param entries
+   *            are the parsed entries
+   * @return the created Objects, one for each entry in the order of the
+   *         entries
+   * 
+   * @throws ODataJPAModelException
+   * @throws ODataJPARuntimeException
+   */
+  public List<Object> process(EdmEntitySet entitySet, List<ODataEntry> entries)
+      throws ODataJPAModelException, ODataJPARuntimeException;
+
   /**
    * Processes OData request for updating Entity. The method returns an Object
-   * which is updated. Null means object was not found or updated.
+   * which is updated. Null means object was not found or updated. For entity
+   * sets written directly (see
+   * {@link com.sap.core.odata.processor.api.jpa.ODataJPAContext#setDirectWrite(String, boolean)})
+   * the number of entities updated is returned instead of the entity.
    * 
    * @param deleteuriInfo
    * @param contentType
@@ -137,7 +167,9 @@ public interface JPAProcessor {
 
   /**
    * Processes OData request for deleting Entity. The method returns an Object
-   * which is deleted. Null means object was not found.
+   * which is deleted. Null means object was not found. For entity sets
+   * written directly the number of entities deleted is returned instead of
+   * the entity.
    * 
    * @param deleteuriInfo
    * @param contentType
@@ -163,4 +195,12 @@ public interface JPAProcessor {
   public List<Object> process(GetFunctionImportUriInfo requestView)
       throws ODataJPAModelException, ODataJPARuntimeException;
 
+  /**
+   * Ends the processing of the current OData request. The entity manager
+   * created by the processor for the request is closed; an entity manager
+   * set into the OData JPA context by the application is left open. The
+   * results of the request must have been processed before.
+   */
+  public void close();
+
 }
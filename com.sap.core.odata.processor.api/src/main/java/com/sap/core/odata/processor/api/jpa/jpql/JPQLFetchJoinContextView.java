@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.processor.api.jpa.jpql;
+
+import java.util.List;
+
+/**
+ * The interface provides a view on the JPA relationships fetched together with
+ * the entities of a JPQL select context. It is implemented in addition to
+ * {@link com.sap.core.odata.processor.api.jpa.jpql.JPQLSelectContextView} by
+ * select contexts which fetch relationships; JPQL statements are built without
+ * fetch joins from contexts which do not implement it.
+ * 
+ * @author SAP AG
+ * @see com.sap.core.odata.processor.api.jpa.jpql.JPQLSelectContextView
+ * 
+ */
+public interface JPQLFetchJoinContextView extends JPQLSelectContextView {
+  /**
+   * The method returns a list of JPA relationships that are fetched together
+   * with the selected JPA entities. The relationships are built from the
+   * to-one navigation properties of $expand OData System Query Option.
+   * 
+   * @return a list of JPA relationship names or null if no relationship is
+   *         to be fetched
+   */
+  public List<String> getFetchJoinRelationShips();
+}
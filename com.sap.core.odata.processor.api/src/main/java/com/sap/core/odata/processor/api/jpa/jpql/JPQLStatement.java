@@ -123,11 +123,17 @@ public class JPQLStatement {
 
   public static final class KEYWORD {
     public static final String SELECT = "SELECT";
+    public static final String UPDATE = "UPDATE";
+    public static final String DELETE = "DELETE";
+    public static final String SET = "SET";
     public static final String FROM = "FROM";
     public static final String WHERE = "WHERE";
     public static final String LEFT_OUTER_JOIN = "LEFT OUTER JOIN";
     public static final String OUTER = "OUTER";
     public static final String JOIN = "JOIN";
+    public static final String LEFT_JOIN_FETCH = "LEFT JOIN FETCH";
+    public static final String DISTINCT = "DISTINCT";
+    public static final String IN = "IN";
     public static final String ORDERBY = "ORDER BY";
     public static final String COUNT = "COUNT";
     public static final String OFFSET = ".000";
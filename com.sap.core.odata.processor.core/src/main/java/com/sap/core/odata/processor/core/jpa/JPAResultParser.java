@@ -137,6 +137,39 @@ public final class JPAResultParser {
     return edmEntity;
   }
 
+  /**
+   * The method returns a Hash Map of Properties and values for the values of
+   * a row selected by a JPQL projection. The values of the row are in the
+   * order of the given properties.
+   * 
+   * @param tuple
+   * @param selectPropertyList
+   * @return a Hash Map of Properties and values for given selected properties
+   *         of an EdmEntity Type
+   * @throws ODataJPARuntimeException
+   */
+  public final Map<String, Object> parse2EdmPropertyValueMapFromTuple(
+      final Object[] tuple, final List<EdmProperty> selectPropertyList)
+      throws ODataJPARuntimeException {
+    HashMap<String, Object> edmEntity = new HashMap<String, Object>();
+    try {
+      for (int i = 0; i < selectPropertyList.size(); i++) {
+        EdmProperty property = selectPropertyList.get(i);
+        Object propertyValue = tuple[i];
+        if (property.getType().getKind().equals(EdmTypeKind.COMPLEX)) {
+          propertyValue = parse2EdmPropertyValueMap(propertyValue,
+              (EdmStructuralType) property.getType());
+        }
+        edmEntity.put(property.getName(), propertyValue);
+      }
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException.throwException(
+          ODataJPARuntimeException.GENERAL.addContent(e
+              .getMessage()), e);
+    }
+    return edmEntity;
+  }
+
   /**
    * The method returns a Hash Map of Properties and values for an EdmEntity
    * Type The method uses reflection on object jpaEntity to get the list of
@@ -15,6 +15,12 @@
  ******************************************************************************/
 package com.sap.core.odata.processor.core.jpa;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 
@@ -34,6 +40,12 @@ public class ODataJPAContextImpl implements ODataJPAContext {
   private EdmProvider edmProvider;
   private String jpaEdmMappingModelName;
   private JPAEdmExtension jpaEdmExtension;
+  private Map<String, Integer> pageSizes = new HashMap<String, Integer>();
+  private int fetchSize = 0;
+  private int batchSize = 0;
+  private Set<String> directWriteEntitySets = new HashSet<String>();
+  private ExecutorService executorService;
+  private Map<String, Long> inlineCountMaxAges = new HashMap<String, Long>();
   private static final ThreadLocal<ODataContext> oDataContextThreadLocal = new ThreadLocal<ODataContext>();
 
   @Override
@@ -112,12 +124,14 @@ public class ODataJPAContextImpl implements ODataJPAContext {
 
   @Override
   public EntityManager getEntityManager() {
-    if (em == null) {
-      emf.createEntityManager();
-    }
     return em;
   }
 
+  @Override
+  public void setEntityManager(final EntityManager em) {
+    this.em = em;
+  }
+
   @Override
   public void setJPAEdmExtension(final JPAEdmExtension jpaEdmExtension) {
     this.jpaEdmExtension = jpaEdmExtension;
@@ -128,4 +142,78 @@ public class ODataJPAContextImpl implements ODataJPAContext {
   public JPAEdmExtension getJPAEdmExtension() {
     return jpaEdmExtension;
   }
+
+  @Override
+  public void setPageSize(final String entitySetName, final int pageSize) {
+    if (pageSize > 0) {
+      pageSizes.put(entitySetName, pageSize);
+    } else {
+      pageSizes.remove(entitySetName);
+    }
+  }
+
+  @Override
+  public int getPageSize(final String entitySetName) {
+    Integer pageSize = pageSizes.get(entitySetName);
+    return pageSize == null ? 0 : pageSize;
+  }
+
+  @Override
+  public void setFetchSize(final int fetchSize) {
+    this.fetchSize = fetchSize > 0 ? fetchSize : 0;
+  }
+
+  @Override
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  @Override
+  public void setBatchSize(final int batchSize) {
+    this.batchSize = batchSize > 0 ? batchSize : 0;
+  }
+
+  @Override
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  @Override
+  public void setDirectWrite(final String entitySetName, final boolean directWrite) {
+    if (directWrite) {
+      directWriteEntitySets.add(entitySetName);
+    } else {
+      directWriteEntitySets.remove(entitySetName);
+    }
+  }
+
+  @Override
+  public boolean isDirectWrite(final String entitySetName) {
+    return directWriteEntitySets.contains(entitySetName);
+  }
+
+  @Override
+  public void setExecutorService(final ExecutorService executorService) {
+    this.executorService = executorService;
+  }
+
+  @Override
+  public ExecutorService getExecutorService() {
+    return executorService;
+  }
+
+  @Override
+  public void setInlineCountMaxAge(final String entitySetName, final long maxAge) {
+    if (maxAge > 0) {
+      inlineCountMaxAges.put(entitySetName, maxAge);
+    } else {
+      inlineCountMaxAges.remove(entitySetName);
+    }
+  }
+
+  @Override
+  public long getInlineCountMaxAge(final String entitySetName) {
+    Long maxAge = inlineCountMaxAges.get(entitySetName);
+    return maxAge == null ? 0 : maxAge;
+  }
 }
@@ -45,117 +45,144 @@ public class ODataJPAProcessorDefault extends ODataJPAProcessor {
   @Override
   public ODataResponse readEntitySet(final GetEntitySetUriInfo uriParserResultView,
       final String contentType) throws ODataException {
+    try {
+      List<?> jpaEntities = jpaProcessor.process(uriParserResultView);
 
-    List<?> jpaEntities = jpaProcessor.process(uriParserResultView);
+      ODataResponse oDataResponse = ODataJPAResponseBuilder.build(
+          jpaEntities, uriParserResultView, contentType, oDataJPAContext);
 
-    ODataResponse oDataResponse = ODataJPAResponseBuilder.build(
-        jpaEntities, uriParserResultView, contentType, oDataJPAContext);
-
-    return oDataResponse;
+      return oDataResponse;
+    } finally {
+      jpaProcessor.close();
+    }
   }
 
   @Override
   public ODataResponse readEntity(final GetEntityUriInfo uriParserResultView,
       final String contentType) throws ODataException {
+    try {
+      Object jpaEntity = jpaProcessor.process(uriParserResultView);
 
-    Object jpaEntity = jpaProcessor.process(uriParserResultView);
-
-    ODataResponse oDataResponse = ODataJPAResponseBuilder.build(jpaEntity,
-        uriParserResultView, contentType, oDataJPAContext);
+      ODataResponse oDataResponse = ODataJPAResponseBuilder.build(jpaEntity,
+          uriParserResultView, contentType, oDataJPAContext);
 
-    return oDataResponse;
+      return oDataResponse;
+    } finally {
+      jpaProcessor.close();
+    }
   }
 
   @Override
   public ODataResponse countEntitySet(final GetEntitySetCountUriInfo uriParserResultView,
       final String contentType) throws ODataException {
+    try {
+      long jpaEntityCount = jpaProcessor.process(uriParserResultView);
 
-    long jpaEntityCount = jpaProcessor.process(uriParserResultView);
-
-    ODataResponse oDataResponse = ODataJPAResponseBuilder.build(
-        jpaEntityCount, oDataJPAContext);
+      ODataResponse oDataResponse = ODataJPAResponseBuilder.build(
+          jpaEntityCount, oDataJPAContext);
 
-    return oDataResponse;
+      return oDataResponse;
+    } finally {
+      jpaProcessor.close();
+    }
   }
 
   @Override
   public ODataResponse existsEntity(final GetEntityCountUriInfo uriInfo,
       final String contentType) throws ODataException {
+    try {
+      long jpaEntityCount = jpaProcessor.process(uriInfo);
 
-    long jpaEntityCount = jpaProcessor.process(uriInfo);
-
-    ODataResponse oDataResponse = ODataJPAResponseBuilder.build(
-        jpaEntityCount, oDataJPAContext);
+      ODataResponse oDataResponse = ODataJPAResponseBuilder.build(
+          jpaEntityCount, oDataJPAContext);
 
-    return oDataResponse;
+      return oDataResponse;
+    } finally {
+      jpaProcessor.close();
+    }
   }
 
   @Override
   public ODataResponse createEntity(final PostUriInfo uriParserResultView, final InputStream content,
       final String requestContentType, final String contentType)
       throws ODataException {
+    try {
+      List<Object> createdJpaEntityList = jpaProcessor.process(uriParserResultView, content,
+          requestContentType);
 
-    List<Object> createdJpaEntityList = jpaProcessor.process(uriParserResultView, content,
-        requestContentType);
+      ODataResponse oDataResponse = ODataJPAResponseBuilder.build(createdJpaEntityList,
+          uriParserResultView, contentType, oDataJPAContext);
 
-    ODataResponse oDataResponse = ODataJPAResponseBuilder.build(createdJpaEntityList,
-        uriParserResultView, contentType, oDataJPAContext);
-
-    return oDataResponse;
+      return oDataResponse;
+    } finally {
+      jpaProcessor.close();
+    }
   }
 
   @Override
   public ODataResponse updateEntity(final PutMergePatchUriInfo uriParserResultView,
       final InputStream content, final String requestContentType, final boolean merge,
       final String contentType) throws ODataException {
+    try {
+      Object jpaEntity = jpaProcessor.process(uriParserResultView, content,
+          requestContentType);
 
-    Object jpaEntity = jpaProcessor.process(uriParserResultView, content,
-        requestContentType);
+      ODataResponse oDataResponse = ODataJPAResponseBuilder.build(jpaEntity,
+          uriParserResultView);
 
-    ODataResponse oDataResponse = ODataJPAResponseBuilder.build(jpaEntity,
-        uriParserResultView);
-
-    return oDataResponse;
+      return oDataResponse;
+    } finally {
+      jpaProcessor.close();
+    }
   }
 
   @Override
   public ODataResponse deleteEntity(final DeleteUriInfo uriParserResultView,
       final String contentType) throws ODataException {
-
-    Object deletedObj = jpaProcessor.process(uriParserResultView,
-        contentType);
-
-    ODataResponse oDataResponse = ODataJPAResponseBuilder.build(deletedObj,
-        uriParserResultView);
-    return oDataResponse;
+    try {
+      Object deletedObj = jpaProcessor.process(uriParserResultView,
+          contentType);
+
+      ODataResponse oDataResponse = ODataJPAResponseBuilder.build(deletedObj,
+          uriParserResultView);
+      return oDataResponse;
+    } finally {
+      jpaProcessor.close();
+    }
   }
 
   @Override
   public ODataResponse executeFunctionImport(
       final GetFunctionImportUriInfo uriParserResultView,
       final String contentType) throws ODataException {
+    try {
+      List<Object> resultEntity = jpaProcessor
+          .process(uriParserResultView);
 
-    List<Object> resultEntity = jpaProcessor
-        .process(uriParserResultView);
+      ODataResponse oDataResponse = ODataJPAResponseBuilder.build(
+          resultEntity, uriParserResultView, contentType,
+          oDataJPAContext);
 
-    ODataResponse oDataResponse = ODataJPAResponseBuilder.build(
-        resultEntity, uriParserResultView, contentType,
-        oDataJPAContext);
-
-    return oDataResponse;
+      return oDataResponse;
+    } finally {
+      jpaProcessor.close();
+    }
   }
 
   @Override
   public ODataResponse executeFunctionImportValue(
       final GetFunctionImportUriInfo uriParserResultView,
       final String contentType) throws ODataException {
+    try {
+      List<Object> result = jpaProcessor.process(uriParserResultView);
 
-    List<Object> result = jpaProcessor.process(uriParserResultView);
+      ODataResponse oDataResponse = ODataJPAResponseBuilder.build(result,
+          uriParserResultView, contentType, oDataJPAContext);
 
-    ODataResponse oDataResponse = ODataJPAResponseBuilder.build(result,
-        uriParserResultView, contentType, oDataJPAContext);
-
-    return oDataResponse;
+      return oDataResponse;
+    } finally {
+      jpaProcessor.close();
+    }
   }
 
 }
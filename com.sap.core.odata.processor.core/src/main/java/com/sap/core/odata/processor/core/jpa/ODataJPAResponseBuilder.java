@@ -15,12 +15,18 @@
  ******************************************************************************/
 package com.sap.core.odata.processor.core.jpa;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import com.sap.core.odata.api.commons.HttpStatusCodes;
 import com.sap.core.odata.api.commons.InlineCount;
+import com.sap.core.odata.api.edm.Edm;
+import com.sap.core.odata.api.edm.EdmEntityContainer;
+import com.sap.core.odata.api.edm.EdmEntitySet;
 import com.sap.core.odata.api.edm.EdmEntityType;
 import com.sap.core.odata.api.edm.EdmException;
 import com.sap.core.odata.api.edm.EdmFunctionImport;
@@ -51,8 +57,14 @@ import com.sap.core.odata.api.uri.info.GetFunctionImportUriInfo;
 import com.sap.core.odata.api.uri.info.PostUriInfo;
 import com.sap.core.odata.api.uri.info.PutMergePatchUriInfo;
 import com.sap.core.odata.processor.api.jpa.ODataJPAContext;
+import com.sap.core.odata.core.commons.Encoder;
+import com.sap.core.odata.core.exception.ODataRuntimeException;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
+import com.sap.core.odata.processor.core.jpa.access.data.JPACountedResultList;
 import com.sap.core.odata.processor.core.jpa.access.data.JPAExpandCallBack;
+import com.sap.core.odata.processor.core.jpa.access.data.JPAPaging;
+import com.sap.core.odata.processor.core.jpa.access.data.JPAStreamedResultList;
+import com.sap.core.odata.processor.core.jpa.access.data.ODataExpressionParser;
 
 public final class ODataJPAResponseBuilder {
 
@@ -66,24 +78,19 @@ public final class ODataJPAResponseBuilder {
 
     try {
       edmEntityType = resultsView.getTargetEntitySet().getEntityType();
-      List<Map<String, Object>> edmEntityList = new ArrayList<Map<String, Object>>();
-      Map<String, Object> edmPropertyValueMap = null;
       JPAResultParser jpaResultParser = JPAResultParser.create();
-      final List<SelectItem> selectedItems = resultsView.getSelect();
-      if (selectedItems != null && selectedItems.size() > 0) {
-        for (Object jpaEntity : jpaEntities) {
-          edmPropertyValueMap = jpaResultParser
-              .parse2EdmPropertyValueMapFromList(
-                  jpaEntity,
-                  buildSelectItemList(selectedItems,
-                      edmEntityType));
-          edmEntityList.add(edmPropertyValueMap);
-        }
+      EdmEntityConverter converter = new EdmEntityConverter(jpaResultParser,
+          resultsView, edmEntityType);
+      List<Map<String, Object>> edmEntityList = null;
+      if (jpaEntities instanceof JPAStreamedResultList) {
+        // The entities are converted while the feed is written so that only
+        // the chunk of entities currently read is held in memory; the entity
+        // provider still buffers the serialized feed as a whole
+        edmEntityList = new StreamedEdmEntityList(jpaEntities, converter);
       } else {
+        edmEntityList = new ArrayList<Map<String, Object>>();
         for (Object jpaEntity : jpaEntities) {
-          edmPropertyValueMap = jpaResultParser
-              .parse2EdmPropertyValueMap(jpaEntity, edmEntityType);
-          edmEntityList.add(edmPropertyValueMap);
+          edmEntityList.add(converter.convert(jpaEntity));
         }
       }
       expandList = resultsView.getExpand();
@@ -101,6 +108,16 @@ public final class ODataJPAResponseBuilder {
       // Getting the entity feed properties
       feedProperties = getEntityProviderProperties(odataJPAContext,
           resultsView, edmEntityList);
+      if (resultsView.getInlineCount() == InlineCount.ALLPAGES && jpaEntities instanceof JPACountedResultList) {
+        // The count of all entities and not only of those read
+        feedProperties = EntityProviderWriteProperties.fromProperties(feedProperties)
+            .inlineCount((int) ((JPACountedResultList<?>) jpaEntities).getCount()).build();
+      }
+      String nextLink = buildNextLink(odataJPAContext, resultsView, edmEntityList);
+      if (nextLink != null) {
+        feedProperties = EntityProviderWriteProperties.fromProperties(feedProperties)
+            .nextLink(nextLink).build();
+      }
       odataResponse = EntityProvider.writeFeed(contentType,
           resultsView.getTargetEntitySet(), edmEntityList,
           feedProperties);
@@ -455,6 +472,76 @@ public final class ODataJPAResponseBuilder {
     return entityFeedPropertiesBuilder.build();
   }
 
+  /*
+   * Build the link to the next page of a paged entity set. A full page may be
+   * followed by further entities; the link continues after the key of the last
+   * entity of the page. Apart from $skiptoken, the link carries over the
+   * options $inlinecount, $select and $expand of the request.
+   */
+  private static String buildNextLink(final ODataJPAContext odataJPAContext,
+      final GetEntitySetUriInfo resultsView, final List<Map<String, Object>> edmEntityList)
+      throws ODataJPARuntimeException, EdmException {
+    int pageSize = JPAPaging.getPageSize(odataJPAContext, resultsView);
+    if (pageSize == 0 || edmEntityList.size() < pageSize) {
+      return null;
+    }
+
+    EdmEntitySet entitySet = resultsView.getTargetEntitySet();
+    EdmEntityContainer entityContainer = entitySet.getEntityContainer();
+    StringBuilder nextLink = new StringBuilder();
+    if (!entityContainer.isDefaultEntityContainer()) {
+      nextLink.append(entityContainer.getName()).append(Edm.DELIMITER);
+    }
+    nextLink.append(entitySet.getName())
+        .append("?$skiptoken=")
+        .append(Encoder.encode(ODataExpressionParser.buildSkipToken(
+            entitySet.getEntityType().getKeyProperties(),
+            edmEntityList.get(edmEntityList.size() - 1))));
+    if (resultsView.getInlineCount() != null) {
+      nextLink.append("&$inlinecount=").append(
+          resultsView.getInlineCount().toString().toLowerCase(Locale.ROOT));
+    }
+
+    List<SelectItem> selectItems = resultsView.getSelect();
+    if (selectItems != null && !selectItems.isEmpty()) {
+      StringBuilder select = new StringBuilder();
+      for (SelectItem selectItem : selectItems) {
+        if (select.length() > 0) {
+          select.append(',');
+        }
+        for (NavigationPropertySegment segment : selectItem.getNavigationPropertySegments()) {
+          select.append(segment.getNavigationProperty().getName()).append('/');
+        }
+        if (selectItem.isStar()) {
+          select.append('*');
+        } else if (selectItem.getProperty() != null) {
+          select.append(selectItem.getProperty().getName());
+        } else if (select.charAt(select.length() - 1) == '/') {
+          select.deleteCharAt(select.length() - 1);
+        }
+      }
+      nextLink.append("&$select=").append(Encoder.encode(select.toString()));
+    }
+
+    List<ArrayList<NavigationPropertySegment>> expandList = resultsView.getExpand();
+    if (expandList != null && !expandList.isEmpty()) {
+      StringBuilder expand = new StringBuilder();
+      for (ArrayList<NavigationPropertySegment> segments : expandList) {
+        if (expand.length() > 0) {
+          expand.append(',');
+        }
+        for (int i = 0; i < segments.size(); i++) {
+          if (i > 0) {
+            expand.append('/');
+          }
+          expand.append(segments.get(i).getNavigationProperty().getName());
+        }
+      }
+      nextLink.append("&$expand=").append(Encoder.encode(expand.toString()));
+    }
+    return nextLink.toString();
+  }
+
   private static EntityProviderWriteProperties getEntityProviderProperties(
       final ODataJPAContext odataJPAContext, final GetEntityUriInfo resultsView)
       throws ODataJPARuntimeException {
@@ -479,6 +566,104 @@ public final class ODataJPAResponseBuilder {
     return entityFeedPropertiesBuilder.build();
   }
 
+  /*
+   * Converts JPA entities, or rows of a query projected onto the selected
+   * properties, into maps of EDM property values.
+   */
+  private static final class EdmEntityConverter {
+
+    private final JPAResultParser jpaResultParser;
+    private final GetEntitySetUriInfo resultsView;
+    private final EdmEntityType edmEntityType;
+    private List<EdmProperty> selectPropertyList;
+    private List<EdmProperty> projectedProperties;
+
+    private EdmEntityConverter(final JPAResultParser jpaResultParser,
+        final GetEntitySetUriInfo resultsView, final EdmEntityType edmEntityType) {
+      this.jpaResultParser = jpaResultParser;
+      this.resultsView = resultsView;
+      this.edmEntityType = edmEntityType;
+    }
+
+    private Map<String, Object> convert(final Object jpaEntity)
+        throws ODataJPARuntimeException, EdmException {
+      final List<SelectItem> selectedItems = resultsView.getSelect();
+      if (selectedItems == null || selectedItems.isEmpty()) {
+        return jpaResultParser.parse2EdmPropertyValueMap(jpaEntity, edmEntityType);
+      } else if (jpaEntity instanceof Object[]) {
+        // Row of a query projected onto the selected properties
+        if (projectedProperties == null) {
+          projectedProperties = ODataExpressionParser.parseToJPAProjectedProperties(
+              selectedItems, resultsView.getExpand(), edmEntityType);
+        }
+        return jpaResultParser.parse2EdmPropertyValueMapFromTuple((Object[]) jpaEntity,
+            projectedProperties);
+      } else {
+        if (selectPropertyList == null) {
+          selectPropertyList = buildSelectItemList(selectedItems, edmEntityType);
+        }
+        return jpaResultParser.parse2EdmPropertyValueMapFromList(jpaEntity,
+            selectPropertyList);
+      }
+    }
+  }
+
+  /*
+   * List of EDM property value maps of JPA entities which converts the
+   * entities while it is iterated.
+   */
+  private static final class StreamedEdmEntityList extends AbstractList<Map<String, Object>> {
+
+    private final List<?> jpaEntities;
+    private final EdmEntityConverter converter;
+
+    private StreamedEdmEntityList(final List<?> jpaEntities, final EdmEntityConverter converter) {
+      this.jpaEntities = jpaEntities;
+      this.converter = converter;
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> iterator() {
+      final Iterator<?> iterator = jpaEntities.iterator();
+      return new Iterator<Map<String, Object>>() {
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public Map<String, Object> next() {
+          return convert(iterator.next());
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    @Override
+    public Map<String, Object> get(final int index) {
+      return convert(jpaEntities.get(index));
+    }
+
+    @Override
+    public int size() {
+      return jpaEntities.size();
+    }
+
+    private Map<String, Object> convert(final Object jpaEntity) {
+      try {
+        return converter.convert(jpaEntity);
+      } catch (ODataJPARuntimeException e) {
+        throw new ODataRuntimeException(e.getMessage(), e);
+      } catch (EdmException e) {
+        throw new ODataRuntimeException(e.getMessage(), e);
+      }
+    }
+  }
+
   private static List<EdmProperty> buildSelectItemList(
       final List<SelectItem> selectItems, final EdmEntityType entity) throws ODataJPARuntimeException {
     boolean flag = false;
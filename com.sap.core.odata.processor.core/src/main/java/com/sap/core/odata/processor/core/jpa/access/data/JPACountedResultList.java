@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.processor.core.jpa.access.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * The class is a list of the entities of an entity set read by a request
+ * with $inlinecount=allpages, together with the count of all entities of the
+ * entity set matching the filter of the request.
+ * 
+ * @author SAP AG
+ * 
+ * @param <T>
+ *          the type of the entities
+ */
+public class JPACountedResultList<T> extends ArrayList<T> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long count;
+
+  /**
+   * @param entities
+   *          the entities read
+   * @param count
+   *          the count of all entities
+   */
+  public JPACountedResultList(final Collection<? extends T> entities, final long count) {
+    super(entities);
+    this.count = count;
+  }
+
+  /**
+   * @return the count of all entities
+   */
+  public long getCount() {
+    return count;
+  }
+}
@@ -15,12 +15,16 @@
  ******************************************************************************/
 package com.sap.core.odata.processor.core.jpa.access.data;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.persistence.EntityManagerFactory;
 
 import com.sap.core.odata.api.edm.EdmException;
 import com.sap.core.odata.api.edm.EdmFacets;
@@ -40,11 +44,53 @@ import com.sap.core.odata.processor.api.jpa.model.JPAEdmMapping;
 
 public class JPAFunctionContext extends JPAMethodContext {
 
+  /*
+   * Each function import is bound to its Java method, the Java types of its
+   * parameters and the constructor of the enclosing class only once.
+   */
+  private static final Map<EdmFunctionImport, FunctionBinding> FUNCTION_BINDINGS =
+      new WeakHashMap<EdmFunctionImport, FunctionBinding>();
+
+  private static final class FunctionBinding {
+    private final Method method;
+    private final Class<?>[] parameterTypes;
+    private final Constructor<?> constructor;
+
+    private FunctionBinding(final Method method, final Class<?>[] parameterTypes, final Constructor<?> constructor) {
+      this.method = method;
+      this.parameterTypes = parameterTypes;
+      this.constructor = constructor;
+    }
+  }
+
+  private List<Object> cachedResult;
+
+  /**
+   * Returns the reused result of a side-effect-free function import, see
+   * {@link JPAFunctionResultCache}, or null if the function has to be called;
+   * without a reused result there is no enclosing object.
+   */
+  List<Object> getCachedResult() {
+    return cachedResult;
+  }
+
   public class JPAFunctionContextBuilder extends JPAMethodContextBuilder {
 
     protected GetFunctionImportUriInfo functiontView;
     private EdmFunctionImport functionImport;
     private EdmMapping mapping;
+    private FunctionBinding functionBinding;
+    private EntityManagerFactory emf;
+
+    /**
+     * Sets the entity manager factory the function is called for; reused
+     * results are kept separately for each entity manager factory.
+     * 
+     * @param emf
+     */
+    public void setEntityManagerFactory(final EntityManagerFactory emf) {
+      this.emf = emf;
+    }
 
     @Override
     public JPAMethodContext build() throws ODataJPAModelException,
@@ -53,12 +99,21 @@ public class JPAFunctionContext extends JPAMethodContext {
 
         functionImport = functiontView.getFunctionImport();
         try {
-          mapping = functionImport.getMapping();
+          functionBinding = getFunctionBinding();
 
+          JPAFunction jpaFunction = generateJPAFunction();
           List<JPAFunction> jpaFunctionList = new ArrayList<JPAFunction>();
-          jpaFunctionList.add(generateJPAFunction());
+          jpaFunctionList.add(jpaFunction);
           setJpaFunction(jpaFunctionList);
-          setEnclosingObject(generateEnclosingObject());
+
+          // The cache is looked up with the bound method and the converted
+          // arguments; the enclosing class is only instantiated on a miss.
+          long maxAge = JPAFunctionResultCache.getMaxAge(functionBinding.method);
+          cachedResult = maxAge > 0 ?
+              JPAFunctionResultCache.get(emf, functionBinding.method, jpaFunction.getArguments(), maxAge) : null;
+          if (cachedResult == null) {
+            setEnclosingObject(generateEnclosingObject());
+          }
         } catch (EdmException e) {
           throw ODataJPARuntimeException.throwException(
               ODataJPARuntimeException.GENERAL.addContent(e
@@ -93,16 +148,29 @@ public class JPAFunctionContext extends JPAMethodContext {
       return JPAFunctionContext.this;
     }
 
+    private FunctionBinding getFunctionBinding() throws EdmException,
+        NoSuchMethodException, SecurityException {
+      synchronized (FUNCTION_BINDINGS) {
+        FunctionBinding binding = FUNCTION_BINDINGS.get(functionImport);
+        if (binding == null) {
+          mapping = functionImport.getMapping();
+          Class<?>[] parameterTypes = getParameterTypes();
+          Object[] params = null;
+          binding = new FunctionBinding(getMethod(parameterTypes), parameterTypes,
+              ((JPAEdmMapping) mapping).getJPAType().getConstructor((Class<?>[]) params));
+          FUNCTION_BINDINGS.put(functionImport, binding);
+        }
+        return binding;
+      }
+    }
+
     private JPAFunction generateJPAFunction() throws EdmException,
-        NoSuchMethodException, SecurityException,
         ODataJPAModelException, ODataJPARuntimeException {
 
-      Class<?>[] parameterTypes = getParameterTypes();
-      Method method = getMethod(parameterTypes);
       Type returnType = getReturnType();
       Object[] args = getAruguments();
 
-      JPAFunction jpafunction = new JPAFunction(method, parameterTypes,
+      JPAFunction jpafunction = new JPAFunction(functionBinding.method, functionBinding.parameterTypes,
           returnType, args);
 
       return jpafunction;
@@ -121,10 +189,8 @@ public class JPAFunctionContext extends JPAMethodContext {
           EdmLiteral literal = edmArguements.get(paramName);
           EdmParameter parameter = functionImport
               .getParameter(paramName);
-          JPAEdmMapping mapping = (JPAEdmMapping) parameter
-              .getMapping();
           args[i] = convertArguement(literal, parameter.getFacets(),
-              mapping.getJPAType());
+              functionBinding.parameterTypes[i]);
           i++;
         }
         return args;
@@ -175,13 +241,11 @@ public class JPAFunctionContext extends JPAMethodContext {
 
     private Object generateEnclosingObject() throws InstantiationException,
         IllegalAccessException, IllegalArgumentException,
-        InvocationTargetException, NoSuchMethodException,
-        SecurityException {
+        InvocationTargetException {
 
-      Class<?> type = ((JPAEdmMapping) mapping).getJPAType();
       Object[] params = null;
 
-      return type.getConstructor((Class<?>[]) params).newInstance(params);
+      return functionBinding.constructor.newInstance(params);
 
     }
 
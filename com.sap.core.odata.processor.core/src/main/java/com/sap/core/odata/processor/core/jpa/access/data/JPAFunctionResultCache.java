@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.processor.core.jpa.access.data;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.sap.core.odata.api.annotation.edm.FunctionImport;
+
+/**
+ * The class keeps the results of function imports which are annotated as
+ * side-effect-free with a maximum age for their results, see
+ * {@link FunctionImport#resultMaxAge()}. Results are keyed by the Java method
+ * and the values of its arguments, separately for each entity manager
+ * factory, as functions may read the data of their persistence unit.
+ * 
+ * @author SAP AG
+ */
+final class JPAFunctionResultCache {
+
+  private static final int MAX_CACHED_RESULTS = 1000;
+  private static final Map<EntityManagerFactory, Map<Method, Map<List<Object>, CachedResult>>> CACHED_RESULTS =
+      new WeakHashMap<EntityManagerFactory, Map<Method, Map<List<Object>, CachedResult>>>();
+
+  private static final class CachedResult {
+    private final List<Object> result;
+    private final long time;
+
+    private CachedResult(final List<Object> result, final long time) {
+      this.result = result;
+      this.time = time;
+    }
+  }
+
+  private JPAFunctionResultCache() {}
+
+  /**
+   * Returns the maximum age in milliseconds of results of the given method, or
+   * zero if its results must not be reused.
+   */
+  static long getMaxAge(final Method method) {
+    FunctionImport annotation = method.getAnnotation(FunctionImport.class);
+    return annotation != null && annotation.sideEffectFree() ? Math.max(annotation.resultMaxAge(), 0) : 0;
+  }
+
+  /**
+   * Returns a copy of the result of the method for the given arguments and
+   * entity manager factory if it is not older than the maximum age, or null.
+   */
+  static List<Object> get(final EntityManagerFactory emf, final Method method, final Object[] args,
+      final long maxAge) {
+    synchronized (CACHED_RESULTS) {
+      Map<Method, Map<List<Object>, CachedResult>> methodResults = CACHED_RESULTS.get(emf);
+      Map<List<Object>, CachedResult> results = methodResults == null ? null : methodResults.get(method);
+      CachedResult cachedResult = results == null ? null : results.get(getKey(args));
+      if (cachedResult == null || System.currentTimeMillis() - cachedResult.time > maxAge) {
+        return null;
+      }
+      return new ArrayList<Object>(cachedResult.result);
+    }
+  }
+
+  /**
+   * Keeps a copy of the result of the method for the given arguments and
+   * entity manager factory.
+   */
+  static void put(final EntityManagerFactory emf, final Method method, final Object[] args,
+      final List<Object> result) {
+    if (result == null) {
+      return;
+    }
+    synchronized (CACHED_RESULTS) {
+      Map<Method, Map<List<Object>, CachedResult>> methodResults = CACHED_RESULTS.get(emf);
+      if (methodResults == null) {
+        methodResults = new WeakHashMap<Method, Map<List<Object>, CachedResult>>();
+        CACHED_RESULTS.put(emf, methodResults);
+      }
+      Map<List<Object>, CachedResult> results = methodResults.get(method);
+      if (results == null) {
+        results = new LinkedHashMap<List<Object>, CachedResult>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(final Map.Entry<List<Object>, CachedResult> eldest) {
+            return size() > MAX_CACHED_RESULTS;
+          }
+        };
+        methodResults.put(method, results);
+      }
+      results.put(getKey(args), new CachedResult(new ArrayList<Object>(result), System.currentTimeMillis()));
+    }
+  }
+
+  private static List<Object> getKey(final Object[] args) {
+    return args == null ? Collections.emptyList() : new ArrayList<Object>(Arrays.asList(args));
+  }
+}
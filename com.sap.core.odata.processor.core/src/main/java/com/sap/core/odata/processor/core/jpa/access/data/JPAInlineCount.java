@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.processor.core.jpa.access.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+
+import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
+
+/**
+ * The class counts all entities of an entity set for $inlinecount=allpages.
+ * The count can be started on an executor service, so that it runs with an
+ * entity manager of its own while the entities are read on the request
+ * thread. Counts may be reused for a maximum age, keyed by the JPQL
+ * statement, its parameters and the entity manager factory.
+ * 
+ * @author SAP AG
+ */
+final class JPAInlineCount implements Callable<Long> {
+
+  private static final int MAX_CACHED_COUNTS = 1000;
+  private static final Map<EntityManagerFactory, Map<String, long[]>> CACHED_COUNTS =
+      new WeakHashMap<EntityManagerFactory, Map<String, long[]>>();
+
+  private final EntityManagerFactory emf;
+  private final EntityManager em;
+  private final String jpqlStatement;
+  private final Map<String, Object> parameters;
+  private final String cacheKey;
+  private final long maxAge;
+  private final FutureTask<Long> task;
+
+  /**
+   * @param emf
+   *          the entity manager factory
+   * @param em
+   *          the entity manager of the request if the count is taken on the
+   *          request thread, or null to count with an entity manager of its
+   *          own
+   * @param jpqlStatement
+   *          the JPQL statement counting the entities
+   * @param parameters
+   *          the values of the parameters of the JPQL statement or null
+   * @param maxAge
+   *          the maximum age of a reused count in milliseconds or zero
+   */
+  JPAInlineCount(final EntityManagerFactory emf, final EntityManager em, final String jpqlStatement,
+      final Map<String, Object> parameters, final long maxAge) {
+    this.emf = emf;
+    this.em = em;
+    this.jpqlStatement = jpqlStatement;
+    this.parameters = parameters == null || parameters.isEmpty() ? null
+        : new LinkedHashMap<String, Object>(parameters);
+    cacheKey = this.parameters == null ? jpqlStatement : jpqlStatement + this.parameters;
+    this.maxAge = maxAge;
+    task = new FutureTask<Long>(this);
+  }
+
+  /**
+   * Starts the count on the given executor service unless a count can be
+   * reused. If the executor service does not accept the count, the count is
+   * taken by {@link #get()}.
+   */
+  void start(final ExecutorService executorService) {
+    if (getCachedCount() == null) {
+      try {
+        executorService.execute(task);
+      } catch (RejectedExecutionException e) {
+        // Counted on the request thread
+      }
+    }
+  }
+
+  /**
+   * Returns the count, taking it on the calling thread if it has not been
+   * started yet, or waiting for it to finish otherwise.
+   */
+  long get() throws ODataJPARuntimeException {
+    task.run();
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    } catch (ExecutionException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getCause().getMessage()), e.getCause());
+    }
+  }
+
+  @Override
+  public Long call() {
+    Long count = getCachedCount();
+    if (count != null) {
+      return count;
+    }
+
+    EntityManager entityManager = em == null ? emf.createEntityManager() : em;
+    try {
+      Query query = entityManager.createQuery(jpqlStatement);
+      if (parameters != null) {
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+          query.setParameter(parameter.getKey(), parameter.getValue());
+        }
+      }
+      JPAProcessorImpl.setReadOnly(query);
+      count = ((Number) query.getSingleResult()).longValue();
+    } finally {
+      if (em == null) {
+        entityManager.close();
+      }
+    }
+
+    if (maxAge > 0) {
+      synchronized (CACHED_COUNTS) {
+        Map<String, long[]> counts = CACHED_COUNTS.get(emf);
+        if (counts == null) {
+          counts = new LinkedHashMap<String, long[]>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, long[]> eldest) {
+              return size() > MAX_CACHED_COUNTS;
+            }
+          };
+          CACHED_COUNTS.put(emf, counts);
+        }
+        counts.put(cacheKey, new long[] { count, System.currentTimeMillis() });
+      }
+    }
+    return count;
+  }
+
+  private Long getCachedCount() {
+    if (maxAge <= 0) {
+      return null;
+    }
+    synchronized (CACHED_COUNTS) {
+      Map<String, long[]> counts = CACHED_COUNTS.get(emf);
+      long[] count = counts == null ? null : counts.get(cacheKey);
+      if (count == null || System.currentTimeMillis() - count[1] > maxAge) {
+        return null;
+      }
+      return count[0];
+    }
+  }
+}
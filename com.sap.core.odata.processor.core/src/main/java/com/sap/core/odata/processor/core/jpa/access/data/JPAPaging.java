@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.processor.core.jpa.access.data;
+
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.uri.info.GetEntitySetUriInfo;
+import com.sap.core.odata.processor.api.jpa.ODataJPAContext;
+import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
+
+/**
+ * The class decides whether a request reads an entity set page by page for
+ * server-driven paging. The JPA processor reads a page of the entity set,
+ * and the response builder links the page to the next one by the same
+ * decision.
+ * 
+ * @author SAP AG
+ */
+public final class JPAPaging {
+
+  private JPAPaging() {}
+
+  /**
+   * The method returns the page size for server-driven paging of the entity
+   * set read by the given request. The entity set is paged by its key if a
+   * page size has been set for it and the request neither navigates to it nor
+   * orders, filters or limits the entities itself; otherwise zero is
+   * returned.
+   * 
+   * @param oDataJPAContext
+   * @param uriParserResultView
+   * @return the page size or zero if the entity set is not paged
+   * @throws ODataJPARuntimeException
+   */
+  public static int getPageSize(final ODataJPAContext oDataJPAContext, final GetEntitySetUriInfo uriParserResultView)
+      throws ODataJPARuntimeException {
+    try {
+      EdmEntitySet entitySet = uriParserResultView.getTargetEntitySet();
+      int pageSize = oDataJPAContext.getPageSize(entitySet.getName());
+      if (pageSize <= 0
+          || uriParserResultView.getFunctionImport() != null
+          || !uriParserResultView.getStartEntitySet().getName().equals(entitySet.getName())
+          || uriParserResultView.getFilter() != null
+          || uriParserResultView.getOrderBy() != null
+          || uriParserResultView.getTop() != null) {
+        return 0;
+      }
+      return pageSize;
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    }
+  }
+}
@@ -20,12 +20,31 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
+import javax.persistence.PersistenceUnitUtil;
 import javax.persistence.Query;
 
+import com.sap.core.odata.api.commons.HttpHeaders;
+import com.sap.core.odata.api.commons.InlineCount;
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmEntityType;
 import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmMapping;
 import com.sap.core.odata.api.edm.EdmMultiplicity;
+import com.sap.core.odata.api.edm.EdmNavigationProperty;
+import com.sap.core.odata.api.edm.EdmProperty;
+import com.sap.core.odata.api.ep.entry.ODataEntry;
+import com.sap.core.odata.api.exception.MessageReference;
+import com.sap.core.odata.api.exception.ODataPreconditionFailedException;
+import com.sap.core.odata.api.processor.ODataContext;
+import com.sap.core.odata.api.uri.KeyPredicate;
+import com.sap.core.odata.api.uri.NavigationPropertySegment;
+import com.sap.core.odata.api.uri.NavigationSegment;
 import com.sap.core.odata.api.uri.info.DeleteUriInfo;
 import com.sap.core.odata.api.uri.info.GetEntityCountUriInfo;
 import com.sap.core.odata.api.uri.info.GetEntitySetCountUriInfo;
@@ -37,23 +56,118 @@ import com.sap.core.odata.api.uri.info.PutMergePatchUriInfo;
 import com.sap.core.odata.processor.api.jpa.ODataJPAContext;
 import com.sap.core.odata.processor.api.jpa.access.JPAFunction;
 import com.sap.core.odata.processor.api.jpa.access.JPAMethodContext;
+import com.sap.core.odata.processor.api.jpa.access.JPAMethodContext.JPAMethodContextBuilder;
 import com.sap.core.odata.processor.api.jpa.access.JPAProcessor;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPAModelException;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLContext;
+import com.sap.core.odata.processor.api.jpa.jpql.JPQLContext.JPQLContextBuilder;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLContextType;
+import com.sap.core.odata.processor.api.jpa.jpql.JPQLSelectContextView;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLStatement;
+import com.sap.core.odata.processor.core.jpa.access.data.JPAFunctionContext.JPAFunctionContextBuilder;
 import com.sap.core.odata.processor.core.jpa.cud.JPACreateRequest;
+import com.sap.core.odata.processor.core.jpa.cud.JPADirectWriteRequest;
+import com.sap.core.odata.processor.core.jpa.jpql.JPQLSelectContext.JPQLSelectContextBuilder;
+import com.sap.core.odata.processor.core.jpa.jpql.JPQLStatementCache;
+import com.sap.core.odata.processor.core.jpa.jpql.JPQLStatementCache.CachedStatement;
+import com.sap.core.odata.processor.core.jpa.jpql.JPQLStatementShape;
 import com.sap.core.odata.processor.core.jpa.cud.JPAUpdateRequest;
 
 public class JPAProcessorImpl implements JPAProcessor {
 
+  private static final int MAX_IN_KEYS = 1000;
+  private static final String KEYS_PARAMETER = "keys";
+  // Hints of JPA providers for the JDBC fetch size; unknown hints are ignored
+  private static final String HINT_ECLIPSELINK_FETCH_SIZE = "eclipselink.jdbc.fetch-size";
+  private static final String HINT_HIBERNATE_FETCH_SIZE = "org.hibernate.fetchSize";
+  // Hints of JPA providers for queries whose results are not modified
+  private static final String HINT_ECLIPSELINK_READ_ONLY = "eclipselink.read-only";
+  private static final String HINT_HIBERNATE_READ_ONLY = "org.hibernate.readOnly";
+  // Properties of JPA providers for JDBC batch writing; unknown properties are ignored
+  private static final String PROPERTY_ECLIPSELINK_BATCH_WRITING = "eclipselink.jdbc.batch-writing";
+  private static final String PROPERTY_ECLIPSELINK_BATCH_WRITING_SIZE = "eclipselink.jdbc.batch-writing.size";
+  private static final String PROPERTY_HIBERNATE_BATCH_SIZE = "hibernate.jdbc.batch_size";
+
   ODataJPAContext oDataJPAContext;
   EntityManager em;
+  private boolean isEntityManagerOwner;
 
   public JPAProcessorImpl(final ODataJPAContext oDataJPAContext) {
     this.oDataJPAContext = oDataJPAContext;
-    em = oDataJPAContext.getEntityManagerFactory().createEntityManager();
+  }
+
+  /**
+   * Returns the entity manager of the current request. The entity manager set
+   * into the OData JPA context by the application is used if there is one;
+   * otherwise an entity manager is created which is closed by
+   * {@link #close()}.
+   * 
+   * @return the entity manager
+   */
+  private EntityManager getEntityManager() {
+    if (em == null) {
+      em = oDataJPAContext.getEntityManager();
+      isEntityManagerOwner = em == null;
+      if (isEntityManagerOwner) {
+        em = oDataJPAContext.getEntityManagerFactory().createEntityManager();
+      }
+    }
+    return em;
+  }
+
+  /**
+   * Returns whether the entity manager has been created by this processor.
+   * Streamed reads and bulk writes clear the persistence context and set
+   * properties on the entity manager; this is only done to an entity manager
+   * owned by the processor, never to one set by the application.
+   * 
+   * @return true if the processor has created the entity manager
+   */
+  private boolean isEntityManagerOwner() {
+    getEntityManager();
+    return isEntityManagerOwner;
+  }
+
+  @Override
+  public void close() {
+    if (em != null && isEntityManagerOwner) {
+      em.close();
+    }
+    em = null;
+  }
+
+  /*
+   * Queries of read requests neither need changes of the persistence context
+   * to be flushed before them nor their results to be checked for changes.
+   */
+  static void setReadOnly(final Query query) {
+    query.setFlushMode(FlushModeType.COMMIT);
+    query.setHint(HINT_ECLIPSELINK_READ_ONLY, Boolean.TRUE.toString());
+    query.setHint(HINT_HIBERNATE_READ_ONLY, Boolean.TRUE);
+  }
+
+  /*
+   * Begins a transaction for a modifying request. If the entity manager takes
+   * part in a transaction of the application already, that is an active
+   * resource-local transaction or a JTA transaction, the modification is done
+   * within that transaction instead. Returns the transaction begun, which has
+   * to be completed by the processor, or null.
+   */
+  private EntityTransaction beginTransaction() {
+    EntityTransaction transaction = null;
+    try {
+      transaction = getEntityManager().getTransaction();
+    } catch (IllegalStateException e) {
+      // JTA entity manager
+      getEntityManager().joinTransaction();
+      return null;
+    }
+    if (transaction.isActive()) {
+      return null;
+    }
+    transaction.begin();
+    return transaction;
   }
 
   @SuppressWarnings("unchecked")
@@ -61,8 +175,16 @@ public class JPAProcessorImpl implements JPAProcessor {
   public List<Object> process(final GetFunctionImportUriInfo uriParserResultView)
       throws ODataJPAModelException, ODataJPARuntimeException {
 
-    JPAMethodContext jpaMethodContext = JPAMethodContext.createBuilder(
-        JPQLContextType.FUNCTION, uriParserResultView).build();
+    JPAMethodContextBuilder contextBuilder = JPAMethodContext.createBuilder(
+        JPQLContextType.FUNCTION, uriParserResultView);
+    if (contextBuilder instanceof JPAFunctionContextBuilder) {
+      ((JPAFunctionContextBuilder) contextBuilder).setEntityManagerFactory(oDataJPAContext.getEntityManagerFactory());
+    }
+    JPAMethodContext jpaMethodContext = contextBuilder.build();
+    if (jpaMethodContext instanceof JPAFunctionContext
+        && ((JPAFunctionContext) jpaMethodContext).getCachedResult() != null) {
+      return ((JPAFunctionContext) jpaMethodContext).getCachedResult();
+    }
 
     List<Object> resultObj = null;
 
@@ -85,6 +207,10 @@ public class JPAProcessorImpl implements JPAProcessor {
         resultObj.add(result);
       }
 
+      if (JPAFunctionResultCache.getMaxAge(method) > 0) {
+        JPAFunctionResultCache.put(oDataJPAContext.getEntityManagerFactory(), method, args, resultObj);
+      }
+
     } catch (EdmException e) {
       throw ODataJPARuntimeException
           .throwException(ODataJPARuntimeException.GENERAL
@@ -128,23 +254,48 @@ public class JPAProcessorImpl implements JPAProcessor {
           ODataJPARuntimeException.GENERAL, e);
     }
 
-    JPQLContext jpqlContext = JPQLContext.createBuilder(contextType,
-        uriParserResultView).build();
+    JPAInlineCount inlineCount = null;
+    if (uriParserResultView.getInlineCount() == InlineCount.ALLPAGES) {
+      inlineCount = startInlineCount(contextType == JPQLContextType.JOIN ? JPQLContextType.JOIN_COUNT
+          : JPQLContextType.SELECT_COUNT, uriParserResultView);
+    }
 
-    JPQLStatement jpqlStatement = JPQLStatement.createBuilder(jpqlContext)
-        .build();
+    int pageSize = JPAPaging.getPageSize(oDataJPAContext, uriParserResultView);
+    int fetchSize = pageSize == 0 ? getFetchSize(uriParserResultView) : 0;
+    JPQLContextBuilder contextBuilder = JPQLContext.createBuilder(contextType,
+        uriParserResultView);
+    boolean pagedByKey = false;
+    if (contextBuilder instanceof JPQLSelectContextBuilder) {
+      // Pages as well as chunks of a streamed read need a stable order
+      pagedByKey = pageSize > 0 || fetchSize > 0;
+      ((JPQLSelectContextBuilder) contextBuilder).setPagedByKey(pagedByKey);
+    } else {
+      fetchSize = 0;
+    }
+    JPQLStatementShape shape = JPQLStatementShape.create(contextType, uriParserResultView, pagedByKey);
+    CachedStatement jpqlStatement = getStatement(contextBuilder, shape);
     Query query = null;
     try {
 
-      query = em.createQuery(jpqlStatement.toString());
+      query = createQuery(jpqlStatement, shape);
+      setReadOnly(query);
       if (uriParserResultView.getSkip() != null) {
         query.setFirstResult(uriParserResultView.getSkip());
       }
 
+      if (pageSize > 0) {
+        query.setMaxResults(pageSize);
+      }
+
+      if (fetchSize > 0) {
+        query.setHint(HINT_ECLIPSELINK_FETCH_SIZE, fetchSize);
+        query.setHint(HINT_HIBERNATE_FETCH_SIZE, fetchSize);
+      }
+
       if (uriParserResultView.getTop() != null) {
         if (uriParserResultView.getTop() == 0) {
           List<T> resultList = new ArrayList<T>();
-          return resultList;
+          return withInlineCount(resultList, inlineCount);
         } else {
           query.setMaxResults(uriParserResultView.getTop());
         }
@@ -154,10 +305,155 @@ public class JPAProcessorImpl implements JPAProcessor {
           ODataJPARuntimeException.ERROR_JPQL_QUERY_CREATE, e);
     }
 
-    return query.getResultList();
+    boolean projected = jpqlStatement.isProjected();
+    if (fetchSize > 0) {
+      return readStreamed((JPQLSelectContextBuilder) contextBuilder, uriParserResultView, query, fetchSize, projected);
+    }
+
+    List<T> resultList = query.getResultList();
+    if (projected) {
+      // $select has been projected onto the selected attributes; the rows are
+      // not managed by the persistence context. A row is always handed over as
+      // an array of attribute values, even if only one attribute is selected.
+      List<T> rows = new ArrayList<T>(resultList.size());
+      for (T row : resultList) {
+        rows.add(row instanceof Object[] ? row : (T) new Object[] { row });
+      }
+      return withInlineCount(rows, inlineCount);
+    }
+    fetchExpandedRelationShips(resultList, uriParserResultView);
+    return withInlineCount(resultList, inlineCount);
 
   }
 
+  /*
+   * Returns the entities of a streamed read. The first chunk is read by the
+   * given query; every further chunk by a continuation query selecting the
+   * entities following the key of the last entity read.
+   */
+  private <T> List<T> readStreamed(final JPQLSelectContextBuilder contextBuilder,
+      final GetEntitySetUriInfo uriParserResultView, final Query query, final int fetchSize, final boolean projected)
+      throws ODataJPAModelException, ODataJPARuntimeException {
+    JPQLStatementShape shape = JPQLStatementShape.create(JPQLContextType.SELECT, uriParserResultView, true, true);
+    contextBuilder.setContinuedByKey(true);
+    CachedStatement continuationStatement = getStatement(contextBuilder, shape);
+    try {
+      Query continuationQuery = createQuery(continuationStatement, shape);
+      setReadOnly(continuationQuery);
+      continuationQuery.setHint(HINT_ECLIPSELINK_FETCH_SIZE, fetchSize);
+      continuationQuery.setHint(HINT_HIBERNATE_FETCH_SIZE, fetchSize);
+
+      EdmEntityType entityType = uriParserResultView.getTargetEntitySet().getEntityType();
+      List<EdmProperty> rowProperties = projected ? ODataExpressionParser.parseToJPAProjectedProperties(
+          uriParserResultView.getSelect(), uriParserResultView.getExpand(), entityType) : null;
+      return new JPAStreamedResultList<T>(getEntityManager(), query, continuationQuery,
+          entityType.getKeyProperties(), rowProperties, fetchSize);
+    } catch (IllegalArgumentException e) {
+      throw ODataJPARuntimeException.throwException(
+          ODataJPARuntimeException.ERROR_JPQL_QUERY_CREATE, e);
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    }
+  }
+
+  /*
+   * Starts counting all entities for $inlinecount=allpages, which takes the
+   * filter of the request into account but neither its paging nor its order.
+   * With an executor service in the context the count is taken concurrently
+   * to reading the entities.
+   */
+  private JPAInlineCount startInlineCount(final JPQLContextType contextType,
+      final GetEntitySetUriInfo uriParserResultView) throws ODataJPAModelException, ODataJPARuntimeException {
+    JPQLStatementShape shape = JPQLStatementShape.create(contextType, uriParserResultView, false);
+    CachedStatement countStatement = getStatement(JPQLContext.createBuilder(contextType, uriParserResultView), shape);
+    long maxAge = 0;
+    try {
+      maxAge = oDataJPAContext.getInlineCountMaxAge(uriParserResultView.getTargetEntitySet().getName());
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    }
+
+    ExecutorService executorService = oDataJPAContext.getExecutorService();
+    JPAInlineCount inlineCount = new JPAInlineCount(oDataJPAContext.getEntityManagerFactory(),
+        executorService == null ? getEntityManager() : null, countStatement.toString(),
+        shape == null ? null : shape.getParameters(), maxAge);
+    if (executorService != null) {
+      inlineCount.start(executorService);
+    }
+    return inlineCount;
+  }
+
+  /*
+   * Returns the JPQL statement built by the given JPQL context builder. The
+   * statement is taken from the statement cache if a request of the same
+   * shape has been processed before; the literals the shape renders as
+   * parameters have to be bound to the query, see createQuery.
+   */
+  private CachedStatement getStatement(final JPQLContextBuilder contextBuilder, final JPQLStatementShape shape)
+      throws ODataJPAModelException, ODataJPARuntimeException {
+    EntityManagerFactory emf = oDataJPAContext.getEntityManagerFactory();
+    String key = shape == null || emf == null ? null
+        : oDataJPAContext.getJPAEdmMappingModel() + JPQLStatement.DELIMITER.SPACE + shape.getKey();
+    CachedStatement statement = key == null ? null : JPQLStatementCache.get(emf, key);
+    if (statement != null) {
+      return statement;
+    }
+
+    JPQLContext jpqlContext = null;
+    JPQLStatement jpqlStatement = null;
+    ODataExpressionParser.setParameterNames(shape == null ? null : shape.getParameterNames());
+    try {
+      jpqlContext = contextBuilder.build();
+      jpqlStatement = JPQLStatement.createBuilder(jpqlContext).build();
+    } finally {
+      ODataExpressionParser.setParameterNames(null);
+    }
+    boolean projected = jpqlContext instanceof JPQLSelectContextView
+        && !jpqlContext.getJPAEntityAlias().equals(((JPQLSelectContextView) jpqlContext).getSelectExpression());
+    statement = new CachedStatement(jpqlStatement.toString(), projected);
+    if (key != null) {
+      JPQLStatementCache.put(emf, key, statement);
+    }
+    return statement;
+  }
+
+  private Query createQuery(final CachedStatement statement, final JPQLStatementShape shape) {
+    Query query = getEntityManager().createQuery(statement.toString());
+    if (shape != null) {
+      shape.setParameters(query);
+    }
+    return query;
+  }
+
+  private static <T> List<T> withInlineCount(final List<T> entities, final JPAInlineCount inlineCount)
+      throws ODataJPARuntimeException {
+    return inlineCount == null ? entities : new JPACountedResultList<T>(entities, inlineCount.get());
+  }
+
+  /*
+   * The fetch size for a streamed read of the entity set. Entities are
+   * converted while they are read, so neither related entities to be expanded
+   * nor a count of all entities can be provided; an order of the client
+   * would not be stable across the chunks. The persistence context is
+   * cleared between chunks, so an entity manager of the application, whose
+   * entities must stay managed, is never streamed.
+   */
+  private int getFetchSize(final GetEntitySetUriInfo uriParserResultView) {
+    int fetchSize = oDataJPAContext.getFetchSize();
+    if (fetchSize <= 0
+        || (uriParserResultView.getExpand() != null && !uriParserResultView.getExpand().isEmpty())
+        || uriParserResultView.getOrderBy() != null
+        || uriParserResultView.getInlineCount() == InlineCount.ALLPAGES
+        || !isEntityManagerOwner()) {
+      return 0;
+    }
+    return fetchSize;
+  }
+
   @Override
   public <T> Object process(GetEntityUriInfo uriParserResultView)
       throws ODataJPAModelException, ODataJPARuntimeException {
@@ -178,7 +474,7 @@ public class JPAProcessorImpl implements JPAProcessor {
           ODataJPARuntimeException.GENERAL, e);
     }
 
-    return readEntity(uriParserResultView, contextType);
+    return readEntity(uriParserResultView, contextType, true);
   }
 
   @Override
@@ -198,15 +494,14 @@ public class JPAProcessorImpl implements JPAProcessor {
           ODataJPARuntimeException.GENERAL, e);
     }
 
-    JPQLContext jpqlContext = JPQLContext.createBuilder(contextType,
-        resultsView).build();
-
-    JPQLStatement jpqlStatement = JPQLStatement.createBuilder(jpqlContext)
-        .build();
+    JPQLStatementShape shape = JPQLStatementShape.create(contextType, resultsView, false);
+    CachedStatement jpqlStatement = getStatement(JPQLContext.createBuilder(contextType,
+        resultsView), shape);
     Query query = null;
     try {
 
-      query = em.createQuery(jpqlStatement.toString());
+      query = createQuery(jpqlStatement, shape);
+      setReadOnly(query);
     } catch (IllegalArgumentException e) {
       throw ODataJPARuntimeException.throwException(
           ODataJPARuntimeException.ERROR_JPQL_QUERY_CREATE, e);
@@ -238,15 +533,14 @@ public class JPAProcessorImpl implements JPAProcessor {
           ODataJPARuntimeException.GENERAL, e);
     }
 
-    JPQLContext jpqlContext = JPQLContext.createBuilder(contextType,
-        resultsView).build();
-
-    JPQLStatement jpqlStatement = JPQLStatement.createBuilder(jpqlContext)
-        .build();
+    JPQLStatementShape shape = JPQLStatementShape.create(contextType, resultsView, false);
+    CachedStatement jpqlStatement = getStatement(JPQLContext.createBuilder(contextType,
+        resultsView), shape);
     Query query = null;
     try {
 
-      query = em.createQuery(jpqlStatement.toString());
+      query = createQuery(jpqlStatement, shape);
+      setReadOnly(query);
     } catch (IllegalArgumentException e) {
       throw ODataJPARuntimeException.throwException(
           ODataJPARuntimeException.ERROR_JPQL_QUERY_CREATE, e);
@@ -263,25 +557,81 @@ public class JPAProcessorImpl implements JPAProcessor {
   public <T> List<T> process(final PostUriInfo createView, final InputStream content,
       final String requestedContentType) throws ODataJPAModelException,
       ODataJPARuntimeException {
-    JPACreateRequest jpaCreateRequest = new JPACreateRequest(em
+    EntityManager entityManager = getEntityManager();
+    JPACreateRequest jpaCreateRequest = new JPACreateRequest(entityManager
         .getEntityManagerFactory().getMetamodel());
     List<T> createObjectList = jpaCreateRequest.process(createView, content,
         requestedContentType);
+    EntityTransaction transaction = null;
     try {
-      em.getTransaction().begin();
-      em.persist(createObjectList.get(0));
-      em.getTransaction().commit();
+      transaction = beginTransaction();
+      entityManager.persist(createObjectList.get(0));
+      if (transaction != null) {
+        transaction.commit();
+      } else {
+        entityManager.flush();
+      }
     } catch (Exception e) {
-      em.getTransaction().rollback();
+      if (transaction != null && transaction.isActive()) {
+        transaction.rollback();
+      }
       throw ODataJPARuntimeException.throwException(
           ODataJPARuntimeException.ERROR_JPQL_CREATE_REQUEST, e);
     }
-    if (em.contains(createObjectList.get(0))) {
+    if (entityManager.contains(createObjectList.get(0))) {
       return createObjectList;
     }
     return null;
   }
 
+  @Override
+  public List<Object> process(final EdmEntitySet entitySet, final List<ODataEntry> entries)
+      throws ODataJPAModelException, ODataJPARuntimeException {
+    EntityManager entityManager = getEntityManager();
+    JPACreateRequest jpaCreateRequest = new JPACreateRequest(entityManager
+        .getEntityManagerFactory().getMetamodel());
+    final int batchSize = oDataJPAContext.getBatchSize();
+    // An entity manager of the application keeps its persistence context and properties
+    final boolean ownsEntityManager = isEntityManagerOwner();
+    List<Object> createdObjects = new ArrayList<Object>(entries.size());
+    EntityTransaction transaction = null;
+    try {
+      transaction = beginTransaction();
+      if (batchSize > 0 && ownsEntityManager) {
+        setBatchSize(entityManager, batchSize);
+      }
+      for (ODataEntry entry : entries) {
+        Object jpaEntity = jpaCreateRequest.process(entitySet, entry);
+        entityManager.persist(jpaEntity);
+        createdObjects.add(jpaEntity);
+        if (batchSize > 0 && createdObjects.size() % batchSize == 0) {
+          entityManager.flush();
+          if (ownsEntityManager) {
+            entityManager.clear();
+          }
+        }
+      }
+      if (transaction != null) {
+        transaction.commit();
+      } else {
+        entityManager.flush();
+      }
+    } catch (Exception e) {
+      if (transaction != null && transaction.isActive()) {
+        transaction.rollback();
+      }
+      throw ODataJPARuntimeException.throwException(
+          ODataJPARuntimeException.ERROR_JPQL_CREATE_REQUEST, e);
+    }
+    return createdObjects;
+  }
+
+  private static void setBatchSize(final EntityManager entityManager, final int batchSize) {
+    entityManager.setProperty(PROPERTY_ECLIPSELINK_BATCH_WRITING, "JDBC");
+    entityManager.setProperty(PROPERTY_ECLIPSELINK_BATCH_WRITING_SIZE, Integer.toString(batchSize));
+    entityManager.setProperty(PROPERTY_HIBERNATE_BATCH_SIZE, batchSize);
+  }
+
   @Override
   public <T> Object process(PutMergePatchUriInfo updateView,
       final InputStream content, final String requestContentType)
@@ -303,16 +653,31 @@ public class JPAProcessorImpl implements JPAProcessor {
           ODataJPARuntimeException.GENERAL, e);
     }
 
+    if (contextType == JPQLContextType.SELECT_SINGLE) {
+      JPADirectWriteRequest directWriteRequest = createDirectWriteRequest(updateView.getTargetEntitySet(),
+          updateView.getKeyPredicates(), updateView.getNavigationSegments());
+      if (directWriteRequest != null) {
+        return executeDirectWrite(directWriteRequest,
+            directWriteRequest.createUpdateQuery(getEntityManager(), content, requestContentType),
+            ODataJPARuntimeException.ERROR_JPQL_UPDATE_REQUEST);
+      }
+    }
+
     JPAUpdateRequest jpaUpdateRequest = new JPAUpdateRequest();
-    Object updateObject = readEntity(updateView, contextType);
+    Object updateObject = readEntity(updateView, contextType, false);
+    EntityTransaction transaction = null;
     try {
-      em.getTransaction().begin();
+      transaction = beginTransaction();
       jpaUpdateRequest.process(updateObject, updateView, content,
           requestContentType);
-      em.flush();
-      em.getTransaction().commit();
+      getEntityManager().flush();
+      if (transaction != null) {
+        transaction.commit();
+      }
     } catch (Exception e) {
-      em.getTransaction().rollback();
+      if (transaction != null && transaction.isActive()) {
+        transaction.rollback();
+      }
       throw ODataJPARuntimeException.throwException(
           ODataJPARuntimeException.ERROR_JPQL_UPDATE_REQUEST, e);
     }
@@ -338,17 +703,31 @@ public class JPAProcessorImpl implements JPAProcessor {
           ODataJPARuntimeException.GENERAL, e);
     }
 
+    if (contextType == JPQLContextType.SELECT_SINGLE) {
+      JPADirectWriteRequest directWriteRequest = createDirectWriteRequest(uriParserResultView.getTargetEntitySet(),
+          uriParserResultView.getKeyPredicates(), uriParserResultView.getNavigationSegments());
+      if (directWriteRequest != null) {
+        return executeDirectWrite(directWriteRequest, directWriteRequest.createDeleteQuery(getEntityManager()),
+            ODataJPARuntimeException.ERROR_JPQL_DELETE_REQUEST);
+      }
+    }
+
     // First read the entity with read operation.
-    Object selectedObject = readEntity(uriParserResultView, contextType);
+    Object selectedObject = readEntity(uriParserResultView, contextType, false);
     // Read operation done. This object would be passed on to entity manager for delete
     if (selectedObject != null) {
+      EntityTransaction transaction = null;
       try {
-        em.getTransaction().begin();
-        em.remove(selectedObject);
-        em.flush();
-        em.getTransaction().commit();
+        transaction = beginTransaction();
+        getEntityManager().remove(selectedObject);
+        getEntityManager().flush();
+        if (transaction != null) {
+          transaction.commit();
+        }
       } catch (Exception e) {
-        em.getTransaction().rollback();
+        if (transaction != null && transaction.isActive()) {
+          transaction.rollback();
+        }
         throw ODataJPARuntimeException.throwException(
             ODataJPARuntimeException.ERROR_JPQL_DELETE_REQUEST, e);
       }
@@ -356,40 +735,203 @@ public class JPAProcessorImpl implements JPAProcessor {
     return selectedObject;
   }
 
+  /**
+   * Returns the request for writing an entity directly if direct writes are
+   * enabled for its entity set, or null.
+   */
+  private JPADirectWriteRequest createDirectWriteRequest(final EdmEntitySet entitySet,
+      final List<KeyPredicate> keyPredicates, final List<NavigationSegment> navigationSegments)
+      throws ODataJPARuntimeException {
+    try {
+      if (!oDataJPAContext.isDirectWrite(entitySet.getName()) || !navigationSegments.isEmpty()) {
+        return null;
+      }
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    }
+    ODataContext oDataContext = oDataJPAContext.getODataContext();
+    String eTag = oDataContext == null ? null : oDataContext.getHttpRequestHeader(HttpHeaders.IF_MATCH);
+    JPADirectWriteRequest directWriteRequest = new JPADirectWriteRequest(entitySet, keyPredicates, eTag);
+    return directWriteRequest.isSupported() ? directWriteRequest : null;
+  }
+
+  /**
+   * Executes a JPQL UPDATE or DELETE statement of a direct write. If no
+   * entity was written, the entity either does not exist, does not match the
+   * ETag of the request or there was nothing to update; these cases are
+   * told apart by counting the entities with the key of the entity.
+   * 
+   * @return the number of entities written or null if the entity does not
+   *         exist
+   * @throws ODataJPARuntimeException
+   *           with an {@link ODataPreconditionFailedException} as cause if the
+   *           entity does not match the ETag of the request
+   */
+  private Object executeDirectWrite(final JPADirectWriteRequest directWriteRequest, final Query query,
+      final MessageReference messageReference) throws ODataJPARuntimeException {
+    if (query != null) {
+      int rowCount = 0;
+      EntityTransaction transaction = null;
+      try {
+        transaction = beginTransaction();
+        rowCount = query.executeUpdate();
+        if (transaction != null) {
+          transaction.commit();
+        }
+      } catch (Exception e) {
+        if (transaction != null && transaction.isActive()) {
+          transaction.rollback();
+        }
+        throw ODataJPARuntimeException.throwException(messageReference, e);
+      }
+      if (rowCount > 0) {
+        return rowCount;
+      }
+    } else {
+      long count = countEntities(directWriteRequest.createCountQuery(getEntityManager(), true));
+      if (count > 0) {
+        return (int) count;
+      }
+    }
+
+    if (directWriteRequest.hasETagCondition()
+        && countEntities(directWriteRequest.createCountQuery(getEntityManager(), false)) > 0) {
+      throw ODataJPARuntimeException.throwException(messageReference,
+          new ODataPreconditionFailedException(ODataPreconditionFailedException.COMMON));
+    }
+    return null;
+  }
+
+  private static long countEntities(final Query countQuery) {
+    if (countQuery == null) {
+      return 0;
+    }
+    setReadOnly(countQuery);
+    return ((Number) countQuery.getSingleResult()).longValue();
+  }
+
+  /**
+   * Loads the relationships to many entities of $expand for all given JPA
+   * entities with one query per relationship. The relationships to one entity
+   * are already fetched together with the entities themselves. As the query
+   * runs in the same persistence context, the relationships of the given
+   * entities are initialized and reading them while building the response
+   * does not cause a query per entity.
+   * 
+   * @param jpaEntities
+   * @param uriParserResultView
+   * @throws ODataJPARuntimeException
+   */
+  private void fetchExpandedRelationShips(final List<?> jpaEntities, final GetEntitySetUriInfo uriParserResultView)
+      throws ODataJPARuntimeException {
+    List<ArrayList<NavigationPropertySegment>> expandList = uriParserResultView.getExpand();
+    if (expandList == null || expandList.isEmpty() || jpaEntities == null || jpaEntities.isEmpty()) {
+      return;
+    }
+
+    try {
+      EdmEntityType entityType = uriParserResultView.getTargetEntitySet().getEntityType();
+      List<EdmProperty> keyProperties = entityType.getKeyProperties();
+      String keyName = keyProperties.size() == 1 ?
+          getJPAName(keyProperties.get(0).getMapping(), keyProperties.get(0).getName()) : null;
+      if (keyName == null || keyName.indexOf(JPQLStatement.DELIMITER.PERIOD) >= 0) {
+        // Entities with compound keys are left to the lazy loading of the JPA provider.
+        return;
+      }
+      String entityAlias = "E1";
+      String fromClause = getJPAName(entityType.getMapping(), entityType.getName())
+          + JPQLStatement.DELIMITER.SPACE + entityAlias;
+
+      PersistenceUnitUtil persistenceUnitUtil = getEntityManager().getEntityManagerFactory().getPersistenceUnitUtil();
+      List<Object> keys = new ArrayList<Object>(jpaEntities.size());
+      for (Object jpaEntity : jpaEntities) {
+        keys.add(persistenceUnitUtil.getIdentifier(jpaEntity));
+      }
+
+      List<String> relationShips = new ArrayList<String>();
+      for (ArrayList<NavigationPropertySegment> navigationPropertySegments : expandList) {
+        EdmNavigationProperty navigationProperty = navigationPropertySegments.get(0).getNavigationProperty();
+        String relationShip = getJPAName(navigationProperty.getMapping(), navigationProperty.getName());
+        if (navigationProperty.getMultiplicity() != EdmMultiplicity.MANY || relationShips.contains(relationShip)) {
+          continue;
+        }
+        relationShips.add(relationShip);
+
+        StringBuilder jpqlQuery = new StringBuilder();
+        jpqlQuery.append(JPQLStatement.KEYWORD.SELECT).append(JPQLStatement.DELIMITER.SPACE);
+        jpqlQuery.append(JPQLStatement.KEYWORD.DISTINCT).append(JPQLStatement.DELIMITER.SPACE);
+        jpqlQuery.append(entityAlias).append(JPQLStatement.DELIMITER.SPACE);
+        jpqlQuery.append(JPQLStatement.KEYWORD.FROM).append(JPQLStatement.DELIMITER.SPACE);
+        jpqlQuery.append(fromClause).append(JPQLStatement.DELIMITER.SPACE);
+        jpqlQuery.append(JPQLStatement.KEYWORD.LEFT_JOIN_FETCH).append(JPQLStatement.DELIMITER.SPACE);
+        jpqlQuery.append(entityAlias).append(JPQLStatement.DELIMITER.PERIOD).append(relationShip);
+        jpqlQuery.append(JPQLStatement.DELIMITER.SPACE);
+        jpqlQuery.append(JPQLStatement.KEYWORD.WHERE).append(JPQLStatement.DELIMITER.SPACE);
+        jpqlQuery.append(entityAlias).append(JPQLStatement.DELIMITER.PERIOD).append(keyName);
+        jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(JPQLStatement.KEYWORD.IN);
+        jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(JPQLStatement.DELIMITER.COLON).append(KEYS_PARAMETER);
+
+        for (int index = 0; index < keys.size(); index += MAX_IN_KEYS) {
+          Query query = getEntityManager().createQuery(jpqlQuery.toString());
+          setReadOnly(query);
+          query.setParameter(KEYS_PARAMETER, keys.subList(index, Math.min(index + MAX_IN_KEYS, keys.size())));
+          query.getResultList();
+        }
+      }
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    } catch (IllegalArgumentException e) {
+      throw ODataJPARuntimeException.throwException(
+          ODataJPARuntimeException.ERROR_JPQL_QUERY_CREATE, e);
+    }
+  }
+
+  private static String getJPAName(final EdmMapping mapping, final String edmName) {
+    return mapping != null && mapping.getInternalName() != null ? mapping.getInternalName() : edmName;
+  }
+
   /**
    * This is a common method to be used by read and delete process.
    * 
    * @param uriParserResultView
    * @param contextType
+   * @param readOnly
+   *          whether the entity is read only and is not going to be modified
    * @return
    * @throws ODataJPAModelException
    * @throws ODataJPARuntimeException
    */
-  private Object readEntity(final Object uriParserResultView, final JPQLContextType contextType)
+  private Object readEntity(final Object uriParserResultView, final JPQLContextType contextType,
+      final boolean readOnly)
       throws ODataJPAModelException, ODataJPARuntimeException {
     // = null;      
     Object selectedObject = null;
 
     if (uriParserResultView instanceof DeleteUriInfo || uriParserResultView instanceof GetEntityUriInfo || uriParserResultView instanceof PutMergePatchUriInfo) {
 
-      // Build JPQL Context
-      JPQLContext selectJPQLContext = JPQLContext.createBuilder(
-          contextType, uriParserResultView).build();
-
       // Build JPQL Statement
-      JPQLStatement selectJPQLStatement = JPQLStatement.createBuilder(
-          selectJPQLContext).build();
+      JPQLStatementShape shape = JPQLStatementShape.create(contextType, uriParserResultView, false);
+      CachedStatement selectJPQLStatement = getStatement(JPQLContext.createBuilder(
+          contextType, uriParserResultView), shape);
       Query query = null;
       try {
         // Instantiate JPQL
-        query = em.createQuery(selectJPQLStatement.toString());
+        query = createQuery(selectJPQLStatement, shape);
+        if (readOnly) {
+          setReadOnly(query);
+        }
       } catch (IllegalArgumentException e) {
         throw ODataJPARuntimeException.throwException(
             ODataJPARuntimeException.ERROR_JPQL_QUERY_CREATE, e);
       }
 
-      if (!query.getResultList().isEmpty()) {
-        selectedObject = query.getResultList().get(0);
+      List<?> resultList = query.getResultList();
+      if (!resultList.isEmpty()) {
+        selectedObject = resultList.get(0);
       }
 
     }
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.processor.core.jpa.access.data;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmProperty;
+import com.sap.core.odata.core.exception.ODataRuntimeException;
+import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
+import com.sap.core.odata.processor.core.jpa.JPAResultParser;
+
+/**
+ * The class is a read-only list of the results of a JPA query ordered by key
+ * which reads the results from the database in chunks of a fixed size while
+ * the list is iterated. The first chunk is read by the query itself; every
+ * further chunk is read by a continuation query, which selects the results
+ * following the key of the last result read, see
+ * {@link ODataExpressionParser#parseKeyPropertiesToJPAKeysetExpression(List, String)}.
+ * The database thus never skips the results already read. Before the next
+ * chunk is read, the persistence context is cleared, so that the entities of
+ * the previous chunk are detached and can be garbage collected. An entity
+ * thus has to be processed before the iteration moves on to the next chunk.
+ * <p>
+ * The list can only be iterated; {@link #size()} and {@link #get(int)} are
+ * not supported, as they would have to read all results at once.
+ * 
+ * @author SAP AG
+ * 
+ * @param <T>
+ *          the type of the results
+ */
+public class JPAStreamedResultList<T> extends AbstractList<T> {
+
+  private final EntityManager em;
+  private final Query query;
+  private final Query continuationQuery;
+  private final List<EdmProperty> keyProperties;
+  private final List<EdmProperty> rowProperties;
+  private final int maxResults;
+  private final int fetchSize;
+
+  /**
+   * Creates a list of the results of the given query, honoring the first
+   * result and the maximum number of results already set on the query.
+   * 
+   * @param em
+   *          the entity manager the queries have been created by
+   * @param query
+   *          the query
+   * @param continuationQuery
+   *          the query additionally selecting only the results following the
+   *          key bound to its keyset parameters
+   * @param keyProperties
+   *          the key properties in key order
+   * @param rowProperties
+   *          the properties the query is projected onto, in the order of
+   *          the values of a row, or null if the query selects entities;
+   *          rows of a projection onto a single attribute are handed over as
+   *          arrays of attribute values as well
+   * @param fetchSize
+   *          the number of results read at a time
+   */
+  public JPAStreamedResultList(final EntityManager em, final Query query, final Query continuationQuery,
+      final List<EdmProperty> keyProperties, final List<EdmProperty> rowProperties, final int fetchSize) {
+    this.em = em;
+    this.query = query;
+    this.continuationQuery = continuationQuery;
+    this.keyProperties = keyProperties;
+    this.rowProperties = rowProperties;
+    maxResults = query.getMaxResults();
+    this.fetchSize = fetchSize;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new ChunkIterator();
+  }
+
+  @Override
+  public T get(final int index) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int size() {
+    throw new UnsupportedOperationException();
+  }
+
+  /*
+   * The values of the keyset parameters of the continuation query for the
+   * key of a result
+   */
+  private Map<String, Object> getKeyParameters(final Object result) {
+    JPAResultParser resultParser = JPAResultParser.create();
+    try {
+      Map<String, Object> edmPropertyValueMap = rowProperties == null ?
+          resultParser.parse2EdmPropertyValueMapFromList(result, keyProperties) :
+          resultParser.parse2EdmPropertyValueMapFromTuple((Object[]) result, rowProperties);
+      return ODataExpressionParser.getKeysetParameters(keyProperties, edmPropertyValueMap);
+    } catch (ODataJPARuntimeException e) {
+      throw new ODataRuntimeException(e.getMessage(), e);
+    } catch (EdmException e) {
+      throw new ODataRuntimeException(e.getMessage(), e);
+    }
+  }
+
+  private class ChunkIterator implements Iterator<T> {
+
+    private List<?> chunk = Collections.emptyList();
+    private int index = 0;
+    private int read = 0;
+    private boolean lastChunk = false;
+    private Object lastResult;
+
+    @Override
+    public boolean hasNext() {
+      if (index < chunk.size()) {
+        return true;
+      }
+      if (!lastChunk) {
+        readChunk();
+      }
+      return index < chunk.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Object result = chunk.get(index++);
+      if (rowProperties != null && !(result instanceof Object[])) {
+        result = new Object[] { result };
+      }
+      lastResult = result;
+      return (T) result;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    private void readChunk() {
+      chunk = Collections.emptyList();
+      index = 0;
+      int limit = Math.min(fetchSize, maxResults - read);
+      if (limit <= 0) {
+        lastChunk = true;
+        return;
+      }
+      Query chunkQuery = query;
+      if (read > 0) {
+        chunkQuery = continuationQuery;
+        for (Map.Entry<String, Object> keyParameter : getKeyParameters(lastResult).entrySet()) {
+          chunkQuery.setParameter(keyParameter.getKey(), keyParameter.getValue());
+        }
+        // The entities read so far have been processed
+        em.clear();
+      }
+      chunkQuery.setMaxResults(limit);
+      chunk = chunkQuery.getResultList();
+      read += chunk.size();
+      lastChunk = chunk.size() < limit;
+    }
+  }
+}
@@ -19,9 +19,14 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.sap.core.odata.api.edm.EdmConcurrencyMode;
+import com.sap.core.odata.api.edm.EdmEntityType;
 import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmFacets;
 import com.sap.core.odata.api.edm.EdmLiteralKind;
 import com.sap.core.odata.api.edm.EdmMapping;
 import com.sap.core.odata.api.edm.EdmProperty;
@@ -31,6 +36,8 @@ import com.sap.core.odata.api.edm.EdmSimpleTypeKind;
 import com.sap.core.odata.api.exception.ODataException;
 import com.sap.core.odata.api.exception.ODataNotImplementedException;
 import com.sap.core.odata.api.uri.KeyPredicate;
+import com.sap.core.odata.api.uri.NavigationPropertySegment;
+import com.sap.core.odata.api.uri.SelectItem;
 import com.sap.core.odata.api.uri.expression.BinaryExpression;
 import com.sap.core.odata.api.uri.expression.BinaryOperator;
 import com.sap.core.odata.api.uri.expression.CommonExpression;
@@ -47,6 +54,7 @@ import com.sap.core.odata.api.uri.expression.SortOrder;
 import com.sap.core.odata.api.uri.expression.UnaryExpression;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLStatement;
+import com.sap.core.odata.processor.api.jpa.model.JPAEdmMapping;
 
 /**
  * This class contains utility methods for parsing the filter expressions built by core library from user OData Query.
@@ -57,7 +65,36 @@ import com.sap.core.odata.processor.api.jpa.jpql.JPQLStatement;
 public class ODataExpressionParser {
 
   public static final String EMPTY = ""; //$NON-NLS-1$
+  private static final char SKIP_TOKEN_SEPARATOR = ',';
+  private static final String SKIP_TOKEN_SEPARATOR_ESCAPED = "%2C"; //$NON-NLS-1$
+  private static final String SKIP_TOKEN_ESCAPE = "%"; //$NON-NLS-1$
+  private static final String SKIP_TOKEN_ESCAPE_ESCAPED = "%25"; //$NON-NLS-1$
+  private static final String KEYSET_PARAMETER_PREFIX = "k"; //$NON-NLS-1$
   public static Integer methodFlag = 0;
+  private static final ThreadLocal<Map<Object, String>> PARAMETER_NAMES = new ThreadLocal<Map<Object, String>>();
+
+  /**
+   * This method makes the parser render the given literal expressions and key
+   * predicates as named parameters instead of literals while JPQL statements
+   * are built on the current thread. The values of the parameters have to be
+   * bound to the query. Null makes the parser render literals again.
+   * 
+   * @param parameterNames
+   *          parameter names keyed by literal expression or key predicate
+   */
+  public static void setParameterNames(final Map<Object, String> parameterNames) {
+    if (parameterNames == null) {
+      PARAMETER_NAMES.remove();
+    } else {
+      PARAMETER_NAMES.set(parameterNames);
+    }
+  }
+
+  private static String getParameter(final Object expression) {
+    Map<Object, String> parameterNames = PARAMETER_NAMES.get();
+    String parameterName = parameterNames == null ? null : parameterNames.get(expression);
+    return parameterName == null ? null : JPQLStatement.DELIMITER.COLON + parameterName;
+  }
 
   /**
    * This method returns the parsed where condition corresponding to the filter input in the user query.
@@ -144,6 +181,10 @@ public class ODataExpressionParser {
 
     case LITERAL:
       final LiteralExpression literal = (LiteralExpression) whereExpression;
+      final String parameter = getParameter(literal);
+      if (parameter != null) {
+        return parameter;
+      }
       final EdmSimpleType literalType = (EdmSimpleType) literal.getEdmType();
       String value = literalType.valueToString(literalType.valueOfString(literal.getUriLiteral(), EdmLiteralKind.URI, null, literalType.getDefaultType()), EdmLiteralKind.DEFAULT, null);
       return evaluateComparingExpression(value, literalType);
@@ -208,6 +249,80 @@ public class ODataExpressionParser {
     return selectClause;
   }
 
+  /**
+   * This method determines the properties to be selected for $select. Besides
+   * the selected properties the key properties and the properties used for
+   * optimistic concurrency control are always selected. Null is returned if
+   * whole entities have to be selected, i.e., if all properties are selected
+   * or navigation properties are selected or expanded.
+   * 
+   * @param selectItems
+   * @param expandList
+   * @param entityType
+   * @return the list of properties to be selected or null
+   * @throws EdmException
+   */
+  public static List<EdmProperty> parseToJPAProjectedProperties(final List<SelectItem> selectItems,
+      final List<ArrayList<NavigationPropertySegment>> expandList, final EdmEntityType entityType) throws EdmException {
+
+    if (selectItems == null || selectItems.isEmpty() || expandList != null && !expandList.isEmpty()) {
+      return null;
+    }
+
+    List<EdmProperty> projectedProperties = new ArrayList<EdmProperty>();
+    List<String> projectedPropertyNames = new ArrayList<String>();
+    for (SelectItem selectItem : selectItems) {
+      if (selectItem.isStar() || selectItem.getProperty() == null
+          || !selectItem.getNavigationPropertySegments().isEmpty()) {
+        return null;
+      }
+      addProjectedProperty(selectItem.getProperty(), projectedProperties, projectedPropertyNames);
+    }
+
+    for (EdmProperty keyProperty : entityType.getKeyProperties()) {
+      addProjectedProperty(keyProperty, projectedProperties, projectedPropertyNames);
+    }
+
+    for (String propertyName : entityType.getPropertyNames()) {
+      EdmProperty property = (EdmProperty) entityType.getProperty(propertyName);
+      EdmFacets facets = property.getFacets();
+      if (facets != null && facets.getConcurrencyMode() == EdmConcurrencyMode.Fixed) {
+        addProjectedProperty(property, projectedProperties, projectedPropertyNames);
+      }
+    }
+
+    return projectedProperties;
+  }
+
+  private static void addProjectedProperty(final EdmProperty property, final List<EdmProperty> projectedProperties,
+      final List<String> projectedPropertyNames) throws EdmException {
+    if (!projectedPropertyNames.contains(property.getName())) {
+      projectedPropertyNames.add(property.getName());
+      projectedProperties.add(property);
+    }
+  }
+
+  /**
+   * This method parses the properties to be selected into the JPA attribute
+   * names of the properties.
+   * 
+   * @param edmPropertyList
+   * @return a list of JPA attribute names
+   * @throws EdmException
+   */
+  public static ArrayList<String> parseToJPAPropertyNames(final List<EdmProperty> edmPropertyList) throws EdmException {
+    ArrayList<String> propertyNames = new ArrayList<String>(edmPropertyList.size());
+    for (EdmProperty edmProperty : edmPropertyList) {
+      EdmMapping mapping = edmProperty.getMapping();
+      if (mapping != null && mapping.getInternalName() != null) {
+        propertyNames.add(mapping.getInternalName());
+      } else {
+        propertyNames.add(edmProperty.getName());
+      }
+    }
+    return propertyNames;
+  }
+
   /**
    * This method parses the order by condition in the query.
    * 
@@ -265,11 +380,16 @@ public class ODataExpressionParser {
                 .getMessage()), e);
       }
 
-      literal = evaluateComparingExpression(literal, edmSimpleType);
+      String parameter = getParameter(keyPredicate);
+      if (parameter != null) {
+        literal = parameter;
+      } else {
+        literal = evaluateComparingExpression(literal, edmSimpleType);
 
-      if (edmSimpleType == EdmSimpleTypeKind.DateTime.getEdmSimpleTypeInstance()
-          || edmSimpleType == EdmSimpleTypeKind.DateTimeOffset.getEdmSimpleTypeInstance()) {
-        literal = literal.substring(literal.indexOf('\''), literal.indexOf('}'));
+        if (edmSimpleType == EdmSimpleTypeKind.DateTime.getEdmSimpleTypeInstance()
+            || edmSimpleType == EdmSimpleTypeKind.DateTimeOffset.getEdmSimpleTypeInstance()) {
+          literal = literal.substring(literal.indexOf('\''), literal.indexOf('}'));
+        }
       }
 
       keyFilters.append(tableAlias + JPQLStatement.DELIMITER.PERIOD + propertyName + JPQLStatement.DELIMITER.SPACE + JPQLStatement.Operator.EQ + JPQLStatement.DELIMITER.SPACE + literal);
@@ -338,7 +458,8 @@ public class ODataExpressionParser {
   }
 
   public static HashMap<String, String> parseKeyPropertiesToJPAOrderByExpression(final List<EdmProperty> edmPropertylist, final String tableAlias) throws ODataJPARuntimeException {
-    HashMap<String, String> orderByMap = new HashMap<String, String>();
+    // Keeps the order of the key properties; keyset paging relies on it
+    HashMap<String, String> orderByMap = new LinkedHashMap<String, String>();
     String propertyName = null;
     for (EdmProperty edmProperty : edmPropertylist) {
       try {
@@ -358,4 +479,205 @@ public class ODataExpressionParser {
     return orderByMap;
   }
 
+  /**
+   * This method builds the skip token of an entity for server-driven paging.
+   * The skip token consists of the key values of the entity in default literal
+   * form, separated by commas; percent signs and commas within a value are
+   * percent-encoded.
+   * 
+   * @param keyProperties key properties of the entity type in key order
+   * @param edmPropertyValueMap property values of the entity
+   * @return the skip token
+   * @throws ODataJPARuntimeException
+   */
+  public static String buildSkipToken(final List<EdmProperty> keyProperties, final Map<String, Object> edmPropertyValueMap) throws ODataJPARuntimeException {
+    StringBuilder skipToken = new StringBuilder();
+    try {
+      for (EdmProperty keyProperty : keyProperties) {
+        if (skipToken.length() > 0) {
+          skipToken.append(SKIP_TOKEN_SEPARATOR);
+        }
+        EdmSimpleType edmSimpleType = (EdmSimpleType) keyProperty.getType();
+        String literal = edmSimpleType.valueToString(edmPropertyValueMap.get(keyProperty.getName()),
+            EdmLiteralKind.DEFAULT, keyProperty.getFacets());
+        skipToken.append(literal.replace(SKIP_TOKEN_ESCAPE, SKIP_TOKEN_ESCAPE_ESCAPED)
+            .replace(String.valueOf(SKIP_TOKEN_SEPARATOR), SKIP_TOKEN_SEPARATOR_ESCAPED));
+      }
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException.throwException(
+          ODataJPARuntimeException.GENERAL.addContent(e
+              .getMessage()), e);
+    }
+    return skipToken.toString();
+  }
+
+  /**
+   * This method returns the name of the parameter the value of a key
+   * property is bound to in the where condition built by
+   * {@link #parseKeyPropertiesToJPAKeysetExpression(List, String)}.
+   * 
+   * @param index index of the key property in key order
+   * @return the parameter name
+   */
+  public static String getKeysetParameterName(final int index) {
+    return KEYSET_PARAMETER_PREFIX + index;
+  }
+
+  /**
+   * This method builds the where condition selecting the entities following
+   * a key in key order. For the key properties k1, ..., kn the condition is
+   * (k1 &gt; :k0 OR (k1 = :k0 AND k2 &gt; :k1) OR ...); the values of the key
+   * have to be bound to the parameters, see
+   * {@link #parseSkipTokenToKeysetParameters(List, String)} and
+   * {@link #getKeysetParameters(List, Map)}.
+   * 
+   * @param keyProperties key properties of the entity type in key order
+   * @param tableAlias
+   * @return the where condition
+   * @throws ODataJPARuntimeException
+   */
+  public static String parseKeyPropertiesToJPAKeysetExpression(final List<EdmProperty> keyProperties, final String tableAlias) throws ODataJPARuntimeException {
+    List<String> keyFields = new ArrayList<String>(
+        parseKeyPropertiesToJPAOrderByExpression(keyProperties, tableAlias).keySet());
+
+    StringBuilder whereExpression = new StringBuilder();
+    whereExpression.append(JPQLStatement.DELIMITER.PARENTHESIS_LEFT);
+    for (int i = 0; i < keyFields.size(); i++) {
+      if (i > 0) {
+        whereExpression.append(JPQLStatement.DELIMITER.SPACE + JPQLStatement.Operator.OR + JPQLStatement.DELIMITER.SPACE)
+            .append(JPQLStatement.DELIMITER.PARENTHESIS_LEFT);
+        for (int j = 0; j < i; j++) {
+          whereExpression.append(keyFields.get(j) + JPQLStatement.DELIMITER.SPACE + JPQLStatement.Operator.EQ + JPQLStatement.DELIMITER.SPACE
+              + JPQLStatement.DELIMITER.COLON + getKeysetParameterName(j))
+              .append(JPQLStatement.DELIMITER.SPACE + JPQLStatement.Operator.AND + JPQLStatement.DELIMITER.SPACE);
+        }
+      }
+      whereExpression.append(keyFields.get(i) + JPQLStatement.DELIMITER.SPACE + JPQLStatement.Operator.GT + JPQLStatement.DELIMITER.SPACE
+          + JPQLStatement.DELIMITER.COLON + getKeysetParameterName(i));
+      if (i > 0) {
+        whereExpression.append(JPQLStatement.DELIMITER.PARENTHESIS_RIGHT);
+      }
+    }
+    whereExpression.append(JPQLStatement.DELIMITER.PARENTHESIS_RIGHT);
+    return whereExpression.toString();
+  }
+
+  /**
+   * This method parses a skip token built by {@link #buildSkipToken(List, Map)}
+   * into the values of the parameters of the where condition built by
+   * {@link #parseKeyPropertiesToJPAKeysetExpression(List, String)}. The values
+   * are converted into the Java types of the JPA attributes, so that they
+   * are compared with their full precision.
+   * 
+   * @param keyProperties key properties of the entity type in key order
+   * @param skipToken
+   * @return the parameter values keyed by parameter name
+   * @throws ODataJPARuntimeException if the skip token does not match the key
+   */
+  public static Map<String, Object> parseSkipTokenToKeysetParameters(final List<EdmProperty> keyProperties, final String skipToken) throws ODataJPARuntimeException {
+    List<String> literals = new ArrayList<String>();
+    int start = 0;
+    int end = 0;
+    while ((end = skipToken.indexOf(SKIP_TOKEN_SEPARATOR, start)) >= 0) {
+      literals.add(skipToken.substring(start, end));
+      start = end + 1;
+    }
+    literals.add(skipToken.substring(start));
+
+    Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+    try {
+      if (literals.size() != keyProperties.size()) {
+        throw ODataJPARuntimeException.throwException(
+            ODataJPARuntimeException.ERROR_JPQL_KEY_VALUE.addContent(skipToken), null);
+      }
+      for (int i = 0; i < keyProperties.size(); i++) {
+        EdmProperty keyProperty = keyProperties.get(i);
+        EdmSimpleType edmSimpleType = (EdmSimpleType) keyProperty.getType();
+        String literal = literals.get(i).replace(SKIP_TOKEN_SEPARATOR_ESCAPED, String.valueOf(SKIP_TOKEN_SEPARATOR))
+            .replace(SKIP_TOKEN_ESCAPE_ESCAPED, SKIP_TOKEN_ESCAPE);
+        // Only values of the key property type are accepted
+        Object value = edmSimpleType.valueOfString(literal, EdmLiteralKind.DEFAULT, keyProperty.getFacets(),
+            edmSimpleType.getDefaultType());
+        Object jpaValue = parseToJPAValue(edmSimpleType, literal, EdmLiteralKind.DEFAULT, keyProperty);
+        parameters.put(getKeysetParameterName(i), jpaValue == null ? value : jpaValue);
+      }
+    } catch (EdmSimpleTypeException e) {
+      throw ODataJPARuntimeException.throwException(
+          ODataJPARuntimeException.ERROR_JPQL_KEY_VALUE.addContent(skipToken), e);
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException.throwException(
+          ODataJPARuntimeException.GENERAL.addContent(e
+              .getMessage()), e);
+    }
+    return parameters;
+  }
+
+  /**
+   * This method returns the values of the parameters of the where condition
+   * built by {@link #parseKeyPropertiesToJPAKeysetExpression(List, String)}
+   * for the key of an entity.
+   * 
+   * @param keyProperties key properties of the entity type in key order
+   * @param edmPropertyValueMap property values of the entity in the Java
+   *          types of the JPA attributes
+   * @return the parameter values keyed by parameter name
+   * @throws EdmException
+   */
+  public static Map<String, Object> getKeysetParameters(final List<EdmProperty> keyProperties, final Map<String, Object> edmPropertyValueMap) throws EdmException {
+    Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+    for (int i = 0; i < keyProperties.size(); i++) {
+      parameters.put(getKeysetParameterName(i), edmPropertyValueMap.get(keyProperties.get(i).getName()));
+    }
+    return parameters;
+  }
+
+  /**
+   * This method converts the literal of a value of a property into the Java
+   * type of the JPA attribute the property is mapped to.
+   * 
+   * @param type the type of the literal
+   * @param literal
+   * @param literalKind
+   * @param property
+   * @return the value or null if the Java type of the JPA attribute is
+   *         unknown or the literal cannot be converted into it
+   * @throws EdmException
+   */
+  public static Object parseToJPAValue(final EdmSimpleType type, final String literal, final EdmLiteralKind literalKind,
+      final EdmProperty property) throws EdmException {
+    EdmMapping mapping = property.getMapping();
+    Class<?> jpaType = mapping instanceof JPAEdmMapping ? ((JPAEdmMapping) mapping).getJPAType() : null;
+    if (jpaType == null || literal == null) {
+      return null;
+    }
+    try {
+      return type.valueOfString(literal, literalKind, null, getObjectType(jpaType));
+    } catch (EdmSimpleTypeException e) {
+      return null;
+    }
+  }
+
+  private static Class<?> getObjectType(final Class<?> type) {
+    if (!type.isPrimitive()) {
+      return type;
+    } else if (type == int.class) {
+      return Integer.class;
+    } else if (type == long.class) {
+      return Long.class;
+    } else if (type == short.class) {
+      return Short.class;
+    } else if (type == byte.class) {
+      return Byte.class;
+    } else if (type == boolean.class) {
+      return Boolean.class;
+    } else if (type == double.class) {
+      return Double.class;
+    } else if (type == float.class) {
+      return Float.class;
+    } else if (type == char.class) {
+      return Character.class;
+    }
+    return type;
+  }
+
 }
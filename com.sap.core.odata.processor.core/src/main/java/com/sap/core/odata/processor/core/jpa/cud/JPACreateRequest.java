@@ -22,7 +22,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import javax.persistence.metamodel.Attribute;
 import javax.persistence.metamodel.EntityType;
@@ -40,13 +39,13 @@ import com.sap.core.odata.api.edm.EdmTypeKind;
 import com.sap.core.odata.api.ep.entry.ODataEntry;
 import com.sap.core.odata.api.exception.ODataBadRequestException;
 import com.sap.core.odata.api.exception.ODataException;
-import com.sap.core.odata.api.uri.ExpandSelectTreeNode;
 import com.sap.core.odata.api.uri.info.PostUriInfo;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
 
 public class JPACreateRequest extends JPAWriteRequest {
 
   private Metamodel metamodel;
+  private Map<String, EntityType<?>> jpaEntityTypeMap = new HashMap<String, EntityType<?>>();
 
   public JPACreateRequest() {
     super();
@@ -61,8 +60,37 @@ public class JPACreateRequest extends JPAWriteRequest {
 
   @SuppressWarnings("unchecked")
   public <T> List<T> process(final PostUriInfo postUriInfo, final InputStream content, final String requestContentType) throws ODataJPARuntimeException {
-    ExpandSelectTreeNode expandSelectTree = null;
     final EdmEntitySet entitySet = postUriInfo.getTargetEntitySet();
+    ODataEntry entryValues = null;
+    try {
+      entryValues = parseEntry(entitySet, content, requestContentType, true);
+    } catch (ODataBadRequestException e1) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e1.getMessage()), e1);
+    }
+    Object jpaEntity = process(entitySet, entryValues);
+    List<T> objectList = new ArrayList<T>();
+    objectList.add((T) jpaEntity);
+    objectList.add((T) entryValues.getExpandSelectTree());
+    return objectList;
+
+  }
+
+  /**
+   * Creates the JPA entity for an entry of an entity set together with the
+   * JPA entities of its inlined entries. The JPA entity types and setters
+   * looked up for an entry are reused for all further entries processed
+   * with the same request.
+   * 
+   * @param entitySet
+   *            is the entity set of the entry
+   * @param entryValues
+   *            is the parsed entry
+   * @return the JPA entity which is not yet persisted
+   * @throws ODataJPARuntimeException
+   */
+  public Object process(final EdmEntitySet entitySet, final ODataEntry entryValues) throws ODataJPARuntimeException {
     EdmEntityType entityType = null;
     try {
       entityType = entitySet.getEntityType();
@@ -85,34 +113,13 @@ public class JPACreateRequest extends JPAWriteRequest {
               .addContent(e1.getMessage()), e1);
     }
     Object jpaEntity = null;
-    Set<EntityType<?>> entityTypeSet = metamodel.getEntities();
     String currentEntityName = null;
-    for (EntityType<?> entityTypeTemp : entityTypeSet) {
-      if (entityTypeTemp.getJavaType().getName().endsWith("." + entityName)) {
-        currentEntityName = entityTypeTemp.getName();
-        try {
-          jpaEntity = entityTypeTemp.getJavaType().newInstance();
-          break;
-        } catch (InstantiationException e) {
-          throw ODataJPARuntimeException
-              .throwException(ODataJPARuntimeException.GENERAL
-                  .addContent(e.getMessage()), e);
-        } catch (IllegalAccessException e) {
-          throw ODataJPARuntimeException
-              .throwException(ODataJPARuntimeException.GENERAL
-                  .addContent(e.getMessage()), e);
-        }
-      }
+    EntityType<?> jpaEntityType = getJPAEntityType(entityName);
+    if (jpaEntityType != null) {
+      currentEntityName = jpaEntityType.getName();
+      jpaEntity = createJPAEntity(jpaEntityType);
     }
 
-    ODataEntry entryValues = null;
-    try {
-      entryValues = parseEntry(entitySet, content, requestContentType, true);
-    } catch (ODataBadRequestException e1) {
-      throw ODataJPARuntimeException
-          .throwException(ODataJPARuntimeException.GENERAL
-              .addContent(e1.getMessage()), e1);
-    }
     try {
       Map<String, Object> propertyValueMap = entryValues.getProperties();
       parse2JPAEntityValueMap(jpaEntity, entityType, propertyValueMap, currentEntityName);
@@ -128,12 +135,35 @@ public class JPACreateRequest extends JPAWriteRequest {
           .throwException(ODataJPARuntimeException.GENERAL
               .addContent(e.getMessage()), e);
     }
-    expandSelectTree = entryValues.getExpandSelectTree();
-    List<T> objectList = new ArrayList<T>();
-    objectList.add((T) jpaEntity);
-    objectList.add((T) expandSelectTree);
-    return objectList;
+    return jpaEntity;
+  }
 
+  private EntityType<?> getJPAEntityType(final String entityName) {
+    if (!jpaEntityTypeMap.containsKey(entityName)) {
+      EntityType<?> jpaEntityType = null;
+      for (EntityType<?> entityTypeTemp : metamodel.getEntities()) {
+        if (entityTypeTemp.getJavaType().getName().endsWith("." + entityName)) {
+          jpaEntityType = entityTypeTemp;
+          break;
+        }
+      }
+      jpaEntityTypeMap.put(entityName, jpaEntityType);
+    }
+    return jpaEntityTypeMap.get(entityName);
+  }
+
+  private Object createJPAEntity(final EntityType<?> jpaEntityType) throws ODataJPARuntimeException {
+    try {
+      return jpaEntityType.getJavaType().newInstance();
+    } catch (InstantiationException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    } catch (IllegalAccessException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    }
   }
 
   @SuppressWarnings("unchecked")
@@ -178,7 +208,8 @@ public class JPACreateRequest extends JPAWriteRequest {
 
         if (method != null) {
           if (property.getType().getKind().equals(EdmTypeKind.COMPLEX)) {
-            Object complexObject = jpaComplexObjectMap.get(propertyName);
+            // Each entity gets a complex object of its own
+            Object complexObject = jpaComplexObjectMap.get(propertyName).getClass().newInstance();
             parse2JPAEntityValueMap(complexObject, ((EdmComplexType) property.getType()),
                 (Map<String, Object>) propertyValue, propertyName);
             setters.get(key).invoke(jpaEntity, complexObject);
@@ -237,6 +268,10 @@ public class JPACreateRequest extends JPAWriteRequest {
       throw ODataJPARuntimeException
           .throwException(ODataJPARuntimeException.GENERAL
               .addContent(e.getMessage()), e);
+    } catch (InstantiationException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
     } catch (IllegalAccessException e) {
       throw ODataJPARuntimeException
           .throwException(ODataJPARuntimeException.GENERAL
@@ -319,25 +354,12 @@ public class JPACreateRequest extends JPAWriteRequest {
           }
 
           Object relatedData = null;
-          Set<EntityType<?>> entityTypeSet = metamodel.getEntities();
           String currentEntityName = null;
-          for (EntityType<?> entityTypeTemp : entityTypeSet) {
-            if (entityTypeTemp.getJavaType().getName().endsWith("." + entityName)) {
-              currentEntityName = entityTypeTemp.getName();
-              try {
-                relatedClassMap.put(navigationProperty.getMapping().getInternalName(), entityTypeTemp.getJavaType());
-                relatedData = entityTypeTemp.getJavaType().newInstance();
-                break;
-              } catch (InstantiationException e) {
-                throw ODataJPARuntimeException
-                    .throwException(ODataJPARuntimeException.GENERAL
-                        .addContent(e.getMessage()), e);
-              } catch (IllegalAccessException e) {
-                throw ODataJPARuntimeException
-                    .throwException(ODataJPARuntimeException.GENERAL
-                        .addContent(e.getMessage()), e);
-              }
-            }
+          EntityType<?> relatedJPAEntityType = getJPAEntityType(entityName);
+          if (relatedJPAEntityType != null) {
+            currentEntityName = relatedJPAEntityType.getName();
+            relatedClassMap.put(navigationProperty.getMapping().getInternalName(), relatedJPAEntityType.getJavaType());
+            relatedData = createJPAEntity(relatedJPAEntityType);
           }
           if (relatedValues != null && relatedEntitySet != null) {
             parse2JPAEntityValueMap(relatedData, relatedEntitySet.getEntityType(), relatedValues.getProperties(), currentEntityName);
@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.processor.core.jpa.cud;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import com.sap.core.odata.api.edm.Edm;
+import com.sap.core.odata.api.edm.EdmConcurrencyMode;
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmEntityType;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmLiteralKind;
+import com.sap.core.odata.api.edm.EdmMapping;
+import com.sap.core.odata.api.edm.EdmProperty;
+import com.sap.core.odata.api.edm.EdmSimpleType;
+import com.sap.core.odata.api.edm.EdmSimpleTypeException;
+import com.sap.core.odata.api.edm.EdmStructuralType;
+import com.sap.core.odata.api.edm.EdmTypeKind;
+import com.sap.core.odata.api.ep.entry.ODataEntry;
+import com.sap.core.odata.api.exception.ODataBadRequestException;
+import com.sap.core.odata.api.uri.KeyPredicate;
+import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
+import com.sap.core.odata.processor.api.jpa.jpql.JPQLStatement;
+import com.sap.core.odata.processor.core.jpa.access.data.ODataExpressionParser;
+import com.sap.core.odata.processor.core.jpa.model.JPAEdmMappingImpl;
+
+/**
+ * Builds single JPQL UPDATE and DELETE statements for an entity identified
+ * by its key predicates. If an ETag is given, the values of the ETag
+ * properties are part of the condition of the statements, so that the
+ * number of rows affected tells whether the entity was written.
+ */
+public class JPADirectWriteRequest extends JPAWriteRequest {
+
+  private static final String ALIAS = "E1"; //$NON-NLS-1$
+  private static final String VALUE_PARAMETER = "v"; //$NON-NLS-1$
+  private static final String ETAG_PARAMETER = "e"; //$NON-NLS-1$
+  private static final String ETAG_ANY = "*"; //$NON-NLS-1$
+  private static final String ETAG_WEAK_PREFIX = "W/"; //$NON-NLS-1$
+  private static final String ETAG_QUOTE = "\""; //$NON-NLS-1$
+
+  private final EdmEntitySet entitySet;
+  private final EdmEntityType entityType;
+  private final String jpaEntityName;
+  private final String keyExpression;
+  private Map<String, Object> eTagValues = null;
+  private boolean isETagAssignable = true;
+  private boolean isETagValid = true;
+
+  /**
+   * @param entitySet
+   *          the entity set of the entity
+   * @param keyPredicates
+   *          the key predicates identifying the entity
+   * @param eTag
+   *          the ETag of the request or null
+   * @throws ODataJPARuntimeException
+   */
+  public JPADirectWriteRequest(final EdmEntitySet entitySet, final List<KeyPredicate> keyPredicates,
+      final String eTag) throws ODataJPARuntimeException {
+    super();
+    this.entitySet = entitySet;
+    try {
+      entityType = entitySet.getEntityType();
+      jpaEntityName = getJPAName(entityType.getMapping(), entityType.getName());
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    }
+    keyExpression = ODataExpressionParser.parseKeyPredicates(keyPredicates, ALIAS);
+    if (eTag != null && !ETAG_ANY.equals(eTag.trim())) {
+      parseETag(eTag.trim());
+    }
+  }
+
+  /**
+   * Returns whether the entity can be written directly. This is not the
+   * case if the ETag of the request consists of several values which cannot
+   * be assigned unambiguously to the ETag properties of the entity.
+   */
+  public boolean isSupported() {
+    return isETagAssignable;
+  }
+
+  /**
+   * Returns whether the statements are restricted by an ETag.
+   */
+  public boolean hasETagCondition() {
+    return eTagValues != null || !isETagValid;
+  }
+
+  /**
+   * Creates the JPQL DELETE statement for the entity.
+   *
+   * @return the query or null if the ETag of the request cannot match any
+   *         entity
+   * @throws ODataJPARuntimeException
+   */
+  public Query createDeleteQuery(final EntityManager em) throws ODataJPARuntimeException {
+    if (!isETagValid) {
+      return null;
+    }
+    StringBuilder jpqlQuery = new StringBuilder();
+    jpqlQuery.append(JPQLStatement.KEYWORD.DELETE).append(JPQLStatement.DELIMITER.SPACE);
+    jpqlQuery.append(JPQLStatement.KEYWORD.FROM).append(JPQLStatement.DELIMITER.SPACE);
+    jpqlQuery.append(jpaEntityName).append(JPQLStatement.DELIMITER.SPACE).append(ALIAS);
+    appendWhereClause(jpqlQuery, true);
+    return createQuery(em, jpqlQuery.toString(), null, true);
+  }
+
+  /**
+   * Creates the JPQL UPDATE statement setting the properties of the entity
+   * given in the request content. As for updates reading the entity first,
+   * key properties and properties without value are not changed.
+   *
+   * @return the query or null if there is nothing to update or the ETag of
+   *         the request cannot match any entity
+   * @throws ODataJPARuntimeException
+   */
+  public Query createUpdateQuery(final EntityManager em, final InputStream content, final String requestContentType)
+      throws ODataJPARuntimeException {
+    ODataEntry entryValues = null;
+    try {
+      entryValues = parseEntry(entitySet, content, requestContentType, false);
+    } catch (ODataBadRequestException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    }
+    if (!isETagValid) {
+      return null;
+    }
+
+    Map<String, Object> values = new LinkedHashMap<String, Object>();
+    try {
+      List<String> keyPropertyNames = new ArrayList<String>();
+      for (EdmProperty keyProperty : entityType.getKeyProperties()) {
+        keyPropertyNames.add(keyProperty.getName());
+      }
+      collectValues(entityType, ALIAS, entryValues.getProperties(), keyPropertyNames, values);
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    }
+    if (values.isEmpty()) {
+      return null;
+    }
+
+    Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+    StringBuilder jpqlQuery = new StringBuilder();
+    jpqlQuery.append(JPQLStatement.KEYWORD.UPDATE).append(JPQLStatement.DELIMITER.SPACE);
+    jpqlQuery.append(jpaEntityName).append(JPQLStatement.DELIMITER.SPACE).append(ALIAS);
+    jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(JPQLStatement.KEYWORD.SET);
+    int index = 0;
+    for (Entry<String, Object> value : values.entrySet()) {
+      String parameterName = VALUE_PARAMETER + index;
+      if (index > 0) {
+        jpqlQuery.append(JPQLStatement.DELIMITER.COMMA);
+      }
+      jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(value.getKey());
+      jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(JPQLStatement.Operator.EQ);
+      jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(JPQLStatement.DELIMITER.COLON).append(parameterName);
+      parameters.put(parameterName, value.getValue());
+      index++;
+    }
+    appendWhereClause(jpqlQuery, true);
+    return createQuery(em, jpqlQuery.toString(), parameters, true);
+  }
+
+  /**
+   * Creates a JPQL statement counting the entities with the key of the
+   * entity, which is either zero or one.
+   *
+   * @param withETag
+   *          whether the ETag of the request is part of the condition
+   * @return the query or null if the ETag of the request cannot match any
+   *         entity
+   * @throws ODataJPARuntimeException
+   */
+  public Query createCountQuery(final EntityManager em, final boolean withETag) throws ODataJPARuntimeException {
+    if (withETag && !isETagValid) {
+      return null;
+    }
+    StringBuilder jpqlQuery = new StringBuilder();
+    jpqlQuery.append(JPQLStatement.KEYWORD.SELECT).append(JPQLStatement.DELIMITER.SPACE);
+    jpqlQuery.append(JPQLStatement.KEYWORD.COUNT).append(JPQLStatement.DELIMITER.PARENTHESIS_LEFT);
+    jpqlQuery.append(ALIAS).append(JPQLStatement.DELIMITER.PARENTHESIS_RIGHT).append(JPQLStatement.DELIMITER.SPACE);
+    jpqlQuery.append(JPQLStatement.KEYWORD.FROM).append(JPQLStatement.DELIMITER.SPACE);
+    jpqlQuery.append(jpaEntityName).append(JPQLStatement.DELIMITER.SPACE).append(ALIAS);
+    appendWhereClause(jpqlQuery, withETag);
+    return createQuery(em, jpqlQuery.toString(), null, withETag);
+  }
+
+  private void appendWhereClause(final StringBuilder jpqlQuery, final boolean withETag) {
+    jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(JPQLStatement.KEYWORD.WHERE);
+    jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(keyExpression);
+    if (withETag && eTagValues != null) {
+      int index = 0;
+      for (String path : eTagValues.keySet()) {
+        jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(JPQLStatement.Operator.AND);
+        jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(path);
+        jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(JPQLStatement.Operator.EQ);
+        jpqlQuery.append(JPQLStatement.DELIMITER.SPACE).append(JPQLStatement.DELIMITER.COLON)
+            .append(ETAG_PARAMETER + index++);
+      }
+    }
+  }
+
+  private Query createQuery(final EntityManager em, final String jpqlQuery, final Map<String, Object> parameters,
+      final boolean withETag) throws ODataJPARuntimeException {
+    try {
+      Query query = em.createQuery(jpqlQuery);
+      if (parameters != null) {
+        for (Entry<String, Object> parameter : parameters.entrySet()) {
+          query.setParameter(parameter.getKey(), parameter.getValue());
+        }
+      }
+      if (withETag && eTagValues != null) {
+        int index = 0;
+        for (Object eTagValue : eTagValues.values()) {
+          query.setParameter(ETAG_PARAMETER + index++, eTagValue);
+        }
+      }
+      return query;
+    } catch (IllegalArgumentException e) {
+      throw ODataJPARuntimeException.throwException(
+          ODataJPARuntimeException.ERROR_JPQL_QUERY_CREATE, e);
+    }
+  }
+
+  /*
+   * The ETag of an entity consists of the values of its ETag properties in
+   * default literal form, separated by a period, see the entity producers.
+   */
+  private void parseETag(String eTag) throws ODataJPARuntimeException {
+    if (eTag.startsWith(ETAG_WEAK_PREFIX)) {
+      eTag = eTag.substring(ETAG_WEAK_PREFIX.length());
+    }
+    if (eTag.length() > 1 && eTag.startsWith(ETAG_QUOTE) && eTag.endsWith(ETAG_QUOTE)) {
+      eTag = eTag.substring(1, eTag.length() - 1);
+    }
+
+    try {
+      List<EdmProperty> eTagProperties = new ArrayList<EdmProperty>();
+      for (String propertyName : entityType.getPropertyNames()) {
+        EdmProperty property = (EdmProperty) entityType.getProperty(propertyName);
+        if (property.getFacets() != null && property.getFacets().getConcurrencyMode() == EdmConcurrencyMode.Fixed) {
+          eTagProperties.add(property);
+        }
+      }
+      if (eTagProperties.isEmpty()) {
+        // As when reading the entity first, there is nothing to compare with.
+        return;
+      }
+
+      String[] literals = eTagProperties.size() == 1 ?
+          new String[] { eTag } : eTag.split("\\" + Edm.DELIMITER, -1); //$NON-NLS-1$
+      if (literals.length != eTagProperties.size()) {
+        isETagAssignable = false;
+        return;
+      }
+
+      eTagValues = new LinkedHashMap<String, Object>();
+      for (int i = 0; i < literals.length; i++) {
+        EdmProperty property = eTagProperties.get(i);
+        EdmSimpleType edmSimpleType = (EdmSimpleType) property.getType();
+        Object value = edmSimpleType.valueOfString(literals[i], EdmLiteralKind.DEFAULT, property.getFacets(),
+            edmSimpleType.getDefaultType());
+        eTagValues.put(ALIAS + JPQLStatement.DELIMITER.PERIOD + getJPAName(property.getMapping(), property.getName()),
+            toJPAValue(property, value));
+      }
+    } catch (EdmSimpleTypeException e) {
+      // A value of the ETag which is not valid does not match any entity.
+      eTagValues = null;
+      isETagValid = false;
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException
+          .throwException(ODataJPARuntimeException.GENERAL
+              .addContent(e.getMessage()), e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void collectValues(final EdmStructuralType structuralType, final String path,
+      final Map<String, Object> propertyValueMap, final List<String> excludedPropertyNames,
+      final Map<String, Object> values) throws EdmException {
+    for (String propertyName : structuralType.getPropertyNames()) {
+      Object value = propertyValueMap.get(propertyName);
+      if (value == null || excludedPropertyNames.contains(propertyName)) {
+        continue;
+      }
+      EdmProperty property = (EdmProperty) structuralType.getProperty(propertyName);
+      String propertyPath = path + JPQLStatement.DELIMITER.PERIOD + getJPAName(property.getMapping(), propertyName);
+      if (property.getType().getKind() == EdmTypeKind.COMPLEX) {
+        collectValues((EdmStructuralType) property.getType(), propertyPath, (Map<String, Object>) value,
+            new ArrayList<String>(), values);
+      } else {
+        values.put(propertyPath, toJPAValue(property, value));
+      }
+    }
+  }
+
+  private static Object toJPAValue(final EdmProperty property, final Object value) throws EdmException {
+    if (value instanceof Calendar) {
+      EdmMapping mapping = property.getMapping();
+      Class<?> jpaType = mapping instanceof JPAEdmMappingImpl ? ((JPAEdmMappingImpl) mapping).getJPAType() : null;
+      if (jpaType == null || !Calendar.class.isAssignableFrom(jpaType)) {
+        return ((Calendar) value).getTime();
+      }
+    }
+    return value;
+  }
+
+  private static String getJPAName(final EdmMapping mapping, final String edmName) {
+    return mapping != null && mapping.getInternalName() != null ? mapping.getInternalName() : edmName;
+  }
+}
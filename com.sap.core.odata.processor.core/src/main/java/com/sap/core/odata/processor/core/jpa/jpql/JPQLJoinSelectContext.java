@@ -78,6 +78,10 @@ public class JPQLJoinSelectContext extends JPQLSelectContext implements
 
         setWhereExpression(generateWhereExpression());
 
+        if (!JPQLJoinSelectContext.this.isCountOnly) {
+          setFetchJoinRelationShips(generateFetchJoinRelationShips());
+        }
+
       } catch (ODataException e) {
         throw ODataJPARuntimeException.throwException(
             ODataJPARuntimeException.INNER_EXCEPTION, e);
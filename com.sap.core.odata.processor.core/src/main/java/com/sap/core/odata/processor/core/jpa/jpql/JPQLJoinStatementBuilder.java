@@ -23,6 +23,7 @@ import com.sap.core.odata.processor.api.jpa.access.JPAJoinClause;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLContextType;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLContextView;
+import com.sap.core.odata.processor.api.jpa.jpql.JPQLFetchJoinContextView;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLJoinContextView;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLStatement;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLStatement.JPQLStatementBuilder;
@@ -103,6 +104,19 @@ public class JPQLJoinStatementBuilder extends JPQLStatementBuilder {
           joinWhereCondition.append(joinCondition);
         }
       }
+
+      List<String> fetchJoinRelationShips = context instanceof JPQLFetchJoinContextView ?
+          ((JPQLFetchJoinContextView) context).getFetchJoinRelationShips() : null;
+      if (fetchJoinRelationShips != null) {
+        for (String fetchRelationShip : fetchJoinRelationShips) {
+          jpqlQuery.append(JPQLStatement.DELIMITER.SPACE);
+          jpqlQuery.append(JPQLStatement.KEYWORD.LEFT_JOIN_FETCH).append(
+              JPQLStatement.DELIMITER.SPACE);
+          jpqlQuery.append(relationShipAlias).append(
+              JPQLStatement.DELIMITER.PERIOD);
+          jpqlQuery.append(fetchRelationShip);
+        }
+      }
     } else {
       throw ODataJPARuntimeException.throwException(
           ODataJPARuntimeException.JOIN_CLAUSE_EXPECTED, null);
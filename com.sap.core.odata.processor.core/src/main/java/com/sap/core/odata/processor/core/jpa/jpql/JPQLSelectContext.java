@@ -15,26 +15,34 @@
  ******************************************************************************/
 package com.sap.core.odata.processor.core.jpa.jpql;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import com.sap.core.odata.api.edm.EdmEntityType;
 import com.sap.core.odata.api.edm.EdmException;
 import com.sap.core.odata.api.edm.EdmMapping;
+import com.sap.core.odata.api.edm.EdmMultiplicity;
+import com.sap.core.odata.api.edm.EdmNavigationProperty;
+import com.sap.core.odata.api.edm.EdmProperty;
 import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.api.uri.NavigationPropertySegment;
 import com.sap.core.odata.api.uri.info.GetEntitySetUriInfo;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPAModelException;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLContext;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLContextType;
-import com.sap.core.odata.processor.api.jpa.jpql.JPQLSelectContextView;
+import com.sap.core.odata.processor.api.jpa.jpql.JPQLFetchJoinContextView;
+import com.sap.core.odata.processor.api.jpa.jpql.JPQLStatement;
 import com.sap.core.odata.processor.core.jpa.access.data.ODataExpressionParser;
 
 public class JPQLSelectContext extends JPQLContext implements
-    JPQLSelectContextView {
+    JPQLFetchJoinContextView {
 
   protected String selectExpression;
   protected HashMap<String, String> orderByCollection;
   protected String whereCondition;
+  protected List<String> fetchJoinRelationShips;
 
   protected boolean isCountOnly = false;//Support for $count
 
@@ -51,6 +59,10 @@ public class JPQLSelectContext extends JPQLContext implements
     whereCondition = filterExpression;
   }
 
+  protected final void setFetchJoinRelationShips(final List<String> fetchJoinRelationShips) {
+    this.fetchJoinRelationShips = fetchJoinRelationShips;
+  }
+
   protected final void setSelectExpression(final String selectExpression) {
     this.selectExpression = selectExpression;
   }
@@ -70,11 +82,45 @@ public class JPQLSelectContext extends JPQLContext implements
     return whereCondition;
   }
 
+  @Override
+  public List<String> getFetchJoinRelationShips() {
+    return fetchJoinRelationShips;
+  }
+
   public class JPQLSelectContextBuilder
       extends
       com.sap.core.odata.processor.api.jpa.jpql.JPQLContext.JPQLContextBuilder {
 
     protected GetEntitySetUriInfo entitySetView;
+    protected boolean pagedByKey = false;
+    protected boolean continuedByKey = false;
+
+    /**
+     * The method makes the context read the entity set page by page: the
+     * entities are ordered by key, and if the request carries a skip token,
+     * only the entities following the key of the skip token are selected.
+     * The key is compared with named parameters, see
+     * {@link ODataExpressionParser#parseKeyPropertiesToJPAKeysetExpression(List, String)};
+     * their values are bound along with the other parameters of the
+     * {@link JPQLStatementShape}.
+     * 
+     * @param pagedByKey
+     */
+    public void setPagedByKey(final boolean pagedByKey) {
+      this.pagedByKey = pagedByKey;
+    }
+
+    /**
+     * The method makes the context of an entity set read page by page select
+     * only the entities following a key, as if the request carried a skip
+     * token; the values of the key are bound to the parameters of the
+     * statement for each page.
+     * 
+     * @param continuedByKey
+     */
+    public void setContinuedByKey(final boolean continuedByKey) {
+      this.continuedByKey = continuedByKey;
+    }
 
     @Override
     public JPQLContext build() throws ODataJPAModelException,
@@ -104,6 +150,10 @@ public class JPQLSelectContext extends JPQLContext implements
           setSelectExpression(generateSelectExpression());
 
           setWhereExpression(generateWhereExpression());
+
+          if (!isCountOnly) {
+            setFetchJoinRelationShips(generateFetchJoinRelationShips());
+          }
         } catch (ODataException e) {
           throw ODataJPARuntimeException.throwException(ODataJPARuntimeException.INNER_EXCEPTION, e);
         }
@@ -125,6 +175,15 @@ public class JPQLSelectContext extends JPQLContext implements
      * Generate Select Clause 
      */
     protected String generateSelectExpression() throws EdmException {
+      if (!isCountOnly && entitySetView.getSelect() != null && !entitySetView.getSelect().isEmpty()) {
+        List<EdmProperty> projectedProperties = ODataExpressionParser.parseToJPAProjectedProperties(
+            entitySetView.getSelect(), entitySetView.getExpand(),
+            entitySetView.getTargetEntitySet().getEntityType());
+        if (projectedProperties != null) {
+          return ODataExpressionParser.parseToJPASelectExpression(getJPAEntityAlias(),
+              ODataExpressionParser.parseToJPAPropertyNames(projectedProperties));
+        }
+      }
       return getJPAEntityAlias();
     }
 
@@ -134,12 +193,15 @@ public class JPQLSelectContext extends JPQLContext implements
     protected HashMap<String, String> generateOrderByFileds()
         throws ODataJPARuntimeException, EdmException {
 
-      if (entitySetView.getOrderBy() != null) {
+      if (isCountOnly) {
+        // A count does not depend on the order of the entities
+        return null;
+      } else if (entitySetView.getOrderBy() != null) {
 
         return ODataExpressionParser
             .parseToJPAOrderByExpression(entitySetView.getOrderBy(), getJPAEntityAlias());
 
-      } else if (entitySetView.getTop() != null
+      } else if (pagedByKey || entitySetView.getTop() != null
           || entitySetView.getSkip() != null) {
 
         return ODataExpressionParser
@@ -155,11 +217,47 @@ public class JPQLSelectContext extends JPQLContext implements
      * Generate Where Clause Expression
      */
     protected String generateWhereExpression() throws ODataException {
+      String whereExpression = null;
       if (entitySetView.getFilter() != null) {
-        return ODataExpressionParser
+        whereExpression = ODataExpressionParser
             .parseToJPAWhereExpression(entitySetView.getFilter(), getJPAEntityAlias());
       }
-      return null;
+      if (pagedByKey && (continuedByKey || entitySetView.getSkipToken() != null)) {
+        String skipTokenExpression = ODataExpressionParser.parseKeyPropertiesToJPAKeysetExpression(
+            entitySetView.getTargetEntitySet().getEntityType().getKeyProperties(), getJPAEntityAlias());
+        whereExpression = whereExpression == null ? skipTokenExpression
+            : JPQLStatement.DELIMITER.PARENTHESIS_LEFT + whereExpression + JPQLStatement.DELIMITER.PARENTHESIS_RIGHT
+                + JPQLStatement.DELIMITER.SPACE + JPQLStatement.Operator.AND
+                + JPQLStatement.DELIMITER.SPACE + skipTokenExpression;
+      }
+      return whereExpression;
+    }
+
+    /*
+     * Generate Fetch Join Relationships for to-one navigations of $expand.
+     * Navigations to many entities are not fetched by a join as the join
+     * would multiply the rows of the selected entities.
+     */
+    protected List<String> generateFetchJoinRelationShips() throws EdmException {
+      List<ArrayList<NavigationPropertySegment>> expandList = entitySetView.getExpand();
+      if (expandList == null || expandList.isEmpty()) {
+        return null;
+      }
+
+      List<String> relationShips = new ArrayList<String>();
+      for (ArrayList<NavigationPropertySegment> navigationPropertySegments : expandList) {
+        EdmNavigationProperty navigationProperty = navigationPropertySegments.get(0).getNavigationProperty();
+        if (navigationProperty.getMultiplicity() == EdmMultiplicity.MANY) {
+          continue;
+        }
+        EdmMapping mapping = navigationProperty.getMapping();
+        String relationShipName = mapping != null && mapping.getInternalName() != null ?
+            mapping.getInternalName() : navigationProperty.getName();
+        if (!relationShips.contains(relationShipName)) {
+          relationShips.add(relationShipName);
+        }
+      }
+      return relationShips.isEmpty() ? null : relationShips;
     }
   }
 
@@ -16,11 +16,13 @@
 package com.sap.core.odata.processor.core.jpa.jpql;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLContextType;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLContextView;
+import com.sap.core.odata.processor.api.jpa.jpql.JPQLFetchJoinContextView;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLSelectContextView;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLStatement;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLStatement.JPQLStatementBuilder;
@@ -60,6 +62,16 @@ public class JPQLSelectStatementBuilder extends JPQLStatementBuilder {
     jpqlQuery.append(JPQLStatement.KEYWORD.FROM).append(JPQLStatement.DELIMITER.SPACE);
     jpqlQuery.append(fromClause);
 
+    List<String> fetchJoinRelationShips = context instanceof JPQLFetchJoinContextView ?
+        ((JPQLFetchJoinContextView) context).getFetchJoinRelationShips() : null;
+    if (fetchJoinRelationShips != null) {
+      for (String relationShip : fetchJoinRelationShips) {
+        jpqlQuery.append(JPQLStatement.DELIMITER.SPACE);
+        jpqlQuery.append(JPQLStatement.KEYWORD.LEFT_JOIN_FETCH).append(JPQLStatement.DELIMITER.SPACE);
+        jpqlQuery.append(tableAlias).append(JPQLStatement.DELIMITER.PERIOD).append(relationShip);
+      }
+    }
+
     if (context.getWhereExpression() != null) {
       jpqlQuery.append(JPQLStatement.DELIMITER.SPACE);
       jpqlQuery.append(JPQLStatement.KEYWORD.WHERE).append(JPQLStatement.DELIMITER.SPACE);
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.processor.core.jpa.jpql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * The class caches the JPQL statements built for requests by the key of their
+ * {@link JPQLStatementShape}, separately for each entity manager factory. The
+ * least recently used statements are evicted.
+ * 
+ * @author SAP AG
+ */
+public final class JPQLStatementCache {
+
+  private static final int MAX_CACHED_STATEMENTS = 1000;
+  private static final Map<EntityManagerFactory, Map<String, CachedStatement>> CACHED_STATEMENTS =
+      new WeakHashMap<EntityManagerFactory, Map<String, CachedStatement>>();
+
+  private JPQLStatementCache() {}
+
+  /**
+   * The method returns the statement cached for the given key.
+   * 
+   * @param emf
+   *          the entity manager factory the statement is executed with
+   * @param key
+   *          the key of the shape of the request
+   * @return the cached statement or null
+   */
+  public static CachedStatement get(final EntityManagerFactory emf, final String key) {
+    synchronized (CACHED_STATEMENTS) {
+      Map<String, CachedStatement> statements = CACHED_STATEMENTS.get(emf);
+      return statements == null ? null : statements.get(key);
+    }
+  }
+
+  /**
+   * The method caches a statement for the given key.
+   * 
+   * @param emf
+   *          the entity manager factory the statement is executed with
+   * @param key
+   *          the key of the shape of the request
+   * @param statement
+   */
+  public static void put(final EntityManagerFactory emf, final String key, final CachedStatement statement) {
+    synchronized (CACHED_STATEMENTS) {
+      Map<String, CachedStatement> statements = CACHED_STATEMENTS.get(emf);
+      if (statements == null) {
+        statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(final Map.Entry<String, CachedStatement> eldest) {
+            return size() > MAX_CACHED_STATEMENTS;
+          }
+        };
+        CACHED_STATEMENTS.put(emf, statements);
+      }
+      statements.put(key, statement);
+    }
+  }
+
+  /**
+   * A JPQL statement together with whether it selects attributes instead of
+   * entities for $select.
+   */
+  public static final class CachedStatement {
+
+    private final String statement;
+    private final boolean projected;
+
+    public CachedStatement(final String statement, final boolean projected) {
+      this.statement = statement;
+      this.projected = projected;
+    }
+
+    public boolean isProjected() {
+      return projected;
+    }
+
+    @Override
+    public String toString() {
+      return statement;
+    }
+  }
+}
@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.processor.core.jpa.jpql;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Query;
+
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmLiteralKind;
+import com.sap.core.odata.api.edm.EdmProperty;
+import com.sap.core.odata.api.edm.EdmSimpleType;
+import com.sap.core.odata.api.uri.KeyPredicate;
+import com.sap.core.odata.api.uri.NavigationPropertySegment;
+import com.sap.core.odata.api.uri.NavigationSegment;
+import com.sap.core.odata.api.uri.SelectItem;
+import com.sap.core.odata.api.uri.expression.BinaryExpression;
+import com.sap.core.odata.api.uri.expression.BinaryOperator;
+import com.sap.core.odata.api.uri.expression.CommonExpression;
+import com.sap.core.odata.api.uri.expression.ExpressionKind;
+import com.sap.core.odata.api.uri.expression.FilterExpression;
+import com.sap.core.odata.api.uri.expression.LiteralExpression;
+import com.sap.core.odata.api.uri.expression.MemberExpression;
+import com.sap.core.odata.api.uri.expression.MethodExpression;
+import com.sap.core.odata.api.uri.expression.PropertyExpression;
+import com.sap.core.odata.api.uri.expression.UnaryExpression;
+import com.sap.core.odata.api.uri.info.GetEntitySetUriInfo;
+import com.sap.core.odata.api.uri.info.GetEntityUriInfo;
+import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
+import com.sap.core.odata.processor.api.jpa.jpql.JPQLContextType;
+import com.sap.core.odata.processor.core.jpa.access.data.ODataExpressionParser;
+
+/**
+ * The class describes the shape of a request, that is everything the JPQL
+ * statement built for the request depends on: the context type, the entity
+ * sets and navigations, the structure of $filter, $orderby, $select and
+ * $expand, and the presence of paging. Literals compared with properties and
+ * the values of key predicates are no part of the shape if they can be
+ * converted into the Java type of the JPA attribute; they are rendered as
+ * named parameters of the JPQL statement and bound to the query instead. So
+ * is the key of a skip token an entity set is paged by. Requests of the same
+ * shape can therefore share their JPQL statement.
+ * 
+ * @author SAP AG
+ * @see JPQLStatementCache
+ */
+public class JPQLStatementShape {
+
+  private static final String PARAMETER_PREFIX = "p"; //$NON-NLS-1$
+
+  private final StringBuilder key = new StringBuilder();
+  private final Map<Object, String> parameterNames = new IdentityHashMap<Object, String>();
+  private final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+
+  private JPQLStatementShape() {}
+
+  /**
+   * The method determines the shape of a request for the given JPQL context
+   * type.
+   * 
+   * @param contextType
+   * @param resultsView
+   *          the request the JPQL context is built for
+   * @param pagedByKey
+   *          whether the entity set is read page by page
+   * @return the shape or null if the JPQL statement of the request must not
+   *         be shared
+   * @throws ODataJPARuntimeException
+   *           if the skip token of a paged request does not match the key
+   */
+  public static JPQLStatementShape create(final JPQLContextType contextType, final Object resultsView,
+      final boolean pagedByKey) throws ODataJPARuntimeException {
+    return create(contextType, resultsView, pagedByKey, false);
+  }
+
+  /**
+   * The method determines the shape of a request for the given JPQL context
+   * type which continues after a key, see
+   * {@link JPQLSelectContext.JPQLSelectContextBuilder#setContinuedByKey(boolean)}.
+   * The values of the key are no parameters of the shape; they have to be
+   * bound to the query for each page.
+   * 
+   * @param contextType
+   * @param resultsView
+   *          the request the JPQL context is built for
+   * @param pagedByKey
+   *          whether the entity set is read page by page
+   * @param continuedByKey
+   *          whether the entities following a key are selected
+   * @return the shape or null if the JPQL statement of the request must not
+   *         be shared
+   * @throws ODataJPARuntimeException
+   *           if the skip token of a paged request does not match the key
+   */
+  public static JPQLStatementShape create(final JPQLContextType contextType, final Object resultsView,
+      final boolean pagedByKey, final boolean continuedByKey) throws ODataJPARuntimeException {
+    JPQLStatementShape shape = new JPQLStatementShape();
+    try {
+      return shape.appendRequest(contextType, resultsView, pagedByKey, continuedByKey) ? shape : null;
+    } catch (EdmException e) {
+      throw ODataJPARuntimeException.throwException(
+          ODataJPARuntimeException.GENERAL.addContent(e
+              .getMessage()), e);
+    }
+  }
+
+  /**
+   * @return the key of the shape, which is equal for all requests of the same
+   *         shape
+   */
+  public String getKey() {
+    return key.toString();
+  }
+
+  /**
+   * @return the parameter names keyed by the literal expressions and key
+   *         predicates rendered as parameters, see
+   *         {@link ODataExpressionParser#setParameterNames(Map)}
+   */
+  public Map<Object, String> getParameterNames() {
+    return parameterNames;
+  }
+
+  /**
+   * @return the values of the parameters keyed by parameter name
+   */
+  public Map<String, Object> getParameters() {
+    return Collections.unmodifiableMap(parameters);
+  }
+
+  /**
+   * The method binds the values of the parameters to a query created from
+   * the JPQL statement of the shape.
+   * 
+   * @param query
+   */
+  public void setParameters(final Query query) {
+    for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+      query.setParameter(parameter.getKey(), parameter.getValue());
+    }
+  }
+
+  /*
+   * Only the parts of the request read by the JPQL context builder of the
+   * context type are appended.
+   */
+  private boolean appendRequest(final JPQLContextType contextType, final Object resultsView,
+      final boolean pagedByKey, final boolean continuedByKey) throws EdmException, ODataJPARuntimeException {
+    key.append(contextType);
+    switch (contextType) {
+    case SELECT:
+    case SELECT_COUNT:
+    case JOIN:
+    case JOIN_COUNT:
+      if (!(resultsView instanceof GetEntitySetUriInfo)) {
+        return false;
+      }
+      GetEntitySetUriInfo entitySetView = (GetEntitySetUriInfo) resultsView;
+      boolean isCountOnly = contextType == JPQLContextType.SELECT_COUNT || contextType == JPQLContextType.JOIN_COUNT;
+      if (contextType == JPQLContextType.JOIN || contextType == JPQLContextType.JOIN_COUNT) {
+        appendNavigation(entitySetView.getStartEntitySet(), entitySetView.getKeyPredicates(),
+            entitySetView.getNavigationSegments());
+      }
+      appendEntitySet(entitySetView.getTargetEntitySet());
+      if (entitySetView.getFilter() != null) {
+        key.append(" $filter="); //$NON-NLS-1$
+        appendExpression(entitySetView.getFilter());
+      }
+      if (!isCountOnly) {
+        key.append(pagedByKey ? " paged" : ""); //$NON-NLS-1$ //$NON-NLS-2$
+        if (pagedByKey && continuedByKey) {
+          key.append(" $skiptoken"); //$NON-NLS-1$
+        } else if (pagedByKey && entitySetView.getSkipToken() != null) {
+          key.append(" $skiptoken"); //$NON-NLS-1$
+          parameters.putAll(ODataExpressionParser.parseSkipTokenToKeysetParameters(
+              entitySetView.getTargetEntitySet().getEntityType().getKeyProperties(),
+              entitySetView.getSkipToken()));
+        }
+        if (entitySetView.getOrderBy() != null) {
+          key.append(" $orderby="); //$NON-NLS-1$
+          appendText(entitySetView.getOrderBy().getExpressionString());
+        }
+        key.append(entitySetView.getTop() != null ? " $top" : ""); //$NON-NLS-1$ //$NON-NLS-2$
+        key.append(entitySetView.getSkip() != null ? " $skip" : ""); //$NON-NLS-1$ //$NON-NLS-2$
+        appendSelect(entitySetView.getSelect());
+        appendExpand(entitySetView.getExpand());
+      }
+      return true;
+    case SELECT_SINGLE:
+    case JOIN_SINGLE:
+      if (!(resultsView instanceof GetEntityUriInfo)) {
+        return false;
+      }
+      GetEntityUriInfo entityView = (GetEntityUriInfo) resultsView;
+      if (contextType == JPQLContextType.JOIN_SINGLE) {
+        appendNavigation(entityView.getStartEntitySet(), entityView.getKeyPredicates(),
+            entityView.getNavigationSegments());
+      } else {
+        appendKeyPredicates(entityView.getKeyPredicates());
+      }
+      appendEntitySet(entityView.getTargetEntitySet());
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private void appendEntitySet(final EdmEntitySet entitySet) throws EdmException {
+    key.append(' ').append(entitySet.getName());
+  }
+
+  private void appendNavigation(final EdmEntitySet startEntitySet, final List<KeyPredicate> keyPredicates,
+      final List<NavigationSegment> navigationSegments) throws EdmException {
+    appendEntitySet(startEntitySet);
+    appendKeyPredicates(keyPredicates);
+    for (NavigationSegment navigationSegment : navigationSegments) {
+      key.append('/').append(navigationSegment.getNavigationProperty().getName());
+      appendKeyPredicates(navigationSegment.getKeyPredicates());
+    }
+  }
+
+  private void appendKeyPredicates(final List<KeyPredicate> keyPredicates) throws EdmException {
+    if (keyPredicates == null || keyPredicates.isEmpty()) {
+      return;
+    }
+    key.append('(');
+    for (KeyPredicate keyPredicate : keyPredicates) {
+      EdmProperty property = keyPredicate.getProperty();
+      key.append(property.getName()).append('=');
+      Object value = ODataExpressionParser.parseToJPAValue((EdmSimpleType) property.getType(),
+          keyPredicate.getLiteral(), EdmLiteralKind.DEFAULT, property);
+      if (value != null) {
+        appendParameter(keyPredicate, value);
+      } else {
+        appendText(keyPredicate.getLiteral());
+      }
+      key.append(',');
+    }
+    key.append(')');
+  }
+
+  private void appendSelect(final List<SelectItem> selectItems) throws EdmException {
+    if (selectItems == null || selectItems.isEmpty()) {
+      return;
+    }
+    key.append(" $select="); //$NON-NLS-1$
+    for (SelectItem selectItem : selectItems) {
+      if (selectItem.isStar()) {
+        key.append('*');
+      } else {
+        for (NavigationPropertySegment navigationPropertySegment : selectItem.getNavigationPropertySegments()) {
+          key.append(navigationPropertySegment.getNavigationProperty().getName()).append('/');
+        }
+        if (selectItem.getProperty() != null) {
+          key.append(selectItem.getProperty().getName());
+        }
+      }
+      key.append(',');
+    }
+  }
+
+  private void appendExpand(final List<? extends List<NavigationPropertySegment>> expandList) throws EdmException {
+    if (expandList == null || expandList.isEmpty()) {
+      return;
+    }
+    key.append(" $expand="); //$NON-NLS-1$
+    for (List<NavigationPropertySegment> navigationPropertySegments : expandList) {
+      for (NavigationPropertySegment navigationPropertySegment : navigationPropertySegments) {
+        key.append(navigationPropertySegment.getNavigationProperty().getName()).append('/');
+      }
+      key.append(',');
+    }
+  }
+
+  private void appendExpression(final CommonExpression expression) throws EdmException {
+    switch (expression.getKind()) {
+    case FILTER:
+      appendExpression(((FilterExpression) expression).getExpression());
+      break;
+    case UNARY:
+      UnaryExpression unaryExpression = (UnaryExpression) expression;
+      key.append(unaryExpression.getOperator()).append('(');
+      appendExpression(unaryExpression.getOperand());
+      key.append(')');
+      break;
+    case BINARY:
+      BinaryExpression binaryExpression = (BinaryExpression) expression;
+      key.append('(');
+      appendOperand(binaryExpression.getLeftOperand(), binaryExpression.getOperator(),
+          binaryExpression.getRightOperand());
+      key.append(' ').append(binaryExpression.getOperator()).append(' ');
+      appendOperand(binaryExpression.getRightOperand(), binaryExpression.getOperator(),
+          binaryExpression.getLeftOperand());
+      key.append(')');
+      break;
+    case PROPERTY:
+      key.append(((PropertyExpression) expression).getPropertyName());
+      break;
+    case MEMBER:
+      MemberExpression memberExpression = (MemberExpression) expression;
+      appendExpression(memberExpression.getPath());
+      key.append('/');
+      appendExpression(memberExpression.getProperty());
+      break;
+    case LITERAL:
+      LiteralExpression literal = (LiteralExpression) expression;
+      key.append(((EdmSimpleType) literal.getEdmType()).getName());
+      appendText(literal.getUriLiteral());
+      break;
+    case METHOD:
+      MethodExpression methodExpression = (MethodExpression) expression;
+      key.append(methodExpression.getMethod()).append('(');
+      for (CommonExpression parameter : methodExpression.getParameters()) {
+        appendExpression(parameter);
+        key.append(',');
+      }
+      key.append(')');
+      break;
+    default:
+      key.append(expression.getKind());
+    }
+  }
+
+  /*
+   * A literal compared with a property is rendered as a parameter.
+   */
+  private void appendOperand(final CommonExpression operand, final BinaryOperator operator,
+      final CommonExpression otherOperand) throws EdmException {
+    if (operand.getKind() == ExpressionKind.LITERAL && isComparison(operator)) {
+      PropertyExpression propertyExpression = null;
+      if (otherOperand.getKind() == ExpressionKind.PROPERTY) {
+        propertyExpression = (PropertyExpression) otherOperand;
+      } else if (otherOperand.getKind() == ExpressionKind.MEMBER
+          && ((MemberExpression) otherOperand).getProperty().getKind() == ExpressionKind.PROPERTY) {
+        propertyExpression = (PropertyExpression) ((MemberExpression) otherOperand).getProperty();
+      }
+      if (propertyExpression != null && propertyExpression.getEdmProperty() instanceof EdmProperty) {
+        LiteralExpression literal = (LiteralExpression) operand;
+        Object value = ODataExpressionParser.parseToJPAValue((EdmSimpleType) literal.getEdmType(),
+            literal.getUriLiteral(), EdmLiteralKind.URI, (EdmProperty) propertyExpression.getEdmProperty());
+        if (value != null) {
+          appendParameter(literal, value);
+          return;
+        }
+      }
+    }
+    appendExpression(operand);
+  }
+
+  private static boolean isComparison(final BinaryOperator operator) {
+    switch (operator) {
+    case EQ:
+    case NE:
+    case LT:
+    case LE:
+    case GT:
+    case GE:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private void appendParameter(final Object expression, final Object value) {
+    String parameterName = PARAMETER_PREFIX + parameters.size();
+    parameterNames.put(expression, parameterName);
+    parameters.put(parameterName, value);
+    key.append('?');
+  }
+
+  /*
+   * Texts are prefixed by their length so that they cannot be mistaken for
+   * the structure of the request.
+   */
+  private void appendText(final String text) {
+    key.append('[').append(text.length()).append(']').append(text);
+  }
+}
@@ -246,6 +246,66 @@ public class JPAResultParserTest {
 
   }
 
+  @Test
+  public void testparse2EdmPropertyValueMapFromTupleOneColumn() throws ODataJPARuntimeException {
+    JPAResultParser resultParser = JPAResultParser.create();
+    Object[] tuple = new Object[] { "laptop" };
+    Map<String, Object> result = resultParser.parse2EdmPropertyValueMapFromTuple(tuple, getEdmPropertyList());
+    assertEquals(1, result.size());
+    assertEquals("laptop", result.get("SalesOrderHeader"));
+  }
+
+  // The values of the tuple are in the order of the properties; a complex
+  // property is selected as embedded object
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testparse2EdmPropertyValueMapFromTupleMultiColumn() throws ODataJPARuntimeException {
+    JPAResultParser resultParser = JPAResultParser.create();
+    EdmProperty edmProperty1 = EasyMock.createMock(EdmProperty.class);
+    EdmProperty edmProperty2 = EasyMock.createMock(EdmProperty.class);
+    EdmProperty edmComplexProperty = EasyMock.createMock(EdmProperty.class);
+    EdmType edmType1 = EasyMock.createMock(EdmType.class);
+    EdmStructuralType edmType2 = EasyMock.createMock(EdmStructuralType.class);
+    EdmType edmComplexType = EasyMock.createMock(EdmType.class);
+    EdmMapping complexMapping = EasyMock.createMock(EdmMapping.class);
+    try {
+      EasyMock.expect(edmType1.getKind()).andStubReturn(EdmTypeKind.SIMPLE);
+      EasyMock.replay(edmType1);
+      EasyMock.expect(edmProperty1.getName()).andStubReturn("Id");
+      EasyMock.expect(edmProperty1.getType()).andStubReturn(edmType1);
+      EasyMock.replay(edmProperty1);
+      EasyMock.expect(edmComplexType.getKind()).andStubReturn(EdmTypeKind.SIMPLE);
+      EasyMock.replay(edmComplexType);
+      EasyMock.expect(complexMapping.getInternalName()).andStubReturn("order");
+      EasyMock.replay(complexMapping);
+      EasyMock.expect(edmComplexProperty.getName()).andStubReturn("OrderName");
+      EasyMock.expect(edmComplexProperty.getMapping()).andStubReturn(complexMapping);
+      EasyMock.expect(edmComplexProperty.getType()).andStubReturn(edmComplexType);
+      EasyMock.replay(edmComplexProperty);
+      EasyMock.expect(edmType2.getKind()).andStubReturn(EdmTypeKind.COMPLEX);
+      EasyMock.expect(edmType2.getProperty("OrderName")).andStubReturn(edmComplexProperty);
+      List<String> propertyNames = new ArrayList<String>();
+      propertyNames.add("OrderName");
+      EasyMock.expect(edmType2.getPropertyNames()).andStubReturn(propertyNames);
+      EasyMock.replay(edmType2);
+      EasyMock.expect(edmProperty2.getName()).andStubReturn("Order");
+      EasyMock.expect(edmProperty2.getType()).andStubReturn(edmType2);
+      EasyMock.replay(edmProperty2);
+    } catch (EdmException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+    List<EdmProperty> selectPropertyList = new ArrayList<EdmProperty>();
+    selectPropertyList.add(edmProperty1);
+    selectPropertyList.add(edmProperty2);
+
+    Object[] tuple = new Object[] { "laptop", new DemoRelatedEntity("DemoOrder") };
+    Map<String, Object> result = resultParser.parse2EdmPropertyValueMapFromTuple(tuple, selectPropertyList);
+    assertEquals(2, result.size());
+    assertEquals("laptop", result.get("Id"));
+    assertEquals("DemoOrder", ((Map<String, Object>) result.get("Order")).get("OrderName"));
+  }
+
   // This unit tests when there is a complex type in the select list
   @SuppressWarnings("unchecked")
   @Test
@@ -1,6 +1,9 @@
 package com.sap.core.odata.processor.core.jpa;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -80,4 +83,59 @@ public class ODataJPAContextImplTest {
 
   }
 
+  @Test
+  public void testSetEntityManager() {
+    assertNull(odataJPAContext.getEntityManager());
+
+    odataJPAContext.setEntityManager(em);
+    assertEquals(em, odataJPAContext.getEntityManager());
+  }
+
+  @Test
+  public void testPageSize() {
+    assertEquals(0, odataJPAContext.getPageSize("SalesOrderHeaders"));
+
+    odataJPAContext.setPageSize("SalesOrderHeaders", 100);
+    assertEquals(100, odataJPAContext.getPageSize("SalesOrderHeaders"));
+    assertEquals(0, odataJPAContext.getPageSize("SalesOrderItems"));
+
+    odataJPAContext.setPageSize("SalesOrderHeaders", 0);
+    assertEquals(0, odataJPAContext.getPageSize("SalesOrderHeaders"));
+  }
+
+  @Test
+  public void testBatchSize() {
+    assertEquals(0, odataJPAContext.getBatchSize());
+
+    odataJPAContext.setBatchSize(500);
+    assertEquals(500, odataJPAContext.getBatchSize());
+
+    odataJPAContext.setBatchSize(-1);
+    assertEquals(0, odataJPAContext.getBatchSize());
+  }
+
+  @Test
+  public void testDirectWrite() {
+    assertFalse(odataJPAContext.isDirectWrite("SalesOrderHeaders"));
+
+    odataJPAContext.setDirectWrite("SalesOrderHeaders", true);
+    assertTrue(odataJPAContext.isDirectWrite("SalesOrderHeaders"));
+    assertFalse(odataJPAContext.isDirectWrite("SalesOrderItems"));
+
+    odataJPAContext.setDirectWrite("SalesOrderHeaders", false);
+    assertFalse(odataJPAContext.isDirectWrite("SalesOrderHeaders"));
+  }
+
+  @Test
+  public void testInlineCountMaxAge() {
+    assertEquals(0, odataJPAContext.getInlineCountMaxAge("SalesOrderHeaders"));
+
+    odataJPAContext.setInlineCountMaxAge("SalesOrderHeaders", 60000);
+    assertEquals(60000, odataJPAContext.getInlineCountMaxAge("SalesOrderHeaders"));
+    assertEquals(0, odataJPAContext.getInlineCountMaxAge("SalesOrderItems"));
+
+    odataJPAContext.setInlineCountMaxAge("SalesOrderHeaders", 0);
+    assertEquals(0, odataJPAContext.getInlineCountMaxAge("SalesOrderHeaders"));
+  }
+
 }
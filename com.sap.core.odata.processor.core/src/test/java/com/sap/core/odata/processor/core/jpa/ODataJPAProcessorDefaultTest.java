@@ -15,6 +15,7 @@ import java.util.Set;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
 import javax.persistence.Query;
 import javax.persistence.metamodel.EntityType;
 import javax.persistence.metamodel.Metamodel;
@@ -208,6 +209,7 @@ public class ODataJPAProcessorDefaultTest extends JPAEdmTestModelView {
     EasyMock.expect(objUriInfo.getInlineCount()).andStubReturn(getInlineCount());
     EasyMock.expect(objUriInfo.getFilter()).andStubReturn(getFilter());
     EasyMock.expect(objUriInfo.getKeyPredicates()).andStubReturn(getKeyPredicates());
+    EasyMock.expect(objUriInfo.getNavigationSegments()).andStubReturn(new ArrayList<NavigationSegment>());
     EasyMock.replay(objUriInfo);
     return objUriInfo;
   }
@@ -303,6 +305,11 @@ public class ODataJPAProcessorDefaultTest extends JPAEdmTestModelView {
     EasyMock.expect(odataJPAContext.getPersistenceUnitName()).andStubReturn("salesorderprocessing");
     EasyMock.expect(odataJPAContext.getEntityManagerFactory()).andStubReturn(mockEntityManagerFactory());
     EasyMock.expect(odataJPAContext.getODataContext()).andStubReturn(getLocalODataContext());
+    EasyMock.expect(odataJPAContext.getPageSize((String) EasyMock.anyObject())).andStubReturn(0);
+    EasyMock.expect(odataJPAContext.getFetchSize()).andStubReturn(0);
+    EasyMock.expect(odataJPAContext.isDirectWrite((String) EasyMock.anyObject())).andStubReturn(false);
+    EasyMock.expect(odataJPAContext.getJPAEdmMappingModel()).andStubReturn(null);
+    EasyMock.expect(odataJPAContext.getEntityManager()).andStubReturn(null);
 
     EasyMock.replay(odataJPAContext);
     return odataJPAContext;
@@ -332,12 +339,15 @@ public class ODataJPAProcessorDefaultTest extends JPAEdmTestModelView {
     Address obj = new Address();
     em.remove(obj);// testing void method
     em.flush();
+    em.close();
+    EasyMock.expectLastCall().anyTimes();
     EasyMock.replay(em);
     return em;
   }
 
   private EntityTransaction getLocalTransaction() {
     EntityTransaction entityTransaction = EasyMock.createMock(EntityTransaction.class);
+    EasyMock.expect(entityTransaction.isActive()).andStubReturn(false);
     entityTransaction.begin(); // testing void method
     entityTransaction.commit();// testing void method
     entityTransaction.rollback();// testing void method
@@ -348,6 +358,8 @@ public class ODataJPAProcessorDefaultTest extends JPAEdmTestModelView {
   private Query getQuery() {
     Query query = EasyMock.createMock(Query.class);
     EasyMock.expect(query.getResultList()).andStubReturn(getResultList());
+    EasyMock.expect(query.setFlushMode(FlushModeType.COMMIT)).andStubReturn(query);
+    EasyMock.expect(query.setHint((String) EasyMock.anyObject(), EasyMock.anyObject())).andStubReturn(query);
     EasyMock.replay(query);
     return query;
   }
@@ -355,6 +367,8 @@ public class ODataJPAProcessorDefaultTest extends JPAEdmTestModelView {
   private Query getQueryForSelectCount() {
     Query query = EasyMock.createMock(Query.class);
     EasyMock.expect(query.getResultList()).andStubReturn(getResultListForSelectCount());
+    EasyMock.expect(query.setFlushMode(FlushModeType.COMMIT)).andStubReturn(query);
+    EasyMock.expect(query.setHint((String) EasyMock.anyObject(), EasyMock.anyObject())).andStubReturn(query);
     EasyMock.replay(query);
     return query;
   }
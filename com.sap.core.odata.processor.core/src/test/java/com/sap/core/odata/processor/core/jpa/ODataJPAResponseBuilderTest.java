@@ -275,6 +275,7 @@ public class ODataJPAResponseBuilderTest extends JPAEdmTestModelView {
         .createMock(ODataJPAContext.class);
     EasyMock.expect(objODataJPAContext.getODataContext()).andStubReturn(
         getLocalODataContext());
+    EasyMock.expect(objODataJPAContext.getPageSize((String) EasyMock.anyObject())).andStubReturn(0);
     EasyMock.replay(objODataJPAContext);
     return objODataJPAContext;
   }
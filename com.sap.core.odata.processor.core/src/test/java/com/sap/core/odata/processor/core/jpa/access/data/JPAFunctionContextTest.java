@@ -4,13 +4,18 @@ import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
+import javax.persistence.EntityManagerFactory;
+
 import junit.framework.Assert;
 
 import org.easymock.EasyMock;
 import org.junit.Test;
 
+import com.sap.core.odata.api.annotation.edm.FunctionImport;
+import com.sap.core.odata.api.annotation.edm.FunctionImport.ReturnType;
 import com.sap.core.odata.api.edm.EdmException;
 import com.sap.core.odata.api.edm.EdmFunctionImport;
 import com.sap.core.odata.api.edm.EdmLiteral;
@@ -22,6 +27,7 @@ import com.sap.core.odata.processor.api.jpa.access.JPAMethodContext;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPAModelException;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
 import com.sap.core.odata.processor.api.jpa.jpql.JPQLContextType;
+import com.sap.core.odata.processor.core.jpa.access.data.JPAFunctionContext.JPAFunctionContextBuilder;
 import com.sap.core.odata.processor.core.jpa.common.ODataJPATestConstants;
 import com.sap.core.odata.processor.core.jpa.model.JPAEdmMappingImpl;
 
@@ -58,11 +64,59 @@ public class JPAFunctionContextTest {
 
   }
 
+  @Test
+  public void testFunctionBindingReused() {
+    EdmFunctionImport edmFunctionImport = getEdmFunctionImport();
+    try {
+      JPAMethodContext context1 = JPAMethodContext.createBuilder(JPQLContextType.FUNCTION,
+          getView(edmFunctionImport)).build();
+      JPAMethodContext context2 = JPAMethodContext.createBuilder(JPQLContextType.FUNCTION,
+          getView(edmFunctionImport)).build();
+
+      Assert.assertSame(context1.getJPAFunctionList().get(0).getFunction(),
+          context2.getJPAFunctionList().get(0).getFunction());
+      Assert.assertNotSame(context1.getEnclosingObject(), context2.getEnclosingObject());
+      Assert.assertTrue(context2.getEnclosingObject() instanceof FunctionImportTestClass);
+    } catch (ODataJPAModelException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+  }
+
+  @Test
+  public void testCachedResultWithoutEnclosingObject() throws Exception {
+    EdmFunctionImport edmFunctionImport = getEdmFunctionImport("cachedMethod");
+    JPAFunctionContext context = (JPAFunctionContext) JPAMethodContext.createBuilder(JPQLContextType.FUNCTION,
+        getView(edmFunctionImport)).build();
+    Assert.assertNull(context.getCachedResult());
+    Assert.assertTrue(context.getEnclosingObject() instanceof FunctionImportTestClass);
+
+    List<Object> result = new ArrayList<Object>();
+    result.add("cached");
+    EntityManagerFactory emf = EasyMock.createMock(EntityManagerFactory.class);
+    JPAFunctionResultCache.put(emf, FunctionImportTestClass.class.getMethod("cachedMethod", String.class), null, result);
+    int instances = FunctionImportTestClass.instances;
+    JPAFunctionContextBuilder builder = (JPAFunctionContextBuilder) JPAMethodContext.createBuilder(
+        JPQLContextType.FUNCTION, getView(edmFunctionImport));
+    builder.setEntityManagerFactory(emf);
+    context = (JPAFunctionContext) builder.build();
+    Assert.assertEquals(result, context.getCachedResult());
+    Assert.assertNull(context.getEnclosingObject());
+    Assert.assertEquals(instances, FunctionImportTestClass.instances);
+  }
+
   private GetFunctionImportUriInfo getView() {
+    return getView(getEdmFunctionImport());
+  }
+
+  private GetFunctionImportUriInfo getView(final EdmFunctionImport edmFunctionImport) {
     GetFunctionImportUriInfo functiontView = EasyMock
         .createMock(GetFunctionImportUriInfo.class);
     EasyMock.expect(functiontView.getFunctionImport()).andStubReturn(
-        getEdmFunctionImport());
+        edmFunctionImport);
     EasyMock.expect(functiontView.getFunctionImportParameters())
         .andStubReturn(getFunctionImportParameters());
 
@@ -75,11 +129,15 @@ public class JPAFunctionContextTest {
   }
 
   private EdmFunctionImport getEdmFunctionImport() {
+    return getEdmFunctionImport("testMethod");
+  }
+
+  private EdmFunctionImport getEdmFunctionImport(final String methodName) {
     EdmFunctionImport edmFunctionImport = EasyMock
         .createMock(EdmFunctionImport.class);
     try {
       EasyMock.expect(edmFunctionImport.getMapping()).andStubReturn(
-          getMapping());
+          getMapping(methodName));
       EasyMock.expect(edmFunctionImport.getParameterNames())
           .andStubReturn(getParameterNames());
       EasyMock.expect(edmFunctionImport.getParameter("Gentleman"))
@@ -113,10 +171,10 @@ public class JPAFunctionContextTest {
     return mapping;
   }
 
-  private JPAEdmMappingImpl getMapping() {
+  private JPAEdmMappingImpl getMapping(final String methodName) {
     JPAEdmMappingImpl mapping = new JPAEdmMappingImpl();
     mapping.setJPAType(FunctionImportTestClass.class);
-    ((Mapping) mapping).setInternalName("testMethod");
+    ((Mapping) mapping).setInternalName(methodName);
     return mapping;
   }
 
@@ -128,12 +186,19 @@ public class JPAFunctionContextTest {
 
   public static class FunctionImportTestClass {
 
-    public FunctionImportTestClass() {
+    private static int instances;
 
+    public FunctionImportTestClass() {
+      instances++;
     }
 
     public String testMethod(final String message) {
       return "Hello " + message + "!!";
     }
+
+    @FunctionImport(returnType = ReturnType.SCALAR, sideEffectFree = true, resultMaxAge = 60000)
+    public String cachedMethod(final String message) {
+      return message;
+    }
   }
 }
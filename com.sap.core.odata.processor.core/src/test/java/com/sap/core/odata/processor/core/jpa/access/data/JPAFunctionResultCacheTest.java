@@ -0,0 +1,86 @@
+package com.sap.core.odata.processor.core.jpa.access.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import com.sap.core.odata.api.annotation.edm.FunctionImport;
+import com.sap.core.odata.api.annotation.edm.FunctionImport.ReturnType;
+
+public class JPAFunctionResultCacheTest {
+
+  @Test
+  public void testMaxAge() throws NoSuchMethodException {
+    assertEquals(60000L, JPAFunctionResultCache.getMaxAge(getMethod("cachedFunction")));
+    assertEquals(0L, JPAFunctionResultCache.getMaxAge(getMethod("sideEffectFreeFunction")));
+    assertEquals(0L, JPAFunctionResultCache.getMaxAge(getMethod("function")));
+  }
+
+  @Test
+  public void testCachedResult() throws NoSuchMethodException {
+    Method method = getMethod("cachedFunction");
+    List<Object> result = new ArrayList<Object>();
+    result.add("result");
+    EntityManagerFactory emf = EasyMock.createMock(EntityManagerFactory.class);
+    JPAFunctionResultCache.put(emf, method, new Object[] { "a" }, result);
+
+    List<Object> cachedResult = JPAFunctionResultCache.get(emf, method, new Object[] { "a" }, 60000);
+    assertEquals(result, cachedResult);
+    assertNotSame(result, cachedResult);
+    assertNull(JPAFunctionResultCache.get(emf, method, new Object[] { "b" }, 60000));
+    assertNull(JPAFunctionResultCache.get(emf, getMethod("function"), new Object[] { "a" }, 60000));
+  }
+
+  @Test
+  public void testResultOfOtherEntityManagerFactory() throws NoSuchMethodException {
+    Method method = getMethod("cachedFunction");
+    List<Object> result = new ArrayList<Object>();
+    result.add("result");
+    JPAFunctionResultCache.put(EasyMock.createMock(EntityManagerFactory.class), method, new Object[] { "a" }, result);
+
+    assertNull(JPAFunctionResultCache.get(EasyMock.createMock(EntityManagerFactory.class),
+        method, new Object[] { "a" }, 60000));
+  }
+
+  @Test
+  public void testExpiredResult() throws NoSuchMethodException, InterruptedException {
+    Method method = getMethod("cachedFunction");
+    List<Object> result = new ArrayList<Object>();
+    result.add("result");
+    EntityManagerFactory emf = EasyMock.createMock(EntityManagerFactory.class);
+    JPAFunctionResultCache.put(emf, method, null, result);
+    Thread.sleep(10);
+    assertNull(JPAFunctionResultCache.get(emf, method, null, 1));
+  }
+
+  private Method getMethod(final String name) throws NoSuchMethodException {
+    return FunctionImportTestClass.class.getMethod(name, String.class);
+  }
+
+  public static class FunctionImportTestClass {
+
+    @FunctionImport(returnType = ReturnType.SCALAR, sideEffectFree = true, resultMaxAge = 60000)
+    public String cachedFunction(final String value) {
+      return value;
+    }
+
+    @FunctionImport(returnType = ReturnType.SCALAR, sideEffectFree = true)
+    public String sideEffectFreeFunction(final String value) {
+      return value;
+    }
+
+    @FunctionImport(returnType = ReturnType.SCALAR, resultMaxAge = 60000)
+    public String function(final String value) {
+      return value;
+    }
+  }
+}
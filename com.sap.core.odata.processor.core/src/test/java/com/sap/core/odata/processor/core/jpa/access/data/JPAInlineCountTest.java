@@ -0,0 +1,75 @@
+package com.sap.core.odata.processor.core.jpa.access.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.FlushModeType;
+import javax.persistence.Query;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
+
+public class JPAInlineCountTest {
+
+  private static final String COUNT_QUERY = "SELECT COUNT ( E1 ) FROM SalesOrderHeaders E1";
+
+  @Test
+  public void testCountOnRequestThread() throws ODataJPARuntimeException {
+    EntityManagerFactory emf = EasyMock.createMock(EntityManagerFactory.class);
+    EntityManager em = EasyMock.createMock(EntityManager.class);
+    EasyMock.expect(em.createQuery(COUNT_QUERY)).andReturn(mockQuery(42L));
+    EasyMock.replay(emf, em);
+
+    assertEquals(42L, new JPAInlineCount(emf, em, COUNT_QUERY, null, 0).get());
+    EasyMock.verify(emf, em);
+  }
+
+  @Test
+  public void testCountConcurrently() throws ODataJPARuntimeException {
+    EntityManagerFactory emf = EasyMock.createMock(EntityManagerFactory.class);
+    EntityManager em = EasyMock.createMock(EntityManager.class);
+    EasyMock.expect(emf.createEntityManager()).andReturn(em);
+    EasyMock.expect(em.createQuery(COUNT_QUERY)).andReturn(mockQuery(7L));
+    em.close();
+    EasyMock.expectLastCall();
+    EasyMock.replay(emf, em);
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      JPAInlineCount inlineCount = new JPAInlineCount(emf, null, COUNT_QUERY, null, 0);
+      inlineCount.start(executorService);
+      assertEquals(7L, inlineCount.get());
+    } finally {
+      executorService.shutdown();
+    }
+    EasyMock.verify(emf, em);
+  }
+
+  @Test
+  public void testReuseCount() throws ODataJPARuntimeException {
+    EntityManagerFactory emf = EasyMock.createMock(EntityManagerFactory.class);
+    EntityManager em = EasyMock.createMock(EntityManager.class);
+    EasyMock.expect(em.createQuery(COUNT_QUERY)).andReturn(mockQuery(3L));
+    EasyMock.replay(emf, em);
+
+    assertEquals(3L, new JPAInlineCount(emf, em, COUNT_QUERY, null, 60000).get());
+    // Taken from the first count without a query
+    assertEquals(3L, new JPAInlineCount(emf, em, COUNT_QUERY, null, 60000).get());
+    EasyMock.verify(emf, em);
+  }
+
+  private Query mockQuery(final long count) {
+    Query query = EasyMock.createMock(Query.class);
+    EasyMock.expect(query.setFlushMode(FlushModeType.COMMIT)).andStubReturn(query);
+    EasyMock.expect(query.setHint((String) EasyMock.anyObject(), EasyMock.anyObject())).andStubReturn(query);
+    EasyMock.expect(query.getSingleResult()).andReturn(count);
+    EasyMock.replay(query);
+    return query;
+  }
+}
@@ -5,12 +5,19 @@ import static org.junit.Assert.fail;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
+import javax.persistence.PersistenceException;
 import javax.persistence.Query;
+import javax.persistence.metamodel.EntityType;
 import javax.persistence.metamodel.Metamodel;
 
 import junit.framework.Assert;
@@ -28,13 +35,18 @@ import com.sap.core.odata.api.edm.EdmException;
 import com.sap.core.odata.api.edm.EdmFacets;
 import com.sap.core.odata.api.edm.EdmMapping;
 import com.sap.core.odata.api.edm.EdmProperty;
+import com.sap.core.odata.api.edm.EdmSimpleTypeKind;
 import com.sap.core.odata.api.edm.EdmType;
 import com.sap.core.odata.api.edm.EdmTypeKind;
 import com.sap.core.odata.api.edm.EdmTyped;
+import com.sap.core.odata.api.ep.entry.ODataEntry;
 import com.sap.core.odata.api.exception.ODataException;
 import com.sap.core.odata.api.processor.ODataContext;
 import com.sap.core.odata.api.uri.KeyPredicate;
+import com.sap.core.odata.api.uri.NavigationPropertySegment;
+import com.sap.core.odata.api.uri.NavigationSegment;
 import com.sap.core.odata.api.uri.PathInfo;
+import com.sap.core.odata.api.uri.SelectItem;
 import com.sap.core.odata.api.uri.UriInfo;
 import com.sap.core.odata.api.uri.expression.FilterExpression;
 import com.sap.core.odata.api.uri.expression.OrderByExpression;
@@ -46,6 +58,7 @@ import com.sap.core.odata.processor.api.jpa.ODataJPAContext;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPAModelException;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
 import com.sap.core.odata.processor.core.jpa.common.ODataJPATestConstants;
+import com.sap.core.odata.processor.core.jpa.cud.SalesOrderHeader;
 
 public class JPAProcessorImplTest {
 
@@ -103,6 +116,117 @@ public class JPAProcessorImplTest {
     }
   }
 
+  @Test
+  public void testStreamedReadWithOwnEntityManager() throws Exception {
+    // The first chunk is read in key order, further chunks continue after the key of the last entity
+    EntityManager em = EasyMock.createMock(EntityManager.class);
+    EasyMock.expect(em.createQuery("SELECT E1 FROM SalesOrderHeaders E1 ORDER BY E1.soId ")).andReturn(getQuery());
+    EasyMock.expect(em.createQuery("SELECT E2 FROM SalesOrderHeaders E2 WHERE (E2.soId > :k0) ORDER BY E2.soId "))
+        .andReturn(getQuery());
+    EasyMock.replay(em);
+
+    JPAProcessorImpl processor = new JPAProcessorImpl(getLocalmockODataJPAContext(2, 0, getBulkEntityManagerFactory(em), null));
+    List<Object> result = processor.process(getEntitySetUriInfo());
+    Assert.assertTrue(result instanceof JPAStreamedResultList);
+    List<Object> entities = new ArrayList<Object>();
+    for (Object entity : result) {
+      entities.add(entity);
+    }
+    Assert.assertEquals(getResultList(), entities);
+    EasyMock.verify(em);
+  }
+
+  @Test
+  public void testNoStreamedReadWithApplicationEntityManager() throws Exception {
+    // The mocked entity manager does not expect to be cleared.
+    EntityManager applicationEntityManager = getLocalEntityManager();
+    JPAProcessorImpl processor = new JPAProcessorImpl(getLocalmockODataJPAContext(2, applicationEntityManager));
+    List<Object> result = processor.process(getEntitySetUriInfo());
+    Assert.assertFalse(result instanceof JPAStreamedResultList);
+    Assert.assertEquals(getResultList(), result);
+    processor.close();
+  }
+
+  @Test
+  public void testProjectedReadOfOneProperty() throws Exception {
+    // A query projected onto a single attribute returns its values, which are handed over as one-column rows
+    List<Object> values = new ArrayList<Object>();
+    values.add("12");
+    values.add("13");
+    EntityManager em = EasyMock.createMock(EntityManager.class);
+    EasyMock.expect(em.createQuery("SELECT E1.soId FROM SalesOrderHeaders E1")).andReturn(getQuery(values));
+    EasyMock.replay(em);
+
+    JPAProcessorImpl processor = new JPAProcessorImpl(getLocalmockODataJPAContext(0, em));
+    List<Object> result = processor.process(getProjectedEntitySetUriInfo());
+    Assert.assertEquals(2, result.size());
+    Assert.assertTrue(Arrays.equals(new Object[] { "12" }, (Object[]) result.get(0)));
+    Assert.assertTrue(Arrays.equals(new Object[] { "13" }, (Object[]) result.get(1)));
+    EasyMock.verify(em);
+  }
+
+  @Test
+  public void testBulkCreateWithOwnEntityManager() throws Exception {
+    // Five entities in batches of two: flushed and cleared twice, written completely on commit
+    EntityTransaction transaction = EasyMock.createMock(EntityTransaction.class);
+    EasyMock.expect(transaction.isActive()).andStubReturn(false);
+    transaction.begin();
+    transaction.commit();
+    EasyMock.replay(transaction);
+    EntityManager em = getBulkEntityManager(transaction, 5);
+    em.setProperty((String) EasyMock.anyObject(), EasyMock.anyObject());
+    EasyMock.expectLastCall().times(3);
+    em.flush();
+    EasyMock.expectLastCall().times(2);
+    em.clear();
+    EasyMock.expectLastCall().times(2);
+    EasyMock.replay(em);
+
+    JPAProcessorImpl processor = new JPAProcessorImpl(getLocalmockODataJPAContext(0, 2, getBulkEntityManagerFactory(em), null));
+    List<Object> createdObjects = processor.process(getBulkEdmEntitySet(), getBulkEntries(5));
+    Assert.assertEquals(5, createdObjects.size());
+    Assert.assertTrue(createdObjects.get(0) instanceof SalesOrderHeader);
+    EasyMock.verify(em, transaction);
+  }
+
+  @Test
+  public void testBulkCreateWithApplicationEntityManager() throws Exception {
+    // The persistence context of the application is flushed but neither cleared nor changed in its properties
+    EntityTransaction transaction = EasyMock.createMock(EntityTransaction.class);
+    EasyMock.expect(transaction.isActive()).andStubReturn(true);
+    EasyMock.replay(transaction);
+    EntityManager em = getBulkEntityManager(transaction, 5);
+    em.flush();
+    EasyMock.expectLastCall().times(3);
+    EasyMock.replay(em);
+
+    JPAProcessorImpl processor = new JPAProcessorImpl(getLocalmockODataJPAContext(0, 2, mockEntityManagerFactory(), em));
+    Assert.assertEquals(5, processor.process(getBulkEdmEntitySet(), getBulkEntries(5)).size());
+    EasyMock.verify(em, transaction);
+  }
+
+  @Test
+  public void testBulkCreateRollback() throws Exception {
+    EntityTransaction transaction = EasyMock.createMock(EntityTransaction.class);
+    EasyMock.expect(transaction.isActive()).andReturn(false).andReturn(true);
+    transaction.begin();
+    transaction.rollback();
+    EasyMock.replay(transaction);
+    EntityManager em = getBulkEntityManager(transaction, 1);
+    em.persist(EasyMock.anyObject());
+    EasyMock.expectLastCall().andThrow(new PersistenceException());
+    EasyMock.replay(em);
+
+    JPAProcessorImpl processor = new JPAProcessorImpl(getLocalmockODataJPAContext(0, 0, getBulkEntityManagerFactory(em), null));
+    try {
+      processor.process(getBulkEdmEntitySet(), getBulkEntries(3));
+      fail("Exception expected");
+    } catch (ODataJPARuntimeException e) {
+      Assert.assertTrue(e.getCause() instanceof PersistenceException);
+    }
+    EasyMock.verify(em, transaction);
+  }
+
   @Test
   public void testProcessDeleteUriInfo() {
     try {
@@ -144,6 +268,7 @@ public class JPAProcessorImplTest {
     EasyMock.expect(objUriInfo.getInlineCount()).andStubReturn(getInlineCount());
     EasyMock.expect(objUriInfo.getFilter()).andStubReturn(getFilter());
     EasyMock.expect(objUriInfo.getKeyPredicates()).andStubReturn(getKeyPredicates());
+    EasyMock.expect(objUriInfo.getNavigationSegments()).andStubReturn(new ArrayList<NavigationSegment>());
     EasyMock.replay(objUriInfo);
     return objUriInfo;
   }
@@ -173,7 +298,52 @@ public class JPAProcessorImplTest {
     EasyMock.expect(objUriInfo.getInlineCount()).andStubReturn(getInlineCount());
     EasyMock.expect(objUriInfo.getFilter()).andStubReturn(getFilter());
     //EasyMock.expect(objUriInfo.getFunctionImport()).andStubReturn(getFunctionImport());
+    EasyMock.expect(objUriInfo.getExpand()).andStubReturn(null);
+    EasyMock.expect(objUriInfo.getFunctionImport()).andStubReturn(null);
+    EasyMock.expect(objUriInfo.getSkipToken()).andStubReturn(null);
+    EasyMock.replay(objUriInfo);
+    return objUriInfo;
+  }
+
+  /*
+   * $select of the key property only, which projects the query onto the key
+   * attribute
+   */
+  private GetEntitySetUriInfo getProjectedEntitySetUriInfo() throws EdmException {
+    EdmProperty keyProperty = getLocalKeyProperties().get(0);
+    EdmEntityType edmEntityType = EasyMock.createMock(EdmEntityType.class);
+    EasyMock.expect(edmEntityType.getKeyProperties()).andStubReturn(getLocalKeyProperties());
+    EasyMock.expect(edmEntityType.getPropertyNames()).andStubReturn(new ArrayList<String>());
+    EasyMock.expect(edmEntityType.getKind()).andStubReturn(EdmTypeKind.ENTITY);
+    EasyMock.expect(edmEntityType.getName()).andStubReturn(SALES_ORDER_HEADERS);
+    EasyMock.expect(edmEntityType.getMapping()).andStubReturn(getEdmMappingMockedObj(SALES_ORDER));
+    EasyMock.replay(edmEntityType);
+    EdmEntitySet edmEntitySet = EasyMock.createMock(EdmEntitySet.class);
+    EasyMock.expect(edmEntitySet.getName()).andStubReturn(SALES_ORDER_HEADERS);
+    EasyMock.expect(edmEntitySet.getEntityContainer()).andStubReturn(getLocalEdmEntityContainer());
+    EasyMock.expect(edmEntitySet.getEntityType()).andStubReturn(edmEntityType);
+    EasyMock.replay(edmEntitySet);
+
+    SelectItem selectItem = EasyMock.createMock(SelectItem.class);
+    EasyMock.expect(selectItem.isStar()).andStubReturn(false);
+    EasyMock.expect(selectItem.getProperty()).andStubReturn(keyProperty);
+    EasyMock.expect(selectItem.getNavigationPropertySegments()).andStubReturn(new ArrayList<NavigationPropertySegment>());
+    EasyMock.replay(selectItem);
+    List<SelectItem> select = new ArrayList<SelectItem>();
+    select.add(selectItem);
+
+    UriInfo objUriInfo = EasyMock.createMock(UriInfo.class);
+    EasyMock.expect(objUriInfo.getStartEntitySet()).andStubReturn(edmEntitySet);
+    EasyMock.expect(objUriInfo.getTargetEntitySet()).andStubReturn(edmEntitySet);
+    EasyMock.expect(objUriInfo.getSelect()).andStubReturn(select);
+    EasyMock.expect(objUriInfo.getOrderBy()).andStubReturn(getOrderByExpression());
+    EasyMock.expect(objUriInfo.getTop()).andStubReturn(getTop());
+    EasyMock.expect(objUriInfo.getSkip()).andStubReturn(getSkip());
+    EasyMock.expect(objUriInfo.getInlineCount()).andStubReturn(getInlineCount());
+    EasyMock.expect(objUriInfo.getFilter()).andStubReturn(getFilter());
+    EasyMock.expect(objUriInfo.getExpand()).andStubReturn(null);
     EasyMock.expect(objUriInfo.getFunctionImport()).andStubReturn(null);
+    EasyMock.expect(objUriInfo.getSkipToken()).andStubReturn(null);
     EasyMock.replay(objUriInfo);
     return objUriInfo;
   }
@@ -220,7 +390,7 @@ public class JPAProcessorImplTest {
   private EdmEntityType getLocalEdmEntityType() {
     EdmEntityType edmEntityType = EasyMock.createMock(EdmEntityType.class);
     try {
-      EasyMock.expect(edmEntityType.getKeyProperties()).andStubReturn(new ArrayList<EdmProperty>());
+      EasyMock.expect(edmEntityType.getKeyProperties()).andStubReturn(getLocalKeyProperties());
       EasyMock.expect(edmEntityType.getPropertyNames()).andStubReturn(getLocalPropertyNames());
       EasyMock.expect(edmEntityType.getProperty(SO_ID)).andStubReturn(getEdmTypedMockedObj(SALES_ORDER));
       EasyMock.expect(edmEntityType.getKind()).andStubReturn(EdmTypeKind.SIMPLE);
@@ -238,6 +408,22 @@ public class JPAProcessorImplTest {
     return edmEntityType;
   }
 
+  private List<EdmProperty> getLocalKeyProperties() {
+    EdmProperty keyProperty = EasyMock.createMock(EdmProperty.class);
+    try {
+      EasyMock.expect(keyProperty.getName()).andStubReturn(SO_ID);
+      EasyMock.expect(keyProperty.getMapping()).andStubReturn(getEdmMappingMockedObj("soId"));
+      EasyMock.expect(keyProperty.getType()).andStubReturn(EdmSimpleTypeKind.Int32.getEdmSimpleTypeInstance());
+      EasyMock.replay(keyProperty);
+    } catch (EdmException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+    List<EdmProperty> keyProperties = new ArrayList<EdmProperty>();
+    keyProperties.add(keyProperty);
+    return keyProperties;
+  }
+
   private InlineCount getInlineCount() {
     return InlineCount.NONE;
   }
@@ -259,10 +445,25 @@ public class JPAProcessorImplTest {
   }
 
   private ODataJPAContext getLocalmockODataJPAContext() {
+    return getLocalmockODataJPAContext(0, null);
+  }
+
+  private ODataJPAContext getLocalmockODataJPAContext(final int fetchSize, final EntityManager applicationEntityManager) {
+    return getLocalmockODataJPAContext(fetchSize, 0, mockEntityManagerFactory(), applicationEntityManager);
+  }
+
+  private ODataJPAContext getLocalmockODataJPAContext(final int fetchSize, final int batchSize, final EntityManagerFactory emf,
+      final EntityManager applicationEntityManager) {
     ODataJPAContext odataJPAContext = EasyMock.createMock(ODataJPAContext.class);
     EasyMock.expect(odataJPAContext.getPersistenceUnitName()).andStubReturn("salesorderprocessing");
-    EasyMock.expect(odataJPAContext.getEntityManagerFactory()).andStubReturn(mockEntityManagerFactory());
+    EasyMock.expect(odataJPAContext.getEntityManagerFactory()).andStubReturn(emf);
     EasyMock.expect(odataJPAContext.getODataContext()).andStubReturn(getLocalODataContext());
+    EasyMock.expect(odataJPAContext.getPageSize((String) EasyMock.anyObject())).andStubReturn(0);
+    EasyMock.expect(odataJPAContext.getFetchSize()).andStubReturn(fetchSize);
+    EasyMock.expect(odataJPAContext.getBatchSize()).andStubReturn(batchSize);
+    EasyMock.expect(odataJPAContext.isDirectWrite((String) EasyMock.anyObject())).andStubReturn(false);
+    EasyMock.expect(odataJPAContext.getJPAEdmMappingModel()).andStubReturn(null);
+    EasyMock.expect(odataJPAContext.getEntityManager()).andStubReturn(applicationEntityManager);
 
     EasyMock.replay(odataJPAContext);
     return odataJPAContext;
@@ -290,8 +491,67 @@ public class JPAProcessorImplTest {
     return em;
   }
 
+  /*
+   * Entity manager for bulk creates of the given number of entities; the
+   * caller adds the expected flushes and clears and replays it.
+   */
+  private EntityManager getBulkEntityManager(final EntityTransaction transaction, final int persistCount) {
+    EntityManager em = EasyMock.createMock(EntityManager.class);
+    EasyMock.expect(em.getEntityManagerFactory()).andStubReturn(getBulkEntityManagerFactory(null));
+    EasyMock.expect(em.getTransaction()).andStubReturn(transaction);
+    em.persist(EasyMock.anyObject());
+    EasyMock.expectLastCall().times(persistCount);
+    return em;
+  }
+
+  private EntityManagerFactory getBulkEntityManagerFactory(final EntityManager em) {
+    EntityManagerFactory emf = EasyMock.createMock(EntityManagerFactory.class);
+    EasyMock.expect(emf.getMetamodel()).andStubReturn(getBulkMetamodel());
+    EasyMock.expect(emf.createEntityManager()).andStubReturn(em);
+    EasyMock.replay(emf);
+    return emf;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Metamodel getBulkMetamodel() {
+    EntityType<SalesOrderHeader> entityType = EasyMock.createMock(EntityType.class);
+    EasyMock.expect(entityType.getJavaType()).andStubReturn(SalesOrderHeader.class);
+    EasyMock.expect(entityType.getName()).andStubReturn("SalesOrderHeader");
+    EasyMock.replay(entityType);
+    Set<EntityType<?>> entityTypes = new HashSet<EntityType<?>>();
+    entityTypes.add(entityType);
+    Metamodel metaModel = EasyMock.createMock(Metamodel.class);
+    EasyMock.expect(metaModel.getEntities()).andStubReturn(entityTypes);
+    EasyMock.replay(metaModel);
+    return metaModel;
+  }
+
+  private EdmEntitySet getBulkEdmEntitySet() throws EdmException {
+    EdmEntityType entityType = EasyMock.createMock(EdmEntityType.class);
+    EasyMock.expect(entityType.getMapping()).andStubReturn(null);
+    EasyMock.expect(entityType.getName()).andStubReturn("SalesOrderHeader");
+    EasyMock.expect(entityType.getNavigationPropertyNames()).andStubReturn(new ArrayList<String>());
+    EasyMock.replay(entityType);
+    EdmEntitySet entitySet = EasyMock.createMock(EdmEntitySet.class);
+    EasyMock.expect(entitySet.getEntityType()).andStubReturn(entityType);
+    EasyMock.replay(entitySet);
+    return entitySet;
+  }
+
+  private List<ODataEntry> getBulkEntries(final int count) {
+    List<ODataEntry> entries = new ArrayList<ODataEntry>();
+    for (int i = 0; i < count; i++) {
+      ODataEntry entry = EasyMock.createMock(ODataEntry.class);
+      EasyMock.expect(entry.getProperties()).andStubReturn(new HashMap<String, Object>());
+      EasyMock.replay(entry);
+      entries.add(entry);
+    }
+    return entries;
+  }
+
   private EntityTransaction getLocalTransaction() {
     EntityTransaction entityTransaction = EasyMock.createMock(EntityTransaction.class);
+    EasyMock.expect(entityTransaction.isActive()).andStubReturn(false);
     entityTransaction.begin(); // testing void method
     entityTransaction.begin(); // testing void method
     entityTransaction.commit();// testing void method
@@ -301,8 +561,17 @@ public class JPAProcessorImplTest {
   }
 
   private Query getQuery() {
+    return getQuery(getResultList());
+  }
+
+  private Query getQuery(final List<?> resultList) {
     Query query = EasyMock.createMock(Query.class);
-    EasyMock.expect(query.getResultList()).andStubReturn(getResultList());
+    EasyMock.expect(query.getResultList()).andStubReturn(resultList);
+    EasyMock.expect(query.setFlushMode(FlushModeType.COMMIT)).andStubReturn(query);
+    EasyMock.expect(query.setHint((String) EasyMock.anyObject(), EasyMock.anyObject())).andStubReturn(query);
+    EasyMock.expect(query.getFirstResult()).andStubReturn(0);
+    EasyMock.expect(query.getMaxResults()).andStubReturn(Integer.MAX_VALUE);
+    EasyMock.expect(query.setMaxResults(EasyMock.anyInt())).andStubReturn(query);
     EasyMock.replay(query);
     return query;
   }
@@ -310,6 +579,8 @@ public class JPAProcessorImplTest {
   private Query getQueryForSelectCount() {
     Query query = EasyMock.createMock(Query.class);
     EasyMock.expect(query.getResultList()).andStubReturn(getResultListForSelectCount());
+    EasyMock.expect(query.setFlushMode(FlushModeType.COMMIT)).andStubReturn(query);
+    EasyMock.expect(query.setHint((String) EasyMock.anyObject(), EasyMock.anyObject())).andStubReturn(query);
     EasyMock.replay(query);
     return query;
   }
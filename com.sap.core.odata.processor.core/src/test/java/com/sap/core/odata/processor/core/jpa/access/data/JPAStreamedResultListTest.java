@@ -0,0 +1,105 @@
+package com.sap.core.odata.processor.core.jpa.access.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmProperty;
+import com.sap.core.odata.api.edm.EdmSimpleTypeKind;
+import com.sap.core.odata.processor.core.jpa.common.ODataJPATestConstants;
+import com.sap.core.odata.processor.core.jpa.cud.SalesOrderHeader;
+
+public class JPAStreamedResultListTest {
+
+  private static final String KEY_PARAMETER = ODataExpressionParser.getKeysetParameterName(0);
+
+  @Test
+  public void testIterateInChunksByKey() {
+    EntityManager em = EasyMock.createMock(EntityManager.class);
+    em.clear();
+    EasyMock.expectLastCall().times(2);
+    // The first query skips the first five entities, the continuation query none
+    Query query = EasyMock.createMock(Query.class);
+    EasyMock.expect(query.getMaxResults()).andReturn(Integer.MAX_VALUE);
+    expectChunk(query, 2, Arrays.asList(new SalesOrderHeader(6, "a"), new SalesOrderHeader(7, "b")));
+    Query continuationQuery = EasyMock.createMock(Query.class);
+    EasyMock.expect(continuationQuery.setParameter(KEY_PARAMETER, 7)).andReturn(continuationQuery);
+    expectChunk(continuationQuery, 2, Arrays.asList(new SalesOrderHeader(8, "c"), new SalesOrderHeader(9, "d")));
+    EasyMock.expect(continuationQuery.setParameter(KEY_PARAMETER, 9)).andReturn(continuationQuery);
+    expectChunk(continuationQuery, 2, new ArrayList<SalesOrderHeader>());
+    EasyMock.replay(em, query, continuationQuery);
+
+    List<String> results = new ArrayList<String>();
+    for (SalesOrderHeader result : new JPAStreamedResultList<SalesOrderHeader>(em, query, continuationQuery,
+        Collections.singletonList(mockKeyProperty()), null, 2)) {
+      results.add(result.getDescription());
+    }
+    assertEquals(Arrays.asList("a", "b", "c", "d"), results);
+    EasyMock.verify(em, query, continuationQuery);
+  }
+
+  @Test
+  public void testMaxResultsAndWrappedRows() {
+    EntityManager em = EasyMock.createMock(EntityManager.class);
+    em.clear();
+    EasyMock.expectLastCall();
+    Query query = EasyMock.createMock(Query.class);
+    EasyMock.expect(query.getMaxResults()).andReturn(3);
+    expectChunk(query, 2, Arrays.asList(1, 2));
+    Query continuationQuery = EasyMock.createMock(Query.class);
+    EasyMock.expect(continuationQuery.setParameter(KEY_PARAMETER, 2)).andReturn(continuationQuery);
+    expectChunk(continuationQuery, 1, Arrays.asList(3));
+    EasyMock.replay(em, query, continuationQuery);
+
+    List<EdmProperty> keyProperties = Collections.singletonList(mockKeyProperty());
+    Iterator<Object[]> iterator = new JPAStreamedResultList<Object[]>(em, query, continuationQuery,
+        keyProperties, keyProperties, 2).iterator();
+    assertArrayEquals(new Object[] { 1 }, iterator.next());
+    assertArrayEquals(new Object[] { 2 }, iterator.next());
+    assertArrayEquals(new Object[] { 3 }, iterator.next());
+    assertFalse(iterator.hasNext());
+    EasyMock.verify(em, query, continuationQuery);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSizeNotSupported() {
+    Query query = EasyMock.createMock(Query.class);
+    EasyMock.expect(query.getMaxResults()).andReturn(Integer.MAX_VALUE);
+    EasyMock.replay(query);
+    new JPAStreamedResultList<Object>(EasyMock.createMock(EntityManager.class), query, query,
+        Collections.singletonList(mockKeyProperty()), null, 2).size();
+  }
+
+  private void expectChunk(final Query query, final int maxResults, final List<?> chunk) {
+    EasyMock.expect(query.setMaxResults(maxResults)).andReturn(query);
+    EasyMock.expect(query.getResultList()).andReturn(chunk);
+  }
+
+  private EdmProperty mockKeyProperty() {
+    EdmProperty keyProperty = EasyMock.createMock(EdmProperty.class);
+    try {
+      EasyMock.expect(keyProperty.getName()).andStubReturn("Id");
+      EasyMock.expect(keyProperty.getMapping()).andStubReturn(null);
+      EasyMock.expect(keyProperty.getType()).andStubReturn(EdmSimpleTypeKind.Int32.getEdmSimpleTypeInstance());
+    } catch (EdmException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+    EasyMock.replay(keyProperty);
+    return keyProperty;
+  }
+}
@@ -1,10 +1,16 @@
 package com.sap.core.odata.processor.core.jpa.access.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.easymock.EasyMock;
 import org.junit.Test;
@@ -34,6 +40,7 @@ import com.sap.core.odata.api.uri.expression.UnaryExpression;
 import com.sap.core.odata.api.uri.expression.UnaryOperator;
 import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
 import com.sap.core.odata.processor.core.jpa.common.ODataJPATestConstants;
+import com.sap.core.odata.processor.core.jpa.model.JPAEdmMappingImpl;
 
 public class ODataExpressionParserTest {
 
@@ -546,6 +553,30 @@ public class ODataExpressionParserTest {
     assertEquals(EXPECTED_STR_8, str);
   }
 
+  @Test
+  public void testParseWithParameterNames() {
+    BinaryExpression binaryExpression = getBinaryExpressionMockedObj(BinaryOperator.EQ, ExpressionKind.PROPERTY,
+        SALES_ORDER, SAMPLE_DATA_1);
+    Map<Object, String> parameterNames = new IdentityHashMap<Object, String>();
+    parameterNames.put(binaryExpression.getRightOperand(), "p0");
+
+    ODataExpressionParser.setParameterNames(parameterNames);
+    try {
+      assertEquals(TABLE_ALIAS + "." + SALES_ORDER + " = :p0",
+          ODataExpressionParser.parseToJPAWhereExpression(binaryExpression, TABLE_ALIAS));
+    } catch (ODataException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage() + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    } finally {
+      ODataExpressionParser.setParameterNames(null);
+    }
+
+    try {
+      assertEquals(EXPECTED_STR_1, ODataExpressionParser.parseToJPAWhereExpression(binaryExpression, TABLE_ALIAS));
+    } catch (ODataException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage() + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+  }
+
   @Test
   public void testParseToJPASelectExpression() {
 
@@ -564,4 +595,84 @@ public class ODataExpressionParserTest {
     assertEquals(TABLE_ALIAS, ODataExpressionParser.parseToJPASelectExpression(
         TABLE_ALIAS, selectedFields));
   }
+
+  @Test
+  public void testParseSkipTokenToKeysetParameters() {
+    EdmProperty keyProperty1 = EasyMock.createMock(EdmProperty.class);
+    EdmProperty keyProperty2 = EasyMock.createMock(EdmProperty.class);
+    try {
+      EasyMock.expect(keyProperty1.getName()).andStubReturn(SAMPLE_DATA_FIELD1);
+      EasyMock.expect(keyProperty1.getType()).andStubReturn(
+          EdmSimpleTypeKind.Int32.getEdmSimpleTypeInstance());
+      EasyMock.expect(keyProperty1.getFacets()).andStubReturn(null);
+      EasyMock.expect(keyProperty1.getMapping()).andStubReturn(null);
+      EasyMock.expect(keyProperty2.getName()).andStubReturn(SAMPLE_DATA_FIELD2);
+      EasyMock.expect(keyProperty2.getType()).andStubReturn(
+          EdmSimpleTypeKind.String.getEdmSimpleTypeInstance());
+      EasyMock.expect(keyProperty2.getFacets()).andStubReturn(null);
+      EasyMock.expect(keyProperty2.getMapping()).andStubReturn(null);
+    } catch (EdmException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage() + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+    EasyMock.replay(keyProperty1, keyProperty2);
+
+    List<EdmProperty> keyProperties = new ArrayList<EdmProperty>();
+    keyProperties.add(keyProperty1);
+    keyProperties.add(keyProperty2);
+    Map<String, Object> keyValues = new HashMap<String, Object>();
+    keyValues.put(SAMPLE_DATA_FIELD1, 10);
+    keyValues.put(SAMPLE_DATA_FIELD2, "a,b'c");
+
+    try {
+      String skipToken = ODataExpressionParser.buildSkipToken(keyProperties, keyValues);
+      assertEquals("10,a%2Cb'c", skipToken);
+      assertEquals("(" + TABLE_ALIAS + "." + SAMPLE_DATA_FIELD1 + " > :k0 OR ("
+          + TABLE_ALIAS + "." + SAMPLE_DATA_FIELD1 + " = :k0 AND "
+          + TABLE_ALIAS + "." + SAMPLE_DATA_FIELD2 + " > :k1))",
+          ODataExpressionParser.parseKeyPropertiesToJPAKeysetExpression(keyProperties, TABLE_ALIAS));
+      Map<String, Object> parameters = ODataExpressionParser.parseSkipTokenToKeysetParameters(keyProperties, skipToken);
+      assertEquals(2, parameters.size());
+      assertEquals(10, parameters.get(ODataExpressionParser.getKeysetParameterName(0)));
+      assertEquals("a,b'c", parameters.get(ODataExpressionParser.getKeysetParameterName(1)));
+      assertEquals(parameters, ODataExpressionParser.getKeysetParameters(keyProperties, keyValues));
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage() + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    } catch (EdmException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage() + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+
+    try {
+      ODataExpressionParser.parseSkipTokenToKeysetParameters(keyProperties, "x,abc");
+      fail("Invalid skip token accepted");
+    } catch (ODataJPARuntimeException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testParseSkipTokenKeepsDateTimePrecision() {
+    JPAEdmMappingImpl mapping = new JPAEdmMappingImpl();
+    mapping.setInternalName(SAMPLE_DATA_FIELD1);
+    mapping.setJPAType(Date.class);
+    EdmProperty keyProperty = EasyMock.createMock(EdmProperty.class);
+    try {
+      EasyMock.expect(keyProperty.getName()).andStubReturn(SAMPLE_DATA_FIELD1);
+      EasyMock.expect(keyProperty.getType()).andStubReturn(
+          EdmSimpleTypeKind.DateTime.getEdmSimpleTypeInstance());
+      EasyMock.expect(keyProperty.getFacets()).andStubReturn(null);
+      EasyMock.expect(keyProperty.getMapping()).andStubReturn(mapping);
+    } catch (EdmException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage() + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+    EasyMock.replay(keyProperty);
+
+    try {
+      Map<String, Object> parameters = ODataExpressionParser.parseSkipTokenToKeysetParameters(
+          Collections.singletonList(keyProperty), "2013-02-14T10:20:30.456");
+      // The milliseconds are part of the parameter value
+      assertEquals(new Date(1360837230456L), parameters.get(ODataExpressionParser.getKeysetParameterName(0)));
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage() + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+  }
 }
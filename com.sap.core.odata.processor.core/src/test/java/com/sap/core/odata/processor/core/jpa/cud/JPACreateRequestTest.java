@@ -2,6 +2,7 @@ package com.sap.core.odata.processor.core.jpa.cud;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -48,6 +49,23 @@ public class JPACreateRequestTest {
 
   }
 
+  @Test
+  public void testProcessEntries() {
+    JPACreateRequest createRequest = new JPACreateRequest(JPATestUtil.mockMetaModel());
+    EdmEntitySet edmEntitySet = JPATestUtil.mockSourceEdmEntitySet();
+    try {
+      Object jpaEntity1 = createRequest.process(edmEntitySet, createODataEntry());
+      Object jpaEntity2 = createRequest.process(edmEntitySet, createODataEntry());
+      assertTrue(jpaEntity1 instanceof SalesOrderHeader);
+      assertTrue(jpaEntity2 instanceof SalesOrderHeader);
+      assertNotSame(jpaEntity1, jpaEntity2);
+      assertEquals(1, ((SalesOrderHeader) jpaEntity2).getId());
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+  }
+
   @Test
   public void testGetSetterName()
   {
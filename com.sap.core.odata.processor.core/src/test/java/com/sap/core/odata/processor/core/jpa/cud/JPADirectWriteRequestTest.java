@@ -0,0 +1,174 @@
+package com.sap.core.odata.processor.core.jpa.cud;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import com.sap.core.odata.api.edm.EdmConcurrencyMode;
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmEntityType;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmFacets;
+import com.sap.core.odata.api.edm.EdmMapping;
+import com.sap.core.odata.api.edm.EdmProperty;
+import com.sap.core.odata.api.edm.EdmSimpleTypeKind;
+import com.sap.core.odata.api.uri.KeyPredicate;
+import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
+import com.sap.core.odata.processor.core.jpa.common.ODataJPATestConstants;
+
+public class JPADirectWriteRequestTest {
+
+  private static final String DELETE_QUERY = "DELETE FROM SalesOrderHeader E1 WHERE E1.soId = 1";
+  private static final String COUNT_QUERY = "SELECT COUNT(E1) FROM SalesOrderHeader E1 WHERE E1.soId = 1";
+  private static final String ETAG_CONDITION = " AND E1.changeCounter = :e0";
+
+  @Test
+  public void testCreateDeleteQuery() {
+    try {
+      JPADirectWriteRequest request = new JPADirectWriteRequest(mockEdmEntitySet(), getKeyPredicates(), null);
+      assertTrue(request.isSupported());
+      assertFalse(request.hasETagCondition());
+
+      Query query = EasyMock.createMock(Query.class);
+      EasyMock.replay(query);
+      EntityManager em = mockEntityManager(DELETE_QUERY, query);
+      assertSame(query, request.createDeleteQuery(em));
+      EasyMock.verify(em, query);
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+  }
+
+  @Test
+  public void testCreateDeleteQueryWithETag() {
+    try {
+      JPADirectWriteRequest request = new JPADirectWriteRequest(mockEdmEntitySet(), getKeyPredicates(), "W/\"5\"");
+      assertTrue(request.isSupported());
+      assertTrue(request.hasETagCondition());
+
+      Query query = EasyMock.createMock(Query.class);
+      EasyMock.expect(query.setParameter("e0", 5)).andReturn(query);
+      EasyMock.replay(query);
+      EntityManager em = mockEntityManager(DELETE_QUERY + ETAG_CONDITION, query);
+      assertSame(query, request.createDeleteQuery(em));
+      EasyMock.verify(em, query);
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+  }
+
+  @Test
+  public void testCreateQueriesWithInvalidETag() {
+    try {
+      JPADirectWriteRequest request = new JPADirectWriteRequest(mockEdmEntitySet(), getKeyPredicates(), "\"five\"");
+      assertTrue(request.hasETagCondition());
+
+      EntityManager em = EasyMock.createMock(EntityManager.class);
+      EasyMock.replay(em);
+      assertNull(request.createDeleteQuery(em));
+      assertNull(request.createCountQuery(em, true));
+
+      Query query = EasyMock.createMock(Query.class);
+      EasyMock.replay(query);
+      em = mockEntityManager(COUNT_QUERY, query);
+      assertSame(query, request.createCountQuery(em, false));
+      EasyMock.verify(em, query);
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+  }
+
+  @Test
+  public void testAnyETag() {
+    try {
+      JPADirectWriteRequest request = new JPADirectWriteRequest(mockEdmEntitySet(), getKeyPredicates(), "*");
+      assertTrue(request.isSupported());
+      assertFalse(request.hasETagCondition());
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+  }
+
+  private EntityManager mockEntityManager(final String jpqlQuery, final Query query) {
+    EntityManager em = EasyMock.createMock(EntityManager.class);
+    EasyMock.expect(em.createQuery(jpqlQuery)).andReturn(query);
+    EasyMock.replay(em);
+    return em;
+  }
+
+  private List<KeyPredicate> getKeyPredicates() {
+    KeyPredicate keyPredicate = EasyMock.createMock(KeyPredicate.class);
+    EasyMock.expect(keyPredicate.getLiteral()).andStubReturn("1");
+    EasyMock.expect(keyPredicate.getProperty()).andStubReturn(mockEdmProperty("SoId", "soId", null));
+    EasyMock.replay(keyPredicate);
+    List<KeyPredicate> keyPredicates = new ArrayList<KeyPredicate>();
+    keyPredicates.add(keyPredicate);
+    return keyPredicates;
+  }
+
+  private EdmEntitySet mockEdmEntitySet() {
+    EdmEntitySet entitySet = EasyMock.createMock(EdmEntitySet.class);
+    EdmEntityType entityType = EasyMock.createMock(EdmEntityType.class);
+    List<String> propertyNames = new ArrayList<String>();
+    propertyNames.add("SoId");
+    propertyNames.add("ChangeCounter");
+    try {
+      EasyMock.expect(entityType.getName()).andStubReturn("SalesOrderHeader");
+      EasyMock.expect(entityType.getMapping()).andStubReturn(mockEdmMapping("SalesOrderHeader"));
+      EasyMock.expect(entityType.getPropertyNames()).andStubReturn(propertyNames);
+      EasyMock.expect(entityType.getProperty("SoId")).andStubReturn(mockEdmProperty("SoId", "soId", null));
+      EasyMock.expect(entityType.getProperty("ChangeCounter")).andStubReturn(
+          mockEdmProperty("ChangeCounter", "changeCounter", EdmConcurrencyMode.Fixed));
+      EasyMock.replay(entityType);
+      EasyMock.expect(entitySet.getEntityType()).andStubReturn(entityType);
+    } catch (EdmException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+    EasyMock.replay(entitySet);
+    return entitySet;
+  }
+
+  private EdmProperty mockEdmProperty(final String name, final String internalName,
+      final EdmConcurrencyMode concurrencyMode) {
+    EdmProperty property = EasyMock.createMock(EdmProperty.class);
+    EdmFacets facets = EasyMock.createMock(EdmFacets.class);
+    EasyMock.expect(facets.getConcurrencyMode()).andStubReturn(concurrencyMode);
+    EasyMock.expect(facets.isNullable()).andStubReturn(null);
+    EasyMock.expect(facets.getMaxLength()).andStubReturn(null);
+    EasyMock.replay(facets);
+    try {
+      EasyMock.expect(property.getName()).andStubReturn(name);
+      EasyMock.expect(property.getMapping()).andStubReturn(mockEdmMapping(internalName));
+      EasyMock.expect(property.getType()).andStubReturn(EdmSimpleTypeKind.Int32.getEdmSimpleTypeInstance());
+      EasyMock.expect(property.getFacets()).andStubReturn(facets);
+    } catch (EdmException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+    EasyMock.replay(property);
+    return property;
+  }
+
+  private EdmMapping mockEdmMapping(final String internalName) {
+    EdmMapping mapping = EasyMock.createMock(EdmMapping.class);
+    EasyMock.expect(mapping.getInternalName()).andStubReturn(internalName);
+    EasyMock.replay(mapping);
+    return mapping;
+  }
+}
@@ -170,6 +170,7 @@ public class JPQLBuilderFactoryTest {
         orderByExpression);
     EasyMock.expect(getEntitySetView.getSelect()).andStubReturn(null);
     EasyMock.expect(getEntitySetView.getFilter()).andStubReturn(null);
+    EasyMock.expect(getEntitySetView.getExpand()).andStubReturn(null);
     List<NavigationSegment> navigationSegments = new ArrayList<NavigationSegment>();
     EasyMock.expect(getEntitySetView.getNavigationSegments())
         .andStubReturn(navigationSegments);
@@ -96,6 +96,7 @@ public class JPQLJoinContextTest {
     EasyMock.expect(entitySetUriInfo.getSkip()).andStubReturn(null);
     EasyMock.expect(entitySetUriInfo.getSelect()).andStubReturn(null);
     EasyMock.expect(entitySetUriInfo.getFilter()).andStubReturn(null);
+    EasyMock.expect(entitySetUriInfo.getExpand()).andStubReturn(null);
     EasyMock.expect(entitySetUriInfo.getKeyPredicates()).andStubReturn(keyPredicates);
     EasyMock.expect(entitySetUriInfo
         .getTargetEntitySet()).andStubReturn(edmEntitySet);
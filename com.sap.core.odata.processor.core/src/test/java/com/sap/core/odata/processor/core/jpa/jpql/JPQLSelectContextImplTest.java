@@ -19,6 +19,7 @@ import com.sap.core.odata.api.edm.EdmMapping;
 import com.sap.core.odata.api.edm.EdmProperty;
 import com.sap.core.odata.api.edm.EdmType;
 import com.sap.core.odata.api.uri.KeyPredicate;
+import com.sap.core.odata.api.uri.NavigationPropertySegment;
 import com.sap.core.odata.api.uri.SelectItem;
 import com.sap.core.odata.api.uri.expression.ExpressionKind;
 import com.sap.core.odata.api.uri.expression.FilterExpression;
@@ -133,11 +134,15 @@ public class JPQLSelectContextImplTest {
             .createMock(EdmProperty.class);
         EasyMock.expect(edmProperty.getMapping()).andStubReturn(
             edmMapping);
+        EasyMock.expect(edmProperty.getName()).andStubReturn(fields[i]);
         EasyMock.replay(edmMapping, edmProperty);
 
         SelectItem selectItem = EasyMock.createMock(SelectItem.class);
         EasyMock.expect(selectItem.getProperty()).andStubReturn(
             edmProperty);
+        EasyMock.expect(selectItem.isStar()).andStubReturn(false);
+        EasyMock.expect(selectItem.getNavigationPropertySegments()).andStubReturn(
+            new ArrayList<NavigationPropertySegment>());
         EasyMock.replay(selectItem);
 
         selectItemList.add(selectItem);
@@ -146,6 +151,7 @@ public class JPQLSelectContextImplTest {
       EasyMock.expect(entityType.getMapping()).andStubReturn(null);
       EasyMock.expect(entityType.getName()).andStubReturn(entityTypeName);
       EasyMock.expect(entityType.getKeyProperties()).andStubReturn(getLocalKeyProperties());
+      EasyMock.expect(entityType.getPropertyNames()).andStubReturn(new ArrayList<String>());
 
       EasyMock.replay(entityType);
       EasyMock.expect(entitySet.getEntityType())
@@ -188,6 +194,7 @@ public class JPQLSelectContextImplTest {
       }
       EasyMock.expect(resultsView.getKeyPredicates()).andStubReturn(
           keyPredicates);
+      EasyMock.expect(resultsView.getExpand()).andStubReturn(null);
       EasyMock.replay(resultsView);
 
     } catch (EdmException e1) {
@@ -274,6 +281,12 @@ public class JPQLSelectContextImplTest {
     }
   }
 
+  @Test
+  public void testSelectFieldsProjected() {
+    buildSelectContext(false, false, true, true, true);
+    assertEquals("E1.Field1, E1.Field2", selectContext.getSelectExpression());
+  }
+
   @Test
   public void testGetOrderByCollection() {
     buildSelectContext(false, false, true, true, true);
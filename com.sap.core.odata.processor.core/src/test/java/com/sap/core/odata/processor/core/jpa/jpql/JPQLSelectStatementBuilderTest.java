@@ -6,6 +6,7 @@ package com.sap.core.odata.processor.core.jpa.jpql;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -16,6 +17,9 @@ import org.junit.Test;
 import com.sap.core.odata.api.edm.EdmEntitySet;
 import com.sap.core.odata.api.edm.EdmEntityType;
 import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmMultiplicity;
+import com.sap.core.odata.api.edm.EdmNavigationProperty;
+import com.sap.core.odata.api.uri.NavigationPropertySegment;
 import com.sap.core.odata.api.uri.SelectItem;
 import com.sap.core.odata.api.uri.expression.FilterExpression;
 import com.sap.core.odata.api.uri.expression.OrderByExpression;
@@ -39,6 +43,11 @@ public class JPQLSelectStatementBuilderTest {
   }
 
   private JPQLSelectContext createSelectContext(final OrderByExpression orderByExpression, final FilterExpression filterExpression) throws ODataJPARuntimeException, EdmException {
+    return createSelectContext(orderByExpression, filterExpression, null);
+  }
+
+  private JPQLSelectContext createSelectContext(final OrderByExpression orderByExpression, final FilterExpression filterExpression,
+      final List<ArrayList<NavigationPropertySegment>> expandList) throws ODataJPARuntimeException, EdmException {
     //Object Instantiation
 
     JPQLSelectContext jpqlSelectContextImpl = null;
@@ -54,6 +63,7 @@ public class JPQLSelectStatementBuilderTest {
     EasyMock.expect(getEntitySetView.getOrderBy()).andStubReturn(orderByExpression);
     EasyMock.expect(getEntitySetView.getSelect()).andStubReturn(selectItemList);
     EasyMock.expect(getEntitySetView.getFilter()).andStubReturn(filterExpression);
+    EasyMock.expect(getEntitySetView.getExpand()).andStubReturn(expandList);
     EasyMock.replay(getEntitySetView);
     EasyMock.expect(edmEntitySet.getEntityType()).andStubReturn(edmEntityType);
     EasyMock.replay(edmEntitySet);
@@ -112,4 +122,31 @@ public class JPQLSelectStatementBuilderTest {
     assertEquals("SELECT E1 FROM SalesOrderHeader E1 WHERE E1.soID >= 1234", jpqlSelectStatementBuilder.build().toString());
   }
 
+  @Test
+  public void testBuildQueryWithFetchJoin() throws EdmException, ODataJPARuntimeException {
+    OrderByExpression orderByExpression = EasyMock.createMock(OrderByExpression.class);
+    List<ArrayList<NavigationPropertySegment>> expandList = new ArrayList<ArrayList<NavigationPropertySegment>>();
+    expandList.add(createExpandSegments("Buyer", EdmMultiplicity.ONE));
+    expandList.add(createExpandSegments("SalesOrderItems", EdmMultiplicity.MANY));
+    expandList.add(createExpandSegments("Buyer", EdmMultiplicity.ONE));
+    JPQLSelectContext jpqlSelectContextImpl = createSelectContext(orderByExpression, null, expandList);
+    jpqlSelectStatementBuilder = new JPQLSelectStatementBuilder(jpqlSelectContextImpl);
+
+    assertEquals("SELECT E1 FROM SalesOrderHeader E1 LEFT JOIN FETCH E1.Buyer", jpqlSelectStatementBuilder.build().toString());
+  }
+
+  private ArrayList<NavigationPropertySegment> createExpandSegments(final String name, final EdmMultiplicity multiplicity) throws EdmException {
+    EdmNavigationProperty navigationProperty = EasyMock.createMock(EdmNavigationProperty.class);
+    EasyMock.expect(navigationProperty.getName()).andStubReturn(name);
+    EasyMock.expect(navigationProperty.getMapping()).andStubReturn(null);
+    EasyMock.expect(navigationProperty.getMultiplicity()).andStubReturn(multiplicity);
+    EasyMock.replay(navigationProperty);
+    NavigationPropertySegment segment = EasyMock.createMock(NavigationPropertySegment.class);
+    EasyMock.expect(segment.getNavigationProperty()).andStubReturn(navigationProperty);
+    EasyMock.replay(segment);
+    ArrayList<NavigationPropertySegment> segments = new ArrayList<NavigationPropertySegment>();
+    segments.add(segment);
+    return segments;
+  }
+
 }
@@ -0,0 +1,176 @@
+package com.sap.core.odata.processor.core.jpa.jpql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import javax.persistence.Query;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmEntityType;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmProperty;
+import com.sap.core.odata.api.edm.EdmSimpleTypeKind;
+import com.sap.core.odata.api.uri.expression.BinaryExpression;
+import com.sap.core.odata.api.uri.expression.BinaryOperator;
+import com.sap.core.odata.api.uri.expression.ExpressionKind;
+import com.sap.core.odata.api.uri.expression.FilterExpression;
+import com.sap.core.odata.api.uri.expression.LiteralExpression;
+import com.sap.core.odata.api.uri.expression.PropertyExpression;
+import com.sap.core.odata.api.uri.info.GetEntitySetUriInfo;
+import com.sap.core.odata.processor.api.jpa.exception.ODataJPARuntimeException;
+import com.sap.core.odata.processor.api.jpa.jpql.JPQLContextType;
+import com.sap.core.odata.processor.core.jpa.access.data.ODataExpressionParser;
+import com.sap.core.odata.processor.core.jpa.common.ODataJPATestConstants;
+import com.sap.core.odata.processor.core.jpa.model.JPAEdmMappingImpl;
+
+public class JPQLStatementShapeTest {
+
+  @Test
+  public void testSameShapeForDifferentLiterals() {
+    try {
+      GetEntitySetUriInfo uriInfo1 = mockUriInfo("1234", long.class, null);
+      GetEntitySetUriInfo uriInfo2 = mockUriInfo("5678", long.class, null);
+      JPQLStatementShape shape1 = JPQLStatementShape.create(JPQLContextType.SELECT, uriInfo1, false);
+      JPQLStatementShape shape2 = JPQLStatementShape.create(JPQLContextType.SELECT, uriInfo2, false);
+
+      assertEquals(shape1.getKey(), shape2.getKey());
+      assertEquals(Long.valueOf(1234), shape1.getParameters().get("p0"));
+      assertEquals(Long.valueOf(5678), shape2.getParameters().get("p0"));
+      BinaryExpression filter = (BinaryExpression) uriInfo1.getFilter().getExpression();
+      assertEquals("p0", shape1.getParameterNames().get(filter.getRightOperand()));
+
+      JPQLStatementShape countShape = JPQLStatementShape.create(JPQLContextType.SELECT_COUNT, uriInfo1, false);
+      assertFalse(shape1.getKey().equals(countShape.getKey()));
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+  }
+
+  @Test
+  public void testLiteralsOfUnknownType() {
+    try {
+      JPQLStatementShape shape1 = JPQLStatementShape.create(JPQLContextType.SELECT,
+          mockUriInfo("1234", null, null), false);
+      JPQLStatementShape shape2 = JPQLStatementShape.create(JPQLContextType.SELECT,
+          mockUriInfo("5678", null, null), false);
+
+      assertFalse(shape1.getKey().equals(shape2.getKey()));
+      assertTrue(shape1.getParameters().isEmpty());
+      assertTrue(shape1.getParameterNames().isEmpty());
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+  }
+
+  @Test
+  public void testSameShapeForDifferentSkipTokens() {
+    String keyParameter = ODataExpressionParser.getKeysetParameterName(0);
+    try {
+      JPQLStatementShape shape1 = JPQLStatementShape.create(JPQLContextType.SELECT,
+          mockUriInfo("1234", long.class, "10"), true);
+      JPQLStatementShape shape2 = JPQLStatementShape.create(JPQLContextType.SELECT,
+          mockUriInfo("1234", long.class, "20"), true);
+
+      assertEquals(shape1.getKey(), shape2.getKey());
+      assertEquals(Long.valueOf(10), shape1.getParameters().get(keyParameter));
+      assertEquals(Long.valueOf(20), shape2.getParameters().get(keyParameter));
+
+      JPQLStatementShape firstPageShape = JPQLStatementShape.create(JPQLContextType.SELECT,
+          mockUriInfo("1234", long.class, null), true);
+      assertFalse(shape1.getKey().equals(firstPageShape.getKey()));
+      assertFalse(firstPageShape.getParameters().containsKey(keyParameter));
+      assertFalse(JPQLStatementShape.create(JPQLContextType.SELECT,
+          mockUriInfo("1234", long.class, "10"), false).getParameters().containsKey(keyParameter));
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+
+    try {
+      JPQLStatementShape.create(JPQLContextType.SELECT, mockUriInfo("1234", long.class, "x"), true);
+      fail("Invalid skip token accepted");
+    } catch (ODataJPARuntimeException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testSetParameters() {
+    try {
+      JPQLStatementShape shape = JPQLStatementShape.create(JPQLContextType.SELECT,
+          mockUriInfo("1234", long.class, null), false);
+      Query query = EasyMock.createMock(Query.class);
+      EasyMock.expect(query.setParameter("p0", Long.valueOf(1234))).andReturn(query);
+      EasyMock.replay(query);
+      shape.setParameters(query);
+      EasyMock.verify(query);
+    } catch (ODataJPARuntimeException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+  }
+
+  /*
+   * The request SalesOrderHeaders?$filter=SoId eq <literal>&$skiptoken=<skipToken>
+   */
+  private GetEntitySetUriInfo mockUriInfo(final String literal, final Class<?> jpaType, final String skipToken) {
+    JPAEdmMappingImpl mapping = new JPAEdmMappingImpl();
+    mapping.setInternalName("soId");
+    mapping.setJPAType(jpaType);
+    EdmProperty property = EasyMock.createMock(EdmProperty.class);
+    EdmEntityType entityType = EasyMock.createMock(EdmEntityType.class);
+    EdmEntitySet entitySet = EasyMock.createMock(EdmEntitySet.class);
+    try {
+      EasyMock.expect(property.getName()).andStubReturn("SoId");
+      EasyMock.expect(property.getMapping()).andStubReturn(mapping);
+      EasyMock.expect(property.getType()).andStubReturn(EdmSimpleTypeKind.Int64.getEdmSimpleTypeInstance());
+      EasyMock.expect(property.getFacets()).andStubReturn(null);
+      EasyMock.expect(entityType.getKeyProperties()).andStubReturn(Arrays.asList(property));
+      EasyMock.expect(entitySet.getName()).andStubReturn("SalesOrderHeaders");
+      EasyMock.expect(entitySet.getEntityType()).andStubReturn(entityType);
+    } catch (EdmException e) {
+      fail(ODataJPATestConstants.EXCEPTION_MSG_PART_1 + e.getMessage()
+          + ODataJPATestConstants.EXCEPTION_MSG_PART_2);
+    }
+    EasyMock.replay(property, entityType, entitySet);
+
+    PropertyExpression propertyExpression = EasyMock.createMock(PropertyExpression.class);
+    EasyMock.expect(propertyExpression.getKind()).andStubReturn(ExpressionKind.PROPERTY);
+    EasyMock.expect(propertyExpression.getPropertyName()).andStubReturn("SoId");
+    EasyMock.expect(propertyExpression.getEdmProperty()).andStubReturn(property);
+    LiteralExpression literalExpression = EasyMock.createMock(LiteralExpression.class);
+    EasyMock.expect(literalExpression.getKind()).andStubReturn(ExpressionKind.LITERAL);
+    EasyMock.expect(literalExpression.getUriLiteral()).andStubReturn(literal);
+    EasyMock.expect(literalExpression.getEdmType()).andStubReturn(EdmSimpleTypeKind.Int32.getEdmSimpleTypeInstance());
+    BinaryExpression binaryExpression = EasyMock.createMock(BinaryExpression.class);
+    EasyMock.expect(binaryExpression.getKind()).andStubReturn(ExpressionKind.BINARY);
+    EasyMock.expect(binaryExpression.getOperator()).andStubReturn(BinaryOperator.EQ);
+    EasyMock.expect(binaryExpression.getLeftOperand()).andStubReturn(propertyExpression);
+    EasyMock.expect(binaryExpression.getRightOperand()).andStubReturn(literalExpression);
+    FilterExpression filterExpression = EasyMock.createMock(FilterExpression.class);
+    EasyMock.expect(filterExpression.getKind()).andStubReturn(ExpressionKind.FILTER);
+    EasyMock.expect(filterExpression.getExpression()).andStubReturn(binaryExpression);
+    EasyMock.replay(propertyExpression, literalExpression, binaryExpression, filterExpression);
+
+    GetEntitySetUriInfo uriInfo = EasyMock.createMock(GetEntitySetUriInfo.class);
+    EasyMock.expect(uriInfo.getTargetEntitySet()).andStubReturn(entitySet);
+    EasyMock.expect(uriInfo.getFilter()).andStubReturn(filterExpression);
+    EasyMock.expect(uriInfo.getOrderBy()).andStubReturn(null);
+    EasyMock.expect(uriInfo.getTop()).andStubReturn(null);
+    EasyMock.expect(uriInfo.getSkip()).andStubReturn(null);
+    EasyMock.expect(uriInfo.getSelect()).andStubReturn(null);
+    EasyMock.expect(uriInfo.getExpand()).andStubReturn(null);
+    EasyMock.expect(uriInfo.getSkipToken()).andStubReturn(skipToken);
+    EasyMock.replay(uriInfo);
+    return uriInfo;
+  }
+}
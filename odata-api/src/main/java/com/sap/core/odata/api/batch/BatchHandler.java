@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.api.batch;
+
+import java.io.InputStream;
+
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.api.processor.ODataResponse;
+
+/**
+ * Executes the parts of a batch request through the request handling of the
+ * OData library.
+ * 
+ * @author SAP AG
+ */
+public interface BatchHandler {
+
+  /**
+   * Handles a batch request. The multipart request content is read while
+   * the entity of the returned response is read: each part is executed when
+   * it has been read, and its response is written to the multipart response
+   * before the next part is read. Neither the request parts nor the
+   * responses are held in memory as a whole; only the responses of the
+   * requests of a change set are kept until the change set has ended, as a
+   * failed change set is answered by a single error response.
+   * 
+   * @param requestContentType
+   *            the content type of the batch request including its boundary
+   * @param content
+   *            the multipart content of the batch request
+   * @return the batch response whose entity is the multipart response
+   * @throws ODataException
+   *             if the request content type is not a multipart content type
+   *             with a boundary
+   */
+  ODataResponse handleBatch(String requestContentType, InputStream content) throws ODataException;
+}
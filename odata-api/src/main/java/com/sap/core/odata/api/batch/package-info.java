@@ -0,0 +1,9 @@
+/**
+ * Batch Processing<p>
+ * 
+ * A batch request combines several OData requests in one multipart request. The OData library parses the batch request,
+ * executes its parts like single requests and writes the multipart response by means of a
+ * {@link com.sap.core.odata.api.batch.BatchHandler} which is passed to the
+ * {@link com.sap.core.odata.api.processor.part.BatchProcessor} of a service.
+ */
+package com.sap.core.odata.api.batch;
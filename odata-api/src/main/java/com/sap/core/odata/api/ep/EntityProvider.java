@@ -290,6 +290,17 @@ public final class EntityProvider {
      */
     Edm readMetadata(InputStream inputStream, boolean validate) throws EntityProviderException;
 
+    /**
+     * Read metadata from <code>inputStream</code> (as {@link InputStream}) and provide Edm as {@link Edm}
+     * which reads entity types, complex types, associations and entity containers only on first access.
+     * The metadata are not validated.
+     * 
+     * @param inputStream the given input stream
+     * @return Edm as {@link Edm}
+     * @throws EntityProviderException if reading of data (de-serialization) fails
+     */
+    Edm readMetadataLazily(InputStream inputStream) throws EntityProviderException;
+
     /**
      * Read (de-serialize) binary data from <code>content</code> (as {@link InputStream}) and provide it as <code>byte[]</code>.
      * 
@@ -630,4 +641,17 @@ public final class EntityProvider {
   public static Edm readMetadata(final InputStream inputStream, final boolean validate) throws EntityProviderException {
     return createEntityProvider().readMetadata(inputStream, validate);
   }
+
+  /**
+   * Read metadata from <code>inputStream</code> (as {@link InputStream}) and provide Edm as {@link Edm}
+   * which reads entity types, complex types, associations and entity containers only on first access.
+   * The metadata are not validated.
+   * 
+   * @param inputStream the given input stream
+   * @return Edm as {@link Edm}
+   * @throws EntityProviderException if reading of data (de-serialization) fails
+   */
+  public static Edm readMetadataLazily(final InputStream inputStream) throws EntityProviderException {
+    return createEntityProvider().readMetadataLazily(inputStream);
+  }
 }
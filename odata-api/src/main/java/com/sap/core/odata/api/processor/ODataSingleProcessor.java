@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.List;
 
 import com.sap.core.odata.api.ODataServiceVersion;
+import com.sap.core.odata.api.batch.BatchHandler;
 import com.sap.core.odata.api.commons.HttpHeaders;
 import com.sap.core.odata.api.commons.HttpStatusCodes;
 import com.sap.core.odata.api.commons.ODataHttpHeaders;
@@ -66,7 +67,8 @@ import com.sap.core.odata.api.uri.info.PutMergePatchUriInfo;
  * <p>It is recommended to derive from this class and it is required by the
  * {@link com.sap.core.odata.api.ODataServiceFactory} to build an {@link com.sap.core.odata.api.ODataService}.</p>
  * <p>This abstract class provides a default behavior, returning the correct response
- * for requests for the service or the metadata document, respectively, and throwing an
+ * for requests for the service or the metadata document, respectively, executing
+ * batch requests part by part through the other methods, and throwing an
  * {@link ODataNotImplementedException} for all other requests.
  * Sub classes have to override only methods they want to support.</p> 
  * 
@@ -99,8 +101,8 @@ public abstract class ODataSingleProcessor implements MetadataProcessor, Service
    * @see BatchProcessor
    */
   @Override
-  public ODataResponse executeBatch(final String contentType) throws ODataException {
-    throw new ODataNotImplementedException();
+  public ODataResponse executeBatch(final BatchHandler handler, final String requestContentType, final InputStream content) throws ODataException {
+    return handler.handleBatch(requestContentType, content);
   }
 
   /**
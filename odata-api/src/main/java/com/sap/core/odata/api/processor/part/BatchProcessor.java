@@ -15,6 +15,9 @@
  ******************************************************************************/
 package com.sap.core.odata.api.processor.part;
 
+import java.io.InputStream;
+
+import com.sap.core.odata.api.batch.BatchHandler;
 import com.sap.core.odata.api.exception.ODataException;
 import com.sap.core.odata.api.processor.ODataProcessor;
 import com.sap.core.odata.api.processor.ODataResponse;
@@ -28,9 +31,16 @@ import com.sap.core.odata.api.processor.ODataResponse;
 public interface BatchProcessor extends ODataProcessor {
 
   /**
-   * @param contentType 
+   * Executes a batch request. The parts of the request are usually executed
+   * by the batch handler of the OData library while the entity of the
+   * returned response is read. A processor which implements
+   * {@link ChangeSetProcessor} is notified of the begin and the end of
+   * each change set.
+   * @param handler the batch handler of the OData library
+   * @param requestContentType the content type of the batch request including its boundary
+   * @param content the multipart content of the batch request
    * @return a {@link ODataResponse} object
    * @throws ODataException
    */
-  ODataResponse executeBatch(String contentType) throws ODataException;
+  ODataResponse executeBatch(BatchHandler handler, String requestContentType, InputStream content) throws ODataException;
 }
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.api.processor.part;
+
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.api.processor.ODataProcessor;
+
+/**
+ * Optionally implemented by the processor of a service which executes the
+ * requests of a change set in one unit of work, e.g., one transaction.
+ * The requests of a change set of a batch request are executed between
+ * {@link #beginChangeSet()} and {@link #endChangeSet(boolean)}.
+ * 
+ * @author SAP AG
+ */
+public interface ChangeSetProcessor extends ODataProcessor {
+
+  /**
+   * Called before the first request of a change set is executed.
+   * @throws ODataException if the change set cannot be executed; then none
+   *                        of its requests is executed
+   */
+  void beginChangeSet() throws ODataException;
+
+  /**
+   * Called after the requests of a change set have been executed or after a
+   * request of the change set has failed; the requests following a failed
+   * request are not executed.
+   * @param successful <code>true</code> if all requests of the change set
+   *                   have been executed successfully and their changes have
+   *                   to be committed, <code>false</code> if the changes have
+   *                   to be rolled back
+   * @throws ODataException if the changes could not be committed
+   */
+  void endChangeSet(boolean successful) throws ODataException;
+}
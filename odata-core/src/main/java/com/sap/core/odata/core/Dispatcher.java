@@ -18,6 +18,7 @@ package com.sap.core.odata.core;
 import java.io.InputStream;
 
 import com.sap.core.odata.api.ODataService;
+import com.sap.core.odata.api.batch.BatchHandler;
 import com.sap.core.odata.api.exception.ODataBadRequestException;
 import com.sap.core.odata.api.exception.ODataException;
 import com.sap.core.odata.api.exception.ODataMethodNotAllowedException;
@@ -47,9 +48,15 @@ import com.sap.core.odata.core.uri.UriInfoImpl;
 public class Dispatcher {
 
   private final ODataService service;
+  private final BatchHandler batchHandler;
 
   public Dispatcher(final ODataService service) {
+    this(service, null);
+  }
+
+  public Dispatcher(final ODataService service, final BatchHandler batchHandler) {
     this.service = service;
+    this.batchHandler = batchHandler;
   }
 
   public ODataResponse dispatch(final ODataHttpMethod method, final UriInfoImpl uriInfo, final InputStream content, final String requestContentType, final String contentType) throws ODataException {
@@ -173,7 +180,7 @@ public class Dispatcher {
 
     case URI9:
       if (method == ODataHttpMethod.POST) {
-        return service.getBatchProcessor().executeBatch(contentType);
+        return service.getBatchProcessor().executeBatch(batchHandler, requestContentType, content);
       } else {
         throw new ODataMethodNotAllowedException(ODataMethodNotAllowedException.DISPATCH);
       }
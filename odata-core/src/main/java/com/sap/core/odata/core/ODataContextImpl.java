@@ -184,6 +184,16 @@ public class ODataContextImpl implements ODataContext {
     requestHeader.put(name, value);
   }
 
+  /**
+   * Replaces all request headers, e.g., by the headers of a request
+   * contained in a batch request while that request is handled.
+   * @param headers the new request headers
+   */
+  public void setHttpRequestHeaders(final Map<String, String> headers) {
+    requestHeader.clear();
+    requestHeader.putAll(headers);
+  }
+
   @Override
   public String getHttpRequestHeader(final String name) {
     for (final String headerName : requestHeader.keySet()) {
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import com.sap.core.odata.api.batch.BatchHandler;
+import com.sap.core.odata.api.commons.HttpHeaders;
+import com.sap.core.odata.api.commons.HttpStatusCodes;
+import com.sap.core.odata.api.exception.ODataBadRequestException;
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.api.processor.ODataResponse;
+import com.sap.core.odata.core.commons.ContentType;
+
+/**
+ * Handles batch requests of content type <code>multipart/mixed</code>.
+ * The parts are read from the request content, executed by a
+ * {@link BatchPartHandler} and written to the response one after another
+ * while the response entity, an {@link InputStream}, is read.
+ * @author SAP AG
+ */
+public class BatchHandlerImpl implements BatchHandler {
+
+  static final String PARAMETER_BOUNDARY = "boundary";
+  private static final int MAX_BOUNDARY_LENGTH = 70;
+
+  private final BatchPartHandler partHandler;
+  private final List<Locale> languages;
+
+  /**
+   * @param partHandler executes the requests contained in batch requests
+   * @param languages the acceptable languages for error messages of parts
+   */
+  public BatchHandlerImpl(final BatchPartHandler partHandler, final List<Locale> languages) {
+    this.partHandler = partHandler;
+    this.languages = languages;
+  }
+
+  @Override
+  public ODataResponse handleBatch(final String requestContentType, final InputStream content) throws ODataException {
+    final String boundary = getBoundary(requestContentType);
+    if (boundary == null) {
+      throw new ODataBadRequestException(ODataBadRequestException.INVALID_HEADER
+          .addContent(HttpHeaders.CONTENT_TYPE).addContent(requestContentType));
+    }
+    MultipartReader reader;
+    try {
+      reader = new MultipartReader(content, boundary);
+    } catch (final IOException e) {
+      throw new ODataBadRequestException(ODataBadRequestException.BODY, e);
+    }
+    final String responseBoundary = createBoundary("batch");
+    return ODataResponse.status(HttpStatusCodes.ACCEPTED)
+        .contentHeader(getMultipartContentType(responseBoundary))
+        .entity(new BatchResponseInputStream(reader, responseBoundary, partHandler, languages))
+        .build();
+  }
+
+  /**
+   * Returns the boundary of a multipart content type.
+   * @param contentType the content type
+   * @return the boundary or <code>null</code> if the content type is not
+   *         <code>multipart/mixed</code> or has no valid boundary
+   */
+  static String getBoundary(final String contentType) {
+    final ContentType type = contentType == null ? null : ContentType.parse(contentType);
+    if (type == null
+        || !ContentType.MULTIPART_MIXED.getType().equalsIgnoreCase(type.getType())
+        || !ContentType.MULTIPART_MIXED.getSubtype().equalsIgnoreCase(type.getSubtype())) {
+      return null;
+    }
+    // The boundary is taken from the original string because it may contain '='.
+    for (final String parameter : contentType.split(";")) {
+      final int index = parameter.indexOf('=');
+      if (index > 0 && PARAMETER_BOUNDARY.equalsIgnoreCase(parameter.substring(0, index).trim())) {
+        String boundary = parameter.substring(index + 1).trim();
+        if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+          boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        return boundary.length() == 0 || boundary.length() > MAX_BOUNDARY_LENGTH ? null : boundary;
+      }
+    }
+    return null;
+  }
+
+  static String createBoundary(final String prefix) {
+    return prefix + "_" + UUID.randomUUID().toString();
+  }
+
+  static String getMultipartContentType(final String boundary) {
+    return ContentType.MULTIPART_MIXED.toContentTypeString() + "; " + PARAMETER_BOUNDARY + "=" + boundary;
+  }
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.batch;
+
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.api.processor.ODataResponse;
+
+/**
+ * Executes a single request of a batch request.
+ * @author SAP AG
+ */
+public interface BatchPartHandler {
+
+  /**
+   * @param part the request
+   * @return the response of the request with its status set
+   * @throws ODataException
+   */
+  ODataResponse handlePart(BatchRequestPart part) throws ODataException;
+
+  /**
+   * Called before the first request of a change set is executed.
+   * @throws ODataException
+   */
+  void beginChangeSet() throws ODataException;
+
+  /**
+   * Called after the requests of a change set have been executed or after a
+   * request of the change set has failed.
+   * @param successful whether all requests of the change set have succeeded
+   * @throws ODataException
+   */
+  void endChangeSet(boolean successful) throws ODataException;
+}
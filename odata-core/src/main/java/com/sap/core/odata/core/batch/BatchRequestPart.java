@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.batch;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+
+import com.sap.core.odata.core.commons.ODataHttpMethod;
+
+/**
+ * A request contained in a batch request. Its content is read directly from
+ * the batch request and can be read only once, before the next part of the
+ * batch request is read.
+ * @author SAP AG
+ */
+public final class BatchRequestPart {
+
+  private final ODataHttpMethod method;
+  private final String uri;
+  private final Map<String, String> headers;
+  private final InputStream content;
+
+  BatchRequestPart(final ODataHttpMethod method, final String uri, final Map<String, String> headers, final InputStream content) {
+    this.method = method;
+    this.uri = uri;
+    this.headers = Collections.unmodifiableMap(headers);
+    this.content = content;
+  }
+
+  public ODataHttpMethod getMethod() {
+    return method;
+  }
+
+  /**
+   * @return the request URI as given in the request line, either relative
+   *         to the service root or absolute
+   */
+  public String getUri() {
+    return uri;
+  }
+
+  /**
+   * @param name the header name, which is case-insensitive
+   * @return the header value or <code>null</code>
+   */
+  public String getHeader(final String name) {
+    return headers.get(name);
+  }
+
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  public InputStream getContent() {
+    return content;
+  }
+}
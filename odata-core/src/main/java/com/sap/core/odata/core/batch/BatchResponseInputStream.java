@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.batch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.sap.core.odata.api.commons.HttpHeaders;
+import com.sap.core.odata.api.commons.HttpStatusCodes;
+import com.sap.core.odata.api.ep.EntityProviderException;
+import com.sap.core.odata.api.exception.ODataBadRequestException;
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.api.processor.ODataErrorContext;
+import com.sap.core.odata.api.processor.ODataResponse;
+import com.sap.core.odata.core.commons.ContentType;
+import com.sap.core.odata.core.commons.ODataHttpMethod;
+import com.sap.core.odata.core.ep.ProviderFacadeImpl;
+import com.sap.core.odata.core.exception.ODataExceptionMapping;
+
+/**
+ * The multipart response of a batch request. Whenever the response parts
+ * written so far have been read, the next part of the batch request is read
+ * and executed, and its response is appended; the entity of a part response
+ * is passed through as it is read. Thus neither the requests nor the
+ * responses are held in memory as a whole.
+ * <p>The requests of a change set are executed in their order between the
+ * calls of {@link BatchPartHandler#beginChangeSet()} and
+ * {@link BatchPartHandler#endChangeSet(boolean)}. Their responses are kept
+ * until the change set has ended: after a request of a change set has
+ * failed, the following requests of the change set are not executed, and
+ * the change set is answered by the single error response of the failed
+ * request instead of a multipart response.</p>
+ * @author SAP AG
+ */
+final class BatchResponseInputStream extends InputStream {
+
+  private static final String CRLF = "\r\n";
+  private static final String HTTP_VERSION = "HTTP/1.1";
+  private static final String APPLICATION_HTTP = "application/http";
+  private static final String CONTENT_TRANSFER_ENCODING = "Content-Transfer-Encoding";
+  private static final String BINARY = "binary";
+  private static final String CHARSET_ISO_8859_1 = "ISO-8859-1";
+  private static final String CHARSET_UTF_8 = "UTF-8";
+
+  private final MultipartReader batchReader;
+  private final String boundary;
+  private final BatchPartHandler partHandler;
+  private final List<Locale> languages;
+  private boolean finished;
+  private final LinkedList<InputStream> segments = new LinkedList<InputStream>();
+  private InputStream current;
+
+  BatchResponseInputStream(final MultipartReader batchReader, final String boundary, final BatchPartHandler partHandler, final List<Locale> languages) {
+    this.batchReader = batchReader;
+    this.boundary = boundary;
+    this.partHandler = partHandler;
+    this.languages = languages;
+  }
+
+  @Override
+  public int read() throws IOException {
+    while (current != null || advance()) {
+      final int c = current.read();
+      if (c >= 0) {
+        return c;
+      }
+      closeCurrent();
+    }
+    return -1;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    while (current != null || advance()) {
+      final int count = current.read(b, off, len);
+      if (count >= 0) {
+        return count;
+      }
+      closeCurrent();
+    }
+    return -1;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeCurrent();
+    while (!segments.isEmpty()) {
+      segments.removeFirst().close();
+    }
+    finished = true;
+  }
+
+  private void closeCurrent() throws IOException {
+    if (current != null) {
+      current.close();
+      current = null;
+    }
+  }
+
+  private boolean advance() throws IOException {
+    while (segments.isEmpty()) {
+      if (finished) {
+        return false;
+      }
+      readNextPart();
+    }
+    current = segments.removeFirst();
+    return true;
+  }
+
+  private void readNextPart() throws IOException {
+    if (batchReader.next()) {
+      final InputStream partContent = batchReader.getPartContent();
+      final Map<String, String> headers = MultipartReader.readHeaders(partContent);
+      final String partBoundary = BatchHandlerImpl.getBoundary(headers.get(HttpHeaders.CONTENT_TYPE));
+      if (partBoundary == null) {
+        writeResponse(handleRequest(partContent), boundary, segments, false);
+      } else {
+        handleChangeSet(new MultipartReader(partContent, partBoundary));
+      }
+    } else {
+      append(segments, "--" + boundary + "--" + CRLF);
+      finished = true;
+    }
+  }
+
+  private void handleChangeSet(final MultipartReader changeSetReader) throws IOException {
+    ODataResponse errorResponse = null;
+    try {
+      partHandler.beginChangeSet();
+    } catch (final ODataException e) {
+      errorResponse = createErrorResponse(e);
+    } catch (final RuntimeException e) {
+      errorResponse = createErrorResponse(e);
+    }
+    if (errorResponse != null) {
+      writeResponse(errorResponse, boundary, segments, false);
+      return;
+    }
+
+    final String changeSetBoundary = BatchHandlerImpl.createBoundary("changeset");
+    final List<InputStream> changeSetSegments = new ArrayList<InputStream>();
+    try {
+      while (errorResponse == null && changeSetReader.next()) {
+        final InputStream partContent = changeSetReader.getPartContent();
+        MultipartReader.readHeaders(partContent);
+        final ODataResponse response = handleRequest(partContent);
+        if (getStatus(response).getStatusCode() >= HttpStatusCodes.BAD_REQUEST.getStatusCode()) {
+          errorResponse = response;
+        } else {
+          writeResponse(response, changeSetBoundary, changeSetSegments, true);
+        }
+      }
+    } catch (final IOException e) {
+      endChangeSet(false);
+      throw e;
+    }
+    final ODataResponse endErrorResponse = endChangeSet(errorResponse == null);
+    if (errorResponse == null) {
+      errorResponse = endErrorResponse;
+    }
+
+    if (errorResponse == null) {
+      append(segments, "--" + boundary + CRLF
+          + HttpHeaders.CONTENT_TYPE + ": " + BatchHandlerImpl.getMultipartContentType(changeSetBoundary) + CRLF
+          + CRLF);
+      segments.addAll(changeSetSegments);
+      append(segments, "--" + changeSetBoundary + "--" + CRLF);
+    } else {
+      writeResponse(errorResponse, boundary, segments, false);
+    }
+  }
+
+  /**
+   * Ends the current change set.
+   * @return the error response if the change set could not be ended, or <code>null</code>
+   */
+  private ODataResponse endChangeSet(final boolean successful) {
+    try {
+      partHandler.endChangeSet(successful);
+      return null;
+    } catch (final ODataException e) {
+      return createErrorResponse(e);
+    } catch (final RuntimeException e) {
+      return createErrorResponse(e);
+    }
+  }
+
+  private ODataResponse handleRequest(final InputStream partContent) throws IOException {
+    try {
+      return partHandler.handlePart(readRequest(partContent));
+    } catch (final ODataException e) {
+      return createErrorResponse(e);
+    } catch (final RuntimeException e) {
+      return createErrorResponse(e);
+    }
+  }
+
+  /**
+   * Writes a part response to the given segments; the entity is read
+   * into memory if the response is buffered.
+   */
+  private void writeResponse(final ODataResponse response, final String partBoundary,
+      final List<InputStream> target, final boolean buffered) throws IOException {
+    final HttpStatusCodes status = getStatus(response);
+    final StringBuilder head = new StringBuilder();
+    head.append("--").append(partBoundary).append(CRLF)
+        .append(HttpHeaders.CONTENT_TYPE).append(": ").append(APPLICATION_HTTP).append(CRLF)
+        .append(CONTENT_TRANSFER_ENCODING).append(": ").append(BINARY).append(CRLF)
+        .append(CRLF)
+        .append(HTTP_VERSION).append(' ').append(status.getStatusCode()).append(' ').append(status.getInfo()).append(CRLF);
+    for (final String name : response.getHeaderNames()) {
+      head.append(name).append(": ").append(response.getHeader(name)).append(CRLF);
+    }
+    if (response.getETag() != null && !response.containsHeader(HttpHeaders.ETAG)) {
+      head.append(HttpHeaders.ETAG).append(": ").append(response.getETag()).append(CRLF);
+    }
+
+    final Object entity = response.getEntity();
+    InputStream body = null;
+    if (entity instanceof InputStream && !buffered) {
+      body = (InputStream) entity;
+    } else if (entity != null) {
+      final byte[] bytes = entity instanceof InputStream ? readAll((InputStream) entity)
+          : entity instanceof byte[] ? (byte[]) entity : entity.toString().getBytes(getCharset(response));
+      if (!response.containsHeader(HttpHeaders.CONTENT_LENGTH)) {
+        head.append(HttpHeaders.CONTENT_LENGTH).append(": ").append(bytes.length).append(CRLF);
+      }
+      body = new ByteArrayInputStream(bytes);
+    }
+    head.append(CRLF);
+
+    append(target, head.toString());
+    if (body != null) {
+      target.add(body);
+    }
+    append(target, CRLF);
+  }
+
+  private static HttpStatusCodes getStatus(final ODataResponse response) {
+    return response.getStatus() == null ? HttpStatusCodes.OK : response.getStatus();
+  }
+
+  private static byte[] readAll(final InputStream in) throws IOException {
+    try {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[8192];
+      int count;
+      while ((count = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, count);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  private static BatchRequestPart readRequest(final InputStream partContent) throws IOException, ODataBadRequestException {
+    final String requestLine = MultipartReader.readLine(partContent);
+    final String[] tokens = requestLine == null ? new String[0] : requestLine.trim().split(" +");
+    if (tokens.length != 3 || !tokens[2].startsWith("HTTP/")) {
+      throw new ODataBadRequestException(ODataBadRequestException.INVALID_SYNTAX);
+    }
+    ODataHttpMethod method;
+    try {
+      method = ODataHttpMethod.valueOf(tokens[0]);
+    } catch (final IllegalArgumentException e) {
+      throw new ODataBadRequestException(ODataBadRequestException.INVALID_SYNTAX, e);
+    }
+    final Map<String, String> headers = MultipartReader.readHeaders(partContent);
+    return new BatchRequestPart(method, tokens[1], headers, partContent);
+  }
+
+  private static String getCharset(final ODataResponse response) {
+    final String contentHeader = response.getContentHeader();
+    final ContentType contentType = contentHeader == null ? null : ContentType.parse(contentHeader);
+    final String charset = contentType == null ? null : contentType.getParameters().get(ContentType.PARAMETER_CHARSET);
+    return charset == null ? CHARSET_UTF_8 : charset;
+  }
+
+  private static void append(final List<InputStream> target, final String text) throws IOException {
+    target.add(new ByteArrayInputStream(text.getBytes(CHARSET_ISO_8859_1)));
+  }
+
+  /**
+   * Creates the error response of a failed request like the exception mapper
+   * does for single requests.
+   */
+  private ODataResponse createErrorResponse(final Exception exception) {
+    final ODataErrorContext errorContext = new ODataErrorContext();
+    ODataExceptionMapping.fillErrorContext(errorContext, exception, languages);
+    try {
+      return new ProviderFacadeImpl().writeErrorDocument(ContentType.APPLICATION_XML.toContentTypeString(),
+          errorContext.getHttpStatus(), errorContext.getErrorCode(), errorContext.getMessage(), errorContext.getLocale(), null);
+    } catch (final EntityProviderException e) {
+      return ODataResponse.status(errorContext.getHttpStatus()).entity(errorContext.getMessage())
+          .contentHeader(ContentType.TEXT_PLAIN_CS_UTF_8.toContentTypeString()).build();
+    }
+  }
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads the body parts of a multipart entity one after another from a
+ * stream. Only a buffer of a fixed size is held in memory: the content of the
+ * current body part is read through {@link #getPartContent()} up to the next
+ * delimiter, and the content not read is skipped when moving to the next
+ * body part.
+ * @author SAP AG
+ */
+final class MultipartReader {
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final int MAX_LINE_LENGTH = 8192;
+  private static final String CHARSET_ISO_8859_1 = "ISO-8859-1";
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+  private static final byte DASH = '-';
+
+  private final InputStream in;
+  private final byte[] delimiter;
+  private final byte[] buffer;
+  private int position;
+  private int limit;
+  /** no delimiter starts in the buffer before this index */
+  private int scanned;
+  private boolean endOfStream;
+  private boolean inPart;
+  private boolean closed;
+  private final InputStream partContent = new PartInputStream();
+
+  MultipartReader(final InputStream in, final String boundary) throws IOException {
+    this.in = in;
+    delimiter = ("\r\n--" + boundary).getBytes(CHARSET_ISO_8859_1);
+    buffer = new byte[Math.max(BUFFER_SIZE, 2 * delimiter.length)];
+    // The first delimiter need not be preceded by a line break.
+    buffer[limit++] = CR;
+    buffer[limit++] = LF;
+    // The preamble is skipped like the content of a body part.
+    inPart = true;
+  }
+
+  /**
+   * Moves to the next body part, skipping the rest of the current one.
+   * @return <code>true</code> if there is a next body part,
+   *         <code>false</code> if the close delimiter has been reached
+   * @throws IOException if the multipart entity is not well-formed
+   */
+  boolean next() throws IOException {
+    if (closed) {
+      return false;
+    }
+    if (inPart) {
+      int available;
+      while ((available = getAvailableContent()) > 0) {
+        position += available;
+      }
+      inPart = false;
+    }
+    position += delimiter.length;
+    if (ensureAvailable(2) && buffer[position] == DASH && buffer[position + 1] == DASH) {
+      position += 2;
+      closed = true;
+      return false;
+    }
+    // transport padding up to the line break
+    int c;
+    while ((c = readByte()) != LF) {
+      if (c != ' ' && c != '\t' && c != CR) {
+        throw new IOException("Invalid multipart delimiter line.");
+      }
+    }
+    inPart = true;
+    return true;
+  }
+
+  /**
+   * @return the content of the current body part, including its headers
+   */
+  InputStream getPartContent() {
+    return partContent;
+  }
+
+  /**
+   * Returns the number of bytes of the current body part which can be read
+   * from the buffer, reading from the stream as necessary.
+   * @return the number of bytes before the next delimiter or the part of the
+   *         buffer which cannot be the start of a delimiter; zero at the
+   *         next delimiter
+   */
+  private int getAvailableContent() throws IOException {
+    while (true) {
+      final int index = indexOfDelimiter();
+      if (index >= 0) {
+        return index - position;
+      }
+      final int available = limit - position - delimiter.length + 1;
+      if (available > 0) {
+        return available;
+      }
+      if (endOfStream) {
+        throw new IOException("Unexpected end of multipart content.");
+      }
+      fill();
+    }
+  }
+
+  /**
+   * Searches the next delimiter; the part of the buffer searched before is
+   * not searched again, so reading a body part byte by byte does not scan
+   * the buffer repeatedly.
+   */
+  private int indexOfDelimiter() {
+    final int last = limit - delimiter.length;
+    for (int i = Math.max(position, scanned); i <= last; i++) {
+      int j = 0;
+      while (j < delimiter.length && buffer[i + j] == delimiter[j]) {
+        j++;
+      }
+      if (j == delimiter.length) {
+        scanned = i;
+        return i;
+      }
+    }
+    scanned = Math.max(position, last + 1);
+    return -1;
+  }
+
+  private boolean ensureAvailable(final int count) throws IOException {
+    while (limit - position < count && !endOfStream) {
+      fill();
+    }
+    return limit - position >= count;
+  }
+
+  private int readByte() throws IOException {
+    if (!ensureAvailable(1)) {
+      return -1;
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  private void fill() throws IOException {
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit -= position;
+      scanned = Math.max(0, scanned - position);
+      position = 0;
+    }
+    final int count = in.read(buffer, limit, buffer.length - limit);
+    if (count < 0) {
+      endOfStream = true;
+    } else {
+      limit += count;
+    }
+  }
+
+  /**
+   * Reads a line terminated by a line feed; a preceding carriage return is
+   * removed.
+   * @param in the stream to read from
+   * @return the line or <code>null</code> at the end of the stream
+   * @throws IOException if the line is too long
+   */
+  static String readLine(final InputStream in) throws IOException {
+    final StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) != LF) {
+      if (c < 0) {
+        if (line.length() == 0) {
+          return null;
+        }
+        break;
+      }
+      if (line.length() == MAX_LINE_LENGTH) {
+        throw new IOException("Line too long in multipart content.");
+      }
+      // ISO-8859-1 maps each byte to the character of the same code
+      line.append((char) c);
+    }
+    if (line.length() > 0 && line.charAt(line.length() - 1) == CR) {
+      line.setLength(line.length() - 1);
+    }
+    return line.toString();
+  }
+
+  /**
+   * Reads MIME headers up to and including the empty line ending them.
+   * @param in the stream to read from
+   * @return the headers with case-insensitive names
+   * @throws IOException if a header is malformed
+   */
+  static Map<String, String> readHeaders(final InputStream in) throws IOException {
+    final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    String name = null;
+    String line;
+    while ((line = readLine(in)) != null && line.length() > 0) {
+      if (name != null && (line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+        // folded header value
+        headers.put(name, headers.get(name) + " " + line.trim());
+        continue;
+      }
+      final int colon = line.indexOf(':');
+      if (colon <= 0) {
+        throw new IOException("Invalid header line '" + line + "' in multipart content.");
+      }
+      name = line.substring(0, colon).trim();
+      final String value = line.substring(colon + 1).trim();
+      headers.put(name, headers.containsKey(name) ? headers.get(name) + ", " + value : value);
+    }
+    return headers;
+  }
+
+  private class PartInputStream extends InputStream {
+
+    @Override
+    public int read() throws IOException {
+      if (!inPart || getAvailableContent() == 0) {
+        return -1;
+      }
+      return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!inPart) {
+        return -1;
+      }
+      final int available = getAvailableContent();
+      if (available == 0) {
+        return -1;
+      }
+      final int count = Math.min(len, available);
+      System.arraycopy(buffer, position, b, off, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return 0;
+    }
+  }
+}
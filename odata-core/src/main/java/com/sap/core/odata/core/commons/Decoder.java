@@ -39,43 +39,40 @@ public class Decoder {
       return value;
     }
 
-    // Use a tiny finite-state machine to handle decoding on byte level.
-    // There are only three states:
-    //   -2: normal bytes
-    //   -1: a byte representing the percent character has been read
-    // >= 0: a byte representing the first half-byte of a percent-encoded byte has been read
-    // The variable holding the state is also used to store the value of the first half-byte.
-    byte[] result = new byte[value.length()];
-    int position = 0;
-    byte encodedPart = -2;
-    for (final char c : value.toCharArray()) {
-      if (c <= Byte.MAX_VALUE) {
-        if (c == '%') {
-          if (encodedPart == -2) {
-            encodedPart = -1;
-          } else {
-            throw new IllegalArgumentException();
-          }
-        } else if (encodedPart == -1) {
-          encodedPart = (byte) c;
-        } else if (encodedPart >= 0) {
-          final int i = Integer.parseInt(String.valueOf(new char[] { (char) encodedPart, c }), 16);
-          if (i >= 0) {
-            result[position++] = (byte) i;
-          } else {
-            throw new NumberFormatException();
-          }
-          encodedPart = -2;
-        } else {
-          result[position++] = (byte) c;
-        }
-      } else {
+    // Values without any percent character are returned as they are.
+    final int length = value.length();
+    int index = 0;
+    while (index < length) {
+      final char c = value.charAt(index);
+      if (c > Byte.MAX_VALUE) {
         throw new IllegalArgumentException();
+      } else if (c == '%') {
+        break;
       }
+      index++;
+    }
+    if (index == length) {
+      return value;
     }
 
-    if (encodedPart >= 0) {
-      throw new IllegalArgumentException();
+    byte[] result = new byte[length];
+    int position = 0;
+    for (int i = 0; i < index; i++) {
+      result[position++] = (byte) value.charAt(i);
+    }
+    while (index < length) {
+      final char c = value.charAt(index++);
+      if (c > Byte.MAX_VALUE) {
+        throw new IllegalArgumentException();
+      } else if (c == '%') {
+        if (index + 1 >= length) {
+          throw new IllegalArgumentException();
+        }
+        result[position++] = (byte) (hexValue(value.charAt(index)) << 4 | hexValue(value.charAt(index + 1)));
+        index += 2;
+      } else {
+        result[position++] = (byte) c;
+      }
     }
 
     try {
@@ -84,4 +81,24 @@ public class Decoder {
       throw new IllegalArgumentException(e);
     }
   }
+
+  /** Values of hexadecimal digits, indexed by ASCII character; -1 for all other characters. */
+  private static final byte[] HEX_VALUES = new byte[Byte.MAX_VALUE + 1];
+
+  static {
+    for (int c = 0; c <= Byte.MAX_VALUE; c++) {
+      HEX_VALUES[c] = (byte) Character.digit(c, 16);
+    }
+  }
+
+  private static int hexValue(final char c) throws IllegalArgumentException, NumberFormatException {
+    if (c > Byte.MAX_VALUE || c == '%') {
+      throw new IllegalArgumentException();
+    }
+    final int value = HEX_VALUES[c];
+    if (value < 0) {
+      throw new NumberFormatException();
+    }
+    return value;
+  }
 }
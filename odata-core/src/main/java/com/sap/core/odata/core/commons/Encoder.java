@@ -15,9 +15,6 @@
  ******************************************************************************/
 package com.sap.core.odata.core.commons;
 
-import java.io.UnsupportedEncodingException;
-import java.util.Map;
-
 /**
  * Encodes a Java String (in its internal UTF-16 encoding) into its
  * percent-encoded UTF-8 representation according to
@@ -36,21 +33,46 @@ public class Encoder {
    * @return the encoded String
    */
   public static String encode(final String value) {
-    Encoder encoder = new Encoder(UNSAFE, UNRESERVED, null);
-    return encoder.encodeInternal(value);
-  }
+    if (value == null) {
+      return value;
+    }
 
-  private final String unsafe;
-  private final String unreserved;
-  private final Map<Character, String> map;
+    // Most values (names, numbers, simple keys) need no escaping at all;
+    // in that case the input is returned as it is without any allocation.
+    final int length = value.length();
+    int index = 0;
+    while (index < length && value.charAt(index) < ASCII_LIMIT && ESCAPED[value.charAt(index)] == null) {
+      index++;
+    }
+    if (index == length) {
+      return value;
+    }
 
-  private Encoder(final String unsafe, final String unreserved, final Map<Character, String> map) {
-    this.unsafe = unsafe;
-    this.unreserved = unreserved;
-    this.map = map;
+    StringBuilder resultStr = new StringBuilder(length + 16);
+    resultStr.append(value, 0, index);
+    while (index < length) {
+      final char c = value.charAt(index++);
+      if (c < ASCII_LIMIT) {
+        final String escaped = ESCAPED[c];
+        if (escaped == null) {
+          resultStr.append(c);
+        } else {
+          resultStr.append(escaped);
+        }
+      } else if (Character.isHighSurrogate(c) && index < length && Character.isLowSurrogate(value.charAt(index))) {
+        appendUtf8(resultStr, Character.toCodePoint(c, value.charAt(index++)));
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        // unpaired surrogate; replaced by a question mark like String.getBytes("UTF-8") does
+        resultStr.append(ESCAPED['?']);
+      } else {
+        appendUtf8(resultStr, c);
+      }
+    }
+    return resultStr.toString();
   }
 
-  private final static String RFC3986_UNRESERVED = "-._~"; // + ALPHA + DIGIT
+  private Encoder() {}
+
   private final static String RFC3986_GEN_DELIMS = ":/?#[]@";
   private final static String RFC3986_SUB_DELIMS = "!$&'()*+,;=";
   @SuppressWarnings("unused")
@@ -62,93 +84,51 @@ public class Encoder {
    */
   private final static String UNSAFE_NOSPACE = RFC3986_GEN_DELIMS + "<>%&";
   private final static String UNSAFE = UNSAFE_NOSPACE + " ";
-  private final static String UNRESERVED = RFC3986_UNRESERVED;
 
-  private final static String[] hex = {
-      "%00", "%01", "%02", "%03", "%04", "%05", "%06", "%07",
-      "%08", "%09", "%0a", "%0b", "%0c", "%0d", "%0e", "%0f",
-      "%10", "%11", "%12", "%13", "%14", "%15", "%16", "%17",
-      "%18", "%19", "%1a", "%1b", "%1c", "%1d", "%1e", "%1f",
-      "%20", "%21", "%22", "%23", "%24", "%25", "%26", "%27",
-      "%28", "%29", "%2a", "%2b", "%2c", "%2d", "%2e", "%2f",
-      "%30", "%31", "%32", "%33", "%34", "%35", "%36", "%37",
-      "%38", "%39", "%3a", "%3b", "%3c", "%3d", "%3e", "%3f",
-      "%40", "%41", "%42", "%43", "%44", "%45", "%46", "%47",
-      "%48", "%49", "%4a", "%4b", "%4c", "%4d", "%4e", "%4f",
-      "%50", "%51", "%52", "%53", "%54", "%55", "%56", "%57",
-      "%58", "%59", "%5a", "%5b", "%5c", "%5d", "%5e", "%5f",
-      "%60", "%61", "%62", "%63", "%64", "%65", "%66", "%67",
-      "%68", "%69", "%6a", "%6b", "%6c", "%6d", "%6e", "%6f",
-      "%70", "%71", "%72", "%73", "%74", "%75", "%76", "%77",
-      "%78", "%79", "%7a", "%7b", "%7c", "%7d", "%7e", "%7f",
-      "%80", "%81", "%82", "%83", "%84", "%85", "%86", "%87",
-      "%88", "%89", "%8a", "%8b", "%8c", "%8d", "%8e", "%8f",
-      "%90", "%91", "%92", "%93", "%94", "%95", "%96", "%97",
-      "%98", "%99", "%9a", "%9b", "%9c", "%9d", "%9e", "%9f",
-      "%a0", "%a1", "%a2", "%a3", "%a4", "%a5", "%a6", "%a7",
-      "%a8", "%a9", "%aa", "%ab", "%ac", "%ad", "%ae", "%af",
-      "%b0", "%b1", "%b2", "%b3", "%b4", "%b5", "%b6", "%b7",
-      "%b8", "%b9", "%ba", "%bb", "%bc", "%bd", "%be", "%bf",
-      "%c0", "%c1", "%c2", "%c3", "%c4", "%c5", "%c6", "%c7",
-      "%c8", "%c9", "%ca", "%cb", "%cc", "%cd", "%ce", "%cf",
-      "%d0", "%d1", "%d2", "%d3", "%d4", "%d5", "%d6", "%d7",
-      "%d8", "%d9", "%da", "%db", "%dc", "%dd", "%de", "%df",
-      "%e0", "%e1", "%e2", "%e3", "%e4", "%e5", "%e6", "%e7",
-      "%e8", "%e9", "%ea", "%eb", "%ec", "%ed", "%ee", "%ef",
-      "%f0", "%f1", "%f2", "%f3", "%f4", "%f5", "%f6", "%f7",
-      "%f8", "%f9", "%fa", "%fb", "%fc", "%fd", "%fe", "%ff"
-  };
+  private final static char ASCII_LIMIT = 0x80;
+  private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
   /**
-   * <p>Returns the percent-encoded UTF-8 representation of a String.</p>
-   * <p>In order to avoid producing percent-encoded CESU-8 (as described in
-   * the Unicode Consortium's <a href="http://www.unicode.org/reports/tr26/">
-   * Technical Report #26</a>), this is done in two steps:
-   * <ol>
-   * <li>Re-encode the characters from their Java-internal UTF-16 representations
-   * into their UTF-8 representations.</li>
-   * <li>Percent-encode each of the bytes in the UTF-8 representation.
-   * This is possible on byte level because all characters that do not have
-   * a <code>%xx</code> representation are represented in one byte in UTF-8.</li>
-   * </ol></p>
-   * @param input input String
-   * @return encoded representation
+   * Percent-encoded representations of all ASCII characters,
+   * <code>null</code> for characters which are written as they are.
+   * Unsafe characters and control characters are encoded; unreserved
+   * characters (<code>-._~</code>, ALPHA, DIGIT) and all other ASCII characters are not.
    */
-  private String encodeInternal(final String input) {
-    StringBuilder resultStr = new StringBuilder();
+  private final static String[] ESCAPED = new String[ASCII_LIMIT];
 
-    try {
-      for (byte utf8Byte : input.getBytes("UTF-8")) {
-        if (isUnsafe(utf8Byte)) { // case unsafe
-          resultStr.append(hex[utf8Byte]);
-        } else if (map != null && map.containsKey((char) utf8Byte)) { // case mapping
-          resultStr.append(map.get((char) utf8Byte));
-        } else if (isUnreserved(utf8Byte)) { // case unreserved
-          resultStr.append((char) utf8Byte);
-        } else if (utf8Byte >= 0) { // case other ASCII
-          if (utf8Byte < ' ') {
-            resultStr.append(hex[utf8Byte]);
-          } else {
-            resultStr.append((char) utf8Byte);
-          }
-        } else { // case UTF-8 continuation byte
-          resultStr.append(hex[256 + utf8Byte]); // index adjusted for the usage of signed bytes
-        }
+  static {
+    for (char c = 0; c < ASCII_LIMIT; c++) {
+      if (c < ' ' || UNSAFE.indexOf(c) >= 0) {
+        ESCAPED[c] = new String(new char[] { '%', HEX_DIGITS[c >> 4], HEX_DIGITS[c & 0x0F] });
       }
-    } catch (UnsupportedEncodingException e) { // should never happen; UTF-8 is always there
-      return null;
     }
-    return resultStr.toString();
   }
 
-  private boolean isUnsafe(final byte utf8Byte) {
-    return unsafe.indexOf(utf8Byte) >= 0;
+  /**
+   * <p>Appends the percent-encoded UTF-8 representation of a non-ASCII code point.</p>
+   * <p>In order to avoid producing percent-encoded CESU-8 (as described in
+   * the Unicode Consortium's <a href="http://www.unicode.org/reports/tr26/">
+   * Technical Report #26</a>), surrogate pairs have to be combined into
+   * one code point before calling this method.
+   * All bytes of a multi-byte UTF-8 sequence are percent-encoded.</p>
+   * @param resultStr the result to append to
+   * @param codePoint Unicode code point outside the ASCII range
+   */
+  private static void appendUtf8(final StringBuilder resultStr, final int codePoint) {
+    if (codePoint < 0x800) {
+      appendByte(resultStr, 0xC0 | codePoint >> 6);
+    } else if (codePoint < 0x10000) {
+      appendByte(resultStr, 0xE0 | codePoint >> 12);
+      appendByte(resultStr, 0x80 | codePoint >> 6 & 0x3F);
+    } else {
+      appendByte(resultStr, 0xF0 | codePoint >> 18);
+      appendByte(resultStr, 0x80 | codePoint >> 12 & 0x3F);
+      appendByte(resultStr, 0x80 | codePoint >> 6 & 0x3F);
+    }
+    appendByte(resultStr, 0x80 | codePoint & 0x3F);
   }
 
-  private boolean isUnreserved(final byte utf8Byte) {
-    return unreserved.indexOf(utf8Byte) >= 0
-        || 'A' <= utf8Byte && utf8Byte <= 'Z' // case A..Z
-        || 'a' <= utf8Byte && utf8Byte <= 'z' // case a..z
-        || '0' <= utf8Byte && utf8Byte <= '9'; // case 0..9
+  private static void appendByte(final StringBuilder resultStr, final int utf8Byte) {
+    resultStr.append('%').append(HEX_DIGITS[utf8Byte >> 4 & 0x0F]).append(HEX_DIGITS[utf8Byte & 0x0F]);
   }
 }
@@ -16,6 +16,7 @@
 package com.sap.core.odata.core.edm.parser;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +71,7 @@ public class EdmParser {
   private List<NavigationProperty> navProperties = new ArrayList<NavigationProperty>();
   private String currentHandledStartTagName;
   private String currentNamespace;
+  private Map<String, String> resolvedAliases;
   private final String DEFAULT_NAMESPACE = "";
 
   public DataServices readMetadata(final XMLStreamReader reader, final boolean validate)
@@ -104,6 +106,46 @@ public class EdmParser {
 
   }
 
+  /**
+   * Reads a single top-level element of a schema (entity type, complex type,
+   * association or entity container) without reading the rest of the document.
+   * @param reader reader positioned on the start tag of the element
+   * @param namespace namespace of the schema the element belongs to
+   * @param aliases namespaces by alias; qualified names the element refers to
+   * are read with the namespace instead of the alias
+   * @param type expected result type
+   * @return the element read
+   * @throws EntityProviderException if the element is not of the expected type or cannot be read
+   */
+  <T> T readSchemaElement(final XMLStreamReader reader, final String namespace, final Map<String, String> aliases, final Class<T> type) throws EntityProviderException {
+    try {
+      initialize();
+      currentNamespace = namespace;
+      resolvedAliases = aliases;
+      extractNamespaces(reader);
+      currentHandledStartTagName = reader.getLocalName();
+      Object element;
+      if (EdmParserConstants.EDM_ENTITY_TYPE.equals(currentHandledStartTagName)) {
+        element = readEntityType(reader);
+      } else if (EdmParserConstants.EDM_COMPLEX_TYPE.equals(currentHandledStartTagName)) {
+        element = readComplexType(reader);
+      } else if (EdmParserConstants.EDM_ASSOCIATION.equals(currentHandledStartTagName)) {
+        element = readAssociation(reader);
+      } else if (EdmParserConstants.EDM_ENTITY_CONTAINER.equals(currentHandledStartTagName)) {
+        element = readEntityContainer(reader);
+      } else {
+        element = null;
+      }
+      if (!type.isInstance(element)) {
+        throw new EntityProviderException(EntityProviderException.COMMON.addContent("Unexpected element " + currentHandledStartTagName));
+      }
+      reader.close();
+      return type.cast(element);
+    } catch (XMLStreamException e) {
+      throw new EntityProviderException(EntityProviderException.COMMON, e);
+    }
+  }
+
   private Schema readSchema(final XMLStreamReader reader) throws XMLStreamException, EntityProviderException {
     reader.require(XMLStreamConstants.START_ELEMENT, Edm.NAMESPACE_EDM_2008_09, EdmParserConstants.EDM_SCHEMA);
 
@@ -742,7 +784,8 @@ public class EdmParser {
     if (names.length != 2) {
       throw new EntityProviderException(EntityProviderException.COMMON.addContent("Invalid type"));
     } else {
-      return new FullQualifiedName(names[0], names[1]);
+      final String namespace = resolvedAliases.get(names[0]);
+      return new FullQualifiedName(namespace == null ? names[0] : namespace, names[1]);
     }
 
   }
@@ -855,6 +898,7 @@ public class EdmParser {
   }
 
   private void initialize() {
+    resolvedAliases = Collections.emptyMap();
     namespaceMap = new HashMap<String, String>();
     mandatoryNamespaces = new HashMap<String, String>();
     mandatoryNamespaces.put(Edm.PREFIX_EDMX, Edm.NAMESPACE_EDMX_2007_06);
@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.edm.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sap.core.odata.api.edm.FullQualifiedName;
+import com.sap.core.odata.api.ep.EntityProviderException;
+
+/**
+ * Index over the text of an EDMX document.
+ * <p>A single scan over the characters of the document records where the
+ * entity types, complex types, associations and entity containers of each
+ * schema start and end, together with the namespace declarations in scope.
+ * No objects are created for the content of these elements; they can be read
+ * later from their {@link Fragment}.</p>
+ * <p>The aliases of schemas and of <code>Using</code> elements are collected in
+ * the same scan, so that the aliases of the whole document are known before the
+ * first fragment is read.</p>
+ * @author SAP AG
+ */
+final class EdmxIndex {
+
+  /**
+   * Position of a top-level schema element inside the document.
+   */
+  static final class Fragment {
+    private final String namespace;
+    private final String namespaceDeclarations;
+    private final int start;
+    private int end;
+
+    private Fragment(final String namespace, final String namespaceDeclarations, final int start) {
+      this.namespace = namespace;
+      this.namespaceDeclarations = namespaceDeclarations;
+      this.start = start;
+    }
+
+    /** Returns the namespace of the schema the element belongs to. */
+    String getNamespace() {
+      return namespace;
+    }
+
+    /** Returns the namespace declarations of the enclosing elements as attribute text. */
+    String getNamespaceDeclarations() {
+      return namespaceDeclarations;
+    }
+
+    int getStart() {
+      return start;
+    }
+
+    int getEnd() {
+      return end;
+    }
+  }
+
+  private final String document;
+  private final Map<FullQualifiedName, Fragment> entityTypes = new HashMap<FullQualifiedName, Fragment>();
+  private final Map<FullQualifiedName, Fragment> complexTypes = new HashMap<FullQualifiedName, Fragment>();
+  private final Map<FullQualifiedName, Fragment> associations = new HashMap<FullQualifiedName, Fragment>();
+  private final Map<String, Fragment> entityContainers = new HashMap<String, Fragment>();
+  private final Map<String, String> aliases = new HashMap<String, String>();
+
+  private int position;
+
+  EdmxIndex(final String document) throws EntityProviderException {
+    this.document = document;
+    scan();
+  }
+
+  String getDocument() {
+    return document;
+  }
+
+  /** Returns the namespaces by alias. */
+  Map<String, String> getAliases() {
+    return Collections.unmodifiableMap(aliases);
+  }
+
+  /** Returns the name qualified by the namespace instead of an alias. */
+  FullQualifiedName resolve(final FullQualifiedName name) {
+    final String namespace = aliases.get(name.getNamespace());
+    return namespace == null ? name : new FullQualifiedName(namespace, name.getName());
+  }
+
+  Fragment getEntityType(final FullQualifiedName name) {
+    return entityTypes.get(name);
+  }
+
+  Fragment getComplexType(final FullQualifiedName name) {
+    return complexTypes.get(name);
+  }
+
+  Fragment getAssociation(final FullQualifiedName name) {
+    return associations.get(name);
+  }
+
+  Fragment getEntityContainer(final String name) {
+    return entityContainers.get(name);
+  }
+
+  /** Returns the text of the element, including its start and end tags. */
+  String getText(final Fragment fragment) {
+    return document.substring(fragment.getStart(), fragment.getEnd());
+  }
+
+  private void scan() throws EntityProviderException {
+    // namespace declarations in scope for each open element
+    List<String> scopes = new ArrayList<String>();
+    int schemaDepth = -1;
+    String schemaNamespace = null;
+    Fragment fragment = null;
+    String fragmentKind = null;
+    String fragmentName = null;
+
+    position = document.indexOf('<');
+    while (position >= 0) {
+      final int tagStart = position;
+      if (document.startsWith("<!--", position)) {
+        skipPast("-->");
+      } else if (document.startsWith("<![CDATA[", position)) {
+        skipPast("]]>");
+      } else if (document.startsWith("<?", position)) {
+        skipPast("?>");
+      } else if (document.startsWith("<!", position)) {
+        skipDeclaration();
+      } else if (document.startsWith("</", position)) {
+        skipPast(">");
+        if (scopes.isEmpty()) {
+          throw new EntityProviderException(EntityProviderException.COMMON.addContent("Unexpected end tag"));
+        }
+        scopes.remove(scopes.size() - 1);
+        if (fragment != null && scopes.size() == schemaDepth + 1) {
+          fragment.end = position;
+          register(fragmentKind, fragmentName, fragment);
+          fragment = null;
+        } else if (scopes.size() == schemaDepth) {
+          schemaDepth = -1;
+        }
+      } else {
+        position++;
+        final String localName = localName(readName());
+        final String parentScope = scopes.isEmpty() ? "" : scopes.get(scopes.size() - 1);
+        StringBuilder declarations = null;
+        String name = null;
+        String namespace = null;
+        String alias = null;
+        boolean empty = false;
+        while (true) {
+          skipWhitespace();
+          if (position >= document.length()) {
+            throw new EntityProviderException(EntityProviderException.COMMON.addContent("Unexpected end of document"));
+          }
+          final char c = document.charAt(position);
+          if (c == '>') {
+            position++;
+            break;
+          } else if (c == '/') {
+            skipPast(">");
+            empty = true;
+            break;
+          }
+          final int attributeStart = position;
+          final String attributeName = readName();
+          final String value = readAttributeValue();
+          if (attributeName.equals("xmlns") || attributeName.startsWith("xmlns:")) {
+            if (declarations == null) {
+              declarations = new StringBuilder(parentScope);
+            }
+            declarations.append(' ').append(document, attributeStart, position);
+          } else if (attributeName.equals(EdmParserConstants.EDM_NAME)) {
+            name = value;
+          } else if (attributeName.equals(EdmParserConstants.EDM_SCHEMA_NAMESPACE)) {
+            namespace = value;
+          } else if (attributeName.equals(EdmParserConstants.EDM_SCHEMA_ALIAS)) {
+            alias = value;
+          }
+        }
+
+        if (schemaDepth < 0) {
+          if (EdmParserConstants.EDM_SCHEMA.equals(localName) && !empty) {
+            schemaDepth = scopes.size();
+            schemaNamespace = namespace;
+            addAlias(alias, namespace);
+          }
+        } else if (fragment == null && scopes.size() == schemaDepth + 1 && EdmParserConstants.EDM_USING.equals(localName)) {
+          addAlias(alias, namespace);
+        } else if (fragment == null && scopes.size() == schemaDepth + 1 && name != null && isIndexed(localName)) {
+          fragment = new Fragment(schemaNamespace, parentScope, tagStart);
+          fragmentKind = localName;
+          fragmentName = name;
+          if (empty) {
+            fragment.end = position;
+            register(fragmentKind, fragmentName, fragment);
+            fragment = null;
+          }
+        }
+        if (!empty) {
+          scopes.add(declarations == null ? parentScope : declarations.toString());
+        }
+      }
+      position = document.indexOf('<', position);
+    }
+    if (!scopes.isEmpty()) {
+      throw new EntityProviderException(EntityProviderException.COMMON.addContent("Unexpected end of document"));
+    }
+  }
+
+  private static boolean isIndexed(final String localName) {
+    return EdmParserConstants.EDM_ENTITY_TYPE.equals(localName)
+        || EdmParserConstants.EDM_COMPLEX_TYPE.equals(localName)
+        || EdmParserConstants.EDM_ASSOCIATION.equals(localName)
+        || EdmParserConstants.EDM_ENTITY_CONTAINER.equals(localName);
+  }
+
+  private void addAlias(final String alias, final String namespace) {
+    if (alias != null && namespace != null) {
+      aliases.put(alias, namespace);
+    }
+  }
+
+  /** Records the fragment unless an element of the same kind and name has been seen before. */
+  private void register(final String kind, final String name, final Fragment fragment) {
+    if (EdmParserConstants.EDM_ENTITY_CONTAINER.equals(kind)) {
+      if (!entityContainers.containsKey(name)) {
+        entityContainers.put(name, fragment);
+      }
+    } else {
+      final Map<FullQualifiedName, Fragment> fragments =
+          EdmParserConstants.EDM_ENTITY_TYPE.equals(kind) ? entityTypes :
+              EdmParserConstants.EDM_COMPLEX_TYPE.equals(kind) ? complexTypes : associations;
+      final FullQualifiedName key = new FullQualifiedName(fragment.getNamespace(), name);
+      if (!fragments.containsKey(key)) {
+        fragments.put(key, fragment);
+      }
+    }
+  }
+
+  private void skipPast(final String end) throws EntityProviderException {
+    final int index = document.indexOf(end, position + 1);
+    if (index < 0) {
+      throw new EntityProviderException(EntityProviderException.COMMON.addContent("Unexpected end of document"));
+    }
+    position = index + end.length();
+  }
+
+  /** Skips a markup declaration like a document type declaration, including its internal subset. */
+  private void skipDeclaration() throws EntityProviderException {
+    int depth = 0;
+    for (int i = position + 2; i < document.length(); i++) {
+      final char c = document.charAt(i);
+      if (c == '[') {
+        depth++;
+      } else if (c == ']') {
+        depth--;
+      } else if (c == '>' && depth <= 0) {
+        position = i + 1;
+        return;
+      }
+    }
+    throw new EntityProviderException(EntityProviderException.COMMON.addContent("Unexpected end of document"));
+  }
+
+  private void skipWhitespace() {
+    while (position < document.length() && Character.isWhitespace(document.charAt(position))) {
+      position++;
+    }
+  }
+
+  private String readName() {
+    final int start = position;
+    while (position < document.length()) {
+      final char c = document.charAt(position);
+      if (Character.isWhitespace(c) || c == '=' || c == '>' || c == '/') {
+        break;
+      }
+      position++;
+    }
+    return document.substring(start, position);
+  }
+
+  private String readAttributeValue() throws EntityProviderException {
+    skipWhitespace();
+    if (position >= document.length() || document.charAt(position) != '=') {
+      throw new EntityProviderException(EntityProviderException.COMMON.addContent("Invalid attribute"));
+    }
+    position++;
+    skipWhitespace();
+    if (position >= document.length()) {
+      throw new EntityProviderException(EntityProviderException.COMMON.addContent("Invalid attribute"));
+    }
+    final char quote = document.charAt(position);
+    if (quote != '"' && quote != '\'') {
+      throw new EntityProviderException(EntityProviderException.COMMON.addContent("Invalid attribute"));
+    }
+    final int end = document.indexOf(quote, position + 1);
+    if (end < 0) {
+      throw new EntityProviderException(EntityProviderException.COMMON.addContent("Unexpected end of document"));
+    }
+    final String value = document.substring(position + 1, end);
+    position = end + 1;
+    return value;
+  }
+
+  private static String localName(final String qualifiedName) {
+    final int colon = qualifiedName.indexOf(':');
+    return colon < 0 ? qualifiedName : qualifiedName.substring(colon + 1);
+  }
+}
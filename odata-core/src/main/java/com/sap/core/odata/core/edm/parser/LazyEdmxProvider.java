@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.edm.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.sap.core.odata.api.edm.FullQualifiedName;
+import com.sap.core.odata.api.edm.provider.Association;
+import com.sap.core.odata.api.edm.provider.AssociationSet;
+import com.sap.core.odata.api.edm.provider.ComplexType;
+import com.sap.core.odata.api.edm.provider.EdmProvider;
+import com.sap.core.odata.api.edm.provider.EntityContainer;
+import com.sap.core.odata.api.edm.provider.EntityContainerInfo;
+import com.sap.core.odata.api.edm.provider.EntitySet;
+import com.sap.core.odata.api.edm.provider.EntityType;
+import com.sap.core.odata.api.edm.provider.FunctionImport;
+import com.sap.core.odata.api.edm.provider.Schema;
+import com.sap.core.odata.api.ep.EntityProviderException;
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.core.edm.parser.EdmxIndex.Fragment;
+
+/**
+ * Provider for an EDMX document that reads the elements of its schemas only on demand.
+ * <p>Parsing only indexes the positions of entity types, complex types, associations
+ * and entity containers; each of them is read and kept on first access.
+ * Qualified names may use the alias of a namespace; they are resolved to the
+ * namespace, both in requests to this provider and in the elements read.
+ * Metadata are not validated.</p>
+ * @author SAP AG
+ */
+public class LazyEdmxProvider extends EdmProvider {
+
+  private static final String DEFAULT_ENCODING = "UTF-8";
+  private static final String FRAGMENT_ROOT = "Fragment";
+
+  private EdmxIndex index;
+  private final Map<FullQualifiedName, EntityType> entityTypes = new HashMap<FullQualifiedName, EntityType>();
+  private final Map<FullQualifiedName, ComplexType> complexTypes = new HashMap<FullQualifiedName, ComplexType>();
+  private final Map<FullQualifiedName, Association> associations = new HashMap<FullQualifiedName, Association>();
+  private final Map<String, EntityContainer> entityContainers = new HashMap<String, EntityContainer>();
+  private List<Schema> schemas;
+
+  public LazyEdmxProvider parse(final InputStream in) throws EntityProviderException {
+    index = new EdmxIndex(readDocument(in));
+    return this;
+  }
+
+  @Override
+  public EntityContainerInfo getEntityContainerInfo(final String name) throws ODataException {
+    return getEntityContainer(name);
+  }
+
+  @Override
+  public synchronized EntityType getEntityType(final FullQualifiedName edmFQName) throws ODataException {
+    final FullQualifiedName name = index.resolve(edmFQName);
+    EntityType entityType = entityTypes.get(name);
+    if (entityType == null) {
+      final Fragment fragment = index.getEntityType(name);
+      if (fragment != null) {
+        entityType = read(fragment, EntityType.class);
+        entityTypes.put(name, entityType);
+      }
+    }
+    return entityType;
+  }
+
+  @Override
+  public synchronized ComplexType getComplexType(final FullQualifiedName edmFQName) throws ODataException {
+    final FullQualifiedName name = index.resolve(edmFQName);
+    ComplexType complexType = complexTypes.get(name);
+    if (complexType == null) {
+      final Fragment fragment = index.getComplexType(name);
+      if (fragment != null) {
+        complexType = read(fragment, ComplexType.class);
+        complexTypes.put(name, complexType);
+      }
+    }
+    return complexType;
+  }
+
+  @Override
+  public synchronized Association getAssociation(final FullQualifiedName edmFQName) throws ODataException {
+    final FullQualifiedName name = index.resolve(edmFQName);
+    Association association = associations.get(name);
+    if (association == null) {
+      final Fragment fragment = index.getAssociation(name);
+      if (fragment != null) {
+        association = read(fragment, Association.class);
+        associations.put(name, association);
+      }
+    }
+    return association;
+  }
+
+  @Override
+  public EntitySet getEntitySet(final String entityContainer, final String name) throws ODataException {
+    final EntityContainer container = getEntityContainer(entityContainer);
+    if (container != null) {
+      for (EntitySet entitySet : container.getEntitySets()) {
+        if (entitySet.getName().equals(name)) {
+          return entitySet;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public AssociationSet getAssociationSet(final String entityContainer, final FullQualifiedName association, final String sourceEntitySetName, final String sourceEntitySetRole) throws ODataException {
+    final EntityContainer container = getEntityContainer(entityContainer);
+    if (container != null) {
+      final FullQualifiedName associationName = index.resolve(association);
+      for (AssociationSet associationSet : container.getAssociationSets()) {
+        if (associationSet.getAssociation().equals(associationName)
+            && ((associationSet.getEnd1().getEntitySet().equals(sourceEntitySetName) && associationSet.getEnd1().getRole().equals(sourceEntitySetRole))
+            || (associationSet.getEnd2().getEntitySet().equals(sourceEntitySetName) && associationSet.getEnd2().getRole().equals(sourceEntitySetRole)))) {
+          return associationSet;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public FunctionImport getFunctionImport(final String entityContainer, final String name) throws ODataException {
+    final EntityContainer container = getEntityContainer(entityContainer);
+    if (container != null) {
+      for (FunctionImport function : container.getFunctionImports()) {
+        if (function.getName().equals(name)) {
+          return function;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns all schemas; this reads the complete document once.
+   */
+  @Override
+  public synchronized List<Schema> getSchemas() throws ODataException {
+    if (schemas == null) {
+      schemas = new EdmParser().readMetadata(createStreamReader(index.getDocument()), false).getSchemas();
+    }
+    return schemas;
+  }
+
+  private synchronized EntityContainer getEntityContainer(final String name) throws EntityProviderException {
+    EntityContainer container = entityContainers.get(name);
+    if (container == null) {
+      final Fragment fragment = index.getEntityContainer(name);
+      if (fragment != null) {
+        container = read(fragment, EntityContainer.class);
+        entityContainers.put(name, container);
+      }
+    }
+    return container;
+  }
+
+  /**
+   * Reads a single indexed element. The element text is wrapped into a root element
+   * carrying the namespace declarations of its original ancestors.
+   */
+  private <T> T read(final Fragment fragment, final Class<T> type) throws EntityProviderException {
+    final String text = new StringBuilder()
+        .append('<').append(FRAGMENT_ROOT).append(fragment.getNamespaceDeclarations()).append('>')
+        .append(index.getText(fragment))
+        .append("</").append(FRAGMENT_ROOT).append('>')
+        .toString();
+    final XMLStreamReader reader = createStreamReader(text);
+    try {
+      reader.nextTag();
+      reader.nextTag();
+    } catch (XMLStreamException e) {
+      throw new EntityProviderException(EntityProviderException.COMMON, e);
+    }
+    return new EdmParser().readSchemaElement(reader, fragment.getNamespace(), index.getAliases(), type);
+  }
+
+  private static String readDocument(final InputStream in) throws EntityProviderException {
+    byte[] bytes = new byte[8192];
+    try {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      int count;
+      while ((count = in.read(bytes)) >= 0) {
+        buffer.write(bytes, 0, count);
+      }
+      bytes = buffer.toByteArray();
+    } catch (IOException e) {
+      throw new EntityProviderException(EntityProviderException.COMMON, e);
+    }
+
+    String encoding;
+    try {
+      final XMLStreamReader reader = createFactory().createXMLStreamReader(new ByteArrayInputStream(bytes));
+      encoding = reader.getEncoding();
+      reader.close();
+    } catch (XMLStreamException e) {
+      throw new EntityProviderException(EntityProviderException.COMMON, e);
+    }
+    if (encoding == null) {
+      encoding = DEFAULT_ENCODING;
+    }
+
+    try {
+      final String document = new String(bytes, encoding);
+      // a byte order mark is decoded as leading character
+      return document.length() > 0 && document.charAt(0) == '\uFEFF' ? document.substring(1) : document;
+    } catch (UnsupportedEncodingException e) {
+      throw new EntityProviderException(EntityProviderException.UNSUPPORTED_CHARACTER_ENCODING.addContent(encoding), e);
+    }
+  }
+
+  private static XMLStreamReader createStreamReader(final String text) throws EntityProviderException {
+    try {
+      return createFactory().createXMLStreamReader(new StringReader(text));
+    } catch (XMLStreamException e) {
+      throw new EntityProviderException(EntityProviderException.COMMON, e);
+    }
+  }
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    return factory;
+  }
+}
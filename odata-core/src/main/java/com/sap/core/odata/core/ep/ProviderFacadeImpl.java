@@ -37,6 +37,7 @@ import com.sap.core.odata.api.exception.ODataNotAcceptableException;
 import com.sap.core.odata.api.processor.ODataResponse;
 import com.sap.core.odata.core.commons.ContentType;
 import com.sap.core.odata.core.edm.parser.EdmxProvider;
+import com.sap.core.odata.core.edm.parser.LazyEdmxProvider;
 import com.sap.core.odata.core.edm.provider.EdmImplProv;
 
 /**
@@ -169,4 +170,9 @@ public class ProviderFacadeImpl implements EntityProviderInterface {
     return new EdmImplProv(provider);
   }
 
+  @Override
+  public Edm readMetadataLazily(final InputStream inputStream) throws EntityProviderException {
+    return new EdmImplProv(new LazyEdmxProvider().parse(inputStream));
+  }
+
 }
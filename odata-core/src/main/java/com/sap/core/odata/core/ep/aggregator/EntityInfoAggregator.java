@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.sap.core.odata.api.edm.Edm;
 import com.sap.core.odata.api.edm.EdmComplexType;
 import com.sap.core.odata.api.edm.EdmConcurrencyMode;
 import com.sap.core.odata.api.edm.EdmCustomizableFeedMappings;
@@ -41,6 +42,7 @@ import com.sap.core.odata.api.edm.EdmType;
 import com.sap.core.odata.api.edm.EdmTypeKind;
 import com.sap.core.odata.api.ep.EntityProviderException;
 import com.sap.core.odata.api.uri.ExpandSelectTreeNode;
+import com.sap.core.odata.core.commons.Encoder;
 
 /**
  * Aggregator to get easy and fast access to all for serialization and de-serialization necessary {@link EdmEntitySet} informations.
@@ -77,6 +79,9 @@ public class EntityInfoAggregator {
   private List<String> selectedPropertyNames;
   private List<String> selectedNavigationPropertyNames;
   private List<String> expandedNavigationPropertyNames;
+  private Set<String> selectedPropertyNameSet;
+  private Set<String> selectedNavigationPropertyNameSet;
+  private Set<String> expandedNavigationPropertyNameSet;
 
   private Map<String, EntityPropertyInfo> targetPath2EntityPropertyInfo = new HashMap<String, EntityPropertyInfo>();
   private List<String> noneSyndicationTargetPaths = new ArrayList<String>();
@@ -84,6 +89,7 @@ public class EntityInfoAggregator {
   private boolean isDefaultEntityContainer;
   private String entitySetName;
   private String entityContainerName;
+  private String encodedEntitySetPath;
 
   private EdmEntityType entityType;
   private EdmEntitySet entitySet;
@@ -219,6 +225,15 @@ public class EntityInfoAggregator {
     return entityContainerName;
   }
 
+  /**
+   * @return the percent-encoded path of the entity set relative to the service root,
+   *         i.e., the encoded entity set name, prefixed with the encoded entity container
+   *         name if the container is not the default entity container
+   */
+  public String getEncodedEntitySetPath() {
+    return encodedEntitySetPath;
+  }
+
   /**
    * @return unmodifiable set of all found target path names.
    */
@@ -309,6 +324,9 @@ public class EntityInfoAggregator {
       entitySetName = entitySet.getName();
       isDefaultEntityContainer = entitySet.getEntityContainer().isDefaultEntityContainer();
       entityContainerName = entitySet.getEntityContainer().getName();
+      encodedEntitySetPath = isDefaultEntityContainer ?
+          Encoder.encode(entitySetName) :
+          Encoder.encode(entityContainerName) + Edm.DELIMITER + Encoder.encode(entitySetName);
 
       propertyNames = entityType.getPropertyNames();
       navigationPropertyNames = entityType.getNavigationPropertyNames();
@@ -340,6 +358,10 @@ public class EntityInfoAggregator {
         }
       }
 
+      selectedPropertyNameSet = new HashSet<String>(selectedPropertyNames);
+      selectedNavigationPropertyNameSet = new HashSet<String>(selectedNavigationPropertyNames);
+      expandedNavigationPropertyNameSet = new HashSet<String>(expandedNavigationPropertyNames);
+
     } catch (EdmException e) {
       throw new EntityProviderException(EntityProviderException.COMMON, e);
     }
@@ -445,4 +467,16 @@ public class EntityInfoAggregator {
   public List<String> getExpandedNavigationPropertyNames() {
     return expandedNavigationPropertyNames;
   }
+
+  public boolean isSelectedProperty(final String name) {
+    return selectedPropertyNameSet.contains(name);
+  }
+
+  public boolean isSelectedNavigationProperty(final String name) {
+    return selectedNavigationPropertyNameSet.contains(name);
+  }
+
+  public boolean isExpandedNavigationProperty(final String name) {
+    return expandedNavigationPropertyNameSet.contains(name);
+  }
 }
@@ -18,14 +18,17 @@ package com.sap.core.odata.core.ep.aggregator;
 import com.sap.core.odata.api.edm.EdmException;
 import com.sap.core.odata.api.edm.EdmMultiplicity;
 import com.sap.core.odata.api.edm.EdmNavigationProperty;
+import com.sap.core.odata.core.commons.Encoder;
 
 public final class NavigationPropertyInfo {
   private String name;
+  private String encodedName;
   private EdmMultiplicity multiplicity;
 
   static NavigationPropertyInfo create(final EdmNavigationProperty property) throws EdmException {
     NavigationPropertyInfo info = new NavigationPropertyInfo();
     info.name = property.getName();
+    info.encodedName = Encoder.encode(info.name);
     info.multiplicity = property.getMultiplicity();
     return info;
   }
@@ -42,4 +45,11 @@ public final class NavigationPropertyInfo {
   public String getName() {
     return name;
   }
+
+  /**
+   * @return the percent-encoded name, ready to be used as URI path segment
+   */
+  public String getEncodedName() {
+    return encodedName;
+  }
 }
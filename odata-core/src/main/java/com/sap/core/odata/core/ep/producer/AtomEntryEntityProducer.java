@@ -159,7 +159,7 @@ public class AtomEntryEntityProducer {
     for (String name : eia.getSelectedNavigationPropertyNames()) {
       NavigationPropertyInfo info = eia.getNavigationPropertyInfo(name);
       boolean isFeed = (info.getMultiplicity() == EdmMultiplicity.MANY);
-      String self = createSelfLink(eia, data, info.getName());
+      String self = createSelfLink(eia, data, info.getEncodedName());
       appendAtomNavigationLink(writer, self, info.getName(), isFeed, eia, data);
     }
   }
@@ -186,7 +186,7 @@ public class AtomEntryEntityProducer {
 
   private void appendInlineFeed(final XMLStreamWriter writer, final String navigationPropertyName, final EntityInfoAggregator eia, final Map<String, Object> data, final String self) throws EntityProviderException {
     try {
-      if (eia.getExpandedNavigationPropertyNames().contains(navigationPropertyName)) {
+      if (eia.isExpandedNavigationProperty(navigationPropertyName)) {
         if (properties.getCallbacks() != null && properties.getCallbacks().containsKey(navigationPropertyName)) {
           writer.writeStartElement(Edm.NAMESPACE_M_2007_08, FormatXml.M_INLINE);
 
@@ -219,7 +219,7 @@ public class AtomEntryEntityProducer {
 
   private void appendInlineEntry(final XMLStreamWriter writer, final String navigationPropertyName, final EntityInfoAggregator eia, final Map<String, Object> data) throws EntityProviderException {
     try {
-      if (eia.getExpandedNavigationPropertyNames().contains(navigationPropertyName)) {
+      if (eia.isExpandedNavigationProperty(navigationPropertyName)) {
         if (properties.getCallbacks() != null && properties.getCallbacks().containsKey(navigationPropertyName)) {
           writer.writeStartElement(Edm.NAMESPACE_M_2007_08, FormatXml.M_INLINE);
 
@@ -417,11 +417,7 @@ public class AtomEntryEntityProducer {
   }
 
   protected static String createSelfLink(final EntityInfoAggregator eia, final Map<String, Object> data, final String extension) throws EntityProviderException {
-    StringBuilder sb = new StringBuilder();
-    if (!eia.isDefaultEntityContainer()) {
-      sb.append(Encoder.encode(eia.getEntityContainerName())).append(Edm.DELIMITER);
-    }
-    sb.append(Encoder.encode(eia.getEntitySetName()));
+    StringBuilder sb = new StringBuilder(eia.getEncodedEntitySetPath());
 
     sb.append("(").append(createEntryKey(eia, data)).append(")").append(extension == null ? "" : ("/" + extension));
     return sb.toString();
@@ -30,7 +30,6 @@ import com.sap.core.odata.api.edm.EdmLiteralKind;
 import com.sap.core.odata.api.edm.EdmSimpleTypeException;
 import com.sap.core.odata.api.ep.EntityProviderException;
 import com.sap.core.odata.api.ep.EntityProviderWriteProperties;
-import com.sap.core.odata.core.commons.Encoder;
 import com.sap.core.odata.core.edm.EdmDateTimeOffset;
 import com.sap.core.odata.core.ep.aggregator.EntityInfoAggregator;
 import com.sap.core.odata.core.ep.util.FormatXml;
@@ -129,14 +128,7 @@ public class AtomFeedProducer {
   }
 
   private String createSelfLink(final EntityInfoAggregator eia) throws EntityProviderException {
-    StringBuilder sb = new StringBuilder();
-    if (!eia.isDefaultEntityContainer()) {
-      String entityContainerName = Encoder.encode(eia.getEntityContainerName());
-      sb.append(entityContainerName).append(Edm.DELIMITER);
-    }
-    String entitySetName = Encoder.encode(eia.getEntitySetName());
-    sb.append(entitySetName);
-    return sb.toString();
+    return eia.getEncodedEntitySetPath();
   }
 
   private void appendAtomMandatoryParts(final XMLStreamWriter writer, final EntityInfoAggregator eia) throws EntityProviderException {
@@ -171,16 +163,7 @@ public class AtomFeedProducer {
   }
 
   private String createAtomId(final EntityInfoAggregator eia) throws EntityProviderException {
-    String id = "";
-
-    if (!eia.isDefaultEntityContainer()) {
-      String entityContainerName = Encoder.encode(eia.getEntityContainerName());
-      id += entityContainerName + ".";
-    }
-    String entitySetName = Encoder.encode(eia.getEntitySetName());
-    id += entitySetName;
-
     URI serviceRoot = properties.getServiceRoot();
-    return serviceRoot + id;
+    return serviceRoot + eia.getEncodedEntitySetPath();
   }
 }
@@ -38,7 +38,6 @@ import com.sap.core.odata.api.ep.callback.WriteEntryCallbackResult;
 import com.sap.core.odata.api.ep.callback.WriteFeedCallbackContext;
 import com.sap.core.odata.api.ep.callback.WriteFeedCallbackResult;
 import com.sap.core.odata.api.exception.ODataApplicationException;
-import com.sap.core.odata.core.commons.Encoder;
 import com.sap.core.odata.core.ep.aggregator.EntityInfoAggregator;
 import com.sap.core.odata.core.ep.util.FormatJson;
 import com.sap.core.odata.core.ep.util.JsonStreamWriter;
@@ -101,7 +100,7 @@ public class JsonEntryEntityProducer {
       jsonStreamWriter.endObject();
 
       for (final String propertyName : type.getPropertyNames()) {
-        if (entityInfo.getSelectedPropertyNames().contains(propertyName)) {
+        if (entityInfo.isSelectedProperty(propertyName)) {
           jsonStreamWriter.separator();
           jsonStreamWriter.name(propertyName);
           JsonPropertyEntityProducer.appendPropertyValue(jsonStreamWriter, entityInfo.getPropertyInfo(propertyName), data.get(propertyName));
@@ -109,10 +108,10 @@ public class JsonEntryEntityProducer {
       }
 
       for (final String navigationPropertyName : type.getNavigationPropertyNames()) {
-        if (entityInfo.getSelectedNavigationPropertyNames().contains(navigationPropertyName)) {
+        if (entityInfo.isSelectedNavigationProperty(navigationPropertyName)) {
           jsonStreamWriter.separator();
           jsonStreamWriter.name(navigationPropertyName);
-          if (entityInfo.getExpandedNavigationPropertyNames().contains(navigationPropertyName)) {
+          if (entityInfo.isExpandedNavigationProperty(navigationPropertyName)) {
             if (properties.getCallbacks() != null && properties.getCallbacks().containsKey(navigationPropertyName)) {
               final EdmNavigationProperty navigationProperty = (EdmNavigationProperty) type.getProperty(navigationPropertyName);
               final boolean isFeed = navigationProperty.getMultiplicity() == EdmMultiplicity.MANY;
@@ -153,7 +152,7 @@ public class JsonEntryEntityProducer {
           } else {
             jsonStreamWriter.beginObject();
             jsonStreamWriter.name(FormatJson.DEFERRED);
-            JsonLinkEntityProducer.appendUri(jsonStreamWriter, location + "/" + Encoder.encode(navigationPropertyName));
+            JsonLinkEntityProducer.appendUri(jsonStreamWriter, location + "/" + entityInfo.getNavigationPropertyInfo(navigationPropertyName).getEncodedName());
             jsonStreamWriter.endObject();
           }
         }
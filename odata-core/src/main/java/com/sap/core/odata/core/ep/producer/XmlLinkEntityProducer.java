@@ -32,10 +32,10 @@ import com.sap.core.odata.core.ep.util.FormatXml;
  */
 public class XmlLinkEntityProducer {
 
-  private final EntityProviderWriteProperties properties;
+  private final String serviceRoot;
 
   public XmlLinkEntityProducer(final EntityProviderWriteProperties properties) throws EntityProviderException {
-    this.properties = properties;
+    serviceRoot = properties.getServiceRoot().toASCIIString();
   }
 
   public void append(final XMLStreamWriter writer, final EntityInfoAggregator entityInfo, final Map<String, Object> data, final boolean isRootElement) throws EntityProviderException {
@@ -44,10 +44,12 @@ public class XmlLinkEntityProducer {
       if (isRootElement) {
         writer.writeDefaultNamespace(Edm.NAMESPACE_D_2007_08);
       }
-      writer.writeCharacters(properties.getServiceRoot().toASCIIString());
+      writer.writeCharacters(serviceRoot);
       writer.writeCharacters(AtomEntryEntityProducer.createSelfLink(entityInfo, data, null));
       writer.writeEndElement();
-      writer.flush();
+      if (isRootElement) {
+        writer.flush();
+      }
     } catch (final XMLStreamException e) {
       throw new EntityProviderException(EntityProviderException.COMMON, e);
     }
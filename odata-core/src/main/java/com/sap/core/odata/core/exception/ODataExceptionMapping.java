@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.exception;
+
+import java.util.List;
+import java.util.Locale;
+
+import com.sap.core.odata.api.commons.HttpStatusCodes;
+import com.sap.core.odata.api.ep.EntityProviderException;
+import com.sap.core.odata.api.exception.ODataApplicationException;
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.api.exception.ODataHttpException;
+import com.sap.core.odata.api.exception.ODataMessageException;
+import com.sap.core.odata.api.processor.ODataErrorContext;
+import com.sap.core.odata.core.exception.MessageService.Message;
+
+/**
+ * Maps exceptions to the HTTP status, error code, message, and locale of
+ * error responses, for single requests as well as for the requests
+ * contained in batch requests.
+ * @author SAP AG
+ */
+public final class ODataExceptionMapping {
+
+  public static final Locale DEFAULT_RESPONSE_LOCALE = Locale.ENGLISH;
+
+  private ODataExceptionMapping() {}
+
+  /**
+   * Returns the exception an error response is created for: the application,
+   * HTTP, or message exception an {@link ODataException} has been caused by,
+   * or the exception itself.
+   * @param exception the exception
+   * @return the exception to be handled
+   */
+  public static Exception extractException(final Exception exception) {
+    if (exception instanceof ODataException) {
+      final ODataException odataException = (ODataException) exception;
+      if (odataException.isCausedByApplicationException()) {
+        return odataException.getApplicationExceptionCause();
+      } else if (odataException.isCausedByHttpException()) {
+        return odataException.getHttpExceptionCause();
+      } else if (odataException.isCausedByMessageException()) {
+        return odataException.getMessageExceptionCause();
+      }
+    }
+    return exception;
+  }
+
+  /**
+   * Sets HTTP status, error code, message, locale, and exception of an error
+   * context according to an exception. Messages of message exceptions are
+   * localized for the first supported of the given languages.
+   * @param context the error context
+   * @param exception the exception
+   * @param languages the acceptable languages of the request
+   */
+  public static void fillErrorContext(final ODataErrorContext context, final Exception exception, final List<Locale> languages) {
+    final Exception toHandleException = extractException(exception);
+    if (toHandleException instanceof ODataApplicationException) {
+      final ODataApplicationException applicationException = (ODataApplicationException) toHandleException;
+      context.setHttpStatus(applicationException.getHttpStatus());
+      context.setErrorCode(applicationException.getCode());
+      context.setMessage(applicationException.getMessage());
+      context.setLocale(applicationException.getLocale());
+    } else if (toHandleException instanceof ODataMessageException) {
+      final ODataMessageException messageException = (ODataMessageException) toHandleException;
+      if (messageException instanceof ODataHttpException) {
+        context.setHttpStatus(((ODataHttpException) messageException).getHttpStatus());
+      } else if (messageException instanceof EntityProviderException) {
+        context.setHttpStatus(HttpStatusCodes.BAD_REQUEST);
+      } else {
+        context.setHttpStatus(HttpStatusCodes.INTERNAL_SERVER_ERROR);
+      }
+      final Message localizedMessage = MessageService.getMessage(
+          MessageService.getSupportedLocale(languages, DEFAULT_RESPONSE_LOCALE), messageException.getMessageReference());
+      context.setErrorCode(messageException.getErrorCode());
+      context.setMessage(localizedMessage.getText());
+      context.setLocale(localizedMessage.getLocale());
+    } else {
+      context.setHttpStatus(HttpStatusCodes.INTERNAL_SERVER_ERROR);
+      context.setErrorCode(null);
+      context.setMessage(exception.getMessage());
+      context.setLocale(DEFAULT_RESPONSE_LOCALE);
+    }
+    context.setException(toHandleException);
+  }
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.core.commons.ContentType;
+
+/**
+ * <p>Caches parsed <code>Accept</code> headers and the results of content negotiation.</p>
+ * <p>Parsed <code>Accept</code> headers are cached by their raw header value.
+ * Negotiation results are kept in one {@link Table} per list of supported content types,
+ * i.e., per processor feature of a service. Each table is prefilled with the results
+ * for the most common <code>Accept</code> headers so that they resolve by a single lookup.</p>
+ * <p>All caches are bounded; the least recently used entries are evicted first.</p>
+ * @author SAP AG
+ */
+final class ContentNegotiationCache {
+
+  static final int MAX_ENTRIES = 256;
+
+  private static final String[] COMMON_ACCEPT_HEADERS = {
+      ContentType.WILDCARD.toContentTypeString(),
+      ContentType.APPLICATION_JSON.toContentTypeString(),
+      ContentType.APPLICATION_ATOM_XML.toContentTypeString(),
+      ContentType.APPLICATION_XML.toContentTypeString() };
+
+  private static final Map<String, List<ContentType>> acceptHeaders = createLruMap(MAX_ENTRIES);
+  private static final Map<List<String>, Table> tables = createLruMap(MAX_ENTRIES);
+
+  private ContentNegotiationCache() {}
+
+  /**
+   * Returns the cached content types of an <code>Accept</code> header.
+   * @param acceptHeader the raw header value
+   * @return the list of accepted content types or <code>null</code> if not cached
+   */
+  static List<ContentType> getAcceptHeaderContentTypes(final String acceptHeader) {
+    return acceptHeaders.get(acceptHeader);
+  }
+
+  /**
+   * Caches the content types of an <code>Accept</code> header.
+   * @param acceptHeader the raw header value
+   * @param contentTypes the accepted content types in order of preference
+   * @return the unmodifiable list of accepted content types as stored in the cache
+   */
+  static List<ContentType> putAcceptHeaderContentTypes(final String acceptHeader, final List<ContentType> contentTypes) {
+    final List<ContentType> cached = Collections.unmodifiableList(new ArrayList<ContentType>(contentTypes));
+    acceptHeaders.put(acceptHeader, cached);
+    return cached;
+  }
+
+  /**
+   * Returns the negotiation table for a list of supported content types,
+   * creating and prefilling it if necessary.
+   * @param supportedContentTypes the supported content types as returned by the service
+   * @return the negotiation table
+   * @throws IllegalArgumentException if a supported content type could not be parsed
+   */
+  static Table getTable(final List<String> supportedContentTypes) throws IllegalArgumentException {
+    Table table = tables.get(supportedContentTypes);
+    if (table == null) {
+      final List<String> key = Collections.unmodifiableList(new ArrayList<String>(supportedContentTypes));
+      table = new Table(key);
+      tables.put(key, table);
+    }
+    return table;
+  }
+
+  private static <K, V> Map<K, V> createLruMap(final int maxEntries) {
+    return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+        return size() > maxEntries;
+      }
+    });
+  }
+
+  /**
+   * Negotiation results for one list of supported content types.
+   */
+  static final class Table {
+
+    private final List<ContentType> supportedContentTypes;
+    private final Map<String, ContentType> negotiated = createLruMap(MAX_ENTRIES);
+
+    private Table(final List<String> supportedContentTypes) throws IllegalArgumentException {
+      final List<ContentType> parsed = new ArrayList<ContentType>(supportedContentTypes.size());
+      for (final String contentType : supportedContentTypes) {
+        parsed.add(ContentType.create(contentType));
+      }
+      this.supportedContentTypes = Collections.unmodifiableList(parsed);
+
+      for (final String acceptHeader : COMMON_ACCEPT_HEADERS) {
+        try {
+          negotiated.put(acceptHeader,
+              ODataSubLocator.negotiate(Collections.singletonList(ContentType.create(acceptHeader)), this.supportedContentTypes));
+        } catch (final ODataException e) {
+          // not acceptable; this is decided again (and reported) for the actual request
+        }
+      }
+    }
+
+    /**
+     * @return the parsed supported content types in the order given by the service
+     */
+    List<ContentType> getSupportedContentTypes() {
+      return supportedContentTypes;
+    }
+
+    /**
+     * Negotiates the response content type.
+     * @param acceptHeader the raw <code>Accept</code> header value used as cache key,
+     *                     or <code>null</code> if the result must not be cached
+     * @param acceptedContentTypes the accepted content types in order of preference
+     * @return the negotiated content type
+     * @throws ODataException if no supported content type is acceptable
+     */
+    ContentType negotiate(final String acceptHeader, final List<ContentType> acceptedContentTypes) throws ODataException {
+      if (acceptHeader == null) {
+        return ODataSubLocator.negotiate(acceptedContentTypes, supportedContentTypes);
+      }
+      ContentType contentType = negotiated.get(acceptHeader);
+      if (contentType == null) {
+        contentType = ODataSubLocator.negotiate(acceptedContentTypes, supportedContentTypes);
+        negotiated.put(acceptHeader, contentType);
+      }
+      return contentType;
+    }
+  }
+}
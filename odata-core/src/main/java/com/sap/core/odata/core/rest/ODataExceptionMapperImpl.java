@@ -36,18 +36,13 @@ import javax.ws.rs.ext.Provider;
 import com.sap.core.odata.api.ODataServiceFactory;
 import com.sap.core.odata.api.commons.HttpStatusCodes;
 import com.sap.core.odata.api.ep.EntityProviderException;
-import com.sap.core.odata.api.exception.MessageReference;
 import com.sap.core.odata.api.exception.ODataApplicationException;
-import com.sap.core.odata.api.exception.ODataException;
-import com.sap.core.odata.api.exception.ODataHttpException;
-import com.sap.core.odata.api.exception.ODataMessageException;
 import com.sap.core.odata.api.processor.ODataErrorCallback;
 import com.sap.core.odata.api.processor.ODataErrorContext;
 import com.sap.core.odata.api.processor.ODataResponse;
 import com.sap.core.odata.core.commons.ContentType;
 import com.sap.core.odata.core.ep.ProviderFacadeImpl;
-import com.sap.core.odata.core.exception.MessageService;
-import com.sap.core.odata.core.exception.MessageService.Message;
+import com.sap.core.odata.core.exception.ODataExceptionMapping;
 
 /**
  * Creates an error response according to the format defined by the OData standard
@@ -57,7 +52,7 @@ import com.sap.core.odata.core.exception.MessageService.Message;
 @Provider
 public class ODataExceptionMapperImpl implements ExceptionMapper<Exception> {
 
-  private static final Locale DEFAULT_RESPONSE_LOCALE = Locale.ENGLISH;
+  private static final Locale DEFAULT_RESPONSE_LOCALE = ODataExceptionMapping.DEFAULT_RESPONSE_LOCALE;
 
   @Context
   UriInfo uriInfo;
@@ -69,17 +64,9 @@ public class ODataExceptionMapperImpl implements ExceptionMapper<Exception> {
   @Override
   public Response toResponse(final Exception exception) {
     try {
-      final Exception toHandleException = extractException(exception);
-
       ODataErrorContext errorContext;
-      if (toHandleException instanceof ODataApplicationException) {
-        errorContext = extractInformationForApplicationException((ODataApplicationException) toHandleException);
-      } else if (toHandleException instanceof ODataHttpException) {
-        errorContext = extractInformationForHttpException((ODataHttpException) toHandleException);
-      } else if (toHandleException instanceof ODataMessageException) {
-        errorContext = extractInformationForMessageException((ODataMessageException) toHandleException);
-      } else if (toHandleException instanceof WebApplicationException) {
-        errorContext = extractInformationForWebApplicationException((WebApplicationException) toHandleException);
+      if (exception instanceof WebApplicationException) {
+        errorContext = extractInformationForWebApplicationException((WebApplicationException) exception);
       } else {
         errorContext = extractInformationForException(exception);
       }
@@ -90,7 +77,7 @@ public class ODataExceptionMapperImpl implements ExceptionMapper<Exception> {
         try {
           oDataResponse = callback.handleError(errorContext);
         } catch (ODataApplicationException e) {
-          errorContext = extractInformationForApplicationException(e);
+          errorContext = extractInformationForException(e);
           oDataResponse = convertContextToODataResponse(errorContext);
         }
 
@@ -110,52 +97,6 @@ public class ODataExceptionMapperImpl implements ExceptionMapper<Exception> {
     }
   }
 
-  private ODataErrorContext extractInformationForApplicationException(final ODataApplicationException toHandleException) {
-    ODataErrorContext context = createDefaultErrorContext();
-    context.setContentType(getContentType().toContentTypeString());
-    context.setHttpStatus(toHandleException.getHttpStatus());
-    context.setErrorCode(toHandleException.getCode());
-    context.setMessage(toHandleException.getMessage());
-    context.setLocale(toHandleException.getLocale());
-    context.setException(toHandleException);
-    return context;
-  }
-
-  private ODataErrorContext extractInformationForHttpException(final ODataHttpException toHandleException) {
-    MessageReference messageReference = toHandleException.getMessageReference();
-    Message localizedMessage = extractEntity(messageReference);
-
-    ODataErrorContext context = createDefaultErrorContext();
-    context.setContentType(getContentType().toContentTypeString());
-    context.setHttpStatus(toHandleException.getHttpStatus());
-    context.setErrorCode(toHandleException.getErrorCode());
-    context.setMessage(localizedMessage.getText());
-    context.setLocale(localizedMessage.getLocale());
-    context.setException(toHandleException);
-    return context;
-  }
-
-  private ODataErrorContext extractInformationForMessageException(final ODataMessageException toHandleException) {
-    HttpStatusCodes responseStatusCode;
-    if (toHandleException instanceof EntityProviderException) {
-      responseStatusCode = HttpStatusCodes.BAD_REQUEST;
-    } else {
-      responseStatusCode = HttpStatusCodes.INTERNAL_SERVER_ERROR;
-    }
-
-    MessageReference messageReference = toHandleException.getMessageReference();
-    Message localizedMessage = extractEntity(messageReference);
-
-    ODataErrorContext context = createDefaultErrorContext();
-    context.setContentType(getContentType().toContentTypeString());
-    context.setHttpStatus(responseStatusCode);
-    context.setErrorCode(toHandleException.getErrorCode());
-    context.setMessage(localizedMessage.getText());
-    context.setLocale(localizedMessage.getLocale());
-    context.setException(toHandleException);
-    return context;
-  }
-
   private ODataErrorContext extractInformationForWebApplicationException(final WebApplicationException toHandleException) {
     ODataErrorContext context = createDefaultErrorContext();
     context.setContentType(getContentType().toContentTypeString());
@@ -170,11 +111,7 @@ public class ODataExceptionMapperImpl implements ExceptionMapper<Exception> {
   private ODataErrorContext extractInformationForException(final Exception exception) {
     ODataErrorContext context = createDefaultErrorContext();
     context.setContentType(getContentType().toContentTypeString());
-    context.setHttpStatus(HttpStatusCodes.INTERNAL_SERVER_ERROR);
-    context.setErrorCode(null);
-    context.setMessage(exception.getMessage());
-    context.setLocale(DEFAULT_RESPONSE_LOCALE);
-    context.setException(exception);
+    ODataExceptionMapping.fillErrorContext(context, exception, getLanguages());
     return context;
   }
 
@@ -197,26 +134,6 @@ public class ODataExceptionMapperImpl implements ExceptionMapper<Exception> {
     return new ProviderFacadeImpl().writeErrorDocument(errorContext.getContentType(), errorContext.getHttpStatus(), errorContext.getErrorCode(), errorContext.getMessage(), errorContext.getLocale(), null);
   }
 
-  private Exception extractException(final Exception exception) {
-    if (exception instanceof ODataException) {
-
-      ODataException odataException = (ODataException) exception;
-      if (odataException.isCausedByApplicationException()) {
-        return odataException.getApplicationExceptionCause();
-      } else if (odataException.isCausedByHttpException()) {
-        return odataException.getHttpExceptionCause();
-      } else if (odataException.isCausedByMessageException()) {
-        return odataException.getMessageExceptionCause();
-      }
-    }
-    return exception;
-  }
-
-  private Message extractEntity(final MessageReference context) {
-    final Locale locale = MessageService.getSupportedLocale(getLanguages(), DEFAULT_RESPONSE_LOCALE);
-    return MessageService.getMessage(locale, context);
-  }
-
   private List<Locale> getLanguages() {
     try {
       if (httpHeaders.getAcceptableLanguages().isEmpty()) {
@@ -25,10 +25,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -48,6 +47,7 @@ import javax.ws.rs.core.UriBuilder;
 import com.sap.core.odata.api.ODataService;
 import com.sap.core.odata.api.ODataServiceFactory;
 import com.sap.core.odata.api.ODataServiceVersion;
+import com.sap.core.odata.api.batch.BatchHandler;
 import com.sap.core.odata.api.commons.HttpHeaders;
 import com.sap.core.odata.api.commons.HttpStatusCodes;
 import com.sap.core.odata.api.commons.ODataHttpHeaders;
@@ -63,6 +63,8 @@ import com.sap.core.odata.api.exception.ODataNotFoundException;
 import com.sap.core.odata.api.exception.ODataUnsupportedMediaTypeException;
 import com.sap.core.odata.api.processor.ODataProcessor;
 import com.sap.core.odata.api.processor.ODataResponse;
+import com.sap.core.odata.api.processor.ODataResponse.ODataResponseBuilder;
+import com.sap.core.odata.api.processor.part.ChangeSetProcessor;
 import com.sap.core.odata.api.processor.part.EntityProcessor;
 import com.sap.core.odata.api.uri.PathInfo;
 import com.sap.core.odata.api.uri.PathSegment;
@@ -71,6 +73,9 @@ import com.sap.core.odata.core.Dispatcher;
 import com.sap.core.odata.core.ODataContextImpl;
 import com.sap.core.odata.core.ODataPathSegmentImpl;
 import com.sap.core.odata.core.PathInfoImpl;
+import com.sap.core.odata.core.batch.BatchHandlerImpl;
+import com.sap.core.odata.core.batch.BatchPartHandler;
+import com.sap.core.odata.core.batch.BatchRequestPart;
 import com.sap.core.odata.core.commons.ContentType;
 import com.sap.core.odata.core.commons.ContentType.ODataFormat;
 import com.sap.core.odata.core.commons.Decoder;
@@ -96,9 +101,11 @@ public final class ODataSubLocator implements ODataLocator {
 
   private Map<String, String> queryParameters;
 
+  private String acceptHeader;
   private List<ContentType> acceptHeaderContentTypes;
 
   private InputStream requestContent;
+  private String requestContentTypeString;
   private ContentType requestContentTypeHeader;
 
   @GET
@@ -160,9 +167,20 @@ public final class ODataSubLocator implements ODataLocator {
   }
 
   private Response handleHttpMethod(final ODataHttpMethod method) throws ODataException {
-    final String serverDataServiceVersion = getServerDataServiceVersion();
-    validateDataServiceVersion(serverDataServiceVersion);
-    final List<PathSegment> pathSegments = context.getPathInfo().getODataSegments();
+    final ODataResponse odataResponse = handleRequest(method, context.getPathInfo().getODataSegments(), queryParameters,
+        context.getHttpRequestHeader(ODataHttpHeaders.DATASERVICEVERSION), acceptHeader, acceptHeaderContentTypes,
+        requestContentTypeString, requestContentTypeHeader, requestContent);
+    return Util.convertResponse(odataResponse, odataResponse.getStatus(), getServerDataServiceVersion(), null);
+  }
+
+  /**
+   * Handles a single request, either the HTTP request itself or a part of a batch request.
+   * @return the response with status and location set
+   */
+  private ODataResponse handleRequest(final ODataHttpMethod method, final List<PathSegment> pathSegments, final Map<String, String> queryParameters,
+      final String requestDataServiceVersion, final String acceptHeader, final List<ContentType> acceptHeaderContentTypes,
+      final String requestContentTypeString, final ContentType requestContentTypeHeader, final InputStream requestContent) throws ODataException {
+    validateDataServiceVersion(requestDataServiceVersion, getServerDataServiceVersion());
     final UriInfoImpl uriInfo = (UriInfoImpl) uriParser.parse(pathSegments, queryParameters);
 
     checkFunctionImport(method, uriInfo);
@@ -177,16 +195,24 @@ public final class ODataSubLocator implements ODataLocator {
       }
     }
 
-    final String acceptContentType = doContentNegotiation(uriInfo);
-    final String requestContentType = (requestContentTypeHeader == null ? null : requestContentTypeHeader.toContentTypeString());
+    final String acceptContentType = doContentNegotiation(uriInfo, acceptHeader, acceptHeaderContentTypes);
+    // The boundary of a batch request must be passed on exactly as it has been sent.
+    final String requestContentType = uriInfo.getUriType() == UriType.URI9 ? requestContentTypeString
+        : requestContentTypeHeader == null ? null : requestContentTypeHeader.toContentTypeString();
 
     final ODataResponse odataResponse = dispatcher.dispatch(method, uriInfo, requestContent, requestContentType, acceptContentType);
 
     final String location = (method == ODataHttpMethod.POST && (uriInfo.getUriType() == UriType.URI1 || uriInfo.getUriType() == UriType.URI6B)) ? odataResponse.getIdLiteral() : null;
     final HttpStatusCodes s = odataResponse.getStatus() == null ? method == ODataHttpMethod.POST ? uriInfo.getUriType() == UriType.URI9 ? HttpStatusCodes.OK : uriInfo.getUriType() == UriType.URI7B ? HttpStatusCodes.NO_CONTENT : HttpStatusCodes.CREATED : method == ODataHttpMethod.PUT || method == ODataHttpMethod.PATCH || method == ODataHttpMethod.MERGE || method == ODataHttpMethod.DELETE ? HttpStatusCodes.NO_CONTENT : HttpStatusCodes.OK : odataResponse.getStatus();
-    final Response response = Util.convertResponse(odataResponse, s, serverDataServiceVersion, location);
+    if (s == odataResponse.getStatus() && (location == null || odataResponse.containsHeader(HttpHeaders.LOCATION))) {
+      return odataResponse;
+    }
 
-    return response;
+    final ODataResponseBuilder builder = ODataResponse.fromResponse(odataResponse).status(s);
+    if (location != null && !odataResponse.containsHeader(HttpHeaders.LOCATION)) {
+      builder.header(HttpHeaders.LOCATION, location);
+    }
+    return builder.build();
   }
 
   private void checkFunctionImport(final ODataHttpMethod method, final UriInfoImpl uriInfo) throws ODataException {
@@ -387,10 +413,10 @@ public final class ODataSubLocator implements ODataLocator {
     }
   }
 
-  private String doContentNegotiation(final UriInfoImpl uriInfo) throws ODataException {
+  private String doContentNegotiation(final UriInfoImpl uriInfo, final String acceptHeader, final List<ContentType> acceptHeaderContentTypes) throws ODataException {
     ContentType contentType;
     if (uriInfo.getFormat() == null) {
-      contentType = doContentNegotiationForAcceptHeader(uriInfo);
+      contentType = doContentNegotiationForAcceptHeader(uriInfo, acceptHeader, acceptHeaderContentTypes);
     } else {
       contentType = doContentNegotiationForFormat(uriInfo);
     }
@@ -430,7 +456,7 @@ public final class ODataSubLocator implements ODataLocator {
     }
   }
 
-  private ContentType ensureCharsetParameterIsSet(final ContentType contentType) {
+  private static ContentType ensureCharsetParameterIsSet(final ContentType contentType) {
     if (isContentTypeODataTextRelated(contentType)) {
       if (!contentType.getParameters().containsKey(ContentType.PARAMETER_CHARSET)) {
         return ContentType.create(contentType, ContentType.PARAMETER_CHARSET, DEFAULT_CHARSET);
@@ -439,7 +465,7 @@ public final class ODataSubLocator implements ODataLocator {
     return contentType;
   }
 
-  private boolean isContentTypeODataTextRelated(final ContentType contentType) {
+  private static boolean isContentTypeODataTextRelated(final ContentType contentType) {
     return (contentType != null) && (contentType.equals(ContentType.TEXT_PLAIN) || (contentType.getODataFormat() == ODataFormat.XML) || (contentType.getODataFormat() == ODataFormat.ATOM) || (contentType.getODataFormat() == ODataFormat.JSON));
   }
 
@@ -460,26 +486,23 @@ public final class ODataSubLocator implements ODataLocator {
     return ContentType.create(format);
   }
 
-  private ContentType doContentNegotiationForAcceptHeader(final UriInfoImpl uriInfo) throws ODataException {
+  private ContentType doContentNegotiationForAcceptHeader(final UriInfoImpl uriInfo, final String acceptHeader, final List<ContentType> acceptHeaderContentTypes) throws ODataException {
     final Class<? extends ODataProcessor> processorFeature = dispatcher.mapUriTypeToProcessorFeature(uriInfo);
-    final List<ContentType> supportedContentTypes = getSupportedContentTypes(processorFeature);
-    return contentNegotiation(acceptHeaderContentTypes, supportedContentTypes);
+    return ContentNegotiationCache.getTable(service.getSupportedContentTypes(processorFeature))
+        .negotiate(acceptHeader, acceptHeaderContentTypes);
   }
 
   private List<ContentType> getSupportedContentTypes(final Class<? extends ODataProcessor> processorFeature) throws ODataException {
-    final List<ContentType> resultContentTypes = new ArrayList<ContentType>();
-    for (final String contentType : service.getSupportedContentTypes(processorFeature)) {
-      resultContentTypes.add(ContentType.create(contentType));
-    }
-
-    return resultContentTypes;
+    return ContentNegotiationCache.getTable(service.getSupportedContentTypes(processorFeature)).getSupportedContentTypes();
   }
 
   ContentType contentNegotiation(final List<ContentType> acceptedContentTypes, final List<ContentType> supportedContentTypes) throws ODataException {
-    final Set<ContentType> setSupported = new HashSet<ContentType>(supportedContentTypes);
+    return negotiate(acceptedContentTypes, supportedContentTypes);
+  }
 
+  static ContentType negotiate(final List<ContentType> acceptedContentTypes, final List<ContentType> supportedContentTypes) throws ODataException {
     if (acceptedContentTypes.isEmpty()) {
-      if (!setSupported.isEmpty()) {
+      if (!supportedContentTypes.isEmpty()) {
         return supportedContentTypes.get(0);
       }
     } else {
@@ -501,8 +524,9 @@ public final class ODataSubLocator implements ODataLocator {
 
     queryParameters = convertToSinglevaluedMap(param.getUriInfo().getQueryParameters());
 
-    acceptHeaderContentTypes = extractAcceptHeaders(param);
+    extractAcceptHeaders(param);
     requestContent = contentAsStream(extractRequestContent(param));
+    requestContentTypeString = param.getHttpHeaders().getHeaderString(HttpHeaders.CONTENT_TYPE);
     requestContentTypeHeader = extractRequestContentType(param);
 
     context.setAcceptableLanguages(param.httpHeaders.getAcceptableLanguages());
@@ -511,7 +535,8 @@ public final class ODataSubLocator implements ODataLocator {
     service.getProcessor().setContext(context);
 
     uriParser = new UriParserImpl(service.getEntityDataModel());
-    dispatcher = new Dispatcher(service);
+    final BatchHandler batchHandler = new BatchHandlerImpl(new ODataBatchPartHandler(), context.getAcceptableLanguages());
+    dispatcher = new Dispatcher(service, batchHandler);
   }
 
   String getServerDataServiceVersion() throws ODataException {
@@ -522,8 +547,7 @@ public final class ODataSubLocator implements ODataLocator {
     return serverDataServiceVersion;
   }
 
-  private void validateDataServiceVersion(final String serverDataServiceVersion) throws ODataException {
-    final String requestDataServiceVersion = context.getHttpRequestHeader(ODataHttpHeaders.DATASERVICEVERSION);
+  private void validateDataServiceVersion(final String requestDataServiceVersion, final String serverDataServiceVersion) throws ODataException {
     if (requestDataServiceVersion != null) {
       try {
         final boolean isValid = ODataServiceVersion.validateDataServiceVersion(requestDataServiceVersion);
@@ -592,20 +616,22 @@ public final class ODataSubLocator implements ODataLocator {
     return inputStream;
   }
 
-  private List<ContentType> extractAcceptHeaders(final InitParameter param) throws ODataBadRequestException {
-    final List<MediaType> acceptableMediaTypes = param.getHttpHeaders().getAcceptableMediaTypes();
-    final List<ContentType> mediaTypes = new ArrayList<ContentType>();
+  private void extractAcceptHeaders(final InitParameter param) throws ODataBadRequestException {
+    final String header = param.getHttpHeaders().getHeaderString(HttpHeaders.ACCEPT);
+    acceptHeader = header == null ? "" : header;
+    acceptHeaderContentTypes = getAcceptHeaderContentTypes(acceptHeader);
+  }
 
-    for (final MediaType mediaType : acceptableMediaTypes) {
-      try {
-        mediaTypes.add(ContentType.create(mediaType.toString()));
-      } catch (IllegalArgumentException e) {
-        throw new ODataBadRequestException(ODataBadRequestException.INVALID_HEADER.addContent("Accept")
-            .addContent(mediaType.toString()), e);
-      }
+  /**
+   * Returns the parsed content types of an accept header, from the cache if
+   * possible; used for single requests and for the requests of batch requests.
+   */
+  private static List<ContentType> getAcceptHeaderContentTypes(final String acceptHeader) throws ODataBadRequestException {
+    final List<ContentType> contentTypes = ContentNegotiationCache.getAcceptHeaderContentTypes(acceptHeader);
+    if (contentTypes == null) {
+      return ContentNegotiationCache.putAcceptHeaderContentTypes(acceptHeader, parseAcceptHeader(acceptHeader));
     }
-
-    return mediaTypes;
+    return contentTypes;
   }
 
   private void fillRequestHeader(final javax.ws.rs.core.HttpHeaders httpHeaders) {
@@ -701,6 +727,174 @@ public final class ODataSubLocator implements ODataLocator {
     return single;
   }
 
+  /**
+   * Executes the requests contained in batch requests with the same checks,
+   * content negotiation, and dispatching as single requests.
+   */
+  final class ODataBatchPartHandler implements BatchPartHandler {
+
+    @Override
+    public ODataResponse handlePart(final BatchRequestPart part) throws ODataException {
+      final String uri = getServiceRelativeUri(part.getUri());
+      final int queryIndex = uri.indexOf('?');
+      final List<PathSegment> pathSegments = getPathSegments(queryIndex < 0 ? uri : uri.substring(0, queryIndex));
+      if (!pathSegments.isEmpty() && "$batch".equals(pathSegments.get(0).getPath())) {
+        throw new ODataBadRequestException(ODataBadRequestException.NOTSUPPORTED);
+      }
+      final Map<String, String> partQueryParameters = getQueryParameters(queryIndex < 0 ? null : uri.substring(queryIndex + 1));
+
+      final String header = part.getHeader(HttpHeaders.ACCEPT);
+      final String partAcceptHeader = header == null ? "" : header;
+      final List<ContentType> partAcceptHeaderContentTypes = getAcceptHeaderContentTypes(partAcceptHeader);
+
+      final String partContentTypeString = part.getHeader(HttpHeaders.CONTENT_TYPE);
+      final ContentType partContentType = partContentTypeString == null ? null : ContentType.parse(partContentTypeString);
+      if (partContentTypeString != null && partContentType == null) {
+        throw new ODataUnsupportedMediaTypeException(ODataUnsupportedMediaTypeException.NOT_SUPPORTED.addContent(partContentTypeString));
+      }
+
+      // Processors read the request headers from the context, so the part headers replace
+      // the headers of the batch request while the part is handled.
+      final Map<String, String> batchRequestHeaders = new HashMap<String, String>(context.getHttpRequestHeaders());
+      context.setHttpRequestHeaders(part.getHeaders());
+      ODataResponse response;
+      try {
+        response = handleRequest(part.getMethod(), pathSegments, partQueryParameters,
+            part.getHeader(ODataHttpHeaders.DATASERVICEVERSION), partAcceptHeader, partAcceptHeaderContentTypes,
+            partContentTypeString, partContentType, part.getContent());
+      } finally {
+        context.setHttpRequestHeaders(batchRequestHeaders);
+      }
+      if (response.containsHeader(ODataHttpHeaders.DATASERVICEVERSION)) {
+        return response;
+      }
+      return ODataResponse.fromResponse(response).status(response.getStatus())
+          .header(ODataHttpHeaders.DATASERVICEVERSION, getServerDataServiceVersion()).build();
+    }
+
+    @Override
+    public void beginChangeSet() throws ODataException {
+      if (service.getProcessor() instanceof ChangeSetProcessor) {
+        ((ChangeSetProcessor) service.getProcessor()).beginChangeSet();
+      }
+    }
+
+    @Override
+    public void endChangeSet(final boolean successful) throws ODataException {
+      if (service.getProcessor() instanceof ChangeSetProcessor) {
+        ((ChangeSetProcessor) service.getProcessor()).endChangeSet(successful);
+      }
+    }
+
+    /**
+     * Returns the URI of a request part relative to the service root;
+     * the URI can be absolute, absolute-path, or relative to the service root.
+     */
+    private String getServiceRelativeUri(final String uri) throws ODataException {
+      final URI serviceRoot = context.getPathInfo().getServiceRoot();
+      final String root = serviceRoot.toString();
+      final String rootPath = serviceRoot.getRawPath();
+      if (uri.startsWith(root)) {
+        return uri.substring(root.length());
+      } else if (uri.startsWith("/")) {
+        if (rootPath != null && uri.startsWith(rootPath)) {
+          return uri.substring(rootPath.length());
+        }
+        throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+      } else if (uri.contains("://")) {
+        throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+      }
+      return uri;
+    }
+
+    private List<PathSegment> getPathSegments(final String path) throws ODataBadRequestException {
+      final List<PathSegment> pathSegments = new ArrayList<PathSegment>();
+      for (final String segment : path.split("/")) {
+        if (segment.length() > 0) {
+          pathSegments.add(new ODataPathSegmentImpl(decode(segment), null));
+        }
+      }
+      return pathSegments;
+    }
+
+    private Map<String, String> getQueryParameters(final String query) throws ODataBadRequestException {
+      final Map<String, String> parameters = new HashMap<String, String>();
+      if (query != null) {
+        for (final String parameter : query.split("&")) {
+          final int index = parameter.indexOf('=');
+          final String name = decode(index < 0 ? parameter : parameter.substring(0, index));
+          if (name.length() > 0 && !parameters.containsKey(name)) {
+            parameters.put(name, index < 0 ? "" : decode(parameter.substring(index + 1)));
+          }
+        }
+      }
+      return parameters;
+    }
+
+    private String decode(final String value) throws ODataBadRequestException {
+      try {
+        return Decoder.decode(value);
+      } catch (final IllegalArgumentException e) {
+        throw new ODataBadRequestException(ODataBadRequestException.INVALID_SYNTAX, e);
+      }
+    }
+  }
+
+  /**
+   * Parses the value of an accept header into content types ordered by
+   * descending quality and, for the same quality, with more specific ranges
+   * first; content types of quality zero are left out. An empty header
+   * accepts all content types.
+   */
+  static List<ContentType> parseAcceptHeader(final String header) throws ODataBadRequestException {
+    final List<ContentType> contentTypes = new ArrayList<ContentType>();
+    final List<Double> qualities = new ArrayList<Double>();
+    for (final String range : header.split(",")) {
+      if (range.trim().length() == 0) {
+        continue;
+      }
+      try {
+        final ContentType contentType = ContentType.create(range.trim());
+        final double quality = getQuality(range);
+        if (quality > 0) {
+          int index = 0;
+          while (index < qualities.size()
+              && (qualities.get(index) > quality
+              || qualities.get(index) == quality && getSpecificity(contentTypes.get(index)) >= getSpecificity(contentType))) {
+            index++;
+          }
+          contentTypes.add(index, contentType);
+          qualities.add(index, quality);
+        }
+      } catch (final IllegalArgumentException e) {
+        throw new ODataBadRequestException(ODataBadRequestException.INVALID_HEADER.addContent(HttpHeaders.ACCEPT)
+            .addContent(range.trim()), e);
+      }
+    }
+    if (header.trim().length() == 0) {
+      contentTypes.add(ContentType.WILDCARD);
+    }
+    return contentTypes;
+  }
+
+  private static int getSpecificity(final ContentType contentType) {
+    if (ContentType.WILDCARD.getType().equals(contentType.getType())) {
+      return 0;
+    }
+    return ContentType.WILDCARD.getSubtype().equals(contentType.getSubtype()) ? 1 : 2;
+  }
+
+  private static double getQuality(final String range) {
+    final String[] parameters = range.split(";");
+    for (int i = 1; i < parameters.length; i++) {
+      final int index = parameters[i].indexOf('=');
+      if (index > 0 && ContentType.PARAMETER_Q.equals(parameters[i].substring(0, index).trim().toLowerCase(Locale.ENGLISH))) {
+        return Double.parseDouble(parameters[i].substring(index + 1).trim());
+      }
+    }
+    return 1;
+  }
+
   public class InitParameter {
 
     private List<javax.ws.rs.core.PathSegment> pathSegments;
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.uri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.uri.ExpandSelectTreeNode;
+import com.sap.core.odata.api.uri.NavigationPropertySegment;
+import com.sap.core.odata.api.uri.SelectItem;
+
+/**
+ * <p>Caches expand/select trees.</p>
+ * <p>A tree depends only on the properties and navigation properties named in
+ * <code>$select</code> and <code>$expand</code>. So the trees are cached by an
+ * immutable snapshot of these EDM elements, taken when the tree is requested;
+ * later changes to the lists of the parsed URI do not affect the cache. As long
+ * as the EDM is the same, equal <code>$select</code> and <code>$expand</code>
+ * options of different requests share one tree.</p>
+ * <p>The cache is bounded; the least recently used trees are evicted first.</p>
+ * @author SAP AG
+ */
+final class ExpandSelectTreeCache {
+
+  static final int MAX_ENTRIES = 256;
+
+  private static final Map<List<Object>, ExpandSelectTreeNode> trees =
+      Collections.synchronizedMap(new LinkedHashMap<List<Object>, ExpandSelectTreeNode>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<List<Object>, ExpandSelectTreeNode> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      });
+
+  private ExpandSelectTreeCache() {}
+
+  /**
+   * Returns the expand/select tree for the given select items and expand paths,
+   * building and caching it if necessary.
+   * @param select list of select items
+   * @param expand list of expand paths
+   * @return the sealed expand/select tree
+   * @throws EdmException if the tree could not be built
+   */
+  static ExpandSelectTreeNode get(final List<SelectItem> select, final List<ArrayList<NavigationPropertySegment>> expand) throws EdmException {
+    final List<Object> key = createKey(select, expand);
+    ExpandSelectTreeNode tree = trees.get(key);
+    if (tree == null) {
+      tree = new ExpandSelectTreeCreator(select, expand).create();
+      trees.put(key, tree);
+    }
+    return tree;
+  }
+
+  /**
+   * Takes an immutable snapshot of the select items and expand paths, asking
+   * for exactly what {@link ExpandSelectTreeCreator} uses.
+   * The EDM elements are compared by identity.
+   */
+  private static List<Object> createKey(final List<SelectItem> select, final List<ArrayList<NavigationPropertySegment>> expand) {
+    List<Object> selectKey = new ArrayList<Object>();
+    if (select != null) {
+      for (final SelectItem item : select) {
+        List<Object> itemKey = new ArrayList<Object>(3);
+        itemKey.add(createKey(item.getNavigationPropertySegments()));
+        itemKey.add(item.getProperty());
+        itemKey.add(item.getProperty() == null && item.isStar());
+        selectKey.add(Collections.unmodifiableList(itemKey));
+      }
+    }
+
+    List<Object> expandKey = new ArrayList<Object>();
+    if (expand != null) {
+      for (final List<NavigationPropertySegment> path : expand) {
+        expandKey.add(createKey(path));
+      }
+    }
+
+    List<Object> key = new ArrayList<Object>(2);
+    key.add(Collections.unmodifiableList(selectKey));
+    key.add(Collections.unmodifiableList(expandKey));
+    return Collections.unmodifiableList(key);
+  }
+
+  private static List<Object> createKey(final List<NavigationPropertySegment> segments) {
+    List<Object> key = new ArrayList<Object>(segments.size());
+    for (final NavigationPropertySegment segment : segments) {
+      key.add(segment.getNavigationProperty());
+    }
+    return Collections.unmodifiableList(key);
+  }
+}
@@ -18,11 +18,11 @@ package com.sap.core.odata.core.uri;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 
 import com.sap.core.odata.api.edm.EdmException;
 import com.sap.core.odata.api.uri.ExpandSelectTreeNode;
@@ -65,7 +65,37 @@ public class ExpandSelectTreeCreator {
 
     //consolidate the tree
     consolidate(root);
-    return root;
+
+    //seal the tree and share identical sub trees
+    return intern(root, new HashMap<List<Object>, ExpandSelectTreeNodeImpl>());
+  }
+
+  /**
+   * Seals the node and all its sub nodes, bottom-up, replacing each sub tree
+   * with an already sealed identical one where available.
+   * Sub nodes are compared by identity since they have been interned before.
+   */
+  private ExpandSelectTreeNodeImpl intern(final ExpandSelectTreeNodeImpl node, final Map<List<Object>, ExpandSelectTreeNodeImpl> sealedNodes) {
+    for (Map.Entry<String, ExpandSelectTreeNode> entry : node.getLinks().entrySet()) {
+      if (entry.getValue() != null) {
+        node.putLinkNode(entry.getKey(), intern((ExpandSelectTreeNodeImpl) entry.getValue(), sealedNodes));
+      }
+    }
+
+    List<Object> key = new ArrayList<Object>();
+    key.add(node.getAllKind());
+    key.add(node.isExplicitlySelected());
+    key.add(node.isExpanded());
+    key.add(new ArrayList<Object>(node.getProperties()));
+    key.add(new HashMap<String, ExpandSelectTreeNode>(node.getLinks()));
+
+    ExpandSelectTreeNodeImpl sealedNode = sealedNodes.get(key);
+    if (sealedNode == null) {
+      node.seal();
+      sealedNodes.put(key, node);
+      sealedNode = node;
+    }
+    return sealedNode;
   }
 
   private void consolidate(final ExpandSelectTreeNodeImpl node) {
@@ -97,16 +127,16 @@ public class ExpandSelectTreeCreator {
   private void consolidateTrueNode(final ExpandSelectTreeNodeImpl node) {
     Map<String, ExpandSelectTreeNode> links = accessField(node, "links", Map.class);
 
-    Set<Entry<String, ExpandSelectTreeNode>> iterator = links.entrySet();
-    for (Entry<String, ExpandSelectTreeNode> entry : iterator) {
-      ExpandSelectTreeNodeImpl subNode = (ExpandSelectTreeNodeImpl) entry.getValue();
+    Iterator<Entry<String, ExpandSelectTreeNode>> iterator = links.entrySet().iterator();
+    while (iterator.hasNext()) {
+      ExpandSelectTreeNodeImpl subNode = (ExpandSelectTreeNodeImpl) iterator.next().getValue();
       if (subNode.isExpanded() && node.isExplicitlySelected()) {
         subNode.setExplicitlySelected();
         consolidate(subNode);
       } else if (subNode.isExpanded()) {
         consolidate(subNode);
       } else {
-        links.remove(entry.getKey());
+        iterator.remove();
       }
     }
   }
@@ -27,6 +27,9 @@ import com.sap.core.odata.api.uri.ExpandSelectTreeNode;
 import com.sap.core.odata.core.exception.ODataRuntimeException;
 
 /**
+ * <p>Node of an expand/select tree.</p>
+ * <p>Nodes created by {@link ExpandSelectTreeCreator} are sealed: they can no longer
+ * be modified and may therefore be shared between trees and requests.</p>
  * @author SAP AG
  */
 public class ExpandSelectTreeNodeImpl implements ExpandSelectTreeNode {
@@ -50,6 +53,8 @@ public class ExpandSelectTreeNodeImpl implements ExpandSelectTreeNode {
   private boolean isExpanded = false;
   private final List<EdmProperty> properties = new ArrayList<EdmProperty>();
   private final HashMap<String, ExpandSelectTreeNode> links = new HashMap<String, ExpandSelectTreeNode>();
+  private boolean sealed = false;
+  private List<EdmProperty> sealedProperties;
 
   @Override
   public boolean isAll() {
@@ -58,7 +63,7 @@ public class ExpandSelectTreeNodeImpl implements ExpandSelectTreeNode {
 
   @Override
   public List<EdmProperty> getProperties() {
-    return properties;
+    return sealed ? sealedProperties : properties;
   }
 
   @Override
@@ -67,14 +72,36 @@ public class ExpandSelectTreeNodeImpl implements ExpandSelectTreeNode {
   }
 
   public void putLinkNode(final String name, final ExpandSelectTreeNode node) {
+    checkNotSealed();
     links.put(name, node);
   }
 
+  public boolean isSealed() {
+    return sealed;
+  }
+
+  /**
+   * Makes this node read-only. The sub nodes have to be sealed before.
+   */
+  void seal() {
+    if (!sealed) {
+      sealedProperties = Collections.unmodifiableList(new ArrayList<EdmProperty>(properties));
+      sealed = true;
+    }
+  }
+
+  private void checkNotSealed() {
+    if (sealed) {
+      throw new ODataRuntimeException("Expand/select tree node must not be modified.");
+    }
+  }
+
   public boolean isExplicitlySelected() {
     return isExplicitlySelected;
   }
 
   public void setExplicitlySelected() {
+    checkNotSealed();
     isExplicitlySelected = true;
     setAllExplicitly();
   }
@@ -84,10 +111,12 @@ public class ExpandSelectTreeNodeImpl implements ExpandSelectTreeNode {
   }
 
   public void setExpanded() {
+    checkNotSealed();
     isExpanded = true;
   }
 
   public void addProperty(final EdmProperty property) {
+    checkNotSealed();
     if (property != null && isAll != AllKinds.EXPLICITLYTRUE && !properties.contains(property)) {
       properties.add(property);
       isAll = AllKinds.FALSE;
@@ -95,6 +124,7 @@ public class ExpandSelectTreeNodeImpl implements ExpandSelectTreeNode {
   }
 
   public void setAllExplicitly() {
+    checkNotSealed();
     properties.clear();
     isAll = AllKinds.EXPLICITLYTRUE;
   }
@@ -104,6 +134,7 @@ public class ExpandSelectTreeNodeImpl implements ExpandSelectTreeNode {
   }
 
   public void setAllKindFalse() {
+    checkNotSealed();
     isAll = AllKinds.FALSE;
   }
 
@@ -836,6 +836,6 @@ public class UriParserImpl extends UriParser {
 
   @Override
   public ExpandSelectTreeNode buildExpandSelectTree(final List<SelectItem> select, final List<ArrayList<NavigationPropertySegment>> expand) throws EdmException {
-    return new ExpandSelectTreeCreator(select, expand).create();
+    return ExpandSelectTreeCache.get(select, expand);
   }
 }
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import com.sap.core.odata.api.commons.HttpStatusCodes;
+import com.sap.core.odata.api.exception.ODataBadRequestException;
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.api.exception.ODataNotFoundException;
+import com.sap.core.odata.api.processor.ODataResponse;
+import com.sap.core.odata.testutil.fit.BaseTest;
+
+/**
+ * @author SAP AG
+ */
+public class BatchHandlerImplTest extends BaseTest {
+
+  private static final String BOUNDARY = "batch_1";
+  private static final String CHANGE_SET_BOUNDARY = "changeset_1";
+
+  private final List<String> executed = new ArrayList<String>();
+
+  private final BatchPartHandler echoHandler = new BatchPartHandler() {
+    @Override
+    public ODataResponse handlePart(final BatchRequestPart part) throws ODataException {
+      final String request = part.getMethod() + " " + part.getUri();
+      executed.add(request);
+      if (part.getUri().startsWith("Missing")) {
+        throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+      }
+      String content;
+      try {
+        content = MultipartReaderTest.read(part.getContent());
+      } catch (final Exception e) {
+        throw new ODataException(e);
+      }
+      return ODataResponse.status(HttpStatusCodes.OK).contentHeader("text/plain")
+          .entity(request + " " + part.getHeader("accept") + " " + content).build();
+    }
+
+    @Override
+    public void beginChangeSet() {
+      executed.add("begin");
+    }
+
+    @Override
+    public void endChangeSet(final boolean successful) {
+      executed.add(successful ? "commit" : "rollback");
+    }
+  };
+
+  @Test
+  public void getBoundary() {
+    assertEquals(BOUNDARY, BatchHandlerImpl.getBoundary("multipart/mixed; boundary=" + BOUNDARY));
+    assertEquals("a=b", BatchHandlerImpl.getBoundary("Multipart/Mixed;Boundary=\"a=b\""));
+    assertNull(BatchHandlerImpl.getBoundary("application/json; boundary=" + BOUNDARY));
+    assertNull(BatchHandlerImpl.getBoundary("multipart/mixed"));
+    assertNull(BatchHandlerImpl.getBoundary("multipart/mixed; boundary="));
+    assertNull(BatchHandlerImpl.getBoundary(null));
+  }
+
+  @Test(expected = ODataBadRequestException.class)
+  public void missingBoundary() throws Exception {
+    new BatchHandlerImpl(echoHandler, null).handleBatch("multipart/mixed", new ByteArrayInputStream(new byte[0]));
+  }
+
+  @Test
+  public void executeWhileReading() throws Exception {
+    final ODataResponse response = handle("--" + BOUNDARY + "\r\n"
+        + "Content-Type: application/http\r\n"
+        + "Content-Transfer-Encoding: binary\r\n"
+        + "\r\n"
+        + "GET Employees('1') HTTP/1.1\r\n"
+        + "Accept: application/json\r\n"
+        + "\r\n"
+        + "\r\n"
+        + "--" + BOUNDARY + "--\r\n");
+    assertEquals(HttpStatusCodes.ACCEPTED, response.getStatus());
+    assertTrue(response.getContentHeader().startsWith("multipart/mixed; boundary=batch_"));
+    assertTrue(executed.isEmpty());
+
+    final String body = MultipartReaderTest.read((InputStream) response.getEntity());
+    assertEquals(Collections.singletonList("GET Employees('1')"), executed);
+    final String boundary = BatchHandlerImpl.getBoundary(response.getContentHeader());
+    assertTrue(body.startsWith("--" + boundary + "\r\n"
+        + "Content-Type: application/http\r\n"
+        + "Content-Transfer-Encoding: binary\r\n"
+        + "\r\n"
+        + "HTTP/1.1 200 OK\r\n"));
+    assertTrue(body.contains("\r\n\r\nGET Employees('1') application/json \r\n--" + boundary + "--\r\n"));
+  }
+
+  @Test
+  public void changeSet() throws Exception {
+    final ODataResponse response = handle("--" + BOUNDARY + "\r\n"
+        + "Content-Type: multipart/mixed; boundary=" + CHANGE_SET_BOUNDARY + "\r\n"
+        + "\r\n"
+        + "--" + CHANGE_SET_BOUNDARY + "\r\n"
+        + "Content-Type: application/http\r\n"
+        + "\r\n"
+        + "PUT Employees('1') HTTP/1.1\r\n"
+        + "\r\n"
+        + "first\r\n"
+        + "--" + CHANGE_SET_BOUNDARY + "\r\n"
+        + "Content-Type: application/http\r\n"
+        + "\r\n"
+        + "PUT Employees('2') HTTP/1.1\r\n"
+        + "\r\n"
+        + "second\r\n"
+        + "--" + CHANGE_SET_BOUNDARY + "--\r\n"
+        + "\r\n"
+        + "--" + BOUNDARY + "--");
+
+    final String body = MultipartReaderTest.read((InputStream) response.getEntity());
+    assertEquals(Arrays.asList("begin", "PUT Employees('1')", "PUT Employees('2')", "commit"), executed);
+    assertTrue(body.contains("Content-Type: multipart/mixed; boundary=changeset_"));
+    assertTrue(body.contains("PUT Employees('1') null first"));
+    assertTrue(body.contains("PUT Employees('2') null second"));
+  }
+
+  @Test
+  public void stopChangeSetAfterError() throws Exception {
+    final ODataResponse response = handle("--" + BOUNDARY + "\r\n"
+        + "Content-Type: multipart/mixed; boundary=" + CHANGE_SET_BOUNDARY + "\r\n"
+        + "\r\n"
+        + "--" + CHANGE_SET_BOUNDARY + "\r\n"
+        + "Content-Type: application/http\r\n"
+        + "\r\n"
+        + "PUT Employees('1') HTTP/1.1\r\n"
+        + "\r\n"
+        + "first\r\n"
+        + "--" + CHANGE_SET_BOUNDARY + "\r\n"
+        + "Content-Type: application/http\r\n"
+        + "\r\n"
+        + "PUT Missing('2') HTTP/1.1\r\n"
+        + "\r\n"
+        + "second\r\n"
+        + "--" + CHANGE_SET_BOUNDARY + "\r\n"
+        + "Content-Type: application/http\r\n"
+        + "\r\n"
+        + "PUT Employees('3') HTTP/1.1\r\n"
+        + "\r\n"
+        + "third\r\n"
+        + "--" + CHANGE_SET_BOUNDARY + "--\r\n"
+        + "\r\n"
+        + "--" + BOUNDARY + "\r\n"
+        + "Content-Type: application/http\r\n"
+        + "\r\n"
+        + "GET Employees('4') HTTP/1.1\r\n"
+        + "\r\n"
+        + "\r\n"
+        + "--" + BOUNDARY + "--");
+
+    final String body = MultipartReaderTest.read((InputStream) response.getEntity());
+    assertEquals(Arrays.asList("begin", "PUT Employees('1')", "PUT Missing('2')", "rollback", "GET Employees('4')"),
+        executed);
+    assertFalse(body.contains("changeset_"));
+    assertFalse(body.contains("PUT Employees('1') null first"));
+    assertTrue(body.contains("HTTP/1.1 404 Not Found"));
+    assertFalse(body.contains("Employees('3')"));
+    assertTrue(body.contains("GET Employees('4') null "));
+  }
+
+  @Test
+  public void invalidRequestLine() throws Exception {
+    final ODataResponse response = handle("--" + BOUNDARY + "\r\n"
+        + "Content-Type: application/http\r\n"
+        + "\r\n"
+        + "GET\r\n"
+        + "\r\n"
+        + "--" + BOUNDARY + "--");
+    final String body = MultipartReaderTest.read((InputStream) response.getEntity());
+    assertTrue(executed.isEmpty());
+    assertTrue(body.contains("HTTP/1.1 400 Bad Request"));
+  }
+
+  private ODataResponse handle(final String content) throws Exception {
+    return new BatchHandlerImpl(echoHandler, Collections.singletonList(Locale.ENGLISH))
+        .handleBatch("multipart/mixed; boundary=" + BOUNDARY, new ByteArrayInputStream(content.getBytes("ISO-8859-1")));
+  }
+}
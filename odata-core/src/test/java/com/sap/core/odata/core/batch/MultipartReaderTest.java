@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.sap.core.odata.testutil.fit.BaseTest;
+
+/**
+ * @author SAP AG
+ */
+public class MultipartReaderTest extends BaseTest {
+
+  private static final String BOUNDARY = "batch_36522ad7-fc75-4b56-8c71-56071383e77b";
+
+  @Test
+  public void readParts() throws Exception {
+    final MultipartReader reader = createReader("preamble\r\n"
+        + "--" + BOUNDARY + "\r\n"
+        + "first\r\n"
+        + "--" + BOUNDARY + "  \r\n"
+        + "second\r\nline\r\n"
+        + "--" + BOUNDARY + "--\r\n"
+        + "epilogue");
+    assertTrue(reader.next());
+    assertEquals("first", read(reader.getPartContent()));
+    assertTrue(reader.next());
+    assertEquals("second\r\nline", read(reader.getPartContent()));
+    assertFalse(reader.next());
+    assertFalse(reader.next());
+  }
+
+  @Test
+  public void skipUnreadContent() throws Exception {
+    final MultipartReader reader = createReader("--" + BOUNDARY + "\r\n"
+        + "first\r\n"
+        + "--" + BOUNDARY + "\r\n"
+        + "second\r\n"
+        + "--" + BOUNDARY + "--");
+    assertTrue(reader.next());
+    assertEquals('f', reader.getPartContent().read());
+    assertTrue(reader.next());
+    assertEquals("second", read(reader.getPartContent()));
+    assertFalse(reader.next());
+  }
+
+  @Test
+  public void partLargerThanBuffer() throws Exception {
+    final StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      content.append(i % 10).append("\r\n-");
+    }
+    final MultipartReader reader = createReader("--" + BOUNDARY + "\r\n"
+        + content + "\r\n"
+        + "--" + BOUNDARY + "--\r\n");
+    assertTrue(reader.next());
+    assertEquals(content.toString(), read(reader.getPartContent()));
+    assertFalse(reader.next());
+  }
+
+  @Test
+  public void readByteByByteFromSlowStream() throws Exception {
+    final StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 3000; i++) {
+      content.append(i % 10).append("\r\n--").append(BOUNDARY.substring(0, i % BOUNDARY.length()));
+    }
+    final byte[] bytes = ("--" + BOUNDARY + "\r\n"
+        + content + "\r\n"
+        + "--" + BOUNDARY + "\r\n"
+        + "second\r\n"
+        + "--" + BOUNDARY + "--").getBytes("ISO-8859-1");
+    // The stream returns at most 7 bytes per call so that delimiters span buffer fills.
+    final MultipartReader reader = new MultipartReader(new ByteArrayInputStream(bytes) {
+      @Override
+      public synchronized int read(final byte[] b, final int off, final int len) {
+        return super.read(b, off, Math.min(len, 7));
+      }
+    }, BOUNDARY);
+    assertTrue(reader.next());
+    final InputStream partContent = reader.getPartContent();
+    final StringBuilder read = new StringBuilder();
+    int c;
+    while ((c = partContent.read()) >= 0) {
+      read.append((char) c);
+    }
+    assertEquals(content.toString(), read.toString());
+    assertTrue(reader.next());
+    assertEquals("second", read(reader.getPartContent()));
+    assertFalse(reader.next());
+  }
+
+  @Test(expected = IOException.class)
+  public void missingCloseDelimiter() throws Exception {
+    final MultipartReader reader = createReader("--" + BOUNDARY + "\r\n"
+        + "first\r\n");
+    assertTrue(reader.next());
+    read(reader.getPartContent());
+  }
+
+  @Test
+  public void readHeaders() throws Exception {
+    final InputStream in = new ByteArrayInputStream(("Content-Type: application/http\r\n"
+        + "X-Folded: first\r\n"
+        + "\tsecond\r\n"
+        + "\r\n"
+        + "content").getBytes("ISO-8859-1"));
+    final Map<String, String> headers = MultipartReader.readHeaders(in);
+    assertEquals(2, headers.size());
+    assertEquals("application/http", headers.get("content-type"));
+    assertEquals("first second", headers.get("X-Folded"));
+    assertEquals("content", read(in));
+  }
+
+  @Test
+  public void invalidHeader() throws Exception {
+    try {
+      MultipartReader.readHeaders(new ByteArrayInputStream("no header\r\n\r\n".getBytes("ISO-8859-1")));
+      fail("Expected IOException");
+    } catch (final IOException e) {
+      assertTrue(e.getMessage().contains("no header"));
+    }
+  }
+
+  private MultipartReader createReader(final String content) throws IOException {
+    return new MultipartReader(new ByteArrayInputStream(content.getBytes("ISO-8859-1")), BOUNDARY);
+  }
+
+  static String read(final InputStream in) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[100];
+    int count;
+    while ((count = in.read(buffer)) >= 0) {
+      out.write(buffer, 0, count);
+    }
+    return new String(out.toByteArray(), "ISO-8859-1");
+  }
+}
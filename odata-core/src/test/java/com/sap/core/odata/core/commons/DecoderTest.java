@@ -17,6 +17,7 @@ package com.sap.core.odata.core.commons;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -38,6 +39,17 @@ public class DecoderTest extends BaseTest {
     assertEquals(s, Decoder.decode(s));
   }
 
+  @Test
+  public void unchangedValue() {
+    final String s = "Employees('1')";
+    assertSame(s, Decoder.decode(s));
+  }
+
+  @Test
+  public void mixedCharacters() {
+    assertEquals("a b\u00E4\u20AC/c", Decoder.decode("a%20b%C3%a4%e2%82%AC/c"));
+  }
+
   @Test
   public void asciiControl() {
     assertEquals("\u0000\b\t\n\r", Decoder.decode("%00%08%09%0a%0d"));
@@ -81,6 +93,16 @@ public class DecoderTest extends BaseTest {
     Decoder.decode("%a");
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void trailingPercent() {
+    Decoder.decode("a%");
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void wrongPercentLetter() {
+    Decoder.decode("%g0");
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void nullByte() {
     Decoder.decode("%\u0000ff");
@@ -16,6 +16,8 @@
 package com.sap.core.odata.core.commons;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -44,6 +46,13 @@ public class EncoderTest extends BaseTest {
     assertEquals(s, Encoder.encode(s));
   }
 
+  @Test
+  public void unchangedValue() {
+    assertNull(Encoder.encode(null));
+    final String s = "Employees('1')";
+    assertSame(s, Encoder.encode(s));
+  }
+
   @Test
   public void asciiControl() {
     assertEquals("%08%09%0a%0d", Encoder.encode("\b\t\n\r"));
@@ -88,6 +97,17 @@ public class EncoderTest extends BaseTest {
     assertEquals("%f0%9f%98%83", Encoder.encode(s));
   }
 
+  @Test
+  public void unpairedSurrogate() {
+    assertEquals("a%3fb", Encoder.encode("a\uD800b"));
+    assertEquals("%3f", Encoder.encode("\uDC00"));
+  }
+
+  @Test
+  public void mixedCharacters() {
+    assertEquals("a%20b%c3%a4%e2%82%ac", Encoder.encode("a b\u00E4\u20AC"));
+  }
+
   @Test
   public void uriDecoding() throws URISyntaxException {
     String decodedValue = RFC3986_UNRESERVED + RFC3986_RESERVED + "0..1..a..z..A..Z..@"
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.edm.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sap.core.odata.api.edm.Edm;
+import com.sap.core.odata.api.edm.EdmMultiplicity;
+import com.sap.core.odata.api.edm.FullQualifiedName;
+import com.sap.core.odata.api.edm.provider.Association;
+import com.sap.core.odata.api.edm.provider.AssociationSet;
+import com.sap.core.odata.api.edm.provider.ComplexProperty;
+import com.sap.core.odata.api.edm.provider.ComplexType;
+import com.sap.core.odata.api.edm.provider.EdmProvider;
+import com.sap.core.odata.api.edm.provider.EntityContainerInfo;
+import com.sap.core.odata.api.edm.provider.EntitySet;
+import com.sap.core.odata.api.edm.provider.EntityType;
+import com.sap.core.odata.api.edm.provider.FunctionImport;
+import com.sap.core.odata.api.edm.provider.Schema;
+import com.sap.core.odata.api.ep.EntityProvider;
+import com.sap.core.odata.api.ep.EntityProviderException;
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.api.processor.ODataResponse;
+import com.sap.core.odata.core.edm.provider.EdmImplProv;
+import com.sap.core.odata.testutil.mock.EdmTestProvider;
+
+/**
+ * @author SAP AG
+ */
+public class LazyEdmxProviderTest {
+
+  private static final String NAMESPACE = "RefScenario";
+  private static final String NAMESPACE2 = "RefScenario2";
+
+  private final String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+      + "<!-- <EntityType Name=\"Commented\"/> -->"
+      + "<edmx:Edmx Version=\"1.0\" xmlns:edmx=\"" + Edm.NAMESPACE_EDMX_2007_06 + "\">"
+      + "<edmx:DataServices m:DataServiceVersion=\"2.0\" xmlns:m=\"" + Edm.NAMESPACE_M_2007_08 + "\">"
+      + "<Schema Namespace=\"" + NAMESPACE + "\" xmlns=\"" + Edm.NAMESPACE_EDM_2008_09 + "\">"
+      + "<EntityType Name= \"Employee\" m:HasStream=\"true\">"
+      + "<Key><PropertyRef Name=\"EmployeeId\"/></Key>"
+      + "<Property Name=\"EmployeeId\" Type=\"Edm.String\" Nullable=\"false\"/>"
+      + "<Property Name=\"Location\" Type=\"RefScenario.c_Location\" Nullable=\"false\"/>"
+      + "<NavigationProperty Name=\"ne_Manager\" Relationship=\"RefScenario.ManagerEmployees\" FromRole=\"r_Employees\" ToRole=\"r_Manager\"/>"
+      + "</EntityType>"
+      + "<EntityType Name=\"Manager\" BaseType=\"RefScenario.Employee\" m:HasStream=\"true\"/>"
+      + "<ComplexType Name=\"c_Location\">"
+      + "<Property Name=\"Country\" Type=\"Edm.String\"/>"
+      + "</ComplexType>"
+      + "<Association Name=\"ManagerEmployees\">"
+      + "<End Type=\"RefScenario.Employee\" Multiplicity=\"*\" Role=\"r_Employees\"/>"
+      + "<End Type=\"RefScenario.Manager\" Multiplicity=\"1\" Role=\"r_Manager\"/>"
+      + "</Association>"
+      + "<EntityContainer Name=\"Container1\" m:IsDefaultEntityContainer=\"true\">"
+      + "<EntitySet Name=\"Employees\" EntityType=\"RefScenario.Employee\"/>"
+      + "<EntitySet Name=\"Managers\" EntityType=\"RefScenario.Manager\"/>"
+      + "<AssociationSet Name=\"ManagerEmployees\" Association=\"RefScenario.ManagerEmployees\">"
+      + "<End EntitySet=\"Managers\" Role=\"r_Manager\"/>"
+      + "<End EntitySet=\"Employees\" Role=\"r_Employees\"/>"
+      + "</AssociationSet>"
+      + "<FunctionImport Name=\"EmployeeSearch\" ReturnType=\"Collection(RefScenario.Employee)\" EntitySet=\"Employees\" m:HttpMethod=\"GET\">"
+      + "<Parameter Name=\"q\" Type=\"Edm.String\" Nullable=\"true\"/>"
+      + "</FunctionImport>"
+      + "</EntityContainer>"
+      + "</Schema>"
+      + "<Schema Namespace=\"" + NAMESPACE2 + "\" xmlns=\"" + Edm.NAMESPACE_EDM_2008_09 + "\">"
+      + "<EntityType Name=\"Photo\"><Key><PropertyRef Name=\"Id\"/></Key>"
+      + "<Property Name=\"Id\" Type=\"Edm.Int32\" Nullable=\"false\"/>"
+      + "<![CDATA[</EntityType>]]>"
+      + "</EntityType>"
+      + "</Schema>"
+      + "</edmx:DataServices>"
+      + "</edmx:Edmx>";
+
+  private final String aliasXml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+      + "<edmx:Edmx Version=\"1.0\" xmlns:edmx=\"" + Edm.NAMESPACE_EDMX_2007_06 + "\">"
+      + "<edmx:DataServices m:DataServiceVersion=\"2.0\" xmlns:m=\"" + Edm.NAMESPACE_M_2007_08 + "\">"
+      + "<Schema Namespace=\"" + NAMESPACE + "\" Alias=\"RS\" xmlns=\"" + Edm.NAMESPACE_EDM_2008_09 + "\">"
+      + "<Using Namespace=\"" + NAMESPACE2 + "\" Alias=\"Other\"/>"
+      + "<EntityType Name=\"Employee\">"
+      + "<Key><PropertyRef Name=\"EmployeeId\"/></Key>"
+      + "<Property Name=\"EmployeeId\" Type=\"Edm.String\" Nullable=\"false\"/>"
+      + "<Property Name=\"Location\" Type=\"RS.c_Location\"/>"
+      + "<NavigationProperty Name=\"ne_Photo\" Relationship=\"RS.EmployeePhoto\" FromRole=\"r_Employee\" ToRole=\"r_Photo\"/>"
+      + "</EntityType>"
+      + "<ComplexType Name=\"c_Location\"><Property Name=\"Country\" Type=\"Edm.String\"/></ComplexType>"
+      + "<Association Name=\"EmployeePhoto\">"
+      + "<End Type=\"RS.Employee\" Multiplicity=\"*\" Role=\"r_Employee\"/>"
+      + "<End Type=\"Other.Photo\" Multiplicity=\"1\" Role=\"r_Photo\"/>"
+      + "</Association>"
+      + "<EntityContainer Name=\"Container1\" m:IsDefaultEntityContainer=\"true\">"
+      + "<EntitySet Name=\"Employees\" EntityType=\"RS.Employee\"/>"
+      + "<EntitySet Name=\"Photos\" EntityType=\"Later.Photo\"/>"
+      + "<AssociationSet Name=\"EmployeePhoto\" Association=\"RS.EmployeePhoto\">"
+      + "<End EntitySet=\"Employees\" Role=\"r_Employee\"/>"
+      + "<End EntitySet=\"Photos\" Role=\"r_Photo\"/>"
+      + "</AssociationSet>"
+      + "</EntityContainer>"
+      + "</Schema>"
+      + "<Schema Namespace=\"" + NAMESPACE2 + "\" Alias=\"Later\" xmlns=\"" + Edm.NAMESPACE_EDM_2008_09 + "\">"
+      + "<EntityType Name=\"Photo\"><Key><PropertyRef Name=\"Id\"/></Key>"
+      + "<Property Name=\"Id\" Type=\"Edm.Int32\" Nullable=\"false\"/>"
+      + "</EntityType>"
+      + "</Schema>"
+      + "</edmx:DataServices>"
+      + "</edmx:Edmx>";
+
+  @Test
+  public void entityType() throws Exception {
+    EdmProvider provider = createProvider(xml);
+    EntityType employee = provider.getEntityType(new FullQualifiedName(NAMESPACE, "Employee"));
+    assertNotNull(employee);
+    assertEquals("Employee", employee.getName());
+    assertTrue(employee.isHasStream());
+    assertEquals(2, employee.getProperties().size());
+    assertEquals("EmployeeId", employee.getKey().getKeys().get(0).getName());
+    assertEquals(1, employee.getNavigationProperties().size());
+    assertSame(employee, provider.getEntityType(new FullQualifiedName(NAMESPACE, "Employee")));
+
+    EntityType manager = provider.getEntityType(new FullQualifiedName(NAMESPACE, "Manager"));
+    assertEquals(new FullQualifiedName(NAMESPACE, "Employee"), manager.getBaseType());
+
+    EntityType photo = provider.getEntityType(new FullQualifiedName(NAMESPACE2, "Photo"));
+    assertEquals("Photo", photo.getName());
+    assertEquals(1, photo.getProperties().size());
+  }
+
+  @Test
+  public void unknownElements() throws Exception {
+    EdmProvider provider = createProvider(xml);
+    assertNull(provider.getEntityType(new FullQualifiedName(NAMESPACE, "Commented")));
+    assertNull(provider.getEntityType(new FullQualifiedName(NAMESPACE2, "Employee")));
+    assertNull(provider.getEntityType(new FullQualifiedName(NAMESPACE, "c_Location")));
+    assertNull(provider.getComplexType(new FullQualifiedName(NAMESPACE, "Employee")));
+    assertNull(provider.getAssociation(new FullQualifiedName(NAMESPACE, "Unknown")));
+    assertNull(provider.getEntityContainerInfo("Unknown"));
+    assertNull(provider.getEntitySet("Unknown", "Employees"));
+    assertNull(provider.getEntitySet("Container1", "Unknown"));
+  }
+
+  @Test
+  public void complexTypeAndAssociation() throws Exception {
+    EdmProvider provider = createProvider(xml);
+    ComplexType location = provider.getComplexType(new FullQualifiedName(NAMESPACE, "c_Location"));
+    assertEquals("c_Location", location.getName());
+    assertEquals("Country", location.getProperties().get(0).getName());
+
+    Association association = provider.getAssociation(new FullQualifiedName(NAMESPACE, "ManagerEmployees"));
+    assertEquals("ManagerEmployees", association.getName());
+    assertEquals(EdmMultiplicity.MANY, association.getEnd1().getMultiplicity());
+    assertEquals("r_Manager", association.getEnd2().getRole());
+  }
+
+  @Test
+  public void entityContainer() throws Exception {
+    EdmProvider provider = createProvider(xml);
+    EntityContainerInfo container = provider.getEntityContainerInfo("Container1");
+    assertEquals("Container1", container.getName());
+    assertTrue(container.isDefaultEntityContainer());
+
+    EntitySet entitySet = provider.getEntitySet("Container1", "Managers");
+    assertEquals(new FullQualifiedName(NAMESPACE, "Manager"), entitySet.getEntityType());
+
+    AssociationSet associationSet = provider.getAssociationSet("Container1", new FullQualifiedName(NAMESPACE, "ManagerEmployees"), "Employees", "r_Employees");
+    assertEquals("ManagerEmployees", associationSet.getName());
+
+    FunctionImport functionImport = provider.getFunctionImport("Container1", "EmployeeSearch");
+    assertEquals("Employees", functionImport.getEntitySet());
+    assertEquals(1, functionImport.getParameters().size());
+  }
+
+  @Test
+  public void schemas() throws Exception {
+    List<Schema> schemas = createProvider(xml).getSchemas();
+    assertEquals(2, schemas.size());
+    assertEquals(2, schemas.get(0).getEntityTypes().size());
+    assertEquals(1, schemas.get(0).getEntityContainers().size());
+    assertEquals(NAMESPACE2, schemas.get(1).getNamespace());
+  }
+
+  @Test
+  public void aliases() throws Exception {
+    EdmProvider provider = createProvider(aliasXml);
+    EntityType employee = provider.getEntityType(new FullQualifiedName("RS", "Employee"));
+    assertNotNull(employee);
+    assertSame(employee, provider.getEntityType(new FullQualifiedName(NAMESPACE, "Employee")));
+    assertEquals(new FullQualifiedName(NAMESPACE, "c_Location"), ((ComplexProperty) employee.getProperties().get(1)).getType());
+    assertEquals(new FullQualifiedName(NAMESPACE, "EmployeePhoto"), employee.getNavigationProperties().get(0).getRelationship());
+    assertNotNull(provider.getComplexType(new FullQualifiedName("RS", "c_Location")));
+
+    // aliases of Using elements and of schemas later in the document are resolved
+    Association association = provider.getAssociation(new FullQualifiedName("RS", "EmployeePhoto"));
+    assertEquals(new FullQualifiedName(NAMESPACE2, "Photo"), association.getEnd2().getType());
+    assertEquals(new FullQualifiedName(NAMESPACE2, "Photo"), provider.getEntitySet("Container1", "Photos").getEntityType());
+    assertNotNull(provider.getAssociationSet("Container1", new FullQualifiedName("RS", "EmployeePhoto"), "Photos", "r_Photo"));
+    assertSame(provider.getEntityType(new FullQualifiedName(NAMESPACE2, "Photo")),
+        provider.getEntityType(new FullQualifiedName("Later", "Photo")));
+  }
+
+  @Test(expected = EntityProviderException.class)
+  public void truncatedDocument() throws Exception {
+    createProvider(xml.substring(0, xml.indexOf("</Schema>")));
+  }
+
+  @Test
+  public void compareWithEagerProvider() throws Exception {
+    EdmProvider testProvider = new EdmTestProvider();
+    ODataResponse response = EntityProvider.writeMetadata(testProvider.getSchemas(), null);
+    Edm edm = EntityProvider.readMetadataLazily((InputStream) response.getEntity());
+    EdmProvider provider = ((EdmImplProv) edm).getEdmProvider();
+    assertFalse(provider instanceof EdmxProvider);
+
+    for (Schema testSchema : testProvider.getSchemas()) {
+      for (EntityType testEntityType : testSchema.getEntityTypes()) {
+        final FullQualifiedName fqName = new FullQualifiedName(testSchema.getNamespace(), testEntityType.getName());
+        EntityType entityType = provider.getEntityType(fqName);
+        assertEquals(testEntityType.getName(), entityType.getName());
+        assertEquals(testEntityType.getBaseType(), entityType.getBaseType());
+        if (testEntityType.getProperties() != null) {
+          assertEquals(testEntityType.getProperties().size(), entityType.getProperties().size());
+        }
+      }
+      if (testSchema.getComplexTypes() != null) {
+        for (ComplexType testComplexType : testSchema.getComplexTypes()) {
+          final FullQualifiedName fqName = new FullQualifiedName(testSchema.getNamespace(), testComplexType.getName());
+          assertEquals(testComplexType.getName(), provider.getComplexType(fqName).getName());
+        }
+      }
+      if (testSchema.getAssociations() != null) {
+        for (Association testAssociation : testSchema.getAssociations()) {
+          final FullQualifiedName fqName = new FullQualifiedName(testSchema.getNamespace(), testAssociation.getName());
+          assertEquals(testAssociation.getEnd1().getRole(), provider.getAssociation(fqName).getEnd1().getRole());
+        }
+      }
+    }
+    EntityContainerInfo testContainer = testProvider.getEntityContainerInfo("Container2");
+    assertEquals(testContainer.isDefaultEntityContainer(), provider.getEntityContainerInfo("Container2").isDefaultEntityContainer());
+    assertEquals(testProvider.getSchemas().size(), provider.getSchemas().size());
+  }
+
+  private EdmProvider createProvider(final String metadata) throws EntityProviderException, ODataException {
+    return new LazyEdmxProvider().parse(new ByteArrayInputStream(metadata.getBytes()));
+  }
+}
@@ -73,4 +73,16 @@ public class EntityInfoAggregatorTest extends AbstractProviderTest {
     assertFalse(cityInfo.getPropertyInfo("PostalCode").isComplex());
     assertEquals("String", cityInfo.getPropertyInfo("PostalCode").getType().getName());
   }
+
+  @Test
+  public void encodedEntitySetPath() throws Exception {
+    EdmEntitySet entitySet = MockFacade.getMockEdm().getDefaultEntityContainer().getEntitySet("Employees");
+    EntityInfoAggregator eia = EntityInfoAggregator.create(entitySet);
+    assertEquals("Employees", eia.getEncodedEntitySetPath());
+    assertEquals("ne_Manager", eia.getNavigationPropertyInfo("ne_Manager").getEncodedName());
+
+    entitySet = MockFacade.getMockEdm().getEntityContainer("Container2").getEntitySet("Photos");
+    eia = EntityInfoAggregator.create(entitySet);
+    assertEquals("Container2.Photos", eia.getEncodedEntitySetPath());
+  }
 }
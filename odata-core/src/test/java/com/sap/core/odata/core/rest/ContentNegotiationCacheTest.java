@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.core.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sap.core.odata.api.exception.ODataNotAcceptableException;
+import com.sap.core.odata.core.commons.ContentType;
+import com.sap.core.odata.testutil.fit.BaseTest;
+
+/**
+ * @author SAP AG
+ */
+public class ContentNegotiationCacheTest extends BaseTest {
+
+  private static final List<String> SUPPORTED = Arrays.asList(
+      "application/atom+xml; charset=utf-8", "application/json; charset=utf-8", "application/xml; charset=utf-8");
+
+  @Test
+  public void sameTableForEqualSupportedLists() throws Exception {
+    final ContentNegotiationCache.Table table = ContentNegotiationCache.getTable(SUPPORTED);
+    assertSame(table, ContentNegotiationCache.getTable(Arrays.asList(SUPPORTED.toArray(new String[0]))));
+    assertEquals(3, table.getSupportedContentTypes().size());
+    assertEquals(ContentType.APPLICATION_ATOM_XML_CS_UTF_8, table.getSupportedContentTypes().get(0));
+  }
+
+  @Test
+  public void commonAcceptHeaders() throws Exception {
+    final ContentNegotiationCache.Table table = ContentNegotiationCache.getTable(SUPPORTED);
+    assertEquals("application/json; charset=utf-8",
+        table.negotiate("application/json", Collections.<ContentType> emptyList()).toContentTypeString());
+    assertEquals("application/atom+xml; charset=utf-8",
+        table.negotiate("*/*", Collections.<ContentType> emptyList()).toContentTypeString());
+  }
+
+  @Test
+  public void cachedNegotiation() throws Exception {
+    final ContentNegotiationCache.Table table = ContentNegotiationCache.getTable(SUPPORTED);
+    final String header = "text/plain;q=0.5, application/xml";
+    final ContentType negotiated = table.negotiate(header,
+        Arrays.asList(ContentType.APPLICATION_XML, ContentType.TEXT_PLAIN));
+    assertEquals("application/xml; charset=utf-8", negotiated.toContentTypeString());
+    assertSame(negotiated, table.negotiate(header, Collections.<ContentType> emptyList()));
+  }
+
+  @Test(expected = ODataNotAcceptableException.class)
+  public void notAcceptable() throws Exception {
+    ContentNegotiationCache.getTable(SUPPORTED).negotiate("image/gif", Arrays.asList(ContentType.create("image/gif")));
+  }
+
+  @Test
+  public void acceptHeaders() throws Exception {
+    final String header = "application/json;odata=verbose";
+    assertNull(ContentNegotiationCache.getAcceptHeaderContentTypes(header));
+    final List<ContentType> contentTypes = ContentNegotiationCache.putAcceptHeaderContentTypes(header,
+        Arrays.asList(ContentType.APPLICATION_JSON_ODATA_VERBOSE));
+    assertSame(contentTypes, ContentNegotiationCache.getAcceptHeaderContentTypes(header));
+  }
+}
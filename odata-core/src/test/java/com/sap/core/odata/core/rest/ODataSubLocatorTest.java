@@ -16,27 +16,40 @@
 package com.sap.core.odata.core.rest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 import java.io.InputStream;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.sap.core.odata.api.ODataService;
 import com.sap.core.odata.api.commons.HttpHeaders;
 import com.sap.core.odata.api.commons.HttpStatusCodes;
+import com.sap.core.odata.api.exception.ODataBadRequestException;
 import com.sap.core.odata.api.exception.ODataException;
 import com.sap.core.odata.api.exception.ODataNotAcceptableException;
+import com.sap.core.odata.api.exception.ODataNotFoundException;
 import com.sap.core.odata.api.processor.ODataResponse;
+import com.sap.core.odata.api.uri.PathSegment;
 import com.sap.core.odata.api.uri.UriParser;
 import com.sap.core.odata.core.Dispatcher;
 import com.sap.core.odata.core.ODataContextImpl;
 import com.sap.core.odata.core.PathInfoImpl;
+import com.sap.core.odata.core.batch.BatchRequestPart;
 import com.sap.core.odata.core.commons.ContentType;
 import com.sap.core.odata.core.commons.ODataHttpMethod;
 import com.sap.core.odata.core.uri.UriInfoImpl;
@@ -135,6 +148,26 @@ public class ODataSubLocatorTest extends BaseTest {
         "sup/222");
   }
 
+  @Test
+  public void parseAcceptHeaderOrderedByQuality() throws Exception {
+    assertEquals(contentTypes("application/xml", "text/plain", "*/*", "application/json;odata=verbose"),
+        ODataSubLocator.parseAcceptHeader("text/plain; q=0.5, application/json;odata=verbose;q=0.2, "
+            + "image/gif;q=0, application/xml, */*;q=0.5"));
+    assertEquals(contentTypes("*/*"), ODataSubLocator.parseAcceptHeader(""));
+    assertEquals(contentTypes(), ODataSubLocator.parseAcceptHeader("*/*;q=0"));
+  }
+
+  @Test
+  public void parseAcceptHeaderOrderedBySpecificity() throws Exception {
+    assertEquals(contentTypes("application/json", "application/*", "*/*", "text/plain"),
+        ODataSubLocator.parseAcceptHeader("*/*, application/*, text/plain;q=0.9, application/json"));
+  }
+
+  @Test(expected = ODataBadRequestException.class)
+  public void parseAcceptHeaderInvalidQuality() throws Exception {
+    ODataSubLocator.parseAcceptHeader("application/xml;q=high");
+  }
+
   private void negotiateContentTypeCharset(final String requestType, final String supportedType, final boolean asFormat)
       throws SecurityException, IllegalArgumentException, NoSuchFieldException, IllegalAccessException, ODataException {
     ODataSubLocator locator = new ODataSubLocator();
@@ -195,10 +228,116 @@ public class ODataSubLocatorTest extends BaseTest {
         Matchers.any(UriInfoImpl.class),
         Matchers.any(InputStream.class),
         Matchers.anyString(),
-        Matchers.refEq(contentHeader))).thenReturn(odataResponse);
+        Matchers.eq(contentHeader))).thenReturn(odataResponse);
     Mockito.when(service.getSupportedContentTypes(null)).thenReturn(Arrays.asList(supportedContentTypes));
   }
 
+  private static final String SERVICE_ROOT = "http://localhost/service.svc/";
+
+  /**
+   * Mocks parser, service, and dispatcher of the locator for handling batch
+   * parts; the dispatcher answers with the If-Match header of the context.
+   */
+  private UriParser mockSubLocatorForBatchParts(final ODataSubLocator locator) throws Exception {
+    UriParser parser = mockUriParser(locator);
+    Mockito.when(parser.parse(Matchers.anyListOf(PathSegment.class), Matchers.anyMapOf(String.class, String.class)))
+        .thenReturn(new UriInfoImpl());
+    ODataService service = mockODataService(locator);
+    Mockito.when(service.getSupportedContentTypes(null)).thenReturn(Arrays.asList("application/xml"));
+
+    final ODataContextImpl context = new ODataContextImpl();
+    PathInfoImpl pathInfo = new PathInfoImpl();
+    pathInfo.setServiceRoot(new URI(SERVICE_ROOT));
+    context.setUriInfo(pathInfo);
+    context.setHttpRequestHeader(HttpHeaders.IF_MATCH, "batch");
+    setField(locator, "context", context);
+
+    Dispatcher dispatcher = mockDispatcher(locator);
+    Mockito.when(dispatcher.dispatch(Matchers.any(ODataHttpMethod.class), Matchers.any(UriInfoImpl.class),
+        Matchers.any(InputStream.class), Matchers.anyString(), Matchers.anyString())).thenAnswer(new Answer<ODataResponse>() {
+          @Override
+          public ODataResponse answer(final InvocationOnMock invocation) throws Throwable {
+            return ODataResponse.entity(context.getHttpRequestHeader(HttpHeaders.IF_MATCH)).build();
+          }
+        });
+    return parser;
+  }
+
+  private ODataResponse handleBatchPart(final ODataSubLocator locator, final String uri, final Map<String, String> headers) throws Exception {
+    Constructor<BatchRequestPart> constructor = BatchRequestPart.class.getDeclaredConstructor(
+        ODataHttpMethod.class, String.class, Map.class, InputStream.class);
+    constructor.setAccessible(true);
+    return locator.new ODataBatchPartHandler().handlePart(constructor.newInstance(ODataHttpMethod.GET, uri, headers, null));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void checkBatchPartUri(final String uri, final List<String> expectedSegments, final Map<String, String> expectedQueryParameters) throws Exception {
+    ODataSubLocator locator = new ODataSubLocator();
+    UriParser parser = mockSubLocatorForBatchParts(locator);
+    handleBatchPart(locator, uri, new HashMap<String, String>());
+
+    ArgumentCaptor<List> segments = ArgumentCaptor.forClass(List.class);
+    ArgumentCaptor<Map> queryParameters = ArgumentCaptor.forClass(Map.class);
+    Mockito.verify(parser).parse(segments.capture(), queryParameters.capture());
+    List<String> paths = new ArrayList<String>();
+    for (final Object segment : segments.getValue()) {
+      paths.add(((PathSegment) segment).getPath());
+    }
+    assertEquals(expectedSegments, paths);
+    assertEquals(expectedQueryParameters, queryParameters.getValue());
+  }
+
+  @Test
+  public void batchPartUri() throws Exception {
+    final Map<String, String> noQueryParameters = new HashMap<String, String>();
+    checkBatchPartUri("Employees('1')/ne_Room", Arrays.asList("Employees('1')", "ne_Room"), noQueryParameters);
+    checkBatchPartUri(SERVICE_ROOT + "Employees('1')", Arrays.asList("Employees('1')"), noQueryParameters);
+    checkBatchPartUri("/service.svc/Employees('1')", Arrays.asList("Employees('1')"), noQueryParameters);
+    checkBatchPartUri("Employees('a%2Fb')", Arrays.asList("Employees('a/b')"), noQueryParameters);
+  }
+
+  @Test
+  public void batchPartQuery() throws Exception {
+    Map<String, String> queryParameters = new HashMap<String, String>();
+    queryParameters.put("$filter", "Age eq 42");
+    queryParameters.put("$top", "2");
+    queryParameters.put("$inlinecount", "");
+    checkBatchPartUri("Employees?$filter=Age%20eq%2042&$top=2&$top=3&$inlinecount",
+        Arrays.asList("Employees"), queryParameters);
+  }
+
+  @Test(expected = ODataNotFoundException.class)
+  public void batchPartOfOtherService() throws Exception {
+    ODataSubLocator locator = new ODataSubLocator();
+    mockSubLocatorForBatchParts(locator);
+    handleBatchPart(locator, "/other.svc/Employees", new HashMap<String, String>());
+  }
+
+  @Test
+  public void nestedBatchPart() throws Exception {
+    ODataSubLocator locator = new ODataSubLocator();
+    UriParser parser = mockSubLocatorForBatchParts(locator);
+    try {
+      handleBatchPart(locator, "$batch", new HashMap<String, String>());
+      fail("Expected an ODataBadRequestException");
+    } catch (final ODataBadRequestException e) {
+      Mockito.verifyZeroInteractions(parser);
+    }
+  }
+
+  @Test
+  public void batchPartHeaders() throws Exception {
+    ODataSubLocator locator = new ODataSubLocator();
+    mockSubLocatorForBatchParts(locator);
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(HttpHeaders.IF_MATCH, "W/\"1\"");
+    assertEquals("W/\"1\"", handleBatchPart(locator, "Employees('1')", headers).getEntity());
+    assertNull(handleBatchPart(locator, "Employees('1')", new HashMap<String, String>()).getEntity());
+
+    ODataContextImpl context = (ODataContextImpl) getField(locator, "context");
+    assertEquals("batch", context.getHttpRequestHeader(HttpHeaders.IF_MATCH));
+  }
+
   private Dispatcher mockDispatcher(final ODataSubLocator locator) throws SecurityException, IllegalArgumentException, NoSuchFieldException, IllegalAccessException {
     Dispatcher dispatcher = Mockito.mock(Dispatcher.class);
     setField(locator, "dispatcher", dispatcher);
@@ -234,6 +373,13 @@ public class ODataSubLocatorTest extends BaseTest {
     field.setAccessible(access);
   }
 
+  private static Object getField(final Object instance, final String fieldname) throws SecurityException,
+      NoSuchFieldException, IllegalArgumentException, IllegalAccessException {
+    Field field = instance.getClass().getDeclaredField(fieldname);
+    field.setAccessible(true);
+    return field.get(instance);
+  }
+
   private List<ContentType> contentTypes(final String... contentType) {
     List<ContentType> ctList = new ArrayList<ContentType>();
     for (String ct : contentType) {
@@ -19,6 +19,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -36,6 +37,7 @@ import com.sap.core.odata.api.uri.ExpandSelectTreeNode;
 import com.sap.core.odata.api.uri.PathSegment;
 import com.sap.core.odata.api.uri.UriInfo;
 import com.sap.core.odata.api.uri.UriParser;
+import com.sap.core.odata.core.exception.ODataRuntimeException;
 import com.sap.core.odata.testutil.fit.BaseTest;
 import com.sap.core.odata.testutil.mock.MockFacade;
 
@@ -447,6 +449,63 @@ public class ExpandSelectTreeCreatorImplTest extends BaseTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  public void sealedTree() throws Exception {
+    ExpandSelectTreeNodeImpl actual = getExpandSelectTree("Age,ne_Room", "ne_Room");
+    assertTrue(actual.isSealed());
+    assertEquals(1, actual.getProperties().size());
+    assertEquals("Age", actual.getProperties().get(0).getName());
+    assertFalse(actual.getLinks().containsKey("ne_Manager"));
+
+    ExpandSelectTreeNodeImpl roomNode = (ExpandSelectTreeNodeImpl) actual.getLinks().get("ne_Room");
+    assertTrue(roomNode.isSealed());
+    assertTrue(roomNode.isAll());
+
+    try {
+      actual.getProperties().clear();
+      fail("Expected an UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      assertNotNull(e);
+    }
+
+    try {
+      actual.putLinkNode("ne_Manager", null);
+      fail("Expected an ODataRuntimeException");
+    } catch (ODataRuntimeException e) {
+      assertNotNull(e);
+    }
+  }
+
+  @Test
+  public void identicalSubTreesAreShared() throws Exception {
+    //$expand=ne_Manager/ne_Room,ne_Room
+    ExpandSelectTreeNode actual = getExpandSelectTree(null, "ne_Manager/ne_Room,ne_Room");
+    final ExpandSelectTreeNode roomNode = actual.getLinks().get("ne_Room");
+    assertNotNull(roomNode);
+    assertSame(roomNode, actual.getLinks().get("ne_Manager").getLinks().get("ne_Room"));
+  }
+
+  @Test
+  public void treeCachedWithParsedUri() throws Exception {
+    Map<String, String> queryParameters = new HashMap<String, String>();
+    queryParameters.put("$select", "Age,ne_Manager");
+    queryParameters.put("$expand", "ne_Manager");
+    final UriInfo uriInfo = UriParser.parse(edm, MockFacade.getPathSegmentsAsODataPathSegmentMock(Arrays.asList("Employees")), queryParameters);
+
+    final ExpandSelectTreeNode tree = UriParser.createExpandSelectTree(uriInfo.getSelect(), uriInfo.getExpand());
+    assertSame(tree, UriParser.createExpandSelectTree(uriInfo.getSelect(), uriInfo.getExpand()));
+
+    final UriInfo otherUriInfo = UriParser.parse(edm, MockFacade.getPathSegmentsAsODataPathSegmentMock(Arrays.asList("Employees")), queryParameters);
+    assertSame(tree, UriParser.createExpandSelectTree(otherUriInfo.getSelect(), otherUriInfo.getExpand()));
+
+    // The cache has taken a snapshot; changing the lists of the parsed URI does not affect it.
+    otherUriInfo.getExpand().clear();
+    final ExpandSelectTreeNode otherTree = UriParser.createExpandSelectTree(otherUriInfo.getSelect(), otherUriInfo.getExpand());
+    assertTrue(otherTree != tree);
+    assertNull(otherTree.getLinks().get("ne_Manager"));
+    assertSame(tree, UriParser.createExpandSelectTree(uriInfo.getSelect(), uriInfo.getExpand()));
+  }
+
   private ExpandSelectTreeNodeImpl getExpandSelectTree(final String selectString, final String expandString) throws Exception {
     final List<PathSegment> pathSegments = MockFacade.getPathSegmentsAsODataPathSegmentMock(Arrays.asList("Employees('1')"));
 
@@ -15,9 +15,9 @@
  ******************************************************************************/
 package com.sap.core.odata.ref.model;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author SAP AG
@@ -26,7 +26,7 @@ public class Building {
   private final int id;
   private String name;
   private byte[] image;
-  private List<Room> rooms = new ArrayList<Room>();
+  private List<Room> rooms = new CopyOnWriteArrayList<Room>();
 
   public Building(final int id, final String name) {
     this.id = id;
@@ -22,18 +22,55 @@ import java.util.TimeZone;
 
 /**
  * Container and initialization code for the data objects of the reference scenario.
+ * <p>The data lists keep hash indexes on the entity keys,
+ * so single objects can be retrieved by key in constant time.
+ * They are copy-on-write lists: readers see consistent snapshots without locking
+ * while modifications publish new versions, so one container can serve concurrent requests.
+ * The lists of related objects held by teams, rooms, managers and buildings
+ * are copy-on-write lists as well. Properties of a single object are changed in place,
+ * so a concurrent reader may see an update of several properties only partially.</p>
  * @author SAP AG
  */
 public class DataContainer {
 
   private static final String IMAGE_JPEG = "image/jpeg";
 
-  private List<Employee> employees = new ArrayList<Employee>();
-  private List<Team> teams = new ArrayList<Team>();
-  private List<Room> rooms = new ArrayList<Room>();
-  private List<Manager> managers = new ArrayList<Manager>();
-  private List<Building> buildings = new ArrayList<Building>();
-  private List<Photo> photos = new ArrayList<Photo>();
+  private KeyIndexedList<Employee> employees = new KeyIndexedList<Employee>() {
+    @Override
+    protected Object getKey(final Employee employee) {
+      return employee.getId();
+    }
+  };
+  private KeyIndexedList<Team> teams = new KeyIndexedList<Team>() {
+    @Override
+    protected Object getKey(final Team team) {
+      return team.getId();
+    }
+  };
+  private KeyIndexedList<Room> rooms = new KeyIndexedList<Room>() {
+    @Override
+    protected Object getKey(final Room room) {
+      return room.getId();
+    }
+  };
+  private KeyIndexedList<Manager> managers = new KeyIndexedList<Manager>() {
+    @Override
+    protected Object getKey(final Manager manager) {
+      return manager.getId();
+    }
+  };
+  private KeyIndexedList<Building> buildings = new KeyIndexedList<Building>() {
+    @Override
+    protected Object getKey(final Building building) {
+      return building.getId();
+    }
+  };
+  private KeyIndexedList<Photo> photos = new KeyIndexedList<Photo>() {
+    @Override
+    protected Object getKey(final Photo photo) {
+      return photo.getId();
+    }
+  };
   private int employeeId = 0;
   private int teamId = 0;
   private int roomId = 0;
@@ -86,14 +123,17 @@ public class DataContainer {
     room3.setVersion(3);
     rooms.add(room3);
 
+    // The generated rooms are published to the list at once.
+    List<Room> generatedRooms = new ArrayList<Room>();
     for (int i = 4; i <= 103; i++) {
       Room roomN = createRoom();
       roomN.setSeats(4 + (i - 3) % 5);
       roomN.setBuilding(building3);
       building3.getRooms().add(roomN);
       roomN.setVersion(1);
-      rooms.add(roomN);
+      generatedRooms.add(roomN);
     }
+    rooms.addAll(generatedRooms);
 
     // ------------- Employees and Managers ------------
     Manager emp1 = createManager();
@@ -219,27 +259,27 @@ public class DataContainer {
     return date;
   }
 
-  public Employee createEmployee() {
+  public synchronized Employee createEmployee() {
     return new Employee(++employeeId, "Employee " + employeeId);
   }
 
-  public Team createTeam() {
+  public synchronized Team createTeam() {
     return new Team(++teamId, "Team " + teamId);
   }
 
-  public Room createRoom() {
+  public synchronized Room createRoom() {
     return new Room(++roomId, "Room " + roomId);
   }
 
-  public Manager createManager() {
+  public synchronized Manager createManager() {
     return new Manager(++employeeId, "Employee " + employeeId);
   }
 
-  public Building createBuilding() {
+  public synchronized Building createBuilding() {
     return new Building(++buildingId, "Building " + buildingId);
   }
 
-  public Photo createPhoto(final String type) {
+  public synchronized Photo createPhoto(final String type) {
     return new Photo(++photoId, "Photo " + photoId, type);
   }
 
@@ -267,7 +307,35 @@ public class DataContainer {
     return photos;
   }
 
-  public void reset() {
+  /**
+   * Returns the employee (or manager) with the given ID.
+   * @return the employee or <code>null</code> if there is none with this ID
+   */
+  public Employee getEmployee(final String id) {
+    return employees.getByKey(id);
+  }
+
+  public Team getTeam(final String id) {
+    return teams.getByKey(id);
+  }
+
+  public Room getRoom(final String id) {
+    return rooms.getByKey(id);
+  }
+
+  public Manager getManager(final String id) {
+    return managers.getByKey(id);
+  }
+
+  public Building getBuilding(final String id) {
+    return buildings.getByKey(id);
+  }
+
+  public Photo getPhoto(final int id) {
+    return photos.getByKey(id);
+  }
+
+  public synchronized void reset() {
     employees.clear();
     teams.clear();
     rooms.clear();
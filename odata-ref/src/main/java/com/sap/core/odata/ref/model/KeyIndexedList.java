@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Copy-on-write list of data objects with a hash index on their keys.
+ * <p>The elements and the index form an immutable snapshot; every modification
+ * builds a new snapshot and publishes it atomically, so readers never lock and
+ * iterators always traverse one consistent version of the list, unaffected by
+ * concurrent modifications. Iterators do not support modifications.</p>
+ * <p>The index of a new snapshot is a copy of the previous index changed for the
+ * added and removed objects only; the keys of the other objects are not computed again.</p>
+ * <p>Keys are expected to be unique; for duplicates the first object is found,
+ * and the index is rebuilt on every modification as long as there are duplicates.</p>
+ * @author SAP AG
+ */
+abstract class KeyIndexedList<T> extends AbstractList<T> implements RandomAccess {
+
+  private volatile Snapshot<T> snapshot = new Snapshot<T>(new Object[0], Collections.<Object, T> emptyMap(), false);
+
+  /**
+   * Returns the key of a data object; the key must not change while the object is in the list.
+   */
+  protected abstract Object getKey(T data);
+
+  /**
+   * Returns the data object with the given key.
+   * @param key the key
+   * @return the data object or <code>null</code> if the list contains no object with this key
+   */
+  public T getByKey(final Object key) {
+    return snapshot.index.get(key);
+  }
+
+  @Override
+  public T get(final int position) {
+    return snapshot.elements.get(position);
+  }
+
+  @Override
+  public int size() {
+    return snapshot.elements.size();
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return snapshot.elements.iterator();
+  }
+
+  @Override
+  public ListIterator<T> listIterator(final int position) {
+    return snapshot.elements.listIterator(position);
+  }
+
+  @Override
+  public Object[] toArray() {
+    return snapshot.elements.toArray();
+  }
+
+  @Override
+  public <A> A[] toArray(final A[] array) {
+    return snapshot.elements.toArray(array);
+  }
+
+  @Override
+  public synchronized void add(final int position, final T data) {
+    final Object[] elements = snapshot.array;
+    if (position < 0 || position > elements.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    Object[] newElements = new Object[elements.length + 1];
+    System.arraycopy(elements, 0, newElements, 0, position);
+    newElements[position] = data;
+    System.arraycopy(elements, position, newElements, position + 1, elements.length - position);
+    publish(newElements, new Object[0], new Object[] { data });
+  }
+
+  @Override
+  public synchronized boolean addAll(final Collection<? extends T> collection) {
+    final Object[] elements = snapshot.array;
+    final Object[] added = collection.toArray();
+    Object[] newElements = Arrays.copyOf(elements, elements.length + added.length);
+    System.arraycopy(added, 0, newElements, elements.length, added.length);
+    publish(newElements, new Object[0], added);
+    return added.length > 0;
+  }
+
+  @Override
+  public synchronized T set(final int position, final T data) {
+    final T previous = get(position);
+    Object[] newElements = snapshot.array.clone();
+    newElements[position] = data;
+    publish(newElements, new Object[] { previous }, new Object[] { data });
+    return previous;
+  }
+
+  @Override
+  public synchronized T remove(final int position) {
+    final T previous = get(position);
+    removeRange(position, position + 1);
+    return previous;
+  }
+
+  @Override
+  public synchronized boolean remove(final Object data) {
+    final int position = indexOf(data);
+    if (position < 0) {
+      return false;
+    }
+    removeRange(position, position + 1);
+    return true;
+  }
+
+  @Override
+  public synchronized boolean removeAll(final Collection<?> collection) {
+    return retain(collection, false);
+  }
+
+  @Override
+  public synchronized boolean retainAll(final Collection<?> collection) {
+    return retain(collection, true);
+  }
+
+  @Override
+  public synchronized void clear() {
+    publish(new Object[0]);
+  }
+
+  @Override
+  protected synchronized void removeRange(final int fromIndex, final int toIndex) {
+    final Object[] elements = snapshot.array;
+    if (fromIndex < 0 || toIndex > elements.length || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException();
+    }
+    Object[] newElements = new Object[elements.length - (toIndex - fromIndex)];
+    System.arraycopy(elements, 0, newElements, 0, fromIndex);
+    System.arraycopy(elements, toIndex, newElements, fromIndex, elements.length - toIndex);
+    publish(newElements, Arrays.copyOfRange(elements, fromIndex, toIndex), new Object[0]);
+  }
+
+  private boolean retain(final Collection<?> collection, final boolean contained) {
+    final Object[] elements = snapshot.array;
+    Object[] newElements = new Object[elements.length];
+    List<Object> removed = new ArrayList<Object>();
+    int size = 0;
+    for (final Object element : elements) {
+      if (collection.contains(element) == contained) {
+        newElements[size++] = element;
+      } else {
+        removed.add(element);
+      }
+    }
+    if (size == elements.length) {
+      return false;
+    }
+    publish(Arrays.copyOf(newElements, size), removed.toArray(), new Object[0]);
+    return true;
+  }
+
+  /**
+   * Publishes the new elements which differ from the current ones by the
+   * removed and the added objects; the current index is copied and changed
+   * for these objects only, unless keys are duplicated.
+   */
+  @SuppressWarnings("unchecked")
+  private void publish(final Object[] elements, final Object[] removed, final Object[] added) {
+    if (!snapshot.duplicates) {
+      Map<Object, T> index = new HashMap<Object, T>(snapshot.index);
+      for (final Object element : removed) {
+        index.remove(getKey((T) element));
+      }
+      boolean duplicates = false;
+      for (final Object element : added) {
+        if (index.put(getKey((T) element), (T) element) != null) {
+          duplicates = true;
+          break;
+        }
+      }
+      if (!duplicates) {
+        snapshot = new Snapshot<T>(elements, index, false);
+        modCount++;
+        return;
+      }
+    }
+    publish(elements);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void publish(final Object[] elements) {
+    Map<Object, T> index = new HashMap<Object, T>();
+    boolean duplicates = false;
+    for (final Object element : elements) {
+      final Object key = getKey((T) element);
+      if (index.containsKey(key)) {
+        duplicates = true;
+      } else {
+        index.put(key, (T) element);
+      }
+    }
+    snapshot = new Snapshot<T>(elements, index, duplicates);
+    modCount++;
+  }
+
+  /** Immutable version of the list content. */
+  private static final class Snapshot<T> {
+    private final Object[] array;
+    private final List<T> elements;
+    private final Map<Object, T> index;
+    private final boolean duplicates;
+
+    @SuppressWarnings("unchecked")
+    private Snapshot(final Object[] array, final Map<Object, T> index, final boolean duplicates) {
+      this.array = array;
+      elements = Collections.unmodifiableList((List<T>) Arrays.asList(array));
+      this.index = index;
+      this.duplicates = duplicates;
+    }
+  }
+}
@@ -15,15 +15,15 @@
  ******************************************************************************/
 package com.sap.core.odata.ref.model;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author SAP AG
  */
 public class Manager extends Employee {
 
-  private List<Employee> employees = new ArrayList<Employee>();
+  private List<Employee> employees = new CopyOnWriteArrayList<Employee>();
 
   public Manager(final int id, final String name) {
     super(id, name);
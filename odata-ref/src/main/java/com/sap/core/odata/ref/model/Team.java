@@ -15,8 +15,8 @@
  ******************************************************************************/
 package com.sap.core.odata.ref.model;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
 * @author SAP AG
@@ -25,7 +25,7 @@ public class Team {
   private final int id;
   private String name;
   private Boolean isScrumTeam;
-  private List<Employee> employees = new ArrayList<Employee>();
+  private List<Employee> employees = new CopyOnWriteArrayList<Employee>();
 
   public Team(final int id, final String name) {
     this.id = id;
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import java.util.List;
+import java.util.Map;
+
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.exception.ODataApplicationException;
+import com.sap.core.odata.api.exception.ODataNotFoundException;
+import com.sap.core.odata.api.exception.ODataNotImplementedException;
+
+/**
+ * <p>Optional extension of {@link ListsDataSource} for data sources
+ * that can retrieve related data for many source objects at once.</p>
+ * <p>If a data source implements this interface, {@link ListsProcessor}
+ * expands a navigation property of a feed with one call for all entries
+ * of the feed instead of one call per entry.</p>
+ * @author SAP AG
+ */
+public interface BatchedListsDataSource extends ListsDataSource {
+
+  /**
+   * Retrieves the related data for all given source data objects,
+   * following the navigation from the source entity set to the target entity set.
+   * @param sourceEntitySet  the entity set of the source data
+   * @param sourceData  the source data objects
+   * @param targetEntitySet  the entity set of the related data
+   * @return map of source data objects to their related data, either a list
+   *         or a single object as in {@link #readRelatedData(EdmEntitySet, Object, EdmEntitySet, Map)};
+   *         source data objects without related data may be missing
+   */
+  Map<?, ?> readAllRelatedData(EdmEntitySet sourceEntitySet, List<?> sourceData, EdmEntitySet targetEntitySet) throws ODataNotImplementedException, ODataNotFoundException, EdmException, ODataApplicationException;
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.sap.core.odata.api.exception.ODataException;
+
+/**
+ * <p>Processes a list in consecutive chunks on the threads of an executor service.</p>
+ * <p>The chunks are views of a snapshot of the list taken on the calling thread,
+ * so concurrent modifications of the original list do not affect the tasks.
+ * The tasks must not access the request context; the calling thread waits
+ * for all of them and returns their results in the order of the chunks.</p>
+ * @author SAP AG
+ */
+final class ChunkedExecution {
+
+  /**
+   * Work to be done for one chunk.
+   * @param <T> type of the list elements
+   * @param <R> type of the result
+   */
+  interface ChunkTask<T, R> {
+    /**
+     * Processes a chunk.
+     * @param chunk the elements of the chunk
+     * @param offset the position of the first element of the chunk in the whole list
+     * @return the result for this chunk
+     * @throws ODataException if processing fails
+     */
+    R process(List<T> chunk, int offset) throws ODataException;
+  }
+
+  private ChunkedExecution() {}
+
+  /**
+   * Splits the list into the given number of chunks and processes them in parallel.
+   * @param executor the executor service
+   * @param data the list
+   * @param chunkCount number of chunks
+   * @param task the work to be done for each chunk
+   * @return the results of the chunks in the order of the chunks
+   * @throws ODataException if processing of a chunk fails
+   */
+  static <T, R> List<R> run(final ExecutorService executor, final List<T> data, final int chunkCount, final ChunkTask<T, R> task) throws ODataException {
+    final List<T> snapshot = new ArrayList<T>(data);
+    final int chunkSize = (snapshot.size() + chunkCount - 1) / chunkCount;
+
+    List<Future<R>> futures = new ArrayList<Future<R>>(chunkCount);
+    for (int offset = 0; offset < snapshot.size(); offset += chunkSize) {
+      final int start = offset;
+      final List<T> chunk = snapshot.subList(start, Math.min(start + chunkSize, snapshot.size()));
+      futures.add(executor.submit(new Callable<R>() {
+        @Override
+        public R call() throws ODataException {
+          return task.process(chunk, start);
+        }
+      }));
+    }
+
+    List<R> results = new ArrayList<R>(futures.size());
+    try {
+      for (final Future<R> future : futures) {
+        results.add(future.get());
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ODataException(e);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof ODataException) {
+        throw (ODataException) e.getCause();
+      } else if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else {
+        throw new ODataException(e.getCause());
+      }
+    } finally {
+      for (final Future<R> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return results;
+  }
+}
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import java.util.BitSet;
+
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmLiteralKind;
+import com.sap.core.odata.api.edm.EdmSimpleType;
+import com.sap.core.odata.api.edm.EdmSimpleTypeException;
+import com.sap.core.odata.api.edm.EdmSimpleTypeKind;
+import com.sap.core.odata.api.edm.EdmType;
+import com.sap.core.odata.api.uri.expression.BinaryExpression;
+import com.sap.core.odata.api.uri.expression.BinaryOperator;
+import com.sap.core.odata.api.uri.expression.CommonExpression;
+import com.sap.core.odata.api.uri.expression.ExpressionKind;
+import com.sap.core.odata.api.uri.expression.LiteralExpression;
+import com.sap.core.odata.api.uri.expression.PropertyExpression;
+import com.sap.core.odata.ref.processor.ColumnarTable.BooleanColumn;
+import com.sap.core.odata.ref.processor.ColumnarTable.Column;
+import com.sap.core.odata.ref.processor.ColumnarTable.DoubleColumn;
+import com.sap.core.odata.ref.processor.ColumnarTable.IntColumn;
+import com.sap.core.odata.ref.processor.ColumnarTable.LongColumn;
+import com.sap.core.odata.ref.processor.ColumnarTable.StringColumn;
+
+/**
+ * <p>Evaluates filter expressions on the columns of a {@link ColumnarTable}.</p>
+ * <p>Supported are comparisons of a property with a literal, combined with
+ * <code>and</code> and <code>or</code>, and boolean properties on their own.
+ * A comparison is evaluated with one pass over the column; for strings,
+ * the literal is compared once per dictionary entry instead of once per row.
+ * <code>null</code> values never match.</p>
+ * @author SAP AG
+ */
+final class ColumnarFilter {
+
+  private ColumnarFilter() {}
+
+  /**
+   * Returns the positions of the rows the expression applies to.
+   * @param table the table
+   * @param expression the filter expression
+   * @return the positions as bit set or <code>null</code>
+   *         if the expression is not supported
+   * @throws EdmException if metadata could not be accessed
+   */
+  static BitSet evaluate(final ColumnarTable table, final CommonExpression expression) throws EdmException {
+    switch (expression.getKind()) {
+    case BINARY:
+      final BinaryExpression binaryExpression = (BinaryExpression) expression;
+      switch (binaryExpression.getOperator()) {
+      case AND:
+      case OR:
+        final BitSet left = evaluate(table, binaryExpression.getLeftOperand());
+        final BitSet right = left == null ? null : evaluate(table, binaryExpression.getRightOperand());
+        if (right == null) {
+          return null;
+        }
+        if (binaryExpression.getOperator() == BinaryOperator.AND) {
+          left.and(right);
+        } else {
+          left.or(right);
+        }
+        return left;
+      case EQ:
+      case NE:
+      case LT:
+      case LE:
+      case GT:
+      case GE:
+        return compare(table, binaryExpression);
+      default:
+        return null;
+      }
+
+    case PROPERTY:
+      final Column column = table.getColumn(((PropertyExpression) expression).getPropertyName());
+      if (column instanceof BooleanColumn) {
+        BitSet result = (BitSet) ((BooleanColumn) column).values.clone();
+        result.andNot(column.nulls);
+        return result;
+      } else {
+        return null;
+      }
+
+    default:
+      return null;
+    }
+  }
+
+  private static BitSet compare(final ColumnarTable table, final BinaryExpression expression) throws EdmException {
+    CommonExpression propertyOperand = expression.getLeftOperand();
+    CommonExpression literalOperand = expression.getRightOperand();
+    BinaryOperator operator = expression.getOperator();
+    if (propertyOperand.getKind() == ExpressionKind.LITERAL && literalOperand.getKind() == ExpressionKind.PROPERTY) {
+      propertyOperand = expression.getRightOperand();
+      literalOperand = expression.getLeftOperand();
+      operator = mirror(operator);
+    }
+    if (propertyOperand.getKind() != ExpressionKind.PROPERTY || literalOperand.getKind() != ExpressionKind.LITERAL) {
+      return null;
+    }
+
+    final Column column = table.getColumn(((PropertyExpression) propertyOperand).getPropertyName());
+    final Object value = getLiteralValue((LiteralExpression) literalOperand);
+    if (column == null || value == null) {
+      return null;
+    }
+
+    final int size = table.size();
+    BitSet result = new BitSet(size);
+    if (column instanceof StringColumn && value instanceof String) {
+      final StringColumn stringColumn = (StringColumn) column;
+      boolean[] matchingCodes = new boolean[stringColumn.dictionary.size()];
+      for (int code = 0; code < matchingCodes.length; code++) {
+        matchingCodes[code] = matches(operator, stringColumn.dictionary.get(code).compareTo((String) value));
+      }
+      for (int position = 0; position < size; position++) {
+        final int code = stringColumn.codes[position];
+        if (code >= 0 && matchingCodes[code]) {
+          result.set(position);
+        }
+      }
+    } else if (column instanceof BooleanColumn && value instanceof Boolean
+        && (operator == BinaryOperator.EQ || operator == BinaryOperator.NE)) {
+      result.or(((BooleanColumn) column).values);
+      if (!(Boolean) value) {
+        result.flip(0, size);
+      }
+      if (operator == BinaryOperator.NE) {
+        result.flip(0, size);
+      }
+    } else if (value instanceof Number && isIntegral((Number) value)
+        && (column instanceof IntColumn || column instanceof LongColumn)) {
+      final long number = ((Number) value).longValue();
+      for (int position = 0; position < size; position++) {
+        final long columnValue = column instanceof IntColumn ?
+            ((IntColumn) column).values[position] : ((LongColumn) column).values[position];
+        if (matches(operator, columnValue < number ? -1 : columnValue == number ? 0 : 1)) {
+          result.set(position);
+        }
+      }
+    } else if (value instanceof Number
+        && (column instanceof IntColumn || column instanceof LongColumn || column instanceof DoubleColumn)) {
+      final double number = ((Number) value).doubleValue();
+      for (int position = 0; position < size; position++) {
+        final double columnValue = column instanceof IntColumn ? ((IntColumn) column).values[position] :
+            column instanceof LongColumn ? ((LongColumn) column).values[position] : ((DoubleColumn) column).values[position];
+        if (matches(operator, Double.compare(columnValue, number))) {
+          result.set(position);
+        }
+      }
+    } else {
+      return null;
+    }
+
+    result.andNot(column.nulls);
+    return result;
+  }
+
+  private static Object getLiteralValue(final LiteralExpression literal) throws EdmException {
+    final EdmType type = literal.getEdmType();
+    if (!(type instanceof EdmSimpleType) || type == EdmSimpleTypeKind.Null.getEdmSimpleTypeInstance()) {
+      return null;
+    }
+    final EdmSimpleType simpleType = (EdmSimpleType) type;
+    try {
+      return simpleType.valueOfString(literal.getUriLiteral(), EdmLiteralKind.URI, null, simpleType.getDefaultType());
+    } catch (final EdmSimpleTypeException e) {
+      return null;
+    }
+  }
+
+  private static boolean isIntegral(final Number number) {
+    return number instanceof Byte || number instanceof Short || number instanceof Integer || number instanceof Long;
+  }
+
+  private static BinaryOperator mirror(final BinaryOperator operator) {
+    switch (operator) {
+    case LT:
+      return BinaryOperator.GT;
+    case LE:
+      return BinaryOperator.GE;
+    case GT:
+      return BinaryOperator.LT;
+    case GE:
+      return BinaryOperator.LE;
+    default:
+      return operator;
+    }
+  }
+
+  private static boolean matches(final BinaryOperator operator, final int comparison) {
+    switch (operator) {
+    case EQ:
+      return comparison == 0;
+    case NE:
+      return comparison != 0;
+    case LT:
+      return comparison < 0;
+    case LE:
+      return comparison <= 0;
+    case GT:
+      return comparison > 0;
+    case GE:
+      return comparison >= 0;
+    default:
+      return false;
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmFunctionImport;
+import com.sap.core.odata.api.exception.ODataNotFoundException;
+import com.sap.core.odata.api.exception.ODataNotImplementedException;
+import com.sap.core.odata.api.uri.expression.FilterExpression;
+import com.sap.core.odata.ref.processor.ColumnarTable.Row;
+
+/**
+ * <p>Read-only data source for large reference data held in {@link ColumnarTable}s,
+ * one table per entity set.</p>
+ * <p>Filters that compare properties with literals are evaluated on the columns
+ * and entity sets are counted without handing out rows; single entities are found
+ * through a key index built on first access, and links are written from the key
+ * columns. Navigation, media resources, function
+ * imports and all modifications are not supported.</p>
+ * @author SAP AG
+ */
+public class ColumnarListsDataSource implements IndexedListsDataSource, FilteringListsDataSource, CountingListsDataSource, KeyProjectingListsDataSource {
+
+  private final Map<String, ColumnarTable> tables = new HashMap<String, ColumnarTable>();
+  private final Map<String, Map<List<Object>, Row>> keyIndexes = new HashMap<String, Map<List<Object>, Row>>();
+
+  /**
+   * Adds the data of an entity set; the table must not be changed afterwards.
+   * @param entitySetName the name of the entity set
+   * @param table the data
+   */
+  public synchronized void addTable(final String entitySetName, final ColumnarTable table) {
+    tables.put(entitySetName, table);
+    keyIndexes.remove(entitySetName);
+  }
+
+  @Override
+  public List<?> readData(final EdmEntitySet entitySet) throws ODataNotImplementedException, EdmException {
+    return getTable(entitySet).getRows();
+  }
+
+  @Override
+  public Object readData(final EdmEntitySet entitySet, final Map<String, Object> keys) throws ODataNotImplementedException, ODataNotFoundException, EdmException {
+    final Object data = readIndexedData(entitySet, keys);
+    if (data == null) {
+      throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+    }
+    return data;
+  }
+
+  @Override
+  public Object readIndexedData(final EdmEntitySet entitySet, final Map<String, Object> keys) throws ODataNotImplementedException, EdmException {
+    final List<String> keyNames = entitySet.getEntityType().getKeyPropertyNames();
+    List<Object> key = new ArrayList<Object>(keyNames.size());
+    for (final String name : keyNames) {
+      key.add(normalize(keys.get(name)));
+    }
+    return getKeyIndex(entitySet, keyNames).get(key);
+  }
+
+  @Override
+  public List<?> readFilteredData(final EdmEntitySet entitySet, final FilterExpression filter) throws ODataNotImplementedException, EdmException {
+    final ColumnarTable table = getTable(entitySet);
+    final BitSet positions = ColumnarFilter.evaluate(table, filter.getExpression());
+    return positions == null ? null : table.getRows(positions);
+  }
+
+  @Override
+  public Integer countData(final EdmEntitySet entitySet, final FilterExpression filter) throws ODataNotImplementedException, EdmException {
+    final ColumnarTable table = getTable(entitySet);
+    if (filter == null) {
+      return table.size();
+    }
+    final BitSet positions = ColumnarFilter.evaluate(table, filter.getExpression());
+    return positions == null ? null : positions.cardinality();
+  }
+
+  @Override
+  public List<Map<String, Object>> readKeys(final EdmEntitySet entitySet, final List<?> data) throws EdmException {
+    final List<String> keyNames = entitySet.getEntityType().getKeyPropertyNames();
+    List<Map<String, Object>> keys = new ArrayList<Map<String, Object>>(data.size());
+    for (final Object row : data) {
+      Map<String, Object> key = new HashMap<String, Object>(keyNames.size() * 2);
+      for (final String name : keyNames) {
+        key.put(name, ((Row) row).getValue(name));
+      }
+      keys.add(key);
+    }
+    return keys;
+  }
+
+  @Override
+  public Object readData(final EdmFunctionImport function, final Map<String, Object> parameters, final Map<String, Object> keys) throws ODataNotImplementedException {
+    throw new ODataNotImplementedException();
+  }
+
+  @Override
+  public Object readRelatedData(final EdmEntitySet sourceEntitySet, final Object sourceData, final EdmEntitySet targetEntitySet, final Map<String, Object> targetKeys) throws ODataNotImplementedException {
+    throw new ODataNotImplementedException();
+  }
+
+  @Override
+  public BinaryData readBinaryData(final EdmEntitySet entitySet, final Object mediaLinkEntryData) throws ODataNotImplementedException {
+    throw new ODataNotImplementedException();
+  }
+
+  @Override
+  public Object newDataObject(final EdmEntitySet entitySet) throws ODataNotImplementedException {
+    throw new ODataNotImplementedException();
+  }
+
+  @Override
+  public void writeBinaryData(final EdmEntitySet entitySet, final Object mediaLinkEntryData, final BinaryData binaryData) throws ODataNotImplementedException {
+    throw new ODataNotImplementedException();
+  }
+
+  @Override
+  public void deleteData(final EdmEntitySet entitySet, final Map<String, Object> keys) throws ODataNotImplementedException {
+    throw new ODataNotImplementedException();
+  }
+
+  @Override
+  public void createData(final EdmEntitySet entitySet, final Object data) throws ODataNotImplementedException {
+    throw new ODataNotImplementedException();
+  }
+
+  @Override
+  public void deleteRelation(final EdmEntitySet sourceEntitySet, final Object sourceData, final EdmEntitySet targetEntitySet, final Map<String, Object> targetKeys) throws ODataNotImplementedException {
+    throw new ODataNotImplementedException();
+  }
+
+  @Override
+  public void writeRelation(final EdmEntitySet sourceEntitySet, final Object sourceData, final EdmEntitySet targetEntitySet, final Map<String, Object> targetKeys) throws ODataNotImplementedException {
+    throw new ODataNotImplementedException();
+  }
+
+  private synchronized ColumnarTable getTable(final EdmEntitySet entitySet) throws ODataNotImplementedException, EdmException {
+    final ColumnarTable table = tables.get(entitySet.getName());
+    if (table == null) {
+      throw new ODataNotImplementedException();
+    }
+    return table;
+  }
+
+  private synchronized Map<List<Object>, Row> getKeyIndex(final EdmEntitySet entitySet, final List<String> keyNames) throws ODataNotImplementedException, EdmException {
+    Map<List<Object>, Row> index = keyIndexes.get(entitySet.getName());
+    if (index == null) {
+      final ColumnarTable table = getTable(entitySet);
+      index = new HashMap<List<Object>, Row>(table.size() * 2);
+      for (final Row row : table.getRows()) {
+        List<Object> key = new ArrayList<Object>(keyNames.size());
+        for (final String name : keyNames) {
+          key.add(normalize(row.getValue(name)));
+        }
+        if (!index.containsKey(key)) {
+          index.put(key, row);
+        }
+      }
+      keyIndexes.put(entitySet.getName(), index);
+    }
+    return index;
+  }
+
+  /**
+   * Numbers in keys may come with different types from the URI and from the columns.
+   */
+  private static Object normalize(final Object value) {
+    if (value instanceof Byte || value instanceof Short || value instanceof Integer) {
+      return ((Number) value).longValue();
+    } else if (value instanceof Float) {
+      return ((Number) value).doubleValue();
+    } else {
+      return value;
+    }
+  }
+}
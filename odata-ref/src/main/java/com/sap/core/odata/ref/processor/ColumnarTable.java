@@ -0,0 +1,400 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * <p>Read-only data of one entity set, stored column by column.</p>
+ * <p>Integer, long and double columns keep their values in primitive arrays,
+ * boolean columns in a bit set, and string columns as codes into a dictionary
+ * of the distinct values; every column has a bit set marking its
+ * <code>null</code> values. Columns are named after the EDM properties
+ * they hold; only simple properties are supported.</p>
+ * <p>The rows are handed out as light-weight {@link Row} objects that
+ * {@link ListsProcessor} reads through {@link PropertyAccessible}, without reflection.</p>
+ * @author SAP AG
+ */
+public class ColumnarTable {
+
+  private final Map<String, Column> columns = new LinkedHashMap<String, Column>();
+  private int size = 0;
+
+  /**
+   * Adds a column of <code>int</code> values;
+   * it accepts all {@link Number}s of integral types.
+   * @param name the name of the EDM property
+   * @return this table for method chaining
+   */
+  public ColumnarTable addIntColumn(final String name) {
+    return addColumn(name, new IntColumn());
+  }
+
+  /**
+   * Adds a column of <code>long</code> values.
+   * @param name the name of the EDM property
+   * @return this table for method chaining
+   */
+  public ColumnarTable addLongColumn(final String name) {
+    return addColumn(name, new LongColumn());
+  }
+
+  /**
+   * Adds a column of <code>double</code> values.
+   * @param name the name of the EDM property
+   * @return this table for method chaining
+   */
+  public ColumnarTable addDoubleColumn(final String name) {
+    return addColumn(name, new DoubleColumn());
+  }
+
+  /**
+   * Adds a column of <code>boolean</code> values.
+   * @param name the name of the EDM property
+   * @return this table for method chaining
+   */
+  public ColumnarTable addBooleanColumn(final String name) {
+    return addColumn(name, new BooleanColumn());
+  }
+
+  /**
+   * Adds a dictionary-encoded column of strings.
+   * @param name the name of the EDM property
+   * @return this table for method chaining
+   */
+  public ColumnarTable addStringColumn(final String name) {
+    return addColumn(name, new StringColumn());
+  }
+
+  private ColumnarTable addColumn(final String name, final Column column) {
+    if (size > 0) {
+      throw new IllegalStateException("Columns must be added before rows.");
+    }
+    columns.put(name, column);
+    return this;
+  }
+
+  /**
+   * Appends a row.
+   * @param values the values in the order in which the columns have been added
+   */
+  public void addRow(final Object... values) {
+    if (values.length != columns.size()) {
+      throw new IllegalArgumentException("Expected " + columns.size() + " values but got " + values.length + ".");
+    }
+    int index = 0;
+    for (final Column column : columns.values()) {
+      column.add(size, values[index++]);
+    }
+    size++;
+  }
+
+  /**
+   * Returns the number of rows.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the row at the given position.
+   * @param position the position of the row
+   * @return a view of the row
+   */
+  public Row getRow(final int position) {
+    if (position < 0 || position >= size) {
+      throw new IndexOutOfBoundsException();
+    }
+    return new Row(position);
+  }
+
+  /**
+   * Returns all rows as list.
+   * @return an unmodifiable list of row views
+   */
+  public List<Row> getRows() {
+    return getRows(null);
+  }
+
+  /**
+   * Returns the rows at the positions set in the given bit set as list.
+   * @param positions the positions or <code>null</code> for all rows
+   * @return an unmodifiable list of row views
+   */
+  List<Row> getRows(final BitSet positions) {
+    if (positions == null) {
+      final int rowCount = size;
+      return new RowList() {
+        @Override
+        public Row get(final int index) {
+          return getRow(index);
+        }
+
+        @Override
+        public int size() {
+          return rowCount;
+        }
+      };
+    } else {
+      final int[] selected = new int[positions.cardinality()];
+      int index = 0;
+      for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+        selected[index++] = position;
+      }
+      return new RowList() {
+        @Override
+        public Row get(final int index) {
+          return getRow(selected[index]);
+        }
+
+        @Override
+        public int size() {
+          return selected.length;
+        }
+      };
+    }
+  }
+
+  Column getColumn(final String name) {
+    return columns.get(name);
+  }
+
+  private abstract static class RowList extends AbstractList<Row> implements RandomAccess {}
+
+  /**
+   * View of a single row of the table.
+   */
+  public final class Row implements PropertyAccessible {
+    private final int position;
+
+    private Row(final int position) {
+      this.position = position;
+    }
+
+    /**
+     * Returns the value of a column in this row.
+     * @param name the name of the column
+     * @return the value or <code>null</code> if the value is <code>null</code>
+     *         or there is no such column
+     */
+    @Override
+    public Object getValue(final String name) {
+      final Column column = columns.get(name);
+      return column == null ? null : column.get(position);
+    }
+
+    /**
+     * Returns the type of the values of a column.
+     * @param name the name of the column
+     * @return the type or <code>null</code> if there is no such column
+     */
+    @Override
+    public Class<?> getType(final String name) {
+      final Column column = columns.get(name);
+      return column == null ? null : column.getType();
+    }
+
+    private ColumnarTable getTable() {
+      return ColumnarTable.this;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return obj instanceof Row && ((Row) obj).getTable() == ColumnarTable.this && ((Row) obj).position == position;
+    }
+
+    @Override
+    public int hashCode() {
+      return position;
+    }
+
+    @Override
+    public String toString() {
+      Map<String, Object> values = new LinkedHashMap<String, Object>();
+      for (final String name : columns.keySet()) {
+        values.put(name, getValue(name));
+      }
+      return values.toString();
+    }
+  }
+
+  /** Column of values with a bit set marking <code>null</code> values. */
+  abstract static class Column {
+    final BitSet nulls = new BitSet();
+
+    void add(final int position, final Object value) {
+      if (value == null) {
+        nulls.set(position);
+        addValue(position, null);
+      } else {
+        addValue(position, value);
+      }
+    }
+
+    Object get(final int position) {
+      return nulls.get(position) ? null : getValue(position);
+    }
+
+    boolean isNull(final int position) {
+      return nulls.get(position);
+    }
+
+    abstract void addValue(int position, Object value);
+
+    abstract Object getValue(int position);
+
+    abstract Class<?> getType();
+
+    static int grow(final int length) {
+      return Math.max(16, length * 2);
+    }
+  }
+
+  static final class IntColumn extends Column {
+    int[] values = new int[0];
+
+    @Override
+    void addValue(final int position, final Object value) {
+      if (position >= values.length) {
+        values = Arrays.copyOf(values, grow(values.length));
+      }
+      values[position] = value == null ? 0 : ((Number) value).intValue();
+    }
+
+    @Override
+    Object getValue(final int position) {
+      return values[position];
+    }
+
+    @Override
+    Class<?> getType() {
+      return Integer.class;
+    }
+  }
+
+  static final class LongColumn extends Column {
+    long[] values = new long[0];
+
+    @Override
+    void addValue(final int position, final Object value) {
+      if (position >= values.length) {
+        values = Arrays.copyOf(values, grow(values.length));
+      }
+      values[position] = value == null ? 0 : ((Number) value).longValue();
+    }
+
+    @Override
+    Object getValue(final int position) {
+      return values[position];
+    }
+
+    @Override
+    Class<?> getType() {
+      return Long.class;
+    }
+  }
+
+  static final class DoubleColumn extends Column {
+    double[] values = new double[0];
+
+    @Override
+    void addValue(final int position, final Object value) {
+      if (position >= values.length) {
+        values = Arrays.copyOf(values, grow(values.length));
+      }
+      values[position] = value == null ? 0 : ((Number) value).doubleValue();
+    }
+
+    @Override
+    Object getValue(final int position) {
+      return values[position];
+    }
+
+    @Override
+    Class<?> getType() {
+      return Double.class;
+    }
+  }
+
+  static final class BooleanColumn extends Column {
+    final BitSet values = new BitSet();
+
+    @Override
+    void addValue(final int position, final Object value) {
+      values.set(position, value != null && (Boolean) value);
+    }
+
+    @Override
+    Object getValue(final int position) {
+      return values.get(position);
+    }
+
+    @Override
+    Class<?> getType() {
+      return Boolean.class;
+    }
+  }
+
+  static final class StringColumn extends Column {
+    int[] codes = new int[0];
+    final List<String> dictionary = new ArrayList<String>();
+    private final Map<String, Integer> codesByValue = new HashMap<String, Integer>();
+
+    @Override
+    void addValue(final int position, final Object value) {
+      if (position >= codes.length) {
+        codes = Arrays.copyOf(codes, grow(codes.length));
+      }
+      codes[position] = value == null ? -1 : getCode((String) value);
+    }
+
+    private int getCode(final String value) {
+      Integer code = codesByValue.get(value);
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.add(value);
+        codesByValue.put(value, code);
+      }
+      return code;
+    }
+
+    /**
+     * Returns the code of the value or -1 if the value does not occur in the column.
+     */
+    int findCode(final String value) {
+      final Integer code = codesByValue.get(value);
+      return code == null ? -1 : code;
+    }
+
+    @Override
+    Object getValue(final int position) {
+      return dictionary.get(codes[position]);
+    }
+
+    @Override
+    Class<?> getType() {
+      return String.class;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.exception.ODataApplicationException;
+import com.sap.core.odata.api.exception.ODataNotImplementedException;
+import com.sap.core.odata.api.uri.expression.FilterExpression;
+
+/**
+ * <p>Optional extension of {@link ListsDataSource} for data sources
+ * that can count the entities of an entity set without handing them out.</p>
+ * <p>If a data source implements this interface, {@link ListsProcessor}
+ * asks it first for the number of entities requested with <code>$count</code>
+ * and only retrieves and filters the data list if the data source cannot count.</p>
+ * @author SAP AG
+ */
+public interface CountingListsDataSource extends ListsDataSource {
+
+  /**
+   * Counts the entities of the specified entity set the filter applies to.
+   * @param entitySet  the requested {@link EdmEntitySet}
+   * @param filter  the filter expression or <code>null</code> to count all entities
+   * @return the number of entities or <code>null</code> if the data source
+   *         cannot count with this filter
+   */
+  Integer countData(EdmEntitySet entitySet, FilterExpression filter) throws ODataNotImplementedException, EdmException, ODataApplicationException;
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import java.util.List;
+
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.exception.ODataApplicationException;
+import com.sap.core.odata.api.exception.ODataNotFoundException;
+import com.sap.core.odata.api.exception.ODataNotImplementedException;
+import com.sap.core.odata.api.uri.expression.FilterExpression;
+
+/**
+ * <p>Optional extension of {@link ListsDataSource} for data sources
+ * that can apply a filter expression while retrieving the data list.</p>
+ * <p>If a data source implements this interface, {@link ListsProcessor}
+ * asks it first for the filtered data list of an entity set and only
+ * evaluates the filter itself if the data source cannot.</p>
+ * @author SAP AG
+ */
+public interface FilteringListsDataSource extends ListsDataSource {
+
+  /**
+   * Retrieves the data list for the specified entity set,
+   * restricted to the entities the filter applies to.
+   * @param entitySet  the requested {@link EdmEntitySet}
+   * @param filter  the filter expression
+   * @return the filtered data list or <code>null</code> if the data source
+   *         cannot evaluate this filter
+   */
+  List<?> readFilteredData(EdmEntitySet entitySet, FilterExpression filter) throws ODataNotImplementedException, ODataNotFoundException, EdmException, ODataApplicationException;
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import java.util.Map;
+
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.exception.ODataApplicationException;
+import com.sap.core.odata.api.exception.ODataNotImplementedException;
+
+/**
+ * <p>Optional extension of {@link ListsDataSource} for data sources
+ * that keep hash indexes on the keys of their entities.</p>
+ * <p>Such data sources find single entities by key
+ * without scanning their data lists. {@link ListsProcessor} reads
+ * single entities and the targets of changed links through this lookup.</p>
+ * @author SAP AG
+ */
+public interface IndexedListsDataSource extends ListsDataSource {
+
+  /**
+   * Retrieves a single data object for the specified entity set and key
+   * by a lookup in the index of the entity set.
+   * @param entitySet  the requested {@link EdmEntitySet}
+   * @param keys  the entity key as map of key names to key values
+   * @return the requested data object or <code>null</code> if there is no entity with this key
+   */
+  Object readIndexedData(EdmEntitySet entitySet, Map<String, Object> keys) throws ODataNotImplementedException, EdmException, ODataApplicationException;
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import java.util.List;
+import java.util.Map;
+
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.exception.ODataApplicationException;
+import com.sap.core.odata.api.exception.ODataNotImplementedException;
+
+/**
+ * <p>Optional extension of {@link ListsDataSource} for data sources
+ * that can hand out the key values of their data objects directly.</p>
+ * <p>If a data source implements this interface, {@link ListsProcessor}
+ * writes the links of <code>$links</code> requests from these keys
+ * and does not read the key properties of each data object itself.</p>
+ * @author SAP AG
+ */
+public interface KeyProjectingListsDataSource extends ListsDataSource {
+
+  /**
+   * Retrieves the keys of the specified data objects.
+   * @param entitySet  the {@link EdmEntitySet} of the data objects
+   * @param data  the data objects
+   * @return the key of each data object, in the order of the data objects,
+   *         as map of key names to key values
+   */
+  List<Map<String, Object>> readKeys(EdmEntitySet entitySet, List<?> data) throws ODataNotImplementedException, EdmException, ODataApplicationException;
+}
@@ -16,17 +16,20 @@
 package com.sap.core.odata.ref.processor;
 
 import java.io.InputStream;
+import java.math.BigDecimal;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
 
 import com.sap.core.odata.api.ODataCallback;
 import com.sap.core.odata.api.commons.HttpContentType;
@@ -120,28 +123,60 @@ public class ListsProcessor extends ODataSingleProcessor {
 
   private static final int SERVER_PAGING_SIZE = 100;
 
+  /** Minimum number of entities to filter or sort in parallel. */
+  private static final int PARALLEL_THRESHOLD = 10000;
+
   private final ListsDataSource dataSource;
+  private final ExecutorService executor;
+  private final int parallelism;
 
   public ListsProcessor(final ListsDataSource dataSource) {
+    this(dataSource, null);
+  }
+
+  /**
+   * Creates a processor that filters and sorts large entity sets
+   * on the threads of the given executor service.
+   * @param dataSource the data source
+   * @param executor the executor service or <code>null</code>
+   *                 if everything should be processed on the request thread
+   */
+  public ListsProcessor(final ListsDataSource dataSource, final ExecutorService executor) {
+    this(dataSource, executor, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a processor that splits large entity sets into the given number
+   * of chunks to filter and sort them on the threads of the given executor service.
+   */
+  ListsProcessor(final ListsDataSource dataSource, final ExecutorService executor, final int parallelism) {
     this.dataSource = dataSource;
+    this.executor = executor;
+    this.parallelism = parallelism;
   }
 
   @Override
   public ODataResponse readEntitySet(final GetEntitySetUriInfo uriInfo, final String contentType) throws ODataException {
+    final List<?> filteredData = readFilteredData(
+        uriInfo.getStartEntitySet(),
+        uriInfo.getKeyPredicates(),
+        uriInfo.getFunctionImport(),
+        uriInfo.getNavigationSegments(),
+        uriInfo.getFilter());
     ArrayList<Object> data = new ArrayList<Object>();
-    data.addAll((List<?>) retrieveData(
+    data.addAll(filteredData == null ? (List<?>) retrieveData(
         uriInfo.getStartEntitySet(),
         uriInfo.getKeyPredicates(),
         uriInfo.getFunctionImport(),
         mapFunctionParameters(uriInfo.getFunctionImportParameters()),
-        uriInfo.getNavigationSegments()));
+        uriInfo.getNavigationSegments()) : filteredData);
 
     final EdmEntitySet entitySet = uriInfo.getTargetEntitySet();
     final InlineCount inlineCountType = uriInfo.getInlineCount();
     final Integer count = applySystemQueryOptions(
         entitySet,
         data,
-        uriInfo.getFilter(),
+        filteredData == null ? uriInfo.getFilter() : null,
         inlineCountType,
         uriInfo.getOrderBy(),
         uriInfo.getSkipToken(),
@@ -173,9 +208,7 @@ public class ListsProcessor extends ODataSingleProcessor {
           + entitySet.getName()
           + "?$skiptoken=" + getSkipToken(entitySet, data.get(SERVER_PAGING_SIZE))
           + (inlineCountType == null ? "" : "&$inlinecount=" + inlineCountType.toString().toLowerCase(Locale.ROOT));
-      while (data.size() > SERVER_PAGING_SIZE) {
-        data.remove(SERVER_PAGING_SIZE);
-      }
+      data.subList(SERVER_PAGING_SIZE, data.size()).clear();
     }
 
     final EdmEntityType entityType = entitySet.getEntityType();
@@ -205,41 +238,55 @@ public class ListsProcessor extends ODataSingleProcessor {
 
   @Override
   public ODataResponse countEntitySet(final GetEntitySetCountUriInfo uriInfo, final String contentType) throws ODataException {
-    ArrayList<Object> data = new ArrayList<Object>();
-    data.addAll((List<?>) retrieveData(
-        uriInfo.getStartEntitySet(),
-        uriInfo.getKeyPredicates(),
-        uriInfo.getFunctionImport(),
-        mapFunctionParameters(uriInfo.getFunctionImportParameters()),
-        uriInfo.getNavigationSegments()));
+    // The number of entities does not depend on their order,
+    // so only the filter has to be evaluated.
+    Integer count = null;
+    if (dataSource instanceof CountingListsDataSource
+        && uriInfo.getFunctionImport() == null
+        && uriInfo.getKeyPredicates().isEmpty()
+        && uriInfo.getNavigationSegments().isEmpty()) {
+      count = ((CountingListsDataSource) dataSource).countData(uriInfo.getTargetEntitySet(), uriInfo.getFilter());
+    }
+    if (count == null) {
+      count = countMatches((List<?>) retrieveData(
+          uriInfo.getStartEntitySet(),
+          uriInfo.getKeyPredicates(),
+          uriInfo.getFunctionImport(),
+          mapFunctionParameters(uriInfo.getFunctionImportParameters()),
+          uriInfo.getNavigationSegments()),
+          uriInfo.getFilter());
+    }
 
-    applySystemQueryOptions(
-        uriInfo.getTargetEntitySet(),
-        data,
-        uriInfo.getFilter(),
-        null,
-        null,
-        null,
-        uriInfo.getSkip(),
-        uriInfo.getTop());
+    if (uriInfo.getSkip() != null) {
+      count = Math.max(0, count - uriInfo.getSkip());
+    }
+    if (uriInfo.getTop() != null) {
+      count = Math.min(count, uriInfo.getTop());
+    }
 
-    return ODataResponse.fromResponse(EntityProvider.writeText(String.valueOf(data.size()))).build();
+    return ODataResponse.fromResponse(EntityProvider.writeText(String.valueOf(count))).build();
   }
 
   @Override
   public ODataResponse readEntityLinks(final GetEntitySetLinksUriInfo uriInfo, final String contentType) throws ODataException {
+    final List<?> filteredData = readFilteredData(
+        uriInfo.getStartEntitySet(),
+        uriInfo.getKeyPredicates(),
+        uriInfo.getFunctionImport(),
+        uriInfo.getNavigationSegments(),
+        uriInfo.getFilter());
     ArrayList<Object> data = new ArrayList<Object>();
-    data.addAll((List<?>) retrieveData(
+    data.addAll(filteredData == null ? (List<?>) retrieveData(
         uriInfo.getStartEntitySet(),
         uriInfo.getKeyPredicates(),
         uriInfo.getFunctionImport(),
         mapFunctionParameters(uriInfo.getFunctionImportParameters()),
-        uriInfo.getNavigationSegments()));
+        uriInfo.getNavigationSegments()) : filteredData);
 
     final Integer count = applySystemQueryOptions(
         uriInfo.getTargetEntitySet(),
         data,
-        uriInfo.getFilter(),
+        filteredData == null ? uriInfo.getFilter() : null,
         uriInfo.getInlineCount(),
         null, // uriInfo.getOrderBy(),
         uriInfo.getSkipToken(),
@@ -248,13 +295,20 @@ public class ListsProcessor extends ODataSingleProcessor {
 
     final EdmEntitySet entitySet = uriInfo.getTargetEntitySet();
 
-    List<Map<String, Object>> values = new ArrayList<Map<String, Object>>();
-    for (final Object entryData : data) {
-      Map<String, Object> entryValues = new HashMap<String, Object>();
-      for (final EdmProperty property : entitySet.getEntityType().getKeyProperties()) {
-        entryValues.put(property.getName(), getPropertyValue(entryData, property));
+    // Links need only the key values of the entities.
+    List<Map<String, Object>> values;
+    if (dataSource instanceof KeyProjectingListsDataSource) {
+      values = ((KeyProjectingListsDataSource) dataSource).readKeys(entitySet, data);
+    } else {
+      final List<EdmProperty> keyProperties = entitySet.getEntityType().getKeyProperties();
+      values = new ArrayList<Map<String, Object>>(data.size());
+      for (final Object entryData : data) {
+        Map<String, Object> entryValues = new HashMap<String, Object>(keyProperties.size() * 2);
+        for (final EdmProperty property : keyProperties) {
+          entryValues.put(property.getName(), getPropertyValue(entryData, property));
+        }
+        values.add(entryValues);
       }
-      values.add(entryValues);
     }
 
     ODataContext context = getContext();
@@ -496,9 +550,11 @@ public class ListsProcessor extends ODataSingleProcessor {
       throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
     }
 
-    dataSource.deleteRelation(entitySet, sourceData, targetEntitySet, keys);
-
+    // The new link target must exist before the old link is removed.
     final Map<String, Object> newKeys = parseLink(targetEntitySet, content, requestContentType);
+    readDataByKey(targetEntitySet, newKeys);
+
+    dataSource.deleteRelation(entitySet, sourceData, targetEntitySet, keys);
 
     dataSource.writeRelation(entitySet, sourceData, targetEntitySet, newKeys);
 
@@ -582,7 +638,7 @@ public class ListsProcessor extends ODataSingleProcessor {
     data = getPropertyValue(data, propertyPath.subList(0, propertyPath.size() - 1));
     setPropertyValue(data, property, null);
     if (property.getMapping() != null && property.getMapping().getMimeType() != null) {
-      setValue(data, getSetterMethodName(property.getMapping().getMimeType()), null);
+      setValue(data, PropertyAccessors.getSetterMethodName(property.getMapping().getMimeType()), null);
     }
 
     return ODataResponse.newBuilder().build();
@@ -667,7 +723,7 @@ public class ListsProcessor extends ODataSingleProcessor {
 
     setPropertyValue(data, property, value);
     if (property.getMapping() != null && property.getMapping().getMimeType() != null) {
-      setValue(data, getSetterMethodName(property.getMapping().getMimeType()), requestContentType);
+      setValue(data, PropertyAccessors.getSetterMethodName(property.getMapping().getMimeType()), requestContentType);
     }
 
     return ODataResponse.newBuilder().eTag(constructETag(uriInfo.getTargetEntitySet(), data)).build();
@@ -831,6 +887,30 @@ public class ListsProcessor extends ODataSingleProcessor {
     }
   }
 
+  /**
+   * Retrieves the filtered data list of an entity set from the data source
+   * if the data source can evaluate the filter.
+   * @return the filtered data list or <code>null</code> if the filter has still to be applied
+   */
+  private List<?> readFilteredData(final EdmEntitySet startEntitySet, final List<KeyPredicate> keyPredicates, final EdmFunctionImport functionImport, final List<NavigationSegment> navigationSegments, final FilterExpression filter) throws ODataException {
+    if (filter == null
+        || !(dataSource instanceof FilteringListsDataSource)
+        || functionImport != null
+        || !keyPredicates.isEmpty()
+        || !navigationSegments.isEmpty()) {
+      return null;
+    }
+
+    ODataContext context = getContext();
+    final int timingHandle = context.startRuntimeMeasurement(getClass().getSimpleName(), "readFilteredData");
+
+    final List<?> data = ((FilteringListsDataSource) dataSource).readFilteredData(startEntitySet, filter);
+
+    context.stopRuntimeMeasurement(timingHandle);
+
+    return data;
+  }
+
   private Object retrieveData(final EdmEntitySet startEntitySet, final List<KeyPredicate> keyPredicates, final EdmFunctionImport functionImport, final Map<String, Object> functionImportParameters, final List<NavigationSegment> navigationSegments) throws ODataException {
     Object data;
     final Map<String, Object> keys = mapKey(keyPredicates);
@@ -840,7 +920,7 @@ public class ListsProcessor extends ODataSingleProcessor {
 
     data = functionImport == null ?
         keys.isEmpty() ?
-            dataSource.readData(startEntitySet) : dataSource.readData(startEntitySet, keys) :
+            dataSource.readData(startEntitySet) : readDataByKey(startEntitySet, keys) :
         dataSource.readData(functionImport, functionImportParameters, keys);
 
     EdmEntitySet currentEntitySet =
@@ -859,6 +939,21 @@ public class ListsProcessor extends ODataSingleProcessor {
     return data;
   }
 
+  /**
+   * Reads a single entity by its key, with a lookup in the key index
+   * if the data source has one.
+   */
+  private Object readDataByKey(final EdmEntitySet entitySet, final Map<String, Object> keys) throws ODataException {
+    if (dataSource instanceof IndexedListsDataSource) {
+      final Object data = ((IndexedListsDataSource) dataSource).readIndexedData(entitySet, keys);
+      if (data == null) {
+        throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+      }
+      return data;
+    }
+    return dataSource.readData(entitySet, keys);
+  }
+
   private <T> String constructETag(final EdmEntitySet entitySet, final T data) throws ODataException {
     final EdmEntityType entityType = entitySet.getEntityType();
     String eTag = null;
@@ -889,6 +984,7 @@ public class ListsProcessor extends ODataSingleProcessor {
 
   private class WriteCallback implements ODataCallback, OnWriteEntryContent, OnWriteFeedContent {
     private final Object data;
+    private final Map<String, Map<Map<String, Object>, Object>> relatedData = new HashMap<String, Map<Map<String, Object>, Object>>();
 
     private <T> WriteCallback(final T data) {
       this.data = data;
@@ -898,14 +994,16 @@ public class ListsProcessor extends ODataSingleProcessor {
     public WriteFeedCallbackResult retrieveFeedResult(final WriteFeedCallbackContext context) throws ODataApplicationException {
       try {
         final EdmEntityType entityType = context.getSourceEntitySet().getRelatedEntitySet(context.getNavigationProperty()).getEntityType();
-        final Object relatedData = readRelatedData(context);
+        final Object related = readRelatedData(context);
+        // Batched data sources may leave out entries without related data.
+        final List<?> relatedEntries = related == null ? Collections.emptyList() : (List<?>) related;
         List<Map<String, Object>> values = new ArrayList<Map<String, Object>>();
-        for (final Object entryData : (List<?>) relatedData) {
+        for (final Object entryData : relatedEntries) {
           values.add(getStructuralTypeValueMap(entryData, entityType));
         }
         WriteFeedCallbackResult result = new WriteFeedCallbackResult();
         result.setFeedData(values);
-        EntityProviderWriteProperties inlineProperties = EntityProviderWriteProperties.serviceRoot(getContext().getPathInfo().getServiceRoot()).callbacks(getCallbacks(relatedData, entityType)).expandSelectTree(context.getCurrentExpandSelectTreeNode()).selfLink(context.getSelfLink()).build();
+        EntityProviderWriteProperties inlineProperties = EntityProviderWriteProperties.serviceRoot(getContext().getPathInfo().getServiceRoot()).callbacks(getCallbacks(relatedEntries, entityType)).expandSelectTree(context.getCurrentExpandSelectTreeNode()).selfLink(context.getSelfLink()).build();
         result.setInlineProperties(inlineProperties);
         return result;
       } catch (final ODataException e) {
@@ -918,6 +1016,9 @@ public class ListsProcessor extends ODataSingleProcessor {
       try {
         final EdmEntityType entityType = context.getSourceEntitySet().getRelatedEntitySet(context.getNavigationProperty()).getEntityType();
         final Object relatedData = readRelatedData(context);
+        if (relatedData == null) {
+          throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+        }
         WriteEntryCallbackResult result = new WriteEntryCallbackResult();
         result.setEntryData(getStructuralTypeValueMap(relatedData, entityType));
         EntityProviderWriteProperties inlineProperties = EntityProviderWriteProperties.serviceRoot(getContext().getPathInfo().getServiceRoot()).callbacks(getCallbacks(relatedData, entityType)).expandSelectTree(context.getCurrentExpandSelectTreeNode()).build();
@@ -928,30 +1029,50 @@ public class ListsProcessor extends ODataSingleProcessor {
       }
     }
 
+    /**
+     * Reads the related data of the current entry. For a feed, the related data
+     * of all its entries are read together on first access to a navigation property
+     * and kept grouped by the key of the entry.
+     */
     private Object readRelatedData(final WriteCallbackContext context) throws ODataException {
       final EdmEntitySet entitySet = context.getSourceEntitySet();
-      return dataSource.readRelatedData(
-          entitySet,
-          data instanceof List ? readEntryData((List<?>) data, entitySet.getEntityType(), context.extractKeyFromEntryData()) : data,
-          entitySet.getRelatedEntitySet(context.getNavigationProperty()),
-          Collections.<String, Object> emptyMap());
+      final EdmEntitySet targetEntitySet = entitySet.getRelatedEntitySet(context.getNavigationProperty());
+      if (!(data instanceof List)) {
+        return dataSource.readRelatedData(entitySet, data, targetEntitySet, Collections.<String, Object> emptyMap());
+      }
+
+      final String navigationPropertyName = context.getNavigationProperty().getName();
+      Map<Map<String, Object>, Object> relatedDataByKey = relatedData.get(navigationPropertyName);
+      if (relatedDataByKey == null) {
+        relatedDataByKey = readAllRelatedData(entitySet, (List<?>) data, targetEntitySet);
+        relatedData.put(navigationPropertyName, relatedDataByKey);
+      }
+      return relatedDataByKey.get(context.extractKeyFromEntryData());
     }
+  }
 
-    private <T> T readEntryData(final List<T> data, final EdmEntityType entityType, final Map<String, Object> key) throws ODataException {
-      for (final T entryData : data) {
-        boolean found = true;
-        for (final EdmProperty keyProperty : entityType.getKeyProperties()) {
-          if (!getPropertyValue(entryData, keyProperty).equals(key.get(keyProperty.getName()))) {
-            found = false;
-            break;
-          }
-        }
-        if (found) {
-          return entryData;
-        }
+  private <T> Map<Map<String, Object>, Object> readAllRelatedData(final EdmEntitySet sourceEntitySet, final List<T> sourceData, final EdmEntitySet targetEntitySet) throws ODataException {
+    ODataContext context = getContext();
+    final int timingHandle = context.startRuntimeMeasurement(getClass().getSimpleName(), "readAllRelatedData");
+
+    final Map<?, ?> relatedDataBySource = dataSource instanceof BatchedListsDataSource ?
+        ((BatchedListsDataSource) dataSource).readAllRelatedData(sourceEntitySet, sourceData, targetEntitySet) : null;
+
+    final List<EdmProperty> keyProperties = sourceEntitySet.getEntityType().getKeyProperties();
+    Map<Map<String, Object>, Object> relatedDataByKey = new HashMap<Map<String, Object>, Object>(sourceData.size() * 2);
+    for (final T sourceEntry : sourceData) {
+      Map<String, Object> key = new HashMap<String, Object>(keyProperties.size() * 2);
+      for (final EdmProperty property : keyProperties) {
+        key.put(property.getName(), getPropertyValue(sourceEntry, property));
       }
-      return null;
+      relatedDataByKey.put(key, relatedDataBySource == null ?
+          dataSource.readRelatedData(sourceEntitySet, sourceEntry, targetEntitySet, Collections.<String, Object> emptyMap()) :
+          relatedDataBySource.get(sourceEntry));
     }
+
+    context.stopRuntimeMeasurement(timingHandle);
+
+    return relatedDataByKey;
   }
 
   private <T> ODataResponse writeEntry(final EdmEntitySet entitySet, final ExpandSelectTreeNode expandSelectTree, final T data, final String contentType) throws ODataException, EntityProviderException {
@@ -1100,85 +1221,358 @@ public class ListsProcessor extends ODataSingleProcessor {
     final int timingHandle = context.startRuntimeMeasurement(getClass().getSimpleName(), "applySystemQueryOptions");
 
     if (filter != null) {
-      // Remove all elements the filter does not apply for.
-      // A for-each loop would not work with "remove", see Java documentation.
-      for (Iterator<T> iterator = data.iterator(); iterator.hasNext();) {
-        if (!appliesFilter(iterator.next(), filter)) {
-          iterator.remove();
+      // Keep all elements the filter applies for; removing the others
+      // one by one would shift the remaining elements each time.
+      List<T> filteredData;
+      if (isParallel(data)) {
+        filteredData = filterInParallel(data, filter);
+      } else {
+        filteredData = new ArrayList<T>(data.size());
+        for (final T entryData : data) {
+          if (appliesFilter(entryData, filter)) {
+            filteredData.add(entryData);
+          }
         }
       }
+      data.clear();
+      data.addAll(filteredData);
     }
 
     final Integer count = inlineCount == InlineCount.ALLPAGES ? data.size() : null;
 
-    if (orderBy != null) {
-      sort(data, orderBy);
-    } else if (skipToken != null || skip != null || top != null) {
-      sortInDefaultOrder(entitySet, data);
-    }
+    if (orderBy != null || skipToken != null || skip != null || top != null) {
+      final Comparator<SortKey<T>> comparator = SortKey.comparator(orderBy);
+      final int first = skip == null ? 0 : skip;
+      // Only the first entries of the sorted list are requested.
+      final int selectCount = skipToken == null && top != null && (long) first + top < data.size() ? first + top : -1;
 
-    if (skipToken != null) {
-      while (!data.isEmpty() && !getSkipToken(entitySet, data.get(0)).equals(skipToken)) {
-        data.remove(0);
+      List<SortKey<T>> sortKeys;
+      if (isParallel(data)) {
+        sortKeys = sortInParallel(entitySet, data, orderBy, comparator, selectCount);
+      } else {
+        sortKeys = getSortKeys(entitySet, data, orderBy, 0);
+        if (selectCount >= 0) {
+          selectFirst(sortKeys, comparator, selectCount);
+        } else {
+          Collections.sort(sortKeys, comparator);
+        }
+      }
+
+      final int start = (skipToken == null ? 0 : indexOfSkipToken(entitySet, sortKeys, skipToken, orderBy == null)) + first;
+      final int end = top == null ? sortKeys.size() : (int) Math.min((long) start + top, sortKeys.size());
+      data.clear();
+      for (int position = start; position < end; position++) {
+        data.add(sortKeys.get(position).data);
       }
     }
 
-    if (skip != null) {
-      if (skip >= data.size()) {
-        data.clear();
-      } else {
-        for (int i = 0; i < skip; i++) {
-          data.remove(0);
+    context.stopRuntimeMeasurement(timingHandle);
+
+    return count;
+  }
+
+  private <T> int countMatches(final List<T> data, final FilterExpression filter) throws ODataException {
+    if (filter == null) {
+      return data.size();
+    } else if (isParallel(data)) {
+      return filterInParallel(data, filter).size();
+    } else {
+      int count = 0;
+      for (final T entryData : data) {
+        if (appliesFilter(entryData, filter)) {
+          count++;
         }
       }
+      return count;
     }
+  }
 
-    if (top != null) {
-      while (data.size() > top) {
-        data.remove(top.intValue());
-      }
+  private boolean isParallel(final List<?> data) {
+    return executor != null && parallelism > 1 && data.size() >= PARALLEL_THRESHOLD;
+  }
+
+  private <T> List<T> filterInParallel(final List<T> data, final FilterExpression filter) throws ODataException {
+    ODataContext context = getContext();
+    final int timingHandle = context.startRuntimeMeasurement(getClass().getSimpleName(), "filterInParallel");
+
+    // Evaluate once on this thread so that lazily loaded metadata is complete
+    // before the worker threads access it.
+    matches(data.get(0), filter);
+
+    final List<List<T>> chunks = ChunkedExecution.run(executor, data, parallelism,
+        new ChunkedExecution.ChunkTask<T, List<T>>() {
+          @Override
+          public List<T> process(final List<T> chunk, final int offset) throws ODataException {
+            List<T> filteredChunk = new ArrayList<T>(chunk.size());
+            for (final T entryData : chunk) {
+              if (matches(entryData, filter)) {
+                filteredChunk.add(entryData);
+              }
+            }
+            return filteredChunk;
+          }
+        });
+
+    List<T> filteredData = new ArrayList<T>(data.size());
+    for (final List<T> chunk : chunks) {
+      filteredData.addAll(chunk);
     }
 
     context.stopRuntimeMeasurement(timingHandle);
 
-    return count;
+    return filteredData;
   }
 
-  private static <T> void sort(final List<T> data, final OrderByExpression orderBy) {
-    Collections.sort(data, new Comparator<T>() {
-      @Override
-      public int compare(final T entity1, final T entity2) {
-        try {
-          int result = 0;
-          for (final OrderExpression expression : orderBy.getOrders()) {
-            result = evaluateExpression(entity1, expression.getExpression()).compareTo(
-                evaluateExpression(entity2, expression.getExpression()));
-            if (expression.getSortOrder() == SortOrder.desc) {
-              result = -result;
+  /**
+   * Sorts the list in chunks in parallel and merges the sorted chunks.
+   * If only the first entries are requested, each chunk is reduced to
+   * that many entries before merging.
+   */
+  private <T> List<SortKey<T>> sortInParallel(final EdmEntitySet entitySet, final List<T> data, final OrderByExpression orderBy, final Comparator<SortKey<T>> comparator, final int selectCount) throws ODataException {
+    ODataContext context = getContext();
+    final int timingHandle = context.startRuntimeMeasurement(getClass().getSimpleName(), "sortInParallel");
+
+    // Evaluate once on this thread so that lazily loaded metadata is complete
+    // before the worker threads access it.
+    getSortKeys(entitySet, data.subList(0, 1), orderBy, 0);
+
+    final List<List<SortKey<T>>> chunks = ChunkedExecution.run(executor, data, parallelism,
+        new ChunkedExecution.ChunkTask<T, List<SortKey<T>>>() {
+          @Override
+          public List<SortKey<T>> process(final List<T> chunk, final int offset) throws ODataException {
+            List<SortKey<T>> sortKeys = getSortKeys(entitySet, chunk, orderBy, offset);
+            if (selectCount >= 0) {
+              selectFirst(sortKeys, comparator, selectCount);
+            } else {
+              Collections.sort(sortKeys, comparator);
             }
+            return sortKeys;
+          }
+        });
+
+    final List<SortKey<T>> sortKeys = merge(chunks, comparator, selectCount >= 0 ? selectCount : data.size());
+
+    context.stopRuntimeMeasurement(timingHandle);
+
+    return sortKeys;
+  }
+
+  /** Merges sorted lists into one sorted list of at most the given size. */
+  private static <E> List<E> merge(final List<List<E>> lists, final Comparator<E> comparator, final int maxSize) {
+    final int[] positions = new int[lists.size()];
+    PriorityQueue<Integer> heads = new PriorityQueue<Integer>(Math.max(lists.size(), 1), new Comparator<Integer>() {
+      @Override
+      public int compare(final Integer index1, final Integer index2) {
+        return comparator.compare(lists.get(index1).get(positions[index1]), lists.get(index2).get(positions[index2]));
+      }
+    });
+    for (int index = 0; index < lists.size(); index++) {
+      if (!lists.get(index).isEmpty()) {
+        heads.add(index);
+      }
+    }
+
+    List<E> result = new ArrayList<E>();
+    while (!heads.isEmpty() && result.size() < maxSize) {
+      final int index = heads.poll();
+      result.add(lists.get(index).get(positions[index]++));
+      if (positions[index] < lists.get(index).size()) {
+        heads.add(index);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reduces the list to its first elements in the order of the comparator, sorted;
+   * this is the same result as sorting the list and truncating it afterwards.
+   * A bounded heap holds the smallest elements found so far.
+   * The comparator must not consider distinct elements as equal.
+   */
+  private static <E> void selectFirst(final List<E> data, final Comparator<E> comparator, final int count) {
+    if (count <= 0) {
+      data.clear();
+      return;
+    }
+
+    PriorityQueue<E> heap = new PriorityQueue<E>(count, Collections.reverseOrder(comparator));
+    for (final E element : data) {
+      if (heap.size() < count) {
+        heap.add(element);
+      } else if (comparator.compare(element, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(element);
+      }
+    }
+
+    data.clear();
+    data.addAll(heap);
+    Collections.sort(data, comparator);
+  }
+
+  /**
+   * Returns the position of the entry with the given skip token in the sorted list
+   * or the size of the list if there is no such entry.
+   * In default order the list is sorted by skip token, so binary search is possible.
+   */
+  private static <T> int indexOfSkipToken(final EdmEntitySet entitySet, final List<SortKey<T>> sortKeys, final String skipToken, final boolean inDefaultOrder) throws ODataException {
+    if (inDefaultOrder) {
+      int low = 0;
+      int high = sortKeys.size();
+      while (low < high) {
+        final int middle = (low + high) >>> 1;
+        if (((String) sortKeys.get(middle).values[0]).compareTo(skipToken) < 0) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low < sortKeys.size() && sortKeys.get(low).values[0].equals(skipToken) ? low : sortKeys.size();
+    } else {
+      for (int position = 0; position < sortKeys.size(); position++) {
+        if (getSkipToken(entitySet, sortKeys.get(position).data).equals(skipToken)) {
+          return position;
+        }
+      }
+      return sortKeys.size();
+    }
+  }
+
+  /**
+   * Entry together with the values it is sorted by, computed once before sorting.
+   * Without order-by expression, entries are sorted by their skip tokens.
+   */
+  private static final class SortKey<T> {
+    private final T data;
+    private final Comparable<?>[] values;
+    private final int position;
+
+    private SortKey(final T data, final Comparable<?>[] values, final int position) {
+      this.data = data;
+      this.values = values;
+      this.position = position;
+    }
+
+    /**
+     * Returns a comparator for the sort values in the directions of the order-by expression;
+     * <code>null</code> values come first in ascending order.
+     * Entries with equal values keep their original order.
+     */
+    private static <T> Comparator<SortKey<T>> comparator(final OrderByExpression orderBy) {
+      final List<OrderExpression> orders = orderBy == null ? Collections.<OrderExpression> emptyList() : orderBy.getOrders();
+      final boolean[] descending = new boolean[orders.size()];
+      for (int index = 0; index < descending.length; index++) {
+        descending[index] = orders.get(index).getSortOrder() == SortOrder.desc;
+      }
+
+      return new Comparator<SortKey<T>>() {
+        @Override
+        public int compare(final SortKey<T> key1, final SortKey<T> key2) {
+          for (int index = 0; index < key1.values.length; index++) {
+            final int result = compareValues(key1.values[index], key2.values[index]);
             if (result != 0) {
-              break;
+              return index < descending.length && descending[index] ? -result : result;
             }
           }
-          return result;
-        } catch (final ODataException e) {
-          return 0;
+          return key1.position - key2.position;
         }
+      };
+    }
+
+    /**
+     * Compares two sort values; values of different classes are ordered by a fixed rank
+     * of their classes, with typed values before strings that could not be converted,
+     * so that the order stays transitive for mixed values.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareValues(final Comparable<?> value1, final Comparable<?> value2) {
+      if (value1 == null || value2 == null) {
+        return value1 == null ? (value2 == null ? 0 : -1) : 1;
+      } else if (value1.getClass() == value2.getClass()) {
+        return ((Comparable<Object>) value1).compareTo(value2);
+      } else {
+        final int rank1 = getRank(value1);
+        final int rank2 = getRank(value2);
+        return rank1 == rank2 ? value1.getClass().getName().compareTo(value2.getClass().getName()) : rank1 - rank2;
       }
-    });
+    }
+
+    private static int getRank(final Comparable<?> value) {
+      if (value instanceof BigDecimal) {
+        return 0;
+      } else if (value instanceof Double) {
+        return 1;
+      } else if (value instanceof Long) {
+        return 2;
+      } else if (value instanceof String) {
+        return 4;
+      } else {
+        return 3;
+      }
+    }
   }
 
-  private static <T> void sortInDefaultOrder(final EdmEntitySet entitySet, final List<T> data) {
-    Collections.sort(data, new Comparator<T>() {
-      @Override
-      public int compare(final T entity1, final T entity2) {
-        try {
-          return getSkipToken(entitySet, entity1).compareTo(getSkipToken(entitySet, entity2));
-        } catch (final ODataException e) {
-          return 0;
+  private static <T> List<SortKey<T>> getSortKeys(final EdmEntitySet entitySet, final List<T> data, final OrderByExpression orderBy, final int offset) throws ODataException {
+    List<SortKey<T>> sortKeys = new ArrayList<SortKey<T>>(data.size());
+    int position = offset;
+    for (final T entryData : data) {
+      Comparable<?>[] values;
+      if (orderBy == null) {
+        values = new Comparable<?>[] { getSkipToken(entitySet, entryData) };
+      } else {
+        final List<OrderExpression> orders = orderBy.getOrders();
+        values = new Comparable<?>[orders.size()];
+        for (int index = 0; index < values.length; index++) {
+          final CommonExpression expression = orders.get(index).getExpression();
+          values[index] = getSortValue(evaluateExpression(entryData, expression), expression.getEdmType());
         }
       }
-    });
+      sortKeys.add(new SortKey<T>(entryData, values, position++));
+    }
+    return sortKeys;
+  }
+
+  /**
+   * Converts the string representation of an expression value into a value
+   * that compares according to its type; numbers are compared numerically
+   * and date and time values chronologically, everything else as string.
+   */
+  private static Comparable<?> getSortValue(final String value, final EdmType type) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      if (type == EdmSimpleTypeKind.Byte.getEdmSimpleTypeInstance()
+          || type == EdmSimpleTypeKind.SByte.getEdmSimpleTypeInstance()
+          || type == EdmSimpleTypeKind.Int16.getEdmSimpleTypeInstance()
+          || type == EdmSimpleTypeKind.Int32.getEdmSimpleTypeInstance()
+          || type == EdmSimpleTypeKind.Int64.getEdmSimpleTypeInstance()
+          || type == EdmSimpleTypeKind.Decimal.getEdmSimpleTypeInstance()) {
+        return new BigDecimal(value);
+      } else if (type == EdmSimpleTypeKind.Single.getEdmSimpleTypeInstance()
+          || type == EdmSimpleTypeKind.Double.getEdmSimpleTypeInstance()) {
+        return value.equals("INF") ? Double.POSITIVE_INFINITY : value.equals("-INF") ? Double.NEGATIVE_INFINITY : Double.valueOf(value);
+      } else if (type == EdmSimpleTypeKind.DateTime.getEdmSimpleTypeInstance()
+          || type == EdmSimpleTypeKind.DateTimeOffset.getEdmSimpleTypeInstance()
+          || type == EdmSimpleTypeKind.Time.getEdmSimpleTypeInstance()) {
+        return ((EdmSimpleType) type).valueOfString(value, EdmLiteralKind.DEFAULT, null, Calendar.class).getTimeInMillis();
+      } else {
+        return value;
+      }
+    } catch (final NumberFormatException e) {
+      return value;
+    } catch (final EdmSimpleTypeException e) {
+      return value;
+    }
+  }
+
+  private static <T> void sortInDefaultOrder(final EdmEntitySet entitySet, final List<T> data) throws ODataException {
+    final List<SortKey<T>> sortKeys = getSortKeys(entitySet, data, null, 0);
+    Collections.sort(sortKeys, SortKey.<T> comparator(null));
+    data.clear();
+    for (final SortKey<T> sortKey : sortKeys) {
+      data.add(sortKey.data);
+    }
   }
 
   private <T> boolean appliesFilter(final T data, final FilterExpression filter) throws ODataException {
@@ -1193,12 +1587,18 @@ public class ListsProcessor extends ODataSingleProcessor {
     ODataContext context = getContext();
     final int timingHandle = context.startRuntimeMeasurement(getClass().getSimpleName(), "appliesFilter");
 
+    try {
+      return matches(data, filter);
+    } finally {
+      context.stopRuntimeMeasurement(timingHandle);
+    }
+  }
+
+  private static <T> boolean matches(final T data, final FilterExpression filter) throws ODataException {
     try {
       return evaluateExpression(data, filter.getExpression()).equals("true");
     } catch (final RuntimeException e) {
       return false;
-    } finally {
-      context.stopRuntimeMeasurement(timingHandle);
     }
   }
 
@@ -1423,32 +1823,26 @@ public class ListsProcessor extends ODataSingleProcessor {
   }
 
   private static <T> Object getPropertyValue(final T data, final EdmProperty property) throws ODataException {
-    return getValue(data, getGetterMethodName(property));
+    if (data instanceof PropertyAccessible) {
+      return ((PropertyAccessible) data).getValue(property.getName());
+    }
+    return getValue(data, PropertyAccessors.getGetterMethodName(property));
   }
 
   private static <T> Class<?> getPropertyType(final T data, final EdmProperty property) throws ODataException {
-    return getType(data, getGetterMethodName(property));
+    if (data instanceof PropertyAccessible) {
+      return ((PropertyAccessible) data).getType(property.getName());
+    }
+    return getType(data, PropertyAccessors.getGetterMethodName(property));
   }
 
   private static <T, V> void setPropertyValue(final T data, final EdmProperty property, final V value) throws ODataException {
-    final String methodName = getSetterMethodName(getGetterMethodName(property));
+    final String methodName = PropertyAccessors.getSetterMethodName(PropertyAccessors.getGetterMethodName(property));
     if (methodName != null) {
       setValue(data, methodName, value);
     }
   }
 
-  private static String getGetterMethodName(final EdmProperty property) throws EdmException {
-    final String prefix = property.isSimple() && property.getType() == EdmSimpleTypeKind.Boolean.getEdmSimpleTypeInstance() ? "is" : "get";
-    final String defaultMethodName = prefix + property.getName();
-    return property.getMapping() == null || property.getMapping().getInternalName() == null ?
-        defaultMethodName : property.getMapping().getInternalName();
-  }
-
-  private static String getSetterMethodName(final String getterMethodName) {
-    return getterMethodName.contains(".") ?
-        null : getterMethodName.replaceFirst("^is", "set").replaceFirst("^get", "set");
-  }
-
   private static <T> Map<String, Object> getSimpleTypeValueMap(final T data, final List<EdmProperty> propertyPath) throws ODataException {
     final EdmProperty property = propertyPath.get(propertyPath.size() - 1);
     Map<String, Object> valueWithMimeType = new HashMap<String, Object>();
@@ -1538,10 +1932,10 @@ public class ListsProcessor extends ODataSingleProcessor {
   private static <T> Object getValue(final T data, final String methodName) throws ODataNotFoundException {
     Object dataObject = data;
 
-    for (final String method : methodName.split("\\.", -1)) {
+    for (final String method : PropertyAccessors.getMethodPath(methodName)) {
       if (dataObject != null) {
         try {
-          dataObject = dataObject.getClass().getMethod(method).invoke(dataObject);
+          dataObject = PropertyAccessors.getGetter(dataObject.getClass(), method).invoke(dataObject);
         } catch (SecurityException e) {
           throw new ODataNotFoundException(ODataHttpException.COMMON, e);
         } catch (NoSuchMethodException e) {
@@ -1564,62 +1958,35 @@ public class ListsProcessor extends ODataSingleProcessor {
       throw new ODataNotFoundException(ODataHttpException.COMMON);
     }
 
-    Class<?> type = data.getClass();
-    for (final String method : methodName.split("\\.", -1)) {
-      try {
-        type = type.getMethod(method).getReturnType();
-        if (type.isPrimitive()) {
-          if (type == boolean.class) {
-            type = Boolean.class;
-          } else if (type == byte.class) {
-            type = Byte.class;
-          } else if (type == short.class) {
-            type = Short.class;
-          } else if (type == int.class) {
-            type = Integer.class;
-          } else if (type == long.class) {
-            type = Long.class;
-          } else if (type == float.class) {
-            type = Float.class;
-          } else if (type == double.class) {
-            type = Double.class;
-          }
-        }
-      } catch (final SecurityException e) {
-        throw new ODataNotFoundException(ODataHttpException.COMMON, e);
-      } catch (final NoSuchMethodException e) {
-        throw new ODataNotFoundException(ODataHttpException.COMMON, e);
-      }
+    try {
+      return PropertyAccessors.getType(data.getClass(), methodName);
+    } catch (final SecurityException e) {
+      throw new ODataNotFoundException(ODataHttpException.COMMON, e);
+    } catch (final NoSuchMethodException e) {
+      throw new ODataNotFoundException(ODataHttpException.COMMON, e);
     }
-    return type;
   }
 
   private static <T, V> void setValue(final T data, final String methodName, final V value) throws ODataNotFoundException {
     try {
-      boolean found = false;
-      for (final Method method : Arrays.asList(data.getClass().getMethods())) {
-        if (method.getName().equals(methodName)) {
-          found = true;
-          final Class<?> type = method.getParameterTypes()[0];
-          if (value == null) {
-            if (type.equals(byte.class) || type.equals(short.class) || type.equals(int.class) || type.equals(long.class) || type.equals(char.class)) {
-              method.invoke(data, 0);
-            } else if (type.equals(float.class) || type.equals(double.class)) {
-              method.invoke(data, 0.0);
-            } else if (type.equals(boolean.class)) {
-              method.invoke(data, false);
-            } else {
-              method.invoke(data, value);
-            }
-          } else {
-            method.invoke(data, value);
-          }
-          break;
-        }
-      }
-      if (!found) {
+      final Method method = PropertyAccessors.getSetter(data.getClass(), methodName);
+      if (method == null) {
         throw new ODataNotFoundException(null);
       }
+      final Class<?> type = method.getParameterTypes()[0];
+      if (value == null) {
+        if (type.equals(byte.class) || type.equals(short.class) || type.equals(int.class) || type.equals(long.class) || type.equals(char.class)) {
+          method.invoke(data, 0);
+        } else if (type.equals(float.class) || type.equals(double.class)) {
+          method.invoke(data, 0.0);
+        } else if (type.equals(boolean.class)) {
+          method.invoke(data, false);
+        } else {
+          method.invoke(data, value);
+        }
+      } else {
+        method.invoke(data, value);
+      }
     } catch (SecurityException e) {
       throw new ODataNotFoundException(null, e);
     } catch (IllegalArgumentException e) {
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+/**
+ * <p>Data objects which hand out the values of their simple EDM properties
+ * by property name.</p>
+ * <p>{@link ListsProcessor} reads the properties of such data objects through
+ * this interface instead of calling their getter methods by reflection.</p>
+ * @author SAP AG
+ */
+public interface PropertyAccessible {
+
+  /**
+   * Returns the value of a property.
+   * @param name the name of the EDM property
+   * @return the value or <code>null</code> if the value is <code>null</code>
+   *         or there is no such property
+   */
+  Object getValue(String name);
+
+  /**
+   * Returns the type of the values of a property.
+   * @param name the name of the EDM property
+   * @return the type or <code>null</code> if there is no such property
+   */
+  Class<?> getType(String name);
+}
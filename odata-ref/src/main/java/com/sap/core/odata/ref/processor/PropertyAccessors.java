@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.edm.EdmProperty;
+import com.sap.core.odata.api.edm.EdmSimpleTypeKind;
+
+/**
+ * <p>Caches the reflection data needed to access the properties of data objects.</p>
+ * <p>Getter method names are kept per EDM property, split method paths per path string,
+ * and getter, setter and property type per data class and method name;
+ * so after the first access of a property only map lookups and the method invocation remain.
+ * EDM properties are referenced weakly since they belong to the metadata of a service instance.
+ * Data classes are referenced weakly, too, and the reflection data of a class only softly
+ * since methods reference their class; so the cache does not keep class loaders from being unloaded.</p>
+ * @author SAP AG
+ */
+final class PropertyAccessors {
+
+  private static final Map<EdmProperty, String> getterMethodNames = Collections.synchronizedMap(new WeakHashMap<EdmProperty, String>());
+  private static final ConcurrentMap<String, String[]> methodPaths = new ConcurrentHashMap<String, String[]>();
+  private static final Map<Class<?>, SoftReference<ClassAccessors>> classAccessors = Collections.synchronizedMap(new WeakHashMap<Class<?>, SoftReference<ClassAccessors>>());
+
+  /** Getters, setters and property types of one data class. */
+  private static final class ClassAccessors {
+    private final ConcurrentMap<String, Method> getters = new ConcurrentHashMap<String, Method>();
+    private final ConcurrentMap<String, Method> setters = new ConcurrentHashMap<String, Method>();
+    private final ConcurrentMap<String, Class<?>> types = new ConcurrentHashMap<String, Class<?>>();
+  }
+
+  private PropertyAccessors() {}
+
+  /**
+   * Returns the name of the getter method for the given property,
+   * taken from the mapping if there is one.
+   * @param property the EDM property
+   * @return the method name, possibly a path of method names separated by dots
+   * @throws EdmException if the property type could not be determined
+   */
+  static String getGetterMethodName(final EdmProperty property) throws EdmException {
+    String methodName = getterMethodNames.get(property);
+    if (methodName == null) {
+      if (property.getMapping() == null || property.getMapping().getInternalName() == null) {
+        final String prefix = property.isSimple() && property.getType() == EdmSimpleTypeKind.Boolean.getEdmSimpleTypeInstance() ? "is" : "get";
+        methodName = prefix + property.getName();
+      } else {
+        methodName = property.getMapping().getInternalName();
+      }
+      getterMethodNames.put(property, methodName);
+    }
+    return methodName;
+  }
+
+  /**
+   * Returns the name of the setter method belonging to the given getter method name.
+   * @param getterMethodName the getter method name
+   * @return the setter method name or <code>null</code> for a path of methods
+   */
+  static String getSetterMethodName(final String getterMethodName) {
+    return getterMethodName.indexOf('.') >= 0 ?
+        null : getterMethodName.replaceFirst("^is", "set").replaceFirst("^get", "set");
+  }
+
+  /**
+   * Splits a path of method names separated by dots.
+   * @param methodName method name or path of method names
+   * @return the method names; the returned array must not be modified
+   */
+  static String[] getMethodPath(final String methodName) {
+    String[] path = methodPaths.get(methodName);
+    if (path == null) {
+      path = methodName.split("\\.", -1);
+      methodPaths.putIfAbsent(methodName, path);
+    }
+    return path;
+  }
+
+  /**
+   * Returns the public getter method with the given name.
+   * @param type the class of the data object
+   * @param methodName the name of a method without parameters
+   * @return the method
+   * @throws NoSuchMethodException if there is no such method
+   */
+  static Method getGetter(final Class<?> type, final String methodName) throws NoSuchMethodException {
+    final ConcurrentMap<String, Method> methods = getClassAccessors(type).getters;
+    Method method = methods.get(methodName);
+    if (method == null) {
+      method = type.getMethod(methodName);
+      methods.putIfAbsent(methodName, method);
+    }
+    return method;
+  }
+
+  /**
+   * Returns the first public method with the given name that has parameters.
+   * @param type the class of the data object
+   * @param methodName the name of the setter method
+   * @return the method or <code>null</code> if there is no such method
+   */
+  static Method getSetter(final Class<?> type, final String methodName) {
+    final ConcurrentMap<String, Method> methods = getClassAccessors(type).setters;
+    Method method = methods.get(methodName);
+    if (method == null) {
+      for (final Method candidate : type.getMethods()) {
+        if (candidate.getName().equals(methodName) && candidate.getParameterTypes().length > 0) {
+          method = candidate;
+          methods.putIfAbsent(methodName, method);
+          break;
+        }
+      }
+    }
+    return method;
+  }
+
+  /**
+   * Returns the return type of the given getter method or path of getter methods;
+   * primitive types are replaced by their wrapper classes.
+   * @param type the class of the data object
+   * @param methodName method name or path of method names
+   * @return the type
+   * @throws NoSuchMethodException if there is no such method
+   */
+  static Class<?> getType(final Class<?> type, final String methodName) throws NoSuchMethodException {
+    final ConcurrentMap<String, Class<?>> typesOfClass = getClassAccessors(type).types;
+    Class<?> result = typesOfClass.get(methodName);
+    if (result == null) {
+      result = type;
+      for (final String method : getMethodPath(methodName)) {
+        result = getGetter(result, method).getReturnType();
+      }
+      result = wrap(result);
+      typesOfClass.putIfAbsent(methodName, result);
+    }
+    return result;
+  }
+
+  private static ClassAccessors getClassAccessors(final Class<?> type) {
+    synchronized (classAccessors) {
+      final SoftReference<ClassAccessors> reference = classAccessors.get(type);
+      ClassAccessors accessors = reference == null ? null : reference.get();
+      if (accessors == null) {
+        accessors = new ClassAccessors();
+        classAccessors.put(type, new SoftReference<ClassAccessors>(accessors));
+      }
+      return accessors;
+    }
+  }
+
+  private static Class<?> wrap(final Class<?> type) {
+    if (type == boolean.class) {
+      return Boolean.class;
+    } else if (type == byte.class) {
+      return Byte.class;
+    } else if (type == short.class) {
+      return Short.class;
+    } else if (type == int.class) {
+      return Integer.class;
+    } else if (type == long.class) {
+      return Long.class;
+    } else if (type == float.class) {
+      return Float.class;
+    } else if (type == double.class) {
+      return Double.class;
+    } else {
+      return type;
+    }
+  }
+}
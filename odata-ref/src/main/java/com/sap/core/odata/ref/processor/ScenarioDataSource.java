@@ -18,7 +18,7 @@ package com.sap.core.odata.ref.processor;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +31,7 @@ import com.sap.core.odata.api.edm.EdmFunctionImport;
 import com.sap.core.odata.api.exception.ODataApplicationException;
 import com.sap.core.odata.api.exception.ODataNotFoundException;
 import com.sap.core.odata.api.exception.ODataNotImplementedException;
+import com.sap.core.odata.api.uri.expression.FilterExpression;
 import com.sap.core.odata.ref.model.Building;
 import com.sap.core.odata.ref.model.DataContainer;
 import com.sap.core.odata.ref.model.Employee;
@@ -44,7 +45,7 @@ import com.sap.core.odata.ref.model.Team;
  * Data for the reference scenario
  * @author SAP AG
  */
-public class ScenarioDataSource implements ListsDataSource {
+public class ScenarioDataSource implements IndexedListsDataSource, CountingListsDataSource, BatchedListsDataSource, KeyProjectingListsDataSource {
 
   private static final String ENTITYSET_1_1 = "Employees";
   private static final String ENTITYSET_1_2 = "Teams";
@@ -79,64 +80,132 @@ public class ScenarioDataSource implements ListsDataSource {
   }
 
   @Override
-  public Object readData(final EdmEntitySet entitySet, final Map<String, Object> keys) throws ODataNotImplementedException, ODataNotFoundException, EdmException {
-    if (ENTITYSET_1_1.equals(entitySet.getName())) {
-      for (final Employee employee : dataContainer.getEmployees()) {
-        if (employee.getId().equals(keys.get("EmployeeId"))) {
-          return employee;
-        }
-      }
-      throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+  public Integer countData(final EdmEntitySet entitySet, final FilterExpression filter) throws ODataNotImplementedException, EdmException {
+    if (filter != null) {
+      return null;
+    }
 
+    if (ENTITYSET_1_1.equals(entitySet.getName())) {
+      return dataContainer.getEmployees().size();
     } else if (ENTITYSET_1_2.equals(entitySet.getName())) {
-      for (final Team team : dataContainer.getTeams()) {
-        if (team.getId().equals(keys.get("Id"))) {
-          return team;
-        }
-      }
-      throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
-
+      return dataContainer.getTeams().size();
     } else if (ENTITYSET_1_3.equals(entitySet.getName())) {
-      for (final Room room : dataContainer.getRooms()) {
-        if (room.getId().equals(keys.get("Id"))) {
-          return room;
-        }
-      }
+      return dataContainer.getRooms().size();
+    } else if (ENTITYSET_1_4.equals(entitySet.getName())) {
+      return dataContainer.getManagers().size();
+    } else if (ENTITYSET_1_5.equals(entitySet.getName())) {
+      return dataContainer.getBuildings().size();
+    } else if (ENTITYSET_2_1.equals(entitySet.getName())) {
+      return dataContainer.getPhotos().size();
+    } else {
+      throw new ODataNotImplementedException();
+    }
+  }
+
+  @Override
+  public Object readData(final EdmEntitySet entitySet, final Map<String, Object> keys) throws ODataNotImplementedException, ODataNotFoundException, EdmException {
+    final Object data = readIndexedData(entitySet, keys);
+    if (data == null) {
       throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+    }
+    return data;
+  }
 
+  @Override
+  public Object readIndexedData(final EdmEntitySet entitySet, final Map<String, Object> keys) throws ODataNotImplementedException, EdmException {
+    if (ENTITYSET_1_1.equals(entitySet.getName())) {
+      return dataContainer.getEmployee((String) keys.get("EmployeeId"));
+    } else if (ENTITYSET_1_2.equals(entitySet.getName())) {
+      return dataContainer.getTeam((String) keys.get("Id"));
+    } else if (ENTITYSET_1_3.equals(entitySet.getName())) {
+      return dataContainer.getRoom((String) keys.get("Id"));
     } else if (ENTITYSET_1_4.equals(entitySet.getName())) {
-      for (final Manager manager : dataContainer.getManagers()) {
-        if (manager.getId().equals(keys.get("EmployeeId"))) {
-          return manager;
-        }
+      return dataContainer.getManager((String) keys.get("EmployeeId"));
+    } else if (ENTITYSET_1_5.equals(entitySet.getName())) {
+      return dataContainer.getBuilding((String) keys.get("Id"));
+    } else if (ENTITYSET_2_1.equals(entitySet.getName())) {
+      final Photo photo = dataContainer.getPhoto((Integer) keys.get("Id"));
+      return photo != null && photo.getType().equals(keys.get("Type")) ? photo : null;
+    }
+
+    throw new ODataNotImplementedException();
+  }
+
+  @Override
+  public List<Map<String, Object>> readKeys(final EdmEntitySet entitySet, final List<?> data) throws ODataNotImplementedException, EdmException {
+    final String entitySetName = entitySet.getName();
+    List<Map<String, Object>> keys = new ArrayList<Map<String, Object>>(data.size());
+    for (final Object dataObject : data) {
+      if (ENTITYSET_1_1.equals(entitySetName) || ENTITYSET_1_4.equals(entitySetName)) {
+        keys.add(Collections.<String, Object> singletonMap("EmployeeId", ((Employee) dataObject).getId()));
+      } else if (ENTITYSET_1_2.equals(entitySetName)) {
+        keys.add(Collections.<String, Object> singletonMap("Id", ((Team) dataObject).getId()));
+      } else if (ENTITYSET_1_3.equals(entitySetName)) {
+        keys.add(Collections.<String, Object> singletonMap("Id", ((Room) dataObject).getId()));
+      } else if (ENTITYSET_1_5.equals(entitySetName)) {
+        keys.add(Collections.<String, Object> singletonMap("Id", ((Building) dataObject).getId()));
+      } else if (ENTITYSET_2_1.equals(entitySetName)) {
+        Map<String, Object> key = new HashMap<String, Object>(4);
+        key.put("Id", ((Photo) dataObject).getId());
+        key.put("Type", ((Photo) dataObject).getType());
+        keys.add(key);
+      } else {
+        throw new ODataNotImplementedException();
       }
-      throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+    }
+    return keys;
+  }
 
-    } else if (ENTITYSET_1_5.equals(entitySet.getName())) {
-      for (final Building building : dataContainer.getBuildings()) {
-        if (building.getId().equals(keys.get("Id"))) {
-          return building;
+  @Override
+  public Object readRelatedData(final EdmEntitySet sourceEntitySet, final Object sourceData, final EdmEntitySet targetEntitySet, final Map<String, Object> targetKeys) throws ODataNotImplementedException, ODataNotFoundException, EdmException {
+    final Object relatedData = getRelatedData(sourceEntitySet, sourceData, targetEntitySet);
+    if (relatedData instanceof List) {
+      if (((List<?>) relatedData).isEmpty()) {
+        throw new ODataNotFoundException(null);
+      }
+      if (targetKeys.isEmpty()) {
+        return relatedData;
+      } else if (ENTITYSET_1_1.equals(targetEntitySet.getName())) {
+        final Employee employee = dataContainer.getEmployee((String) targetKeys.get("EmployeeId"));
+        if (employee != null
+            && (employee.getTeam() == sourceData || employee.getRoom() == sourceData || employee.getManager() == sourceData)) {
+          return employee;
+        }
+      } else {
+        final Room room = dataContainer.getRoom((String) targetKeys.get("Id"));
+        if (room != null && room.getBuilding() == sourceData) {
+          return room;
         }
       }
       throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
 
-    } else if (ENTITYSET_2_1.equals(entitySet.getName())) {
-      for (final Photo photo : dataContainer.getPhotos()) {
-        if (photo.getId() == (Integer) keys.get("Id")
-            && photo.getType().equals(keys.get("Type"))) {
-          return photo;
-        }
-      }
+    } else if (relatedData == null) {
       throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+    } else {
+      return relatedData;
     }
-
-    throw new ODataNotImplementedException();
   }
 
   @Override
-  public Object readRelatedData(final EdmEntitySet sourceEntitySet, final Object sourceData, final EdmEntitySet targetEntitySet, final Map<String, Object> targetKeys) throws ODataNotImplementedException, ODataNotFoundException, EdmException {
+  public Map<?, ?> readAllRelatedData(final EdmEntitySet sourceEntitySet, final List<?> sourceData, final EdmEntitySet targetEntitySet) throws ODataNotImplementedException, EdmException {
+    Map<Object, Object> relatedData = new HashMap<Object, Object>(sourceData.size() * 2);
+    for (final Object sourceEntry : sourceData) {
+      final Object relatedEntries = getRelatedData(sourceEntitySet, sourceEntry, targetEntitySet);
+      if (relatedEntries != null) {
+        relatedData.put(sourceEntry, relatedEntries);
+      }
+    }
+    return relatedData;
+  }
+
+  /**
+   * Returns the data related to the source data object: for a navigation to many entities
+   * a snapshot of the copy-on-write relation list, otherwise the related object
+   * or <code>null</code> if there is none.
+   */
+  private Object getRelatedData(final EdmEntitySet sourceEntitySet, final Object sourceData, final EdmEntitySet targetEntitySet) throws ODataNotImplementedException, EdmException {
     if (ENTITYSET_1_1.equals(targetEntitySet.getName())) {
-      List<?> data = Collections.emptyList();
+      List<Employee> data = Collections.emptyList();
       if (ENTITYSET_1_2.equals(sourceEntitySet.getName())) {
         data = ((Team) sourceData).getEmployees();
       } else if (ENTITYSET_1_3.equals(sourceEntitySet.getName())) {
@@ -144,66 +213,24 @@ public class ScenarioDataSource implements ListsDataSource {
       } else if (ENTITYSET_1_4.equals(sourceEntitySet.getName())) {
         data = ((Manager) sourceData).getEmployees();
       }
-
-      if (data.isEmpty()) {
-        throw new ODataNotFoundException(null);
-      }
-      if (targetKeys.isEmpty()) {
-        return Arrays.asList(data.toArray());
-      } else {
-        for (final Object employee : data) {
-          if (((Employee) employee).getId().equals(targetKeys.get("EmployeeId"))) {
-            return employee;
-          }
-        }
-      }
-      throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+      return Arrays.asList(data.toArray());
 
     } else if (ENTITYSET_1_2.equals(targetEntitySet.getName())) {
-      if (((Employee) sourceData).getTeam() == null) {
-        throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
-      } else {
-        return ((Employee) sourceData).getTeam();
-      }
+      return ((Employee) sourceData).getTeam();
 
     } else if (ENTITYSET_1_3.equals(targetEntitySet.getName())) {
       if (ENTITYSET_1_1.equals(sourceEntitySet.getName())) {
-        if (((Employee) sourceData).getRoom() == null) {
-          throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
-        } else {
-          return ((Employee) sourceData).getRoom();
-        }
+        return ((Employee) sourceData).getRoom();
       } else if (ENTITYSET_1_5.equals(sourceEntitySet.getName())) {
-        List<Room> data = ((Building) sourceData).getRooms();
-        if (data.isEmpty()) {
-          throw new ODataNotFoundException(null);
-        }
-        if (targetKeys.isEmpty()) {
-          return Arrays.asList(data.toArray());
-        } else {
-          for (final Object room : data) {
-            if (((Room) room).getId().equals(targetKeys.get("Id"))) {
-              return room;
-            }
-          }
-        }
-        throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+        return Arrays.asList(((Building) sourceData).getRooms().toArray());
       }
       throw new ODataNotImplementedException();
 
     } else if (ENTITYSET_1_4.equals(targetEntitySet.getName())) {
-      if (((Employee) sourceData).getManager() == null) {
-        throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
-      } else {
-        return ((Employee) sourceData).getManager();
-      }
+      return ((Employee) sourceData).getManager();
 
     } else if (ENTITYSET_1_5.equals(targetEntitySet.getName())) {
-      if (((Room) sourceData).getBuilding() == null) {
-        throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
-      } else {
-        return ((Room) sourceData).getBuilding();
-      }
+      return ((Room) sourceData).getBuilding();
 
     } else {
       throw new ODataNotImplementedException();
@@ -255,12 +282,11 @@ public class ScenarioDataSource implements ListsDataSource {
       if (parameters.get("Id") == null) {
         throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
       }
-      for (final Manager manager : dataContainer.getManagers()) {
-        if (manager.getId().equals(parameters.get("Id"))) {
-          return new BinaryData(manager.getImage(), manager.getImageType());
-        }
+      final Manager manager = dataContainer.getManager((String) parameters.get("Id"));
+      if (manager == null) {
+        throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
       }
-      throw new ODataNotFoundException(ODataNotFoundException.ENTITY);
+      return new BinaryData(manager.getImage(), manager.getImageType());
 
     } else if (function.getName().equals("OldestEmployee")) {
       return getOldestEmployee();
@@ -475,27 +501,24 @@ public class ScenarioDataSource implements ListsDataSource {
   public void deleteRelation(final EdmEntitySet sourceEntitySet, final Object sourceData, final EdmEntitySet targetEntitySet, final Map<String, Object> targetKeys) throws ODataNotImplementedException, ODataNotFoundException, EdmException, ODataApplicationException {
     if (ENTITYSET_1_1.equals(targetEntitySet.getName())) {
       if (ENTITYSET_1_2.equals(sourceEntitySet.getName())) {
-        for (Iterator<Employee> iterator = ((Team) sourceData).getEmployees().iterator(); iterator.hasNext();) {
-          final Employee employee = iterator.next();
+        for (final Employee employee : ((Team) sourceData).getEmployees()) {
           if (employee.getId().equals(targetKeys.get("EmployeeId"))) {
             employee.setTeam(null);
-            iterator.remove();
+            ((Team) sourceData).getEmployees().remove(employee);
           }
         }
       } else if (ENTITYSET_1_3.equals(sourceEntitySet.getName())) {
-        for (Iterator<Employee> iterator = ((Room) sourceData).getEmployees().iterator(); iterator.hasNext();) {
-          final Employee employee = iterator.next();
+        for (final Employee employee : ((Room) sourceData).getEmployees()) {
           if (employee.getId().equals(targetKeys.get("EmployeeId"))) {
             employee.setRoom(null);
-            iterator.remove();
+            ((Room) sourceData).getEmployees().remove(employee);
           }
         }
       } else if (ENTITYSET_1_4.equals(sourceEntitySet.getName())) {
-        for (Iterator<Employee> iterator = ((Manager) sourceData).getEmployees().iterator(); iterator.hasNext();) {
-          final Employee employee = iterator.next();
+        for (final Employee employee : ((Manager) sourceData).getEmployees()) {
           if (employee.getId().equals(targetKeys.get("EmployeeId"))) {
             employee.setManager(null);
-            iterator.remove();
+            ((Manager) sourceData).getEmployees().remove(employee);
           }
         }
       }
@@ -509,11 +532,10 @@ public class ScenarioDataSource implements ListsDataSource {
         ((Employee) sourceData).getRoom().getEmployees().remove(sourceData);
         ((Employee) sourceData).setRoom(null);
       } else if (ENTITYSET_1_5.equals(sourceEntitySet.getName())) {
-        for (Iterator<Room> iterator = ((Building) sourceData).getRooms().iterator(); iterator.hasNext();) {
-          final Room room = iterator.next();
+        for (final Room room : ((Building) sourceData).getRooms()) {
           if (room.getId().equals(targetKeys.get("Id"))) {
             room.setBuilding(null);
-            iterator.remove();
+            ((Building) sourceData).getRooms().remove(room);
           }
         }
       }
@@ -15,6 +15,13 @@
  ******************************************************************************/
 package com.sap.core.odata.ref.processor;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.sap.core.odata.api.ODataCallback;
 import com.sap.core.odata.api.ODataService;
 import com.sap.core.odata.api.ODataServiceFactory;
@@ -28,6 +35,36 @@ import com.sap.core.odata.ref.model.DataContainer;
  */
 public class ScenarioServiceFactory extends ODataServiceFactory {
 
+  /** Seconds an idle thread of the executor waits for work before it ends. */
+  private static final long THREAD_KEEP_ALIVE = 60;
+
+  /**
+   * Threads shared by all services to filter and sort large entity sets.
+   * The pool is never shut down: its threads are daemon threads, so they do
+   * not keep the JVM alive, and they end after being idle for
+   * {@link #THREAD_KEEP_ALIVE} seconds, so none are left over once the
+   * services are no longer used, e.g., after the application is undeployed.
+   */
+  private static final ExecutorService EXECUTOR = createExecutor();
+
+  private static ExecutorService createExecutor() {
+    final int threadCount = Runtime.getRuntime().availableProcessors();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+        THREAD_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory() {
+          private final AtomicInteger threadNumber = new AtomicInteger();
+
+          @Override
+          public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, "ScenarioListsProcessor-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   @Override
   public ODataService createService(final ODataContext context) throws ODataException {
     DataContainer dataContainer = new DataContainer();
@@ -35,7 +72,7 @@ public class ScenarioServiceFactory extends ODataServiceFactory {
 
     return createODataSingleProcessorService(
         new ScenarioEdmProvider(),
-        new ListsProcessor(new ScenarioDataSource(dataContainer)));
+        new ListsProcessor(new ScenarioDataSource(dataContainer), EXECUTOR));
   }
 
   @SuppressWarnings("unchecked")
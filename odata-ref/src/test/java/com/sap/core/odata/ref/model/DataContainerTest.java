@@ -18,8 +18,12 @@ package com.sap.core.odata.ref.model;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
@@ -79,4 +83,146 @@ public class DataContainerTest extends BaseTest {
     assertFalse(dataContainer.getPhotos().isEmpty());
   }
 
+  @Test
+  public void lookupByKey() {
+    dataContainer.init();
+    assertEquals("Walter Winter", dataContainer.getEmployee("1").getEmployeeName());
+    assertSame(dataContainer.getEmployee("3"), dataContainer.getManager("3"));
+    assertNull(dataContainer.getManager("2"));
+    assertEquals(5, dataContainer.getRoom("2").getSeats());
+    assertEquals("Team 2", dataContainer.getTeam("2").getName());
+    assertEquals("Building 3", dataContainer.getBuilding("3").getName());
+    assertEquals("image/bmp", dataContainer.getPhoto(2).getType());
+    assertNull(dataContainer.getEmployee("99"));
+  }
+
+  @Test
+  public void lookupAfterModification() {
+    dataContainer.init();
+    Team team = dataContainer.createTeam();
+    assertNull(dataContainer.getTeam(team.getId()));
+    dataContainer.getTeams().add(team);
+    assertSame(team, dataContainer.getTeam(team.getId()));
+    dataContainer.getTeams().remove(team);
+    assertNull(dataContainer.getTeam(team.getId()));
+
+    Team first = dataContainer.getTeams().get(0);
+    dataContainer.getTeams().remove(0);
+    assertNull(dataContainer.getTeam(first.getId()));
+    dataContainer.getTeams().add(0, first);
+    assertSame(first, dataContainer.getTeam(first.getId()));
+
+    dataContainer.reset();
+    assertEquals("Team 1", dataContainer.getTeam("1").getName());
+    assertNull(dataContainer.getTeam("4"));
+  }
+
+  @Test
+  public void lookupWithDuplicateKeys() {
+    dataContainer.init();
+    final Team original = dataContainer.getTeam("1");
+    final Team duplicate = new Team(1, "Duplicate of team 1");
+    List<Team> teams = dataContainer.getTeams();
+    teams.add(duplicate);
+    assertSame(original, dataContainer.getTeam("1"));
+    teams.remove(original);
+    assertSame(duplicate, dataContainer.getTeam("1"));
+    teams.add(0, original);
+    assertSame(original, dataContainer.getTeam("1"));
+    teams.remove(0);
+    assertSame(duplicate, dataContainer.getTeam("1"));
+
+    final Team replacement = new Team(7, "Team 7");
+    teams.set(teams.indexOf(duplicate), replacement);
+    assertNull(dataContainer.getTeam("1"));
+    assertSame(replacement, dataContainer.getTeam("7"));
+    teams.retainAll(Collections.singletonList(replacement));
+    assertEquals(1, teams.size());
+    assertNull(dataContainer.getTeam("2"));
+    assertSame(replacement, dataContainer.getTeam("7"));
+  }
+
+  @Test
+  public void iterationOverSnapshot() {
+    dataContainer.init();
+    final int size = dataContainer.getTeams().size();
+    int count = 0;
+    for (final Team team : dataContainer.getTeams()) {
+      dataContainer.getTeams().remove(team);
+      dataContainer.getTeams().add(dataContainer.createTeam());
+      count++;
+    }
+    assertEquals(size, count);
+    assertEquals(size, dataContainer.getTeams().size());
+    assertNull(dataContainer.getTeam("1"));
+    assertEquals("Team " + (size + 1), dataContainer.getTeams().get(0).getName());
+  }
+
+  @Test
+  public void concurrentRelationChanges() throws Exception {
+    dataContainer.init();
+    final Team team1 = dataContainer.getTeam("1");
+    final Team team2 = dataContainer.getTeam("2");
+    final Building building1 = dataContainer.getBuilding("1");
+    final Building building2 = dataContainer.getBuilding("2");
+    final int employeeCount = team1.getEmployees().size() + team2.getEmployees().size();
+    final int roomCount = building1.getRooms().size() + building2.getRooms().size();
+    final List<Throwable> errors = new ArrayList<Throwable>();
+
+    // Readers iterate over the relation lists while the writer moves
+    // employees between teams and rooms between buildings.
+    List<Thread> readers = new ArrayList<Thread>();
+    for (int index = 0; index < 3; index++) {
+      readers.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int iteration = 0; iteration < 2000; iteration++) {
+              for (final Team team : dataContainer.getTeams()) {
+                for (final Employee employee : team.getEmployees()) {
+                  employee.getId();
+                }
+              }
+              for (final Building building : dataContainer.getBuildings()) {
+                for (final Room room : building.getRooms()) {
+                  room.getId();
+                }
+              }
+            }
+          } catch (final Throwable e) {
+            synchronized (errors) {
+              errors.add(e);
+            }
+          }
+        }
+      });
+    }
+    for (final Thread reader : readers) {
+      reader.start();
+    }
+
+    for (int iteration = 0; iteration < 2000; iteration++) {
+      final Team from = iteration % 2 == 0 ? team1 : team2;
+      final Team to = from == team1 ? team2 : team1;
+      for (final Employee employee : from.getEmployees()) {
+        from.getEmployees().remove(employee);
+        employee.setTeam(to);
+        to.getEmployees().add(employee);
+      }
+      final Building fromBuilding = iteration % 2 == 0 ? building1 : building2;
+      final Building toBuilding = fromBuilding == building1 ? building2 : building1;
+      for (final Room room : fromBuilding.getRooms()) {
+        fromBuilding.getRooms().remove(room);
+        room.setBuilding(toBuilding);
+        toBuilding.getRooms().add(room);
+      }
+    }
+
+    for (final Thread reader : readers) {
+      reader.join();
+    }
+    assertEquals(new ArrayList<Throwable>(), errors);
+    assertEquals(employeeCount, team1.getEmployees().size() + team2.getEmployees().size());
+    assertEquals(roomCount, building1.getRooms().size() + building2.getRooms().size());
+  }
 }
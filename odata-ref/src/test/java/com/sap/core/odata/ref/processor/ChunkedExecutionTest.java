@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.testutil.fit.BaseTest;
+
+/**
+ * @author SAP AG
+ */
+public class ChunkedExecutionTest extends BaseTest {
+
+  private ExecutorService executor;
+
+  @Before
+  public void before() {
+    executor = Executors.newFixedThreadPool(3);
+  }
+
+  @After
+  public void after() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void resultsInChunkOrder() throws Exception {
+    List<Integer> data = new ArrayList<Integer>();
+    for (int i = 0; i < 10; i++) {
+      data.add(i);
+    }
+
+    final List<String> results = ChunkedExecution.run(executor, data, 3, new ChunkedExecution.ChunkTask<Integer, String>() {
+      @Override
+      public String process(final List<Integer> chunk, final int offset) {
+        assertEquals(Integer.valueOf(offset), chunk.get(0));
+        return chunk.toString();
+      }
+    });
+    assertEquals(3, results.size());
+    assertEquals("[0, 1, 2, 3]", results.get(0));
+    assertEquals("[4, 5, 6, 7]", results.get(1));
+    assertEquals("[8, 9]", results.get(2));
+  }
+
+  @Test
+  public void snapshot() throws Exception {
+    final List<Integer> data = new ArrayList<Integer>();
+    for (int i = 0; i < 100; i++) {
+      data.add(i);
+    }
+
+    final List<Integer> results = ChunkedExecution.run(executor, data, 2, new ChunkedExecution.ChunkTask<Integer, Integer>() {
+      @Override
+      public Integer process(final List<Integer> chunk, final int offset) {
+        int sum = 0;
+        for (final Integer value : chunk) {
+          sum += value;
+        }
+        return sum;
+      }
+    });
+    data.clear();
+    assertEquals(4950, results.get(0) + results.get(1));
+  }
+
+  @Test(expected = ODataException.class)
+  public void exceptionFromChunk() throws Exception {
+    List<Integer> data = new ArrayList<Integer>();
+    data.add(1);
+    data.add(2);
+    ChunkedExecution.run(executor, data, 2, new ChunkedExecution.ChunkTask<Integer, Integer>() {
+      @Override
+      public Integer process(final List<Integer> chunk, final int offset) throws ODataException {
+        if (offset > 0) {
+          throw new ODataException("chunk " + offset);
+        }
+        return chunk.get(0);
+      }
+    });
+  }
+}
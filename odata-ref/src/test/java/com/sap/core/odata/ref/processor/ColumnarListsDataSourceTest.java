@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sap.core.odata.api.edm.Edm;
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.exception.ODataNotImplementedException;
+import com.sap.core.odata.api.rt.RuntimeDelegate;
+import com.sap.core.odata.api.uri.UriParser;
+import com.sap.core.odata.api.uri.expression.FilterExpression;
+import com.sap.core.odata.ref.edm.ScenarioEdmProvider;
+import com.sap.core.odata.testutil.fit.BaseTest;
+
+/**
+ * @author SAP AG
+ */
+public class ColumnarListsDataSourceTest extends BaseTest {
+
+  private Edm edm;
+  private EdmEntitySet rooms;
+  private ColumnarListsDataSource dataSource;
+
+  @Before
+  public void before() throws Exception {
+    edm = RuntimeDelegate.createEdm(new ScenarioEdmProvider());
+    rooms = edm.getDefaultEntityContainer().getEntitySet("Rooms");
+
+    ColumnarTable table = new ColumnarTable()
+        .addStringColumn("Id")
+        .addStringColumn("Name")
+        .addIntColumn("Seats")
+        .addIntColumn("Version");
+    for (int id = 1; id <= 100; id++) {
+      table.addRow(String.valueOf(id), "Room " + id % 10, id % 7 == 0 ? null : id % 5, 1);
+    }
+    dataSource = new ColumnarListsDataSource();
+    dataSource.addTable("Rooms", table);
+  }
+
+  private FilterExpression filter(final String expression) throws Exception {
+    return UriParser.parseFilter(edm, rooms.getEntityType(), expression);
+  }
+
+  @Test
+  public void readAll() throws Exception {
+    final List<?> data = dataSource.readData(rooms);
+    assertEquals(100, data.size());
+    assertEquals("Room 2", ((ColumnarTable.Row) data.get(1)).getValue("Name"));
+    assertEquals(2, ((ColumnarTable.Row) data.get(1)).getValue("Seats"));
+    assertNull(((ColumnarTable.Row) data.get(6)).getValue("Seats"));
+    assertEquals(Integer.class, ((ColumnarTable.Row) data.get(6)).getType("Seats"));
+  }
+
+  @Test
+  public void readByKey() throws Exception {
+    final ColumnarTable.Row row = (ColumnarTable.Row) dataSource.readData(rooms, Collections.<String, Object> singletonMap("Id", "42"));
+    assertEquals("Room 2", row.getValue("Name"));
+    assertSame(row, dataSource.readIndexedData(rooms, Collections.<String, Object> singletonMap("Id", "42")));
+    assertNull(dataSource.readIndexedData(rooms, Collections.<String, Object> singletonMap("Id", "101")));
+  }
+
+  @Test
+  public void readKeys() throws Exception {
+    final List<?> data = dataSource.readData(rooms).subList(40, 42);
+    assertEquals(Arrays.asList(Collections.<String, Object> singletonMap("Id", "41"), Collections.<String, Object> singletonMap("Id", "42")),
+        dataSource.readKeys(rooms, data));
+  }
+
+  @Test
+  public void filterNumbers() throws Exception {
+    assertEquals(17, dataSource.countData(rooms, filter("Seats eq 4")).intValue());
+    assertEquals(35, dataSource.countData(rooms, filter("Seats lt 2")).intValue());
+    assertEquals(35, dataSource.countData(rooms, filter("2 gt Seats")).intValue());
+    assertEquals(86, dataSource.countData(rooms, filter("Seats ne 5")).intValue());
+    assertEquals(34, dataSource.countData(rooms, filter("Seats ge 2.5M")).intValue());
+  }
+
+  @Test
+  public void filterStrings() throws Exception {
+    final List<?> data = dataSource.readFilteredData(rooms, filter("Name eq 'Room 3' and Seats gt 2"));
+    assertEquals(9, data.size());
+    assertEquals(10, dataSource.countData(rooms, filter("Name eq 'Room 3'")).intValue());
+    for (final Object row : data) {
+      assertEquals("Room 3", ((ColumnarTable.Row) row).getValue("Name"));
+    }
+    assertEquals(0, dataSource.countData(rooms, filter("Name eq 'Room 10'")).intValue());
+    assertEquals(20, dataSource.countData(rooms, filter("Name lt 'Room 2'")).intValue());
+    assertEquals(40, dataSource.countData(rooms, filter("Name le 'Room 1' or Name ge 'Room 8'")).intValue());
+  }
+
+  @Test
+  public void unsupportedFilter() throws Exception {
+    assertNull(dataSource.readFilteredData(rooms, filter("startswith(Name,'Room')")));
+    assertNull(dataSource.countData(rooms, filter("Seats add 1 eq 2")));
+    assertEquals(100, dataSource.countData(rooms, null).intValue());
+  }
+
+  @Test(expected = ODataNotImplementedException.class)
+  public void unknownEntitySet() throws Exception {
+    dataSource.readData(edm.getDefaultEntityContainer().getEntitySet("Teams"));
+  }
+}
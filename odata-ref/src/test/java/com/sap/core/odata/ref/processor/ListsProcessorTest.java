@@ -0,0 +1,469 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sap.core.odata.api.commons.HttpContentType;
+import com.sap.core.odata.api.edm.Edm;
+import com.sap.core.odata.api.edm.EdmEntitySet;
+import com.sap.core.odata.api.edm.EdmException;
+import com.sap.core.odata.api.exception.ODataException;
+import com.sap.core.odata.api.exception.ODataNotFoundException;
+import com.sap.core.odata.api.exception.ODataNotImplementedException;
+import com.sap.core.odata.api.processor.ODataResponse;
+import com.sap.core.odata.api.rt.RuntimeDelegate;
+import com.sap.core.odata.api.uri.PathSegment;
+import com.sap.core.odata.api.uri.UriInfo;
+import com.sap.core.odata.api.uri.UriParser;
+import com.sap.core.odata.api.uri.expression.FilterExpression;
+import com.sap.core.odata.api.uri.info.GetEntitySetCountUriInfo;
+import com.sap.core.odata.api.uri.info.GetEntitySetLinksUriInfo;
+import com.sap.core.odata.api.uri.info.GetEntitySetUriInfo;
+import com.sap.core.odata.api.uri.info.GetEntityUriInfo;
+import com.sap.core.odata.api.uri.info.PutMergePatchUriInfo;
+import com.sap.core.odata.core.ODataContextImpl;
+import com.sap.core.odata.core.ODataPathSegmentImpl;
+import com.sap.core.odata.core.PathInfoImpl;
+import com.sap.core.odata.ref.edm.ScenarioEdmProvider;
+import com.sap.core.odata.ref.model.DataContainer;
+import com.sap.core.odata.ref.model.Employee;
+import com.sap.core.odata.ref.model.Location;
+import com.sap.core.odata.ref.model.Team;
+import com.sap.core.odata.testutil.fit.BaseTest;
+
+/**
+ * Tests of the query processing in {@link ListsProcessor}
+ * against the data of the reference scenario.
+ * @author SAP AG
+ */
+public class ListsProcessorTest extends BaseTest {
+
+  private static final Pattern EMPLOYEE_ID = Pattern.compile("\"EmployeeId\":\"(\\d+)\"");
+  private static final Pattern ROOM_ID = Pattern.compile("\"Id\":\"(\\d+)\"");
+
+  private Edm edm;
+  private DataContainer dataContainer;
+  private CountingDataSource dataSource;
+  private ListsProcessor processor;
+
+  /** Counts the calls of the reading methods of the scenario data source. */
+  private static class CountingDataSource extends ScenarioDataSource {
+    private final Map<String, Integer> calls = new HashMap<String, Integer>();
+
+    private CountingDataSource(final DataContainer dataContainer) {
+      super(dataContainer);
+    }
+
+    private void count(final String method) {
+      calls.put(method, getCalls(method) + 1);
+    }
+
+    private int getCalls(final String method) {
+      return calls.containsKey(method) ? calls.get(method) : 0;
+    }
+
+    @Override
+    public List<?> readData(final EdmEntitySet entitySet) throws ODataNotImplementedException, ODataNotFoundException, EdmException {
+      count("readAllData");
+      return super.readData(entitySet);
+    }
+
+    @Override
+    public Object readData(final EdmEntitySet entitySet, final Map<String, Object> keys) throws ODataNotImplementedException, ODataNotFoundException, EdmException {
+      count("readData");
+      return super.readData(entitySet, keys);
+    }
+
+    @Override
+    public Object readIndexedData(final EdmEntitySet entitySet, final Map<String, Object> keys) throws ODataNotImplementedException, EdmException {
+      count("readIndexedData");
+      return super.readIndexedData(entitySet, keys);
+    }
+
+    @Override
+    public Object readRelatedData(final EdmEntitySet sourceEntitySet, final Object sourceData, final EdmEntitySet targetEntitySet, final Map<String, Object> targetKeys) throws ODataNotImplementedException, ODataNotFoundException, EdmException {
+      count("readRelatedData");
+      return super.readRelatedData(sourceEntitySet, sourceData, targetEntitySet, targetKeys);
+    }
+
+    @Override
+    public Map<?, ?> readAllRelatedData(final EdmEntitySet sourceEntitySet, final List<?> sourceData, final EdmEntitySet targetEntitySet) throws ODataNotImplementedException, EdmException {
+      count("readAllRelatedData");
+      return super.readAllRelatedData(sourceEntitySet, sourceData, targetEntitySet);
+    }
+
+    @Override
+    public Integer countData(final EdmEntitySet entitySet, final FilterExpression filter) throws ODataNotImplementedException, EdmException {
+      count("countData");
+      return super.countData(entitySet, filter);
+    }
+
+    @Override
+    public List<Map<String, Object>> readKeys(final EdmEntitySet entitySet, final List<?> data) throws ODataNotImplementedException, EdmException {
+      count("readKeys");
+      return super.readKeys(entitySet, data);
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    dataContainer = new DataContainer();
+    dataContainer.reset();
+    dataSource = new CountingDataSource(dataContainer);
+    processor = createProcessor(new ListsProcessor(dataSource));
+    edm = processor.getContext().getService().getEntityDataModel();
+  }
+
+  private ListsProcessor createProcessor(final ListsProcessor processor) throws Exception {
+    PathInfoImpl pathInfo = new PathInfoImpl();
+    pathInfo.setServiceRoot(new URI("http://localhost/"));
+    ODataContextImpl context = new ODataContextImpl();
+    context.setUriInfo(pathInfo);
+    context.setService(RuntimeDelegate.createODataSingleProcessorService(new ScenarioEdmProvider(), processor));
+    processor.setContext(context);
+    return processor;
+  }
+
+  /**
+   * Parses a resource path relative to the service root,
+   * followed by query options as name-value pairs.
+   */
+  private UriInfo parse(final String path, final String... queryOptions) throws ODataException {
+    List<PathSegment> pathSegments = new ArrayList<PathSegment>();
+    for (final String segment : path.split("/")) {
+      pathSegments.add(new ODataPathSegmentImpl(segment, null));
+    }
+    Map<String, String> queryParameters = new HashMap<String, String>();
+    for (int index = 0; index < queryOptions.length; index += 2) {
+      queryParameters.put(queryOptions[index], queryOptions[index + 1]);
+    }
+    return UriParser.parse(edm, pathSegments, queryParameters);
+  }
+
+  private static String read(final ODataResponse response) throws IOException {
+    final InputStream in = (InputStream) response.getEntity();
+    StringBuilder content = new StringBuilder();
+    final byte[] buffer = new byte[4096];
+    int count;
+    while ((count = in.read(buffer)) >= 0) {
+      content.append(new String(buffer, 0, count, "UTF-8"));
+    }
+    return content.toString();
+  }
+
+  /** Returns the IDs of the employees in a JSON feed in their order. */
+  private List<String> readEmployeeIds(final String path, final String... queryOptions) throws Exception {
+    return readEmployeeIds(processor, path, queryOptions);
+  }
+
+  private List<String> readEmployeeIds(final ListsProcessor processor, final String path, final String... queryOptions) throws Exception {
+    final String content = read(processor.readEntitySet((GetEntitySetUriInfo) parse(path, queryOptions), HttpContentType.APPLICATION_JSON));
+    List<String> ids = new ArrayList<String>();
+    final Matcher matcher = EMPLOYEE_ID.matcher(content);
+    while (matcher.find()) {
+      ids.add(matcher.group(1));
+    }
+    return ids;
+  }
+
+  private String count(final ListsProcessor processor, final String path, final String... queryOptions) throws Exception {
+    return read(processor.countEntitySet((GetEntitySetCountUriInfo) parse(path, queryOptions), HttpContentType.TEXT_PLAIN));
+  }
+
+  private static List<String> ids(final String... ids) {
+    List<String> list = new ArrayList<String>();
+    for (final String id : ids) {
+      list.add(id);
+    }
+    return list;
+  }
+
+  @Test
+  public void readEntityThroughIndex() throws Exception {
+    final String content = read(processor.readEntity((GetEntityUriInfo) parse("Employees('3')"), HttpContentType.APPLICATION_JSON));
+    assertEquals(ids("3"), matchAll(EMPLOYEE_ID, content));
+    assertEquals(1, dataSource.getCalls("readIndexedData"));
+    assertEquals(0, dataSource.getCalls("readData"));
+  }
+
+  @Test
+  public void readMissingEntity() throws Exception {
+    try {
+      processor.readEntity((GetEntityUriInfo) parse("Employees('42')"), HttpContentType.APPLICATION_JSON);
+      fail("Expected ODataNotFoundException");
+    } catch (final ODataNotFoundException e) {
+      assertEquals(1, dataSource.getCalls("readIndexedData"));
+    }
+  }
+
+  @Test
+  public void readFeedOfColumnarData() throws Exception {
+    ColumnarTable table = new ColumnarTable()
+        .addStringColumn("Id")
+        .addStringColumn("Name")
+        .addIntColumn("Seats")
+        .addIntColumn("Version");
+    for (int id = 1; id <= 20; id++) {
+      table.addRow(String.valueOf(id), "Room " + id, id % 4, 1);
+    }
+    ColumnarListsDataSource columnarDataSource = new ColumnarListsDataSource();
+    columnarDataSource.addTable("Rooms", table);
+    final ListsProcessor columnarProcessor = createProcessor(new ListsProcessor(columnarDataSource));
+
+    final String content = read(columnarProcessor.readEntitySet((GetEntitySetUriInfo) parse("Rooms",
+        "$filter", "Seats eq 3", "$orderby", "Name desc", "$top", "2"), HttpContentType.APPLICATION_JSON));
+    assertEquals(ids("7", "3"), matchAll(ROOM_ID, content));
+    assertTrue(content.contains("\"Name\":\"Room 7\""));
+    assertTrue(content.contains("\"Seats\":3"));
+  }
+
+  @Test
+  public void readLinksFromKeys() throws Exception {
+    for (final String contentType : new String[] { HttpContentType.APPLICATION_XML, HttpContentType.APPLICATION_JSON }) {
+      final String content = read(processor.readEntityLinks((GetEntitySetLinksUriInfo) parse("Teams('1')/$links/nt_Employees"), contentType));
+      assertTrue(content.contains("http://localhost/Employees('1')"));
+      assertTrue(content.contains("http://localhost/Employees('3')"));
+    }
+    assertEquals(2, dataSource.getCalls("readKeys"));
+  }
+
+  @Test
+  public void updateLinkToMissingTarget() throws Exception {
+    final InputStream content = new ByteArrayInputStream(("<uri xmlns=\"http://schemas.microsoft.com/ado/2007/08/dataservices\">"
+        + "http://localhost/Teams('42')</uri>").getBytes("UTF-8"));
+    try {
+      processor.updateEntityLink((PutMergePatchUriInfo) parse("Employees('2')/$links/ne_Team"),
+          content, HttpContentType.APPLICATION_XML, HttpContentType.APPLICATION_XML);
+      fail("Expected ODataNotFoundException");
+    } catch (final ODataNotFoundException e) {
+      // The existing link must still be there.
+      assertSame(dataContainer.getTeam("1"), dataContainer.getEmployee("2").getTeam());
+      assertEquals(3, dataContainer.getTeam("1").getEmployees().size());
+    }
+  }
+
+  @Test
+  public void orderByWithTop() throws Exception {
+    assertEquals(ids("3", "1"), readEmployeeIds("Employees", "$orderby", "Age desc", "$top", "2"));
+    assertEquals(ids("1", "5"), readEmployeeIds("Employees", "$orderby", "Age desc", "$skip", "1", "$top", "2"));
+    assertEquals(ids("6", "2", "4", "5", "1", "3"), readEmployeeIds("Employees", "$orderby", "Age", "$top", "10"));
+  }
+
+  @Test
+  public void skipPastEnd() throws Exception {
+    assertEquals(ids(), readEmployeeIds("Employees", "$skip", "6"));
+    assertEquals(ids(), readEmployeeIds("Employees", "$skip", "10", "$top", "2"));
+    assertEquals(ids(), readEmployeeIds("Employees", "$orderby", "Age", "$skip", "10"));
+  }
+
+  @Test
+  public void topZero() throws Exception {
+    assertEquals(ids(), readEmployeeIds("Employees", "$top", "0"));
+    assertEquals(ids(), readEmployeeIds("Employees", "$orderby", "Age", "$top", "0"));
+    final String content = read(processor.readEntitySet((GetEntitySetUriInfo) parse("Employees", "$top", "0", "$inlinecount", "allpages"),
+        HttpContentType.APPLICATION_JSON));
+    assertEquals(ids("6"), matchAll(Pattern.compile("\"__count\":\"(\\d+)\""), content));
+  }
+
+  @Test
+  public void skipToken() throws Exception {
+    assertEquals(ids("4", "5", "6"), readEmployeeIds("Employees", "$skiptoken", "4"));
+    assertEquals(ids("5"), readEmployeeIds("Employees", "$skiptoken", "4", "$skip", "1", "$top", "1"));
+    assertEquals(ids("4", "5", "1", "3"), readEmployeeIds("Employees", "$orderby", "Age", "$skiptoken", "4"));
+  }
+
+  @Test
+  public void skipTokenNotInList() throws Exception {
+    assertEquals(ids(), readEmployeeIds("Employees", "$skiptoken", "9"));
+    assertEquals(ids(), readEmployeeIds("Employees", "$skiptoken", "0"));
+    assertEquals(ids(), readEmployeeIds("Employees", "$orderby", "Age", "$skiptoken", "9"));
+  }
+
+  @Test
+  public void serverPaging() throws Exception {
+    final Pattern next = Pattern.compile("\"__next\":\"[^\"]*\\$skiptoken=(\\d+)\"");
+    final String firstPage = read(processor.readEntitySet((GetEntitySetUriInfo) parse("Rooms"), HttpContentType.APPLICATION_JSON));
+    assertEquals(100, matchAll(ROOM_ID, firstPage).size());
+    final List<String> skipToken = matchAll(next, firstPage);
+    assertEquals(1, skipToken.size());
+
+    final String secondPage = read(processor.readEntitySet((GetEntitySetUriInfo) parse("Rooms", "$skiptoken", skipToken.get(0)),
+        HttpContentType.APPLICATION_JSON));
+    assertEquals(3, matchAll(ROOM_ID, secondPage).size());
+    assertEquals(ids(), matchAll(next, secondPage));
+  }
+
+  @Test
+  public void orderByInt32() throws Exception {
+    // Negative numbers would be in another order if compared as strings.
+    assertEquals(ids("6", "2", "4", "5", "1", "3"), readEmployeeIds("Employees", "$orderby", "Age sub 40"));
+    assertEquals(ids("3", "1", "5", "4", "2", "6"), readEmployeeIds("Employees", "$orderby", "Age sub 40 desc"));
+  }
+
+  @Test
+  public void orderByDecimal() throws Exception {
+    assertEquals(ids("3", "1", "5", "4", "2", "6"), readEmployeeIds("Employees", "$orderby", "Age mul -1.5M"));
+  }
+
+  @Test
+  public void orderByDateTimeWithNull() throws Exception {
+    assertEquals(ids("3", "1", "5", "2", "4", "6"), readEmployeeIds("Employees", "$orderby", "EntryDate"));
+    assertEquals(ids("6", "4", "2", "5", "1", "3"), readEmployeeIds("Employees", "$orderby", "EntryDate desc"));
+    assertEquals(ids("3", "1"), readEmployeeIds("Employees", "$orderby", "EntryDate", "$top", "2"));
+  }
+
+  @Test
+  public void orderByMultipleExpressions() throws Exception {
+    assertEquals(ids("3", "1", "2", "6", "5", "4"), readEmployeeIds("Employees", "$orderby", "ManagerId,Age desc"));
+  }
+
+  @Test
+  public void parallelEqualsSequential() throws Exception {
+    List<Employee> employees = new ArrayList<Employee>();
+    for (int index = 0; index < 12000; index++) {
+      Employee employee = dataContainer.createEmployee();
+      employee.setAge(20 + index % 45);
+      employee.setManager(dataContainer.getManager("3"));
+      employee.setTeam(dataContainer.getTeam("2"));
+      employee.setRoom(dataContainer.getRoom("2"));
+      employee.setLocation(new Location("Germany", "69190", "Walldorf"));
+      employee.setImageUri("Employees('" + employee.getId() + "')/$value");
+      employee.setImageType("image/jpeg");
+      employees.add(employee);
+    }
+    dataContainer.getEmployees().addAll(employees);
+
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+    try {
+      final ListsProcessor parallelProcessor = createProcessor(new ListsProcessor(new ScenarioDataSource(dataContainer), executor, 4));
+      final String[][] queries = {
+          { "$filter", "Age gt 40" },
+          { "$orderby", "Age desc" },
+          { "$filter", "Age lt 30", "$orderby", "EntryDate,Age", "$top", "50" },
+          { "$orderby", "Age", "$skiptoken", "4711" },
+          { "$orderby", "EmployeeName", "$skip", "11950" } };
+      for (final String[] query : queries) {
+        assertEquals(readEmployeeIds(processor, "Employees", query), readEmployeeIds(parallelProcessor, "Employees", query));
+      }
+      assertTrue(executor.getCompletedTaskCount() > 0);
+
+      final GetEntitySetCountUriInfo uriInfo = (GetEntitySetCountUriInfo) parse("Employees/$count", "$filter", "Age ge 60");
+      assertEquals(read(processor.countEntitySet(uriInfo, HttpContentType.TEXT_PLAIN)),
+          read(parallelProcessor.countEntitySet(uriInfo, HttpContentType.TEXT_PLAIN)));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void countThroughDataSource() throws Exception {
+    assertEquals("6", count(processor, "Employees/$count"));
+    assertEquals(1, dataSource.getCalls("countData"));
+    assertEquals(0, dataSource.getCalls("readAllData"));
+  }
+
+  @Test
+  public void countWithFilter() throws Exception {
+    assertEquals("3", count(processor, "Employees/$count", "$filter", "Age gt 40"));
+    // The data source cannot count with a filter, so all entities are read.
+    assertEquals(1, dataSource.getCalls("countData"));
+    assertEquals(1, dataSource.getCalls("readAllData"));
+  }
+
+  @Test
+  public void countWithSkipAndTop() throws Exception {
+    assertEquals("4", count(processor, "Employees/$count", "$skip", "2"));
+    assertEquals("3", count(processor, "Employees/$count", "$top", "3"));
+    assertEquals("1", count(processor, "Employees/$count", "$skip", "5", "$top", "3"));
+    assertEquals("0", count(processor, "Employees/$count", "$skip", "10"));
+    assertEquals("0", count(processor, "Employees/$count", "$top", "0"));
+    assertEquals("2", count(processor, "Employees/$count", "$filter", "Age gt 30", "$skip", "1", "$top", "2"));
+    assertEquals("1", count(processor, "Employees/$count", "$filter", "Age gt 30", "$skip", "4", "$top", "2"));
+  }
+
+  @Test
+  public void countNavigation() throws Exception {
+    assertEquals("3", count(processor, "Teams('1')/nt_Employees/$count"));
+    assertEquals("2", count(processor, "Teams('1')/nt_Employees/$count", "$filter", "Age gt 40"));
+    assertEquals(0, dataSource.getCalls("countData"));
+  }
+
+  @Test
+  public void countWithoutDataSourceCount() throws Exception {
+    final ListsProcessor processor = createProcessor(new ListsProcessor(new ScenarioDataSource(dataContainer) {
+      @Override
+      public Integer countData(final EdmEntitySet entitySet, final FilterExpression filter) {
+        return null;
+      }
+    }));
+    assertEquals("103", count(processor, "Rooms/$count"));
+    assertEquals("100", count(processor, "Rooms/$count", "$skip", "3"));
+    assertEquals("1", count(processor, "Rooms/$count", "$filter", "Seats eq 1"));
+  }
+
+  @Test
+  public void expandWithOneCallPerNavigation() throws Exception {
+    final String content = read(processor.readEntitySet((GetEntitySetUriInfo) parse("Employees", "$expand", "ne_Team,ne_Room"),
+        HttpContentType.APPLICATION_JSON));
+    assertEquals(ids("1", "2", "3", "4", "5", "6"), matchAll(EMPLOYEE_ID, content));
+    assertEquals(6, matchAll(Pattern.compile("\"(Team \\d)\""), content).size());
+    assertEquals(2, dataSource.getCalls("readAllRelatedData"));
+    assertEquals(0, dataSource.getCalls("readRelatedData"));
+  }
+
+  @Test
+  public void expandToEmptyFeed() throws Exception {
+    Team team = dataContainer.createTeam();
+    team.setScrumTeam(false);
+    dataContainer.getTeams().add(team);
+
+    final String content = read(processor.readEntitySet((GetEntitySetUriInfo) parse("Teams", "$expand", "nt_Employees"),
+        HttpContentType.APPLICATION_JSON));
+    assertEquals(ids("1", "2", "3", "4", "5", "6"), matchAll(EMPLOYEE_ID, content));
+    assertEquals(1, dataSource.getCalls("readAllRelatedData"));
+    assertEquals(0, dataSource.getCalls("readRelatedData"));
+  }
+
+  private static List<String> matchAll(final Pattern pattern, final String content) {
+    List<String> matches = new ArrayList<String>();
+    final Matcher matcher = pattern.matcher(content);
+    while (matcher.find()) {
+      matches.add(matcher.group(1));
+    }
+    return matches;
+  }
+}
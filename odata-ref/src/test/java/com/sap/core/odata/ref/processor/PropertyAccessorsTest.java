@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright 2013 SAP AG
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.sap.core.odata.ref.processor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+import com.sap.core.odata.ref.model.Employee;
+import com.sap.core.odata.ref.model.Room;
+import com.sap.core.odata.testutil.fit.BaseTest;
+
+/**
+ * @author SAP AG
+ */
+public class PropertyAccessorsTest extends BaseTest {
+
+  @Test
+  public void getterIsCached() throws Exception {
+    final Method getter = PropertyAccessors.getGetter(Room.class, "getSeats");
+    assertEquals("getSeats", getter.getName());
+    assertSame(getter, PropertyAccessors.getGetter(Room.class, "getSeats"));
+  }
+
+  @Test(expected = NoSuchMethodException.class)
+  public void unknownGetter() throws Exception {
+    PropertyAccessors.getGetter(Room.class, "getWindows");
+  }
+
+  @Test
+  public void setter() throws Exception {
+    final Method setter = PropertyAccessors.getSetter(Room.class, "setSeats");
+    assertEquals(int.class, setter.getParameterTypes()[0]);
+    assertSame(setter, PropertyAccessors.getSetter(Room.class, "setSeats"));
+    assertNull(PropertyAccessors.getSetter(Room.class, "setWindows"));
+  }
+
+  @Test
+  public void setterMethodName() {
+    assertEquals("setSeats", PropertyAccessors.getSetterMethodName("getSeats"));
+    assertEquals("setActive", PropertyAccessors.getSetterMethodName("isActive"));
+    assertNull(PropertyAccessors.getSetterMethodName("getLocation.getCountry"));
+  }
+
+  @Test
+  public void methodPath() {
+    final String[] path = PropertyAccessors.getMethodPath("getLocation.getCity.getCityName");
+    assertArrayEquals(new String[] { "getLocation", "getCity", "getCityName" }, path);
+    assertSame(path, PropertyAccessors.getMethodPath("getLocation.getCity.getCityName"));
+  }
+
+  @Test
+  public void type() throws Exception {
+    assertEquals(Integer.class, PropertyAccessors.getType(Room.class, "getSeats"));
+    assertEquals(String.class, PropertyAccessors.getType(Employee.class, "getLocation.getCity.getCityName"));
+  }
+}